@@ -0,0 +1,148 @@
+/*
+ * Copyright (c) 2016, Pierre-Anthony Lemieux (pal@sandflow.com)
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ *
+ * * Redistributions of source code must retain the above copyright notice, this
+ *   list of conditions and the following disclaimer.
+ * * Redistributions in binary form must reproduce the above copyright notice,
+ *   this list of conditions and the following disclaimer in the documentation
+ *   and/or other materials provided with the distribution.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ */
+package com.sandflow.smpte.klv;
+
+import com.sandflow.smpte.util.ByteBufferInputStream;
+import com.sandflow.smpte.util.UL;
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.security.InvalidParameterException;
+
+/**
+ * KLV Triplet whose Value is a view of a ByteBuffer, e.g. a region of a
+ * memory-mapped file or of a buffer shared by all the Triplets of a partition.
+ * The Value is not copied unless {@link #getValue()} is called.
+ */
+public class ByteBufferTriplet implements Triplet {
+
+    final private UL key;
+    final private ByteBuffer buffer;
+    final private int offset;
+    final private int length;
+    private byte[] array;
+
+    /**
+     * Creates a Triplet from a Key and the remaining bytes of a ByteBuffer
+     * @param key Triplet Key
+     * @param value Triplet Value, from its position to its limit. The buffer
+     * must not be modified after the Triplet is created.
+     */
+    public ByteBufferTriplet(UL key, ByteBuffer value) {
+
+        if (key == null || value == null) throw new InvalidParameterException("Triplet muse have key and value.");
+
+        this.key = key;
+        this.buffer = value;
+        this.offset = value.position();
+        this.length = value.remaining();
+    }
+
+    /**
+     * Creates a Triplet from a Key and a region of a ByteBuffer, regardless of
+     * the position and limit of the buffer, without allocating a new buffer
+     * @param key Triplet Key
+     * @param buffer Buffer that contains the Triplet Value. The contents of
+     * the buffer must not be modified after the Triplet is created.
+     * @param offset Absolute index of the first byte of the Value
+     * @param length Length of the Value in bytes
+     */
+    public ByteBufferTriplet(UL key, ByteBuffer buffer, int offset, int length) {
+
+        if (key == null || buffer == null) throw new InvalidParameterException("Triplet muse have key and value.");
+
+        if (offset < 0 || length < 0 || offset > buffer.capacity() - length) {
+            throw new IndexOutOfBoundsException();
+        }
+
+        this.key = key;
+        this.buffer = buffer;
+        this.offset = offset;
+        this.length = length;
+    }
+
+    @Override
+    public UL getKey() {
+        return key;
+    }
+
+    @Override
+    public long getLength() {
+        return length;
+    }
+
+    /**
+     * Copies the Value into a byte array the first time it is called.
+     * {@link #getValueAsStream()} and {@link #getValueAsBuffer()} should be
+     * preferred when possible.
+     *
+     * @return Triplet Value
+     */
+    @Override
+    public byte[] getValue() {
+        if (array == null) {
+            byte[] a = new byte[length];
+
+            new ByteBufferInputStream(buffer, offset, length).read(a, 0, length);
+
+            array = a;
+        }
+
+        return array;
+    }
+
+    @Override
+    public InputStream getValueAsStream() {
+        return new ByteBufferInputStream(buffer, offset, length);
+    }
+
+    /**
+     * Return the Value of the KLV Triplet as a read-only ByteBuffer, without copying
+     * @return Triplet Value, positioned at its first byte
+     */
+    public ByteBuffer getValueAsBuffer() {
+        ByteBuffer b = buffer.duplicate();
+
+        b.limit(offset + length).position(offset);
+
+        return b.slice().asReadOnlyBuffer();
+    }
+
+    /**
+     * Returns the buffer that contains the Value, which must not be modified
+     */
+    ByteBuffer getBuffer() {
+        return buffer;
+    }
+
+    /**
+     * Returns the absolute index of the first byte of the Value in
+     * {@link #getBuffer()}
+     */
+    int getOffset() {
+        return offset;
+    }
+
+}
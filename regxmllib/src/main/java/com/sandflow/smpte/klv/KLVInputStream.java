@@ -27,11 +27,12 @@ package com.sandflow.smpte.klv;
 
 import com.sandflow.smpte.klv.exceptions.KLVException;
 import static com.sandflow.smpte.klv.exceptions.KLVException.MAX_LENGTH_EXCEEED;
+import com.sandflow.smpte.util.ByteSource;
+import com.sandflow.smpte.util.CountingInputStream;
 import com.sandflow.smpte.util.UL;
 import java.io.DataInput;
 import java.io.DataInputStream;
 import java.io.EOFException;
-import java.io.FilterInputStream;
 import java.io.IOException;
 import java.io.InputStream;
 
@@ -48,9 +49,12 @@ public class KLVInputStream extends InputStream implements DataInput {
         BIG_ENDIAN
     }
     
-    private DataInputStream dis;
+    private ByteSource source;
     private ByteOrder byteorder;
 
+    /* scratch buffer used to read identifiers without allocating */
+    private final byte[] idbuf = new byte[8];
+
     /**
      * Assumes big endian byte ordering.
      * 
@@ -63,17 +67,32 @@ public class KLVInputStream extends InputStream implements DataInput {
     /**
      * Allows the byte ordering to be specified.
      * 
-     * @param is InputStream to read from
+     * @param is InputStream to read from. Wrapping a channel in a
+     * {@link com.sandflow.smpte.util.ChannelByteSource} avoids issuing a
+     * separate channel read for each Key and Length.
      * @param byteorder Byte ordering of the file
      */
     public KLVInputStream(InputStream is, ByteOrder byteorder) {
         
         if (is == null) throw new NullPointerException();
         
-        dis = new DataInputStream(is);
+        source = (is instanceof ByteSource) ? (ByteSource) is : new CountingInputStream(is);
         this.byteorder = byteorder;
     }
 
+    /**
+     * Returns the position of the next byte to be read. If the InputStream
+     * provided at construction is a {@link com.sandflow.smpte.util.ByteSource},
+     * its position is returned, otherwise the number of bytes read or skipped
+     * since construction is returned.
+     *
+     * @return Position in bytes
+     * @throws IOException
+     */
+    public long position() throws IOException {
+        return source.position();
+    }
+
     /**
      * Byte order of the stream.
      * 
@@ -91,11 +110,10 @@ public class KLVInputStream extends InputStream implements DataInput {
      * @throws EOFException 
      */
     public UL readUL() throws IOException, EOFException {
-        byte[] ul = new byte[16];
+        long msb = readBigEndianLong();
+        long lsb = readBigEndianLong();
 
-        readFully(ul);
-        
-        return new UL(ul);
+        return new UL(msb, lsb);
     }
 
     /**
@@ -112,7 +130,7 @@ public class KLVInputStream extends InputStream implements DataInput {
 
         int b = read();
 
-        if (b <= 0) {
+        if (b < 0) {
             throw new EOFException();
         }
         
@@ -120,7 +138,7 @@ public class KLVInputStream extends InputStream implements DataInput {
            return b;
         }
 
-        int bersz =  (b & 0x0f);
+        int bersz =  (b & 0x7f);
 
         if (bersz > 8) {
             throw new KLVException(MAX_LENGTH_EXCEEED);
@@ -170,100 +188,142 @@ public class KLVInputStream extends InputStream implements DataInput {
         return new MemoryTriplet(ul, value);
     }
 
+    /**
+     * Skips exactly n bytes, e.g. the Value of a Triplet that is not needed.
+     * The bytes are not read if the underlying InputStream supports seeking.
+     *
+     * @param n Number of bytes to skip
+     * @throws IOException
+     * @throws EOFException
+     */
+    public void skipFully(long n) throws IOException, EOFException {
+        while (n > 0) {
+            long sz = skip(n);
+
+            if (sz <= 0) {
+                
+                /* skip() may return 0 before EOF is reached */
+
+                if (read() < 0) {
+                    throw new EOFException();
+                }
+
+                sz = 1;
+            }
+
+            n -= sz;
+        }
+    }
+
     @Override
     public final int read(byte[] bytes) throws IOException {
-        return dis.read(bytes);
+        return source.read(bytes, 0, bytes.length);
     }
 
     @Override
     public final int read(byte[] bytes, int i, int i1) throws IOException {
-        return dis.read(bytes, i, i1);
+        return source.read(bytes, i, i1);
     }
 
     @Override
     public final void readFully(byte[] bytes) throws IOException {
-        dis.readFully(bytes);
+        readFully(bytes, 0, bytes.length);
     }
 
     @Override
     public final void readFully(byte[] bytes, int i, int i1) throws IOException {
-        dis.readFully(bytes, i, i1);
+        if (i1 < 0) {
+            throw new IndexOutOfBoundsException();
+        }
+
+        for (int n = 0; n < i1;) {
+            int count = source.read(bytes, i + n, i1 - n);
+
+            if (count < 0) {
+                throw new EOFException();
+            }
+
+            n += count;
+        }
     }
 
     @Override
     public final int skipBytes(int i) throws IOException {
-        return dis.skipBytes(i);
+        int total = 0;
+
+        for (int cur; total < i && (cur = (int) source.skip(i - total)) > 0;) {
+            total += cur;
+        }
+
+        return total;
     }
 
     @Override
     public final boolean readBoolean() throws IOException {
-        return dis.readBoolean();
+        return readUnsignedByte() != 0;
     }
 
     @Override
     public final byte readByte() throws IOException {
-        return dis.readByte();
+        return (byte) readUnsignedByte();
     }
 
     @Override
     public final int readUnsignedByte() throws IOException {
-        return dis.readUnsignedByte();
+        int b = source.read();
+
+        if (b < 0) {
+            throw new EOFException();
+        }
+
+        return b;
     }
 
     @Override
     public final short readShort() throws IOException {
-        
-        if (byteorder == ByteOrder.BIG_ENDIAN) {
-        
-            return dis.readShort();
-            
-        } else {
-            
-            int lo = readUnsignedByte();
-            int hi = readUnsignedByte();
-            
-            return (short) (lo + (hi << 8));
-            
-        }
+        return (short) readUnsignedShort();
     }
 
     @Override
     public final int readUnsignedShort() throws IOException {
         
+        int b0 = readUnsignedByte();
+        int b1 = readUnsignedByte();
+
         if (byteorder == ByteOrder.BIG_ENDIAN) {
         
-            return dis.readUnsignedShort();
+            return (b0 << 8) | b1;
             
         } else {
             
-            int lo = readUnsignedByte();
-            int hi = readUnsignedByte();
-            
-            return lo + hi << 8;
+            return b0 | (b1 << 8);
             
         }
     }
 
     @Override
     public final char readChar() throws IOException {
-        return dis.readChar();
+        int b0 = readUnsignedByte();
+        int b1 = readUnsignedByte();
+
+        return (char) ((b0 << 8) | b1);
     }
 
     @Override
     public final int readInt() throws IOException {
         
+        int b0 = readUnsignedByte();
+        int b1 = readUnsignedByte();
+        int b2 = readUnsignedByte();
+        int b3 = readUnsignedByte();
+
         if (byteorder == ByteOrder.BIG_ENDIAN) {
         
-            return dis.readInt();
+            return (b0 << 24) | (b1 << 16) | (b2 << 8) | b3;
             
         } else {
             
-            int b0 = readUnsignedByte();
-            int b1 = readUnsignedByte();
-            int b2 = readUnsignedByte();
-            int b3 = readUnsignedByte();
-            
-            return b0 + (b1 << 8) + (b2 << 16) + (b3 << 24);
+            return b0 | (b1 << 8) | (b2 << 16) | (b3 << 24);
             
         }
         
@@ -271,64 +331,81 @@ public class KLVInputStream extends InputStream implements DataInput {
     
     public long readUnsignedInt() throws IOException, EOFException {
         
-        if (byteorder == ByteOrder.BIG_ENDIAN) {
-        
-            return ((long) dis.readInt()) & 0xFFFF;
-            
-        } else {
-            
-            int b0 = readUnsignedByte();
-            int b1 = readUnsignedByte();
-            int b2 = readUnsignedByte();
-            int b3 = readUnsignedByte();
-            
-            return ((long) b0 + (b1 << 8) + (b2 << 16) + (b3 << 24)) & 0xFFFF;
-            
-        }
+        return ((long) readInt()) & 0xFFFFFFFFL;
         
     }
 
     @Override
     public final long readLong() throws IOException {
         
+        long hi = readInt() & 0xFFFFFFFFL;
+        long lo = readInt() & 0xFFFFFFFFL;
+
         if (byteorder == ByteOrder.BIG_ENDIAN) {
         
-            return dis.readLong();
+            return (hi << 32) | lo;
             
         } else {
             
-            int b0 = readUnsignedByte();
-            int b1 = readUnsignedByte();
-            int b2 = readUnsignedByte();
-            int b3 = readUnsignedByte();
-            int b4 = readUnsignedByte();
-            int b5 = readUnsignedByte();
-            int b6 = readUnsignedByte();
-            int b7 = readUnsignedByte();
-            
-            return b0 + (b1 << 8) + (b2 << 16) + (b3 << 24) + (b4 << 32) + (b5 << 40) + (b6 << 48) + (b7 << 56);
+            return (lo << 32) | hi;
             
         }
     }
 
+    /* floats are always read in big-endian order */
+    private int readBigEndianInt() throws IOException {
+        int b0 = readUnsignedByte();
+        int b1 = readUnsignedByte();
+        int b2 = readUnsignedByte();
+        int b3 = readUnsignedByte();
+
+        return (b0 << 24) | (b1 << 16) | (b2 << 8) | b3;
+    }
+
+    /**
+     * Reads 8 bytes as a big-endian long, regardless of the byte order of the
+     * stream. Identifiers such as ULs are always read in big-endian order.
+     *
+     * @return Long
+     * @throws IOException
+     * @throws EOFException
+     */
+    protected final long readBigEndianLong() throws IOException, EOFException {
+        readFully(idbuf, 0, 8);
+
+        long l = 0;
+
+        for (int i = 0; i < 8; i++) {
+            l = (l << 8) | (idbuf[i] & 0xFF);
+        }
+
+        return l;
+    }
+
     @Override
     public final float readFloat() throws IOException {
-        return dis.readFloat();
+        return Float.intBitsToFloat(readBigEndianInt());
     }
 
     @Override
     public final double readDouble() throws IOException {
-        return dis.readDouble();
+        long hi = readBigEndianInt() & 0xFFFFFFFFL;
+        long lo = readBigEndianInt() & 0xFFFFFFFFL;
+
+        return Double.longBitsToDouble((hi << 32) | lo);
     }
 
+    /**
+     * @deprecated See {@link java.io.DataInputStream#readLine()}
+     */
     @Override
     public final String readLine() throws IOException {
-        return dis.readLine();
+        return new DataInputStream(source).readLine();
     }
 
     @Override
     public final String readUTF() throws IOException {
-        return dis.readUTF();
+        return DataInputStream.readUTF(this);
     }
 
     public static final String readUTF(DataInput di) throws IOException {
@@ -337,37 +414,37 @@ public class KLVInputStream extends InputStream implements DataInput {
 
     @Override
     public int read() throws IOException {
-        return dis.read();
+        return source.read();
     }
 
     @Override
     public long skip(long l) throws IOException {
-        return dis.skip(l);
+        return source.skip(l);
     }
 
     @Override
     public int available() throws IOException {
-        return dis.available();
+        return source.available();
     }
 
     @Override
     public void close() throws IOException {
-        dis.close();
+        source.close();
     }
 
     @Override
     public synchronized void mark(int i) {
-        dis.mark(i);
+        source.mark(i);
     }
 
     @Override
     public synchronized void reset() throws IOException {
-        dis.reset();
+        source.reset();
     }
 
     @Override
     public boolean markSupported() {
-        return dis.markSupported();
+        return source.markSupported();
     }
     
     protected static final void swap(byte[] array, int i, int j) {
@@ -388,5 +465,20 @@ public class KLVInputStream extends InputStream implements DataInput {
         swap(uuid, 6, 7);
 
     }
+
+    /**
+     * Converts the first 8 bytes of a little-endian UUID, read as a big-endian
+     * long, to big-endian order
+     *
+     * @param msb First 8 bytes of the UUID
+     * @return First 8 bytes of the UUID in big-endian order
+     */
+    protected static final long uuidLEtoBE(long msb) {
+        long w0 = Integer.reverseBytes((int) (msb >>> 32)) & 0xFFFFFFFFL;
+        long w1 = Short.reverseBytes((short) (msb >>> 16)) & 0xFFFFL;
+        long w2 = Short.reverseBytes((short) msb) & 0xFFFFL;
+
+        return (w0 << 32) | (w1 << 16) | w2;
+    }
     
 }
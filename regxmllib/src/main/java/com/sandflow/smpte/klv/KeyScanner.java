@@ -0,0 +1,213 @@
+/*
+ * Copyright (c) 2016, Pierre-Anthony Lemieux (pal@sandflow.com)
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ *
+ * * Redistributions of source code must retain the above copyright notice, this
+ *   list of conditions and the following disclaimer.
+ * * Redistributions in binary form must reproduce the above copyright notice,
+ *   this list of conditions and the following disclaimer in the documentation
+ *   and/or other materials provided with the distribution.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ */
+package com.sandflow.smpte.klv;
+
+import com.sandflow.smpte.util.UL;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.SeekableByteChannel;
+
+/**
+ * Searches bytes for the first occurrence of a Key that matches a UL
+ * pattern, e.g. the Partition Pack Key within the run-in of an MXF file or
+ * any SMPTE UL after a corrupted region. The channel is read in large windows,
+ * and the first byte of the pattern is located eight bytes at a time before
+ * candidate Keys are compared against the pattern, two 64-bit words at a time.
+ * <p>
+ * This class is thread-safe.
+ */
+public class KeyScanner {
+
+    /**
+     * Default number of bytes read from the channel at a time
+     */
+    public static final int DEFAULT_WINDOW_SIZE = 64 * 1024;
+
+    private static final long ONES = 0x0101010101010101L;
+    private static final long HIGHS = 0x8080808080808080L;
+
+    private final long msb;
+    private final long lsb;
+    private final long msbmask;
+    private final long lsbmask;
+
+    /* first byte of the pattern, repeated in each byte of the word */
+    private final long firstbytes;
+
+    private final int windowsize;
+
+    /**
+     * Creates a scanner that reads {@link #DEFAULT_WINDOW_SIZE} bytes at a time
+     *
+     * @param pattern UL to search for
+     * @param bytemask 16-bit mask, where byte[n] of the UL is ignored if
+     * bit[15-n] is 0. The first byte of the UL must not be ignored.
+     */
+    public KeyScanner(UL pattern, int bytemask) {
+        this(pattern, bytemask, DEFAULT_WINDOW_SIZE);
+    }
+
+    /**
+     * Creates a scanner
+     *
+     * @param pattern UL to search for
+     * @param bytemask 16-bit mask, where byte[n] of the UL is ignored if
+     * bit[15-n] is 0. The first byte of the UL must not be ignored.
+     * @param windowsize Number of bytes read from the channel at a time
+     */
+    public KeyScanner(UL pattern, int bytemask, int windowsize) {
+
+        if ((bytemask & 0x8000) == 0) {
+            throw new IllegalArgumentException("The first byte of the pattern must be significant.");
+        }
+
+        if (windowsize <= 0) {
+            throw new IllegalArgumentException("Window size must be positive.");
+        }
+
+        this.msbmask = expand(bytemask >>> 8);
+        this.lsbmask = expand(bytemask);
+        this.msb = pattern.getMostSignificantBits() & msbmask;
+        this.lsb = pattern.getLeastSignificantBits() & lsbmask;
+        this.firstbytes = ONES * (pattern.getValueOctet(0) & 0xFF);
+        this.windowsize = windowsize;
+    }
+
+    /* expands each bit of the lower 8 bits of a mask into a byte of a 64-bit mask */
+    private static long expand(int bits) {
+        long mask = 0;
+
+        for (int i = 0; i < 8; i++) {
+            if ((bits & (0x80 >> i)) != 0) {
+                mask |= 0xFFL << (8 * (7 - i));
+            }
+        }
+
+        return mask;
+    }
+
+    /**
+     * Returns the offset of the first Key that matches the pattern and that
+     * starts within a range of a buffer, using absolute reads. The Key itself
+     * may extend past the end of the range, but not past the limit of the buffer.
+     *
+     * @param buffer Buffer to search
+     * @param from Offset of the first candidate Key
+     * @param to Offset following the last candidate Key
+     * @return Offset of the first match, or -1 if no Key matches
+     */
+    public int indexOf(ByteBuffer buffer, int from, int to) {
+
+        /* the last Key must fit within the buffer */
+        int end = Math.min(to, buffer.limit() - 15);
+
+        int i = from;
+
+        /* find candidates eight bytes at a time */
+        for (; i + 8 <= end; i += 8) {
+
+            /* least significant byte first, so that candidates are found in order */
+            long x = Long.reverseBytes(buffer.getLong(i)) ^ firstbytes;
+
+            /* the lowest flagged byte is always equal to the first byte of
+             the pattern, but higher ones may be flagged in error */
+            long flags = (x - ONES) & ~x & HIGHS;
+
+            while (flags != 0) {
+
+                int candidate = i + (Long.numberOfTrailingZeros(flags) >>> 3);
+
+                if (matches(buffer, candidate)) {
+                    return candidate;
+                }
+
+                flags &= flags - 1;
+            }
+
+        }
+
+        for (; i < end; i++) {
+            if (matches(buffer, i)) {
+                return i;
+            }
+        }
+
+        return -1;
+    }
+
+    private boolean matches(ByteBuffer buffer, int offset) {
+        return (buffer.getLong(offset) & msbmask) == msb
+            && (buffer.getLong(offset + 8) & lsbmask) == lsb;
+    }
+
+    /**
+     * Returns the offset of the first Key that matches the pattern, starting
+     * at the current position of the channel. If a match is found, the
+     * channel is positioned at its first byte.
+     *
+     * @param channel Channel to search
+     * @param limit Largest offset from the start of the channel at which a
+     * match is reported
+     * @return Offset of the first match from the start of the channel, or -1
+     * if no Key matches before the limit or the end of the channel, in which
+     * case the position of the channel is unspecified
+     * @throws IOException
+     */
+    public long seek(SeekableByteChannel channel, long limit) throws IOException {
+
+        long size = channel.size();
+
+        ByteBuffer window = ByteBuffer.allocate((int) Math.min(windowsize + 15L, Math.max(16, size - channel.position())));
+
+        for (long start = channel.position(); start <= limit && start + 16 <= size;) {
+
+            window.clear();
+
+            channel.position(start);
+
+            while (window.hasRemaining() && channel.read(window) > 0) {
+            }
+
+            int len = window.position();
+
+            /* candidates start within the window and at or before the limit */
+            int to = (int) Math.min(len - 16, limit - start) + 1;
+
+            int i = indexOf(window, 0, to);
+
+            if (i >= 0) {
+                channel.position(start + i);
+                return start + i;
+            }
+
+            /* the last 15 bytes of the window are the start of the next */
+            start += len - 15;
+        }
+
+        return -1;
+    }
+
+}
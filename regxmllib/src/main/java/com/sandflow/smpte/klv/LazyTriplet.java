@@ -0,0 +1,211 @@
+/*
+ * Copyright (c) 2014, Pierre-Anthony Lemieux (pal@sandflow.com)
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ *
+ * * Redistributions of source code must retain the above copyright notice, this
+ *   list of conditions and the following disclaimer.
+ * * Redistributions in binary form must reproduce the above copyright notice,
+ *   this list of conditions and the following disclaimer in the documentation
+ *   and/or other materials provided with the distribution.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ */
+package com.sandflow.smpte.klv;
+
+import com.sandflow.smpte.klv.exceptions.KLVException;
+import static com.sandflow.smpte.klv.exceptions.KLVException.MAX_LENGTH_EXCEEED;
+import com.sandflow.smpte.util.UL;
+import java.io.ByteArrayInputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.nio.channels.SeekableByteChannel;
+import java.security.InvalidParameterException;
+
+/**
+ * KLV Triplet whose Value remains in the underlying channel until it is
+ * accessed. The position of the channel is saved and restored whenever the
+ * Value is read, so that the Triplet can be accessed while the channel is
+ * being scanned. Instances are not thread-safe.
+ */
+public class LazyTriplet implements Triplet {
+
+    final private UL key;
+    final private long length;
+    final private long offset;
+    final private SeekableByteChannel channel;
+    private byte[] value;
+
+    /**
+     * Creates a Triplet whose Value is located in a channel
+     * @param key Triplet Key
+     * @param length Triplet Length
+     * @param offset Offset of the first byte of the Value within the channel
+     * @param channel Channel containing the Value
+     */
+    public LazyTriplet(UL key, long length, long offset, SeekableByteChannel channel) {
+
+        if (key == null || channel == null) throw new InvalidParameterException("Triplet muse have key and value.");
+
+        if (length < 0 || offset < 0) throw new InvalidParameterException("Invalid Triplet length or offset.");
+
+        this.key = key;
+        this.length = length;
+        this.offset = offset;
+        this.channel = channel;
+    }
+
+    @Override
+    public UL getKey() {
+        return key;
+    }
+
+    @Override
+    public long getLength() {
+        return length;
+    }
+
+    /**
+     * Returns the offset of the Value within the channel
+     * @return Offset in bytes
+     */
+    public long getValueOffset() {
+        return offset;
+    }
+
+    /**
+     * Reads the Value from the channel the first time it is called.
+     *
+     * @return Triplet Value
+     */
+    @Override
+    public byte[] getValue() {
+
+        if (value == null) {
+
+            if (length > Integer.MAX_VALUE) {
+                throw new RuntimeException(new KLVException(MAX_LENGTH_EXCEEED));
+            }
+
+            ByteBuffer buf = ByteBuffer.allocate((int) length);
+
+            try {
+                read(offset, buf);
+            } catch (IOException e) {
+                throw new RuntimeException(e);
+            }
+
+            value = buf.array();
+        }
+
+        return value;
+    }
+
+    /**
+     * Returns the Value as a stream that reads from the channel as needed,
+     * unless the Value has already been read into memory.
+     *
+     * @return Triplet Value
+     */
+    @Override
+    public InputStream getValueAsStream() {
+        if (value != null) {
+            return new ByteArrayInputStream(value);
+        }
+
+        return new ValueInputStream();
+    }
+
+    private int read(long pos, ByteBuffer buf) throws IOException {
+        long savedpos = channel.position();
+
+        int count = 0;
+
+        try {
+            channel.position(pos);
+
+            while (buf.hasRemaining()) {
+                int r = channel.read(buf);
+
+                if (r < 0) {
+                    if (count == 0) {
+                        throw new EOFException();
+                    }
+                    break;
+                }
+
+                count += r;
+            }
+
+        } finally {
+            channel.position(savedpos);
+        }
+
+        return count;
+    }
+
+    private class ValueInputStream extends InputStream {
+
+        private long pos = 0;
+
+        @Override
+        public int read() throws IOException {
+            byte[] b = new byte[1];
+
+            return read(b, 0, 1) < 0 ? -1 : b[0] & 0xFF;
+        }
+
+        @Override
+        public int read(byte[] bytes, int off, int len) throws IOException {
+            if (len == 0) {
+                return 0;
+            }
+
+            if (pos >= length) {
+                return -1;
+            }
+
+            int sz = (int) Math.min(len, length - pos);
+
+            int r = LazyTriplet.this.read(offset + pos, ByteBuffer.wrap(bytes, off, sz));
+
+            pos += r;
+
+            return r;
+        }
+
+        @Override
+        public long skip(long n) {
+            if (n <= 0) {
+                return 0;
+            }
+
+            long sz = Math.min(n, length - pos);
+
+            pos += sz;
+
+            return sz;
+        }
+
+        @Override
+        public int available() {
+            return (int) Math.min(Integer.MAX_VALUE, length - pos);
+        }
+
+    }
+
+}
@@ -26,15 +26,18 @@
 package com.sandflow.smpte.klv;
 
 import com.sandflow.smpte.klv.exceptions.KLVException;
-import com.sandflow.smpte.klv.exceptions.TripletLengthException;
-import com.sandflow.smpte.util.CountingInputStream;
 import com.sandflow.smpte.util.UL;
-import java.io.IOException;
+import java.io.EOFException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
 import java.util.ArrayList;
 import java.util.Collection;
 
 /**
- * LocalSet implements a Local Set as specified in SMPTE ST 336. 
+ * LocalSet implements a Local Set as specified in SMPTE ST 336. The Local Tags
+ * and lengths are read directly from the Value of the Local Set, and each item
+ * is a {@link ByteBufferTriplet} that refers to a region of that Value, which
+ * is not copied if the Local Set is itself a {@link ByteBufferTriplet}.
  */
 public class LocalSet implements Group {
 
@@ -46,96 +49,156 @@ public class LocalSet implements Group {
      * @throws KLVException 
      */
     public static LocalSet fromTriplet(Triplet localset, LocalTagRegister reg) throws KLVException {
-        try {
 
-            if (!localset.getKey().isLocalSet()) {
-                return null;
-            }
-            
-            CountingInputStream cis = new CountingInputStream(localset.getValueAsStream());
+        if (!localset.getKey().isLocalSet()) {
+            return null;
+        }
+
+        /* read the local tags and lengths directly from the value, without copying it if possible */
+        ByteBuffer value;
+        int start;
 
-            KLVInputStream kis = new KLVInputStream(cis);
+        if (localset instanceof ByteBufferTriplet) {
+            value = ((ByteBufferTriplet) localset).getBuffer();
+            start = ((ByteBufferTriplet) localset).getOffset();
+        } else {
+            value = ByteBuffer.wrap(localset.getValue());
+            start = 0;
+        }
+
+        int end = start + (int) localset.getLength();
+
+        if (value.order() != ByteOrder.BIG_ENDIAN) {
+            value = value.duplicate().order(ByteOrder.BIG_ENDIAN);
+        }
 
-            LocalSet set = new LocalSet(localset.getKey());
+        int tagkind = localset.getKey().getRegistryDesignator() >> 3 & 3;
+        int lenkind = localset.getKey().getRegistryDesignator() >> 5 & 3;
 
-            while(cis.getCount() < localset.getLength()) {
+        LocalSet set = new LocalSet(localset.getKey());
+
+        try {
+
+            for (int pos = start; pos < end;) {
 
                 long localtag = 0;
 
                 /* read local tag */
-                switch (localset.getKey().getRegistryDesignator() >> 3 & 3) {
+                switch (tagkind) {
 
                     /* 1 byte length field */
                     case 0:
-                        localtag = kis.readUnsignedByte();
+                        localtag = value.get(pos++) & 0xFF;
                         break;
 
                     /* ASN.1 OID BER length field */
                     case 1:
-                        localtag = kis.readBERLength();
+                        localtag = readBERLength(value, pos);
+                        pos += getBERLengthSize(value, pos);
                         break;
 
                     /* 2 byte length field */
                     case 2:
-                        localtag = kis.readUnsignedShort();
+                        localtag = value.getShort(pos) & 0xFFFF;
+                        pos += 2;
                         break;
 
                     /* 4 byte length field */
                     case 3:
-                        localtag = kis.readUnsignedInt();
+                        localtag = value.getInt(pos) & 0xFFFFFFFFL;
+                        pos += 4;
                         break;
                 }
 
                 long locallen = 0;
 
                 /* read local length */
-                switch (localset.getKey().getRegistryDesignator() >> 5 & 3) {
+                switch (lenkind) {
 
                     /* ASN.1 OID BER length field */
                     case 0:
-                        locallen = kis.readBERLength();
+                        locallen = readBERLength(value, pos);
+                        pos += getBERLengthSize(value, pos);
                         break;
 
                     /* 1 byte length field */
                     case 1:
-                        locallen = kis.readUnsignedByte();
+                        locallen = value.get(pos++) & 0xFF;
                         break;
 
                     /* 2 byte length field */
                     case 2:
-                        locallen = kis.readUnsignedShort();
+                        locallen = value.getShort(pos) & 0xFFFF;
+                        pos += 2;
                         break;
 
                     /* 4 byte length field */
                     case 3:
-                        locallen = kis.readUnsignedInt();
+                        locallen = value.getInt(pos) & 0xFFFFFFFFL;
+                        pos += 4;
                         break;
                 }
 
-                if (locallen > Integer.MAX_VALUE) {
-                    throw new TripletLengthException();
+                /* the buffer may extend beyond the local set */
+                if (pos > end || locallen > end - pos) {
+                    throw new KLVException("Error parsing Local Set: " + localset.getKey(), new EOFException());
                 }
 
-                byte[] localval = new byte[(int) locallen];
+                UL itemkey = reg.get(localtag);
 
-                kis.readFully(localval);
-                
-                if (reg.get(localtag) == null) {
+                if (itemkey == null) {
                     throw new KLVException("Local tag not found: " + localtag + " in Local Set " + localset.getKey());
                 }
 
-                set.addItem(new MemoryTriplet(reg.get(localtag), localval));
+                /* the item is a view of the value of the local set */
+                set.addItem(new ByteBufferTriplet(itemkey, value, pos, (int) locallen));
+
+                pos += (int) locallen;
 
             }
 
-            return set;
-                    
-        } catch (IOException e) {
-            throw new KLVException("Error parsing Local Set: " + localset.getKey(), e);
+        } catch (IndexOutOfBoundsException e) {
+            throw new KLVException("Error parsing Local Set: " + localset.getKey(), new EOFException());
         }
+
+        return set;
         
     }
 
+    /* returns the number of bytes of the BER length at the absolute position pos */
+    private static int getBERLengthSize(ByteBuffer buffer, int pos) {
+        int b = buffer.get(pos) & 0xFF;
+
+        return (b & 0x80) == 0 ? 1 : 1 + (b & 0x7f);
+    }
+
+    /* reads the BER length at the absolute position pos, with the same limits as KLVInputStream */
+    private static long readBERLength(ByteBuffer buffer, int pos) throws KLVException {
+        int b = buffer.get(pos) & 0xFF;
+
+        if ((b & 0x80) == 0) {
+            return b;
+        }
+
+        int bersz = b & 0x7f;
+
+        if (bersz > 8) {
+            throw new KLVException(KLVException.MAX_LENGTH_EXCEEED);
+        }
+
+        long val = 0;
+
+        for (int i = 1; i <= bersz; i++) {
+            val = (val << 8) + (buffer.get(pos + i) & 0xFF);
+
+            if (val > Integer.MAX_VALUE) {
+                throw new KLVException(KLVException.MAX_LENGTH_EXCEEED);
+            }
+        }
+
+        return val;
+    }
+
     private final ArrayList<Triplet> items = new ArrayList<>();
 
     private final UL key;
@@ -26,16 +26,28 @@
 package com.sandflow.smpte.klv;
 
 import com.sandflow.smpte.util.UL;
-import java.util.HashMap;
 import java.util.Map;
 
 /**
- * LocalTagRegister maps Local Tags found in a Local Set to UL Keys
+ * LocalTagRegister maps Local Tags found in a Local Set to UL Keys. 2-byte Local
+ * Tags, as used in MXF, are looked up by indexing arrays, without boxing or
+ * hashing; larger Local Tags are held in an open-addressing table.
  */
 public class LocalTagRegister {
 
-    private final HashMap<Long, UL> entries = new HashMap<>();
-    
+    /* 2-byte local tags are split into 256 pages of 256 entries, allocated on first use */
+    private static final int PAGE_BITS = 8;
+    private static final int PAGE_SIZE = 1 << PAGE_BITS;
+    private static final int PAGE_MASK = PAGE_SIZE - 1;
+    private static final long MAX_SHORT_TAG = 0xFFFF;
+
+    private final UL[][] pages = new UL[PAGE_SIZE][];
+
+    /* local tags larger than MAX_SHORT_TAG, with 0 marking an empty slot */
+    private long[] longtags;
+    private UL[] longkeys;
+    private int longcount;
+
     /**
      * Instantiates an empty LocalTagRegister
      */
@@ -46,7 +58,9 @@ public class LocalTagRegister {
      * @param entries Initial set of mappings
      */
     public LocalTagRegister(Map<Long, UL> entries) {
-        this.entries.putAll(entries);
+        for (Map.Entry<Long, UL> e : entries.entrySet()) {
+            add(e.getKey(), e.getValue());
+        }
     }
 
     /**
@@ -55,7 +69,24 @@ public class LocalTagRegister {
      * @return Key, or null if no Key exists for the Local Tag
      */
     public UL get(long localtag) {
-        return entries.get(localtag);
+
+        if (localtag >= 0 && localtag <= MAX_SHORT_TAG) {
+            UL[] page = pages[(int) localtag >>> PAGE_BITS];
+
+            return page == null ? null : page[(int) localtag & PAGE_MASK];
+        }
+
+        if (longtags == null) {
+            return null;
+        }
+
+        for (int i = slot(localtag, longtags.length); longtags[i] != 0; i = (i + 1) & (longtags.length - 1)) {
+            if (longtags[i] == localtag) {
+                return longkeys[i];
+            }
+        }
+
+        return null;
     }
     
     /**
@@ -65,8 +96,75 @@ public class LocalTagRegister {
      * @return The Key is the Local Tag was already present in the registry, or null otherwise.
      */
     public UL add(long localtag, UL key) {
-        return entries.put(localtag, key);
+
+        if (localtag >= 0 && localtag <= MAX_SHORT_TAG) {
+            UL[] page = pages[(int) localtag >>> PAGE_BITS];
+
+            if (page == null) {
+                page = pages[(int) localtag >>> PAGE_BITS] = new UL[PAGE_SIZE];
+            }
+
+            UL old = page[(int) localtag & PAGE_MASK];
+
+            page[(int) localtag & PAGE_MASK] = key;
+
+            return old;
+        }
+
+        if (longtags == null) {
+            longtags = new long[16];
+            longkeys = new UL[16];
+        } else if (2 * (longcount + 1) > longtags.length) {
+            rehash(2 * longtags.length);
+        }
+
+        int i = slot(localtag, longtags.length);
+
+        for (; longtags[i] != 0; i = (i + 1) & (longtags.length - 1)) {
+            if (longtags[i] == localtag) {
+                UL old = longkeys[i];
+
+                longkeys[i] = key;
+
+                return old;
+            }
+        }
+
+        longtags[i] = localtag;
+        longkeys[i] = key;
+        longcount++;
+
+        return null;
+    }
+
+    private void rehash(int capacity) {
+        long[] oldtags = longtags;
+        UL[] oldkeys = longkeys;
+
+        longtags = new long[capacity];
+        longkeys = new UL[capacity];
+
+        for (int j = 0; j < oldtags.length; j++) {
+
+            if (oldtags[j] == 0) {
+                continue;
+            }
+
+            int i = slot(oldtags[j], capacity);
+
+            while (longtags[i] != 0) {
+                i = (i + 1) & (capacity - 1);
+            }
+
+            longtags[i] = oldtags[j];
+            longkeys[i] = oldkeys[j];
+        }
+    }
+
+    private static int slot(long localtag, int capacity) {
+        long h = localtag * 0x9E3779B97F4A7C15L;
+
+        return (int) (h >>> 40) & (capacity - 1);
     }
-    
 
 }
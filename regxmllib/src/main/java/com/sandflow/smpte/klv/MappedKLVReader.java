@@ -0,0 +1,248 @@
+/*
+ * Copyright (c) 2016, Pierre-Anthony Lemieux (pal@sandflow.com)
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ *
+ * * Redistributions of source code must retain the above copyright notice, this
+ *   list of conditions and the following disclaimer.
+ * * Redistributions in binary form must reproduce the above copyright notice,
+ *   this list of conditions and the following disclaimer in the documentation
+ *   and/or other materials provided with the distribution.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ */
+package com.sandflow.smpte.klv;
+
+import com.sandflow.smpte.klv.exceptions.KLVException;
+import static com.sandflow.smpte.klv.exceptions.KLVException.MAX_LENGTH_EXCEEED;
+import com.sandflow.smpte.util.UL;
+import java.io.EOFException;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+
+/**
+ * MappedKLVReader reads KLV Triplets from a file by memory-mapping successive
+ * windows of the file. The Triplets returned by {@link #readTriplet()} are
+ * views of the mapped region and their Values are not copied onto the heap.
+ * Only big endian byte ordering is supported.
+ */
+public class MappedKLVReader {
+
+    /**
+     * Default size of the mapped window, in bytes
+     */
+    public static final int DEFAULT_WINDOW_SIZE = 64 * 1024 * 1024;
+
+    /* maximum size of a Key and BER-encoded Length */
+    private static final int MAX_HEADER_SIZE = 16 + 9;
+
+    private final FileChannel channel;
+    private final int windowsize;
+
+    private ByteBuffer window;
+    private long windowstart = 0;
+    private boolean windowattail = false;
+    private long position;
+
+    /**
+     * Instantiates a MappedKLVReader starting at the current position of the channel.
+     *
+     * @param channel File from which to read. Must not be null.
+     * @throws IOException
+     */
+    public MappedKLVReader(FileChannel channel) throws IOException {
+        this(channel, DEFAULT_WINDOW_SIZE);
+    }
+
+    /**
+     * Instantiates a MappedKLVReader starting at the current position of the channel.
+     *
+     * @param channel File from which to read. Must not be null.
+     * @param windowsize Size of the region of the file that is mapped at a
+     * time. Triplets larger than the window are mapped individually.
+     * @throws IOException
+     */
+    public MappedKLVReader(FileChannel channel, int windowsize) throws IOException {
+
+        if (channel == null) throw new NullPointerException();
+
+        if (windowsize < MAX_HEADER_SIZE) throw new IllegalArgumentException("Window size too small.");
+
+        this.channel = channel;
+        this.windowsize = windowsize;
+        this.position = channel.position();
+    }
+
+    /**
+     * Returns the offset in the file of the next byte to be read.
+     *
+     * @return Offset in bytes from the start of the file
+     */
+    public long position() {
+        return position;
+    }
+
+    /**
+     * Sets the offset in the file of the next byte to be read.
+     *
+     * @param position Offset in bytes from the start of the file
+     */
+    public void position(long position) {
+        this.position = position;
+    }
+
+    /**
+     * Size of the underlying file.
+     *
+     * @return Size in bytes
+     * @throws IOException
+     */
+    public long size() throws IOException {
+        return channel.size();
+    }
+
+    /**
+     * Reads a single UL.
+     *
+     * @return UL
+     * @throws IOException
+     * @throws EOFException
+     */
+    public UL readUL() throws IOException, EOFException {
+        ByteBuffer buf = map(16, 16);
+
+        long msb = buf.getLong();
+        long lsb = buf.getLong();
+
+        position += 16;
+
+        return new UL(msb, lsb);
+    }
+
+    /**
+     * Reads a single BER-encoded length. The maximum length of the encoded length is 8 bytes.
+     *
+     * @return Length
+     * @throws EOFException
+     * @throws IOException
+     * @throws KLVException
+     */
+    public long readBERLength() throws EOFException, IOException, KLVException {
+
+        ByteBuffer buf = map(1, 9);
+
+        int b = buf.get() & 0xFF;
+
+        if ((b & 0x80) == 0) {
+            position += 1;
+            return b;
+        }
+
+        int bersz = b & 0x7f;
+
+        if (bersz > 8) {
+            throw new KLVException(MAX_LENGTH_EXCEEED);
+        }
+
+        if (buf.remaining() < bersz) {
+            throw new EOFException();
+        }
+
+        long val = 0;
+
+        for (int i = 0; i < bersz; i++) {
+            val = (val << 8) + (buf.get() & 0xFF);
+
+            if (val > Integer.MAX_VALUE) {
+                throw new KLVException(MAX_LENGTH_EXCEEED);
+            }
+        }
+
+        position += 1 + bersz;
+
+        return val;
+    }
+
+    /**
+     * Reads a single KLV triplet. The Value of the triplet is not copied.
+     *
+     * @return KLV Triplet
+     * @throws IOException
+     * @throws EOFException
+     * @throws KLVException
+     */
+    public Triplet readTriplet() throws IOException, EOFException, KLVException {
+        UL ul = readUL();
+
+        long len = readBERLength();
+
+        if (len > Integer.MAX_VALUE) {
+            throw new KLVException(MAX_LENGTH_EXCEEED);
+        }
+
+        ByteBuffer value = map((int) len, (int) len);
+
+        value.limit(value.position() + (int) len);
+
+        position += len;
+
+        return new ByteBufferTriplet(ul, value);
+    }
+
+    /**
+     * Returns a buffer positioned at the current position of the reader, remapping
+     * the window if fewer than minlen bytes are available.
+     *
+     * @param minlen Number of bytes that must be available
+     * @param wantedlen Number of bytes that should be available if the end of the file is not reached
+     */
+    private ByteBuffer map(int minlen, int wantedlen) throws IOException {
+
+        long windowend = window == null ? 0 : windowstart + window.capacity();
+
+        /* remap unless the window covers the request, or the window already
+           extends to the end of the file and covers the required bytes */
+        if (window == null
+            || position < windowstart
+            || (position + wantedlen > windowend
+                && !(windowattail && position + minlen <= windowend))) {
+
+            long filesize = channel.size();
+
+            long sz = Math.min(Math.max(windowsize, wantedlen), filesize - position);
+
+            if (sz < minlen) {
+                throw new EOFException();
+            }
+
+            window = channel.map(FileChannel.MapMode.READ_ONLY, position, sz);
+            windowstart = position;
+            windowattail = position + sz == filesize;
+
+        }
+
+        ByteBuffer buf = window.duplicate();
+
+        buf.position((int) (position - windowstart));
+
+        if (buf.remaining() < minlen) {
+            throw new EOFException();
+        }
+
+        return buf;
+    }
+
+}
@@ -0,0 +1,196 @@
+/*
+ * Copyright (c) 2014, Pierre-Anthony Lemieux (pal@sandflow.com)
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ *
+ * * Redistributions of source code must retain the above copyright notice, this
+ *   list of conditions and the following disclaimer.
+ * * Redistributions in binary form must reproduce the above copyright notice,
+ *   this list of conditions and the following disclaimer in the documentation
+ *   and/or other materials provided with the distribution.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ */
+package com.sandflow.smpte.klv;
+
+import com.sandflow.smpte.klv.exceptions.KLVException;
+import static com.sandflow.smpte.klv.exceptions.KLVException.MAX_LENGTH_EXCEEED;
+import com.sandflow.smpte.util.ByteSource;
+import com.sandflow.smpte.util.UL;
+import java.io.EOFException;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.SeekableByteChannel;
+
+/**
+ * SeekableKLVInputStream reads KLV data structures from a SeekableByteChannel.
+ * Unlike {@link KLVInputStream}, Triplets are returned without reading their
+ * Value, and skipping bytes moves the position of the channel instead of
+ * reading and discarding data. Scanning a file for a given Triplet therefore
+ * only reads the Key and Length of each Triplet.
+ * <p>
+ * Reads are not buffered and always start at the current position of the
+ * channel, which may therefore be moved by the caller between reads.
+ * {@link com.sandflow.smpte.util.ChannelByteSource} should be preferred when
+ * the channel is read sequentially.
+ */
+public class SeekableKLVInputStream extends KLVInputStream {
+
+    private final SeekableByteChannel channel;
+
+    /**
+     * Assumes big endian byte ordering.
+     *
+     * @param channel Channel to read from, starting at its current position
+     */
+    public SeekableKLVInputStream(SeekableByteChannel channel) {
+        this(channel, ByteOrder.BIG_ENDIAN);
+    }
+
+    /**
+     * Allows the byte ordering to be specified.
+     *
+     * @param channel Channel to read from, starting at its current position
+     * @param byteorder Byte ordering of the file
+     */
+    public SeekableKLVInputStream(SeekableByteChannel channel, ByteOrder byteorder) {
+        super(new ChannelInputStream(channel), byteorder);
+
+        this.channel = channel;
+    }
+
+    /**
+     * Returns the position of the next byte to be read.
+     *
+     * @return Offset in bytes from the start of the channel
+     * @throws IOException
+     */
+    public long position() throws IOException {
+        return channel.position();
+    }
+
+    /**
+     * Sets the position of the next byte to be read.
+     *
+     * @param position Offset in bytes from the start of the channel
+     * @throws IOException
+     */
+    public void position(long position) throws IOException {
+        channel.position(position);
+    }
+
+    /**
+     * Reads the Key and Length of a single KLV triplet, and moves past its Value
+     * without reading it. The Value is read from the channel only when it is
+     * accessed.
+     *
+     * @return KLV Triplet
+     * @throws IOException
+     * @throws EOFException
+     * @throws KLVException
+     */
+    @Override
+    public LazyTriplet readTriplet() throws IOException, EOFException, KLVException {
+        UL ul = readUL();
+
+        long len = readBERLength();
+
+        if (len > Integer.MAX_VALUE) {
+            throw new KLVException(MAX_LENGTH_EXCEEED);
+        }
+
+        long offset = channel.position();
+
+        if (offset + len > channel.size()) {
+            throw new EOFException("EOF reached while reading Value.");
+        }
+
+        channel.position(offset + len);
+
+        return new LazyTriplet(ul, len, offset, channel);
+    }
+
+    /**
+     * Unbuffered InputStream over a channel, whose skip() method seeks
+     */
+    private static class ChannelInputStream extends ByteSource {
+
+        private final SeekableByteChannel channel;
+        private final ByteBuffer onebyte = ByteBuffer.allocate(1);
+
+        ChannelInputStream(SeekableByteChannel channel) {
+
+            if (channel == null) throw new NullPointerException();
+
+            this.channel = channel;
+        }
+
+        @Override
+        public long position() throws IOException {
+            return channel.position();
+        }
+
+        @Override
+        public int read() throws IOException {
+            onebyte.clear();
+
+            if (channel.read(onebyte) <= 0) {
+                return -1;
+            }
+
+            return onebyte.get(0) & 0xFF;
+        }
+
+        @Override
+        public int read(byte[] bytes, int off, int len) throws IOException {
+            if (len == 0) {
+                return 0;
+            }
+
+            return channel.read(ByteBuffer.wrap(bytes, off, len));
+        }
+
+        @Override
+        public long skip(long n) throws IOException {
+            if (n <= 0) {
+                return 0;
+            }
+
+            long pos = channel.position();
+
+            long sz = Math.min(n, channel.size() - pos);
+
+            if (sz <= 0) {
+                return 0;
+            }
+
+            channel.position(pos + sz);
+
+            return sz;
+        }
+
+        @Override
+        public int available() throws IOException {
+            return (int) Math.min(Integer.MAX_VALUE, Math.max(0, channel.size() - channel.position()));
+        }
+
+        @Override
+        public void close() throws IOException {
+            channel.close();
+        }
+
+    }
+
+}
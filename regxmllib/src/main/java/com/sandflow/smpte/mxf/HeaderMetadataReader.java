@@ -0,0 +1,292 @@
+/*
+ * Copyright (c) 2016, Pierre-Anthony Lemieux (pal@sandflow.com)
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ *
+ * * Redistributions of source code must retain the above copyright notice, this
+ *   list of conditions and the following disclaimer.
+ * * Redistributions in binary form must reproduce the above copyright notice,
+ *   this list of conditions and the following disclaimer in the documentation
+ *   and/or other materials provided with the distribution.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ */
+package com.sandflow.smpte.mxf;
+
+import com.sandflow.smpte.klv.ByteBufferTriplet;
+import com.sandflow.smpte.klv.Group;
+import com.sandflow.smpte.klv.KLVInputStream;
+import com.sandflow.smpte.klv.LocalSet;
+import com.sandflow.smpte.klv.LocalTagRegister;
+import com.sandflow.smpte.klv.MemoryTriplet;
+import com.sandflow.smpte.klv.Triplet;
+import com.sandflow.smpte.klv.exceptions.KLVException;
+import com.sandflow.smpte.util.UL;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+
+/**
+ * Reads the Header Metadata of an MXF partition (see SMPTE ST 377-1) one
+ * Local Set at a time. The Partition Pack and the Primer Pack are read when
+ * the reader is created, and each Local Set is decoded only when
+ * {@link #next()} is called, so that a caller can stop reading, e.g. once it
+ * has found the Sets it is looking for, without buffering the entire Header
+ * Metadata.
+ * <p>
+ * The Values of the Local Sets are read into buffers shared by consecutive
+ * Local Sets, and the items of each Local Set refer to regions of these
+ * buffers instead of holding copies. Fill Items and Index Table Segments are
+ * skipped without being read.
+ * <p>
+ * This class is not thread-safe.
+ */
+public class HeaderMetadataReader {
+
+    private static final KeyClassifier<KeyClassifier.MXFKey> KEYS = KeyClassifier.createMXFClassifier();
+
+    /* Values of Local Sets are read into buffers of this size */
+    private static final int SHARED_BUFFER_SIZE = 64 * 1024;
+
+    /* Values larger than this are read into their own array */
+    private static final int MAX_SHARED_LENGTH = SHARED_BUFFER_SIZE / 4;
+
+    private final KLVInputStream kis;
+    private final PartitionPack partitionPack;
+    private final LocalTagRegister localTagRegister;
+    private long headerStart;
+    private boolean indexTableReached = false;
+    private boolean done = false;
+    private ByteBuffer shared;
+    private int sharedUsed;
+
+    /**
+     * Creates a reader positioned at the first Local Set that follows the
+     * Primer Pack. The Values of the Triplets that precede the Partition Pack
+     * are skipped using InputStream.skip(), which avoids reading them if
+     * mxfpartition is a {@link com.sandflow.smpte.util.ChannelByteSource} or a
+     * {@link com.sandflow.smpte.klv.SeekableKLVInputStream}.
+     *
+     * @param mxfpartition MXF partition, including the Partition Pack. Must not be null.
+     *
+     * @throws IOException
+     * @throws KLVException
+     */
+    public HeaderMetadataReader(InputStream mxfpartition) throws IOException, KLVException {
+
+        kis = new KLVInputStream(mxfpartition);
+
+        /* skip, without reading them, the values of triplets that are not partition packs */
+        PartitionPack pp = null;
+
+        while (pp == null) {
+
+            UL key = kis.readUL();
+
+            long len = kis.readBERLength();
+
+            if (KEYS.classify(key) != KeyClassifier.MXFKey.PARTITION_PACK) {
+                kis.skipFully(len);
+                continue;
+            }
+
+            if (len > Integer.MAX_VALUE) {
+                throw new KLVException(KLVException.MAX_LENGTH_EXCEEED);
+            }
+
+            byte[] value = new byte[(int) len];
+
+            kis.readFully(value);
+
+            pp = PartitionPack.fromTriplet(new MemoryTriplet(key, value));
+        }
+
+        partitionPack = pp;
+
+        /* start counting header metadata bytes */
+        headerStart = kis.position();
+
+        /* look for the primer pack */
+        LocalTagRegister localreg = null;
+
+        for (Triplet t; (t = kis.readTriplet()) != null; headerStart = kis.position()) {
+
+            /* skip fill items, if any */
+            if (KEYS.classify(t.getKey()) != KeyClassifier.MXFKey.FILL_ITEM) {
+                localreg = PrimerPack.createLocalTagRegister(t);
+                break;
+            }
+
+        }
+
+        localTagRegister = localreg;
+
+        done = (localreg == null);
+    }
+
+    /**
+     * Returns the Partition Pack of the partition
+     *
+     * @return Partition Pack
+     */
+    public PartitionPack getPartitionPack() {
+        return partitionPack;
+    }
+
+    /**
+     * Returns the Local Tag Register created from the Primer Pack
+     *
+     * @return Local Tag Register, or null if the Partition Pack is not
+     * followed by a Primer Pack, in which case {@link #next()} always
+     * returns null
+     */
+    public LocalTagRegister getLocalTagRegister() {
+        return localTagRegister;
+    }
+
+    /**
+     * Returns true if the last call to {@link #next()} returned null because
+     * an Index Table Segment was encountered before Header Byte Count bytes
+     * were read
+     *
+     * @return true if the Header Metadata was cut short by an Index Table Segment
+     */
+    public boolean isIndexTableReached() {
+        return indexTableReached;
+    }
+
+    /**
+     * Reads and decodes the next Local Set of the Header Metadata, skipping
+     * any Fill Item. If the Local Set cannot be decoded, a KLVException is
+     * thrown and the reader is positioned after the offending Triplet, so that
+     * reading can resume with the next call.
+     *
+     * @return Next Local Set, or null if Header Byte Count bytes have been read,
+     * an Index Table Segment was encountered or the end of the stream was reached
+     *
+     * @throws IOException
+     * @throws KLVException
+     */
+    public Group next() throws IOException, KLVException {
+
+        Triplet t = null;
+
+        while (!done && t == null) {
+
+            if (kis.position() - headerStart >= partitionPack.getHeaderByteCount()) {
+
+                done = true;
+
+                continue;
+            }
+
+            UL key = kis.readUL();
+
+            long len = kis.readBERLength();
+
+            KeyClassifier.MXFKey kind = KEYS.classify(key);
+
+            if (kind == KeyClassifier.MXFKey.INDEX_TABLE_SEGMENT) {
+
+                /* stop if Index Table reached */
+                indexTableReached = true;
+
+                done = true;
+
+                kis.skipFully(len);
+
+            } else if (kind == KeyClassifier.MXFKey.FILL_ITEM) {
+
+                /* skip fill items */
+                kis.skipFully(len);
+
+            } else {
+
+                t = readTriplet(key, len);
+
+            }
+        }
+
+        if (t == null) {
+            return null;
+        }
+
+        Group g;
+
+        try {
+
+            g = LocalSet.fromTriplet(t, localTagRegister);
+
+        } catch (KLVException ke) {
+
+            throw new KLVException(
+                String.format(
+                    "Failed to read Group %s with error %s",
+                    t.getKey().toString(),
+                    ke.getMessage()
+                ),
+                ke
+            );
+
+        }
+
+        if (g == null) {
+            throw new KLVException(
+                String.format(
+                    "Failed to read Group: %s",
+                    t.getKey().toString()
+                )
+            );
+        }
+
+        return g;
+    }
+
+    /**
+     * Reads a Value into the current shared buffer, or into its own array if
+     * it is large, and returns a Triplet that refers to it
+     */
+    private Triplet readTriplet(UL key, long len) throws IOException, KLVException {
+
+        if (len > Integer.MAX_VALUE) {
+            throw new KLVException(KLVException.MAX_LENGTH_EXCEEED);
+        }
+
+        int l = (int) len;
+
+        if (l > MAX_SHARED_LENGTH) {
+
+            byte[] value = new byte[l];
+
+            kis.readFully(value);
+
+            return new ByteBufferTriplet(key, ByteBuffer.wrap(value));
+        }
+
+        if (shared == null || shared.capacity() - sharedUsed < l) {
+            shared = ByteBuffer.allocate(SHARED_BUFFER_SIZE);
+            sharedUsed = 0;
+        }
+
+        kis.readFully(shared.array(), sharedUsed, l);
+
+        Triplet t = new ByteBufferTriplet(key, shared, sharedUsed, l);
+
+        sharedUsed += l;
+
+        return t;
+    }
+
+}
@@ -0,0 +1,263 @@
+/*
+ * Copyright (c) 2016, Pierre-Anthony Lemieux (pal@sandflow.com)
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ *
+ * * Redistributions of source code must retain the above copyright notice, this
+ *   list of conditions and the following disclaimer.
+ * * Redistributions in binary form must reproduce the above copyright notice,
+ *   this list of conditions and the following disclaimer in the documentation
+ *   and/or other materials provided with the distribution.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ */
+package com.sandflow.smpte.mxf;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.List;
+
+/**
+ * Index Table of an Essence Container (see SMPTE ST 377-1 Section 11), merged
+ * from Index Table Segments that share the same IndexSID and that can be
+ * spread across multiple partitions. Segments repeated in multiple partitions
+ * are retained only once.
+ * <p>
+ * The Stream Offset of an Edit Unit is computed in constant time if all
+ * segments are CBE with the same Edit Unit Byte Count, and using a binary
+ * search over the segments otherwise.
+ */
+public class IndexTable {
+
+    private final long indexSID;
+    private final List<IndexTableSegment> segments;
+
+    /* Edit Units [starts[i], ends[i]) are indexed by segments[i] */
+    private final long[] starts;
+    private final long[] ends;
+
+    /* Stream Offset of the Edit Unit at position 0 for CBE segments */
+    private final long[] cbeOrigins;
+
+    /* Edit Unit Byte Count if the segments are CBE, contiguous and agree on Stream Offsets, 0 otherwise */
+    private final long cbeByteCount;
+
+    /**
+     * Creates an Index Table from its segments
+     *
+     * @param segments Index Table Segments, in any order. Must not be empty
+     * and all segments must have the same IndexSID.
+     */
+    public IndexTable(Collection<IndexTableSegment> segments) {
+
+        if (segments.isEmpty()) {
+            throw new IllegalArgumentException("At least one Index Table Segment must be provided.");
+        }
+
+        ArrayList<IndexTableSegment> sorted = new ArrayList<>(segments);
+
+        /* order by start position and, for identical start positions, by decreasing number of Edit Units */
+        Collections.sort(sorted, new Comparator<IndexTableSegment>() {
+
+            @Override
+            public int compare(IndexTableSegment a, IndexTableSegment b) {
+                int c = Long.compare(a.getIndexStartPosition(), b.getIndexStartPosition());
+
+                return c != 0 ? c : Long.compare(getEnd(b), getEnd(a));
+            }
+        });
+
+        this.indexSID = sorted.get(0).getIndexSID();
+
+        /* drop repeated segments */
+        ArrayList<IndexTableSegment> merged = new ArrayList<>(sorted.size());
+
+        for (IndexTableSegment s : sorted) {
+
+            if (s.getIndexSID() != indexSID) {
+                throw new IllegalArgumentException("Index Table Segments must have the same IndexSID.");
+            }
+
+            if (merged.isEmpty()
+                || merged.get(merged.size() - 1).getIndexStartPosition() != s.getIndexStartPosition()) {
+                merged.add(s);
+            }
+        }
+
+        int count = merged.size();
+
+        this.segments = Collections.unmodifiableList(merged);
+        this.starts = new long[count];
+        this.ends = new long[count];
+        this.cbeOrigins = new long[count];
+
+        long bytecount = merged.get(0).getEditUnitByteCount();
+
+        for (int i = 0; i < count; i++) {
+            IndexTableSegment s = merged.get(i);
+
+            starts[i] = s.getIndexStartPosition();
+
+            /* a segment ends where the next one starts, if they overlap */
+            ends[i] = getEnd(s);
+
+            if (i + 1 < count) {
+                ends[i] = Math.min(ends[i], merged.get(i + 1).getIndexStartPosition());
+            }
+
+            if (s.isCBE()) {
+
+                if (s.getExtStartOffset() != 0) {
+                    cbeOrigins[i] = s.getExtStartOffset() - starts[i] * s.getEditUnitByteCount();
+                }
+
+                if (i > 0 && (s.getEditUnitByteCount() != bytecount
+                    || cbeOrigins[i] != cbeOrigins[0]
+                    || ends[i - 1] != starts[i])) {
+                    bytecount = 0;
+                }
+
+            } else {
+                bytecount = 0;
+            }
+        }
+
+        this.cbeByteCount = bytecount;
+    }
+
+    /* first Edit Unit following those indexed by the segment */
+    private static long getEnd(IndexTableSegment s) {
+        if (s.isCBE()) {
+            return s.getIndexDuration() == 0 ? Long.MAX_VALUE : s.getIndexStartPosition() + s.getIndexDuration();
+        }
+
+        long count = s.getIndexEntryCount();
+
+        if (s.getIndexDuration() != 0) {
+            count = Math.min(count, s.getIndexDuration());
+        }
+
+        return s.getIndexStartPosition() + count;
+    }
+
+    public long getIndexSID() {
+        return indexSID;
+    }
+
+    /**
+     * @return Segments of the table, ordered by Index Start Position, without
+     * repeated segments
+     */
+    public List<IndexTableSegment> getSegments() {
+        return segments;
+    }
+
+    /**
+     * @return true if all the Edit Units indexed by the table have the same size
+     */
+    public boolean isCBE() {
+        return cbeByteCount != 0;
+    }
+
+    /**
+     * Returns the segment that indexes an Edit Unit
+     *
+     * @param editUnit Position of the Edit Unit
+     * @return Index of the segment in {@link #getSegments()}, or -1 if the
+     * Edit Unit is not indexed
+     */
+    public int getSegmentIndex(long editUnit) {
+        int i = Arrays.binarySearch(starts, editUnit);
+
+        if (i < 0) {
+            i = -i - 2;
+        }
+
+        if (i < 0 || editUnit >= ends[i]) {
+            return -1;
+        }
+
+        return i;
+    }
+
+    /**
+     * Returns the Stream Offset of an Edit Unit, i.e. the offset of its first
+     * byte from the start of the Essence Container
+     *
+     * @param editUnit Position of the Edit Unit
+     * @return Stream Offset, or -1 if the Edit Unit is not indexed
+     */
+    public long getStreamOffset(long editUnit) {
+
+        if (cbeByteCount != 0) {
+
+            if (editUnit < starts[0] || editUnit >= ends[ends.length - 1]) {
+                return -1;
+            }
+
+            return cbeOrigins[0] + editUnit * cbeByteCount;
+        }
+
+        int i = getSegmentIndex(editUnit);
+
+        if (i < 0) {
+            return -1;
+        }
+
+        IndexTableSegment s = segments.get(i);
+
+        if (s.isCBE()) {
+            return cbeOrigins[i] + editUnit * s.getEditUnitByteCount();
+        }
+
+        return s.getStreamOffset((int) (editUnit - starts[i]));
+    }
+
+    /**
+     * Returns the Stream Offset of an element of an Edit Unit, as listed in
+     * the Delta Entry Array of the segment that indexes the Edit Unit
+     *
+     * @param editUnit Position of the Edit Unit
+     * @param element Index of the element in the Delta Entry Array
+     * @return Stream Offset, or -1 if the Edit Unit is not indexed or the
+     * element is not listed
+     */
+    public long getElementStreamOffset(long editUnit, int element) {
+        int i = getSegmentIndex(editUnit);
+
+        if (i < 0) {
+            return -1;
+        }
+
+        IndexTableSegment s = segments.get(i);
+
+        if (element < 0 || element >= s.getDeltaEntryCount()) {
+            return -1;
+        }
+
+        long offset = getStreamOffset(editUnit) + s.getElementDelta(element);
+
+        int slice = s.getSlice(element);
+
+        if (slice != 0 && !s.isCBE()) {
+            offset += s.getSliceOffset((int) (editUnit - starts[i]), slice);
+        }
+
+        return offset;
+    }
+}
@@ -0,0 +1,472 @@
+/*
+ * Copyright (c) 2016, Pierre-Anthony Lemieux (pal@sandflow.com)
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ *
+ * * Redistributions of source code must retain the above copyright notice, this
+ *   list of conditions and the following disclaimer.
+ * * Redistributions in binary form must reproduce the above copyright notice,
+ *   this list of conditions and the following disclaimer in the documentation
+ *   and/or other materials provided with the distribution.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ */
+package com.sandflow.smpte.mxf;
+
+import com.sandflow.smpte.klv.ByteBufferTriplet;
+import com.sandflow.smpte.klv.Triplet;
+import com.sandflow.smpte.klv.exceptions.KLVException;
+import com.sandflow.smpte.util.UUID;
+import java.nio.BufferUnderflowException;
+import java.nio.ByteBuffer;
+
+/**
+ * Represents a MXF Index Table Segment (see SMPTE ST 377-1 Section 11). The
+ * Delta Entry Array and the Index Entry Array are decoded into arrays of
+ * primitive values, one array per field, and are accessed by index.
+ */
+public class IndexTableSegment {
+
+    private static final KeyClassifier<KeyClassifier.MXFKey> KEYS = KeyClassifier.createMXFClassifier();
+
+    private static final int INSTANCE_UID_TAG = 0x3c0a;
+    private static final int INDEX_EDIT_RATE_TAG = 0x3f0b;
+    private static final int INDEX_START_POSITION_TAG = 0x3f0c;
+    private static final int INDEX_DURATION_TAG = 0x3f0d;
+    private static final int EDIT_UNIT_BYTE_COUNT_TAG = 0x3f05;
+    private static final int INDEX_SID_TAG = 0x3f06;
+    private static final int BODY_SID_TAG = 0x3f07;
+    private static final int SLICE_COUNT_TAG = 0x3f08;
+    private static final int POS_TABLE_COUNT_TAG = 0x3f0e;
+    private static final int DELTA_ENTRY_ARRAY_TAG = 0x3f09;
+    private static final int INDEX_ENTRY_ARRAY_TAG = 0x3f0a;
+    private static final int EXT_START_OFFSET_TAG = 0x3f0f;
+    private static final int VBE_BYTE_COUNT_TAG = 0x3f10;
+
+    private static final int DELTA_ENTRY_LENGTH = 6;
+    private static final int MIN_INDEX_ENTRY_LENGTH = 11;
+
+    /* sizes of the local tag and local length fields (see SMPTE ST 336), or -1 for BER */
+    private static final int[] LOCAL_TAG_SIZES = {1, -1, 2, 4};
+    private static final int[] LOCAL_LENGTH_SIZES = {-1, 1, 2, 4};
+
+    /**
+     * Creates an Index Table Segment from a Triplet. The Value of the Triplet
+     * is not copied if the Triplet is a
+     * {@link com.sandflow.smpte.klv.ByteBufferTriplet}.
+     *
+     * @param triplet Triplet from which to create the Index Table Segment
+     * @return Index Table Segment or null if the Triplet is not an Index Table Segment
+     * @throws KLVException
+     */
+    public static IndexTableSegment fromTriplet(Triplet triplet) throws KLVException {
+
+        if (KEYS.classify(triplet.getKey()) != KeyClassifier.MXFKey.INDEX_TABLE_SEGMENT) {
+            return null;
+        }
+
+        ByteBuffer value;
+
+        if (triplet instanceof ByteBufferTriplet) {
+            value = ((ByteBufferTriplet) triplet).getValueAsBuffer();
+        } else {
+            value = ByteBuffer.wrap(triplet.getValue());
+        }
+
+        int rd = triplet.getKey().getRegistryDesignator();
+
+        int tagsize = LOCAL_TAG_SIZES[rd >> 3 & 3];
+        int lensize = LOCAL_LENGTH_SIZES[rd >> 5 & 3];
+
+        IndexTableSegment its = new IndexTableSegment();
+
+        /* the arrays are decoded last since their layout depends on other items */
+        int deltapos = -1;
+        int indexpos = -1;
+
+        try {
+
+            while (value.hasRemaining()) {
+
+                long localtag = readField(value, tagsize);
+
+                long locallen = readField(value, lensize);
+
+                if (locallen > value.remaining()) {
+                    throw new KLVException("Local length exceeds Index Table Segment length.");
+                }
+
+                int itemstart = value.position();
+
+                switch ((int) localtag) {
+                    case INSTANCE_UID_TAG:
+                        byte[] uid = new byte[16];
+                        value.get(uid);
+                        its.instanceID = new UUID(uid);
+                        break;
+                    case INDEX_EDIT_RATE_TAG:
+                        its.editRateNumerator = value.getInt();
+                        its.editRateDenominator = value.getInt();
+                        break;
+                    case INDEX_START_POSITION_TAG:
+                        its.indexStartPosition = value.getLong();
+                        break;
+                    case INDEX_DURATION_TAG:
+                        its.indexDuration = value.getLong();
+                        break;
+                    case EDIT_UNIT_BYTE_COUNT_TAG:
+                        its.editUnitByteCount = value.getInt() & 0xFFFFFFFFL;
+                        break;
+                    case INDEX_SID_TAG:
+                        its.indexSID = value.getInt() & 0xFFFFFFFFL;
+                        break;
+                    case BODY_SID_TAG:
+                        its.bodySID = value.getInt() & 0xFFFFFFFFL;
+                        break;
+                    case SLICE_COUNT_TAG:
+                        its.sliceCount = value.get() & 0xFF;
+                        break;
+                    case POS_TABLE_COUNT_TAG:
+                        its.posTableCount = value.get() & 0xFF;
+                        break;
+                    case DELTA_ENTRY_ARRAY_TAG:
+                        deltapos = itemstart;
+                        break;
+                    case INDEX_ENTRY_ARRAY_TAG:
+                        indexpos = itemstart;
+                        break;
+                    case EXT_START_OFFSET_TAG:
+                        its.extStartOffset = value.getLong();
+                        break;
+                    case VBE_BYTE_COUNT_TAG:
+                        its.vbeByteCount = value.getLong();
+                        break;
+                    default:
+                        /* ignore unknown and dark items */
+                }
+
+                value.position(itemstart + (int) locallen);
+            }
+
+            if (deltapos >= 0) {
+                value.position(deltapos);
+                its.readDeltaEntryArray(value);
+            }
+
+            if (indexpos >= 0) {
+                value.position(indexpos);
+                its.readIndexEntryArray(value);
+            }
+
+        } catch (BufferUnderflowException | IllegalArgumentException e) {
+            throw new KLVException("Error parsing Index Table Segment: " + triplet.getKey(), e);
+        }
+
+        return its;
+    }
+
+    private static long readField(ByteBuffer value, int size) throws KLVException {
+        switch (size) {
+            case 1:
+                return value.get() & 0xFF;
+            case 2:
+                return value.getShort() & 0xFFFF;
+            case 4:
+                return value.getInt() & 0xFFFFFFFFL;
+            default:
+                return readBERLength(value);
+        }
+    }
+
+    private static long readBERLength(ByteBuffer value) throws KLVException {
+        int b = value.get() & 0xFF;
+
+        if ((b & 0x80) == 0) {
+            return b;
+        }
+
+        int bersz = b & 0x0f;
+
+        if (bersz > 8) {
+            throw new KLVException(KLVException.MAX_BER_SIZE_EXCEEED);
+        }
+
+        long val = 0;
+
+        for (int i = 0; i < bersz; i++) {
+            val = (val << 8) | (value.get() & 0xFF);
+        }
+
+        return val;
+    }
+
+    private static void checkArray(long count, long length, int minlength, ByteBuffer value) throws KLVException {
+        if (length < minlength) {
+            throw new KLVException("Index Table Segment array entries are too short.");
+        }
+
+        if (count > value.remaining() / length) {
+            throw new KLVException("Index Table Segment array exceeds its item.");
+        }
+    }
+
+    private void readDeltaEntryArray(ByteBuffer value) throws KLVException {
+        long count = value.getInt() & 0xFFFFFFFFL;
+        long length = value.getInt() & 0xFFFFFFFFL;
+
+        checkArray(count, length, DELTA_ENTRY_LENGTH, value);
+
+        posTableIndexes = new byte[(int) count];
+        slices = new byte[(int) count];
+        elementDeltas = new int[(int) count];
+
+        for (int i = 0; i < count; i++) {
+            int start = value.position();
+
+            posTableIndexes[i] = value.get();
+            slices[i] = value.get();
+            elementDeltas[i] = value.getInt();
+
+            value.position(start + (int) length);
+        }
+    }
+
+    private void readIndexEntryArray(ByteBuffer value) throws KLVException {
+        long count = value.getInt() & 0xFFFFFFFFL;
+        long length = value.getInt() & 0xFFFFFFFFL;
+
+        checkArray(count, length, MIN_INDEX_ENTRY_LENGTH + 4 * sliceCount + 8 * posTableCount, value);
+
+        temporalOffsets = new byte[(int) count];
+        keyFrameOffsets = new byte[(int) count];
+        flags = new byte[(int) count];
+        streamOffsets = new long[(int) count];
+        sliceOffsets = new int[(int) count * sliceCount];
+        posTables = new int[(int) count * posTableCount * 2];
+
+        for (int i = 0; i < count; i++) {
+            int start = value.position();
+
+            temporalOffsets[i] = value.get();
+            keyFrameOffsets[i] = value.get();
+            flags[i] = value.get();
+            streamOffsets[i] = value.getLong();
+
+            for (int j = 0; j < sliceCount; j++) {
+                sliceOffsets[i * sliceCount + j] = value.getInt();
+            }
+
+            for (int j = 0; j < 2 * posTableCount; j++) {
+                posTables[i * 2 * posTableCount + j] = value.getInt();
+            }
+
+            value.position(start + (int) length);
+        }
+    }
+
+    private static final byte[] NO_BYTES = new byte[0];
+    private static final int[] NO_INTS = new int[0];
+    private static final long[] NO_LONGS = new long[0];
+
+    private UUID instanceID;
+    private int editRateNumerator;
+    private int editRateDenominator = 1;
+    private long indexStartPosition;
+    private long indexDuration;
+    private long editUnitByteCount;
+    private long indexSID;
+    private long bodySID;
+    private int sliceCount;
+    private int posTableCount;
+    private long extStartOffset;
+    private long vbeByteCount;
+
+    private byte[] posTableIndexes = NO_BYTES;
+    private byte[] slices = NO_BYTES;
+    private int[] elementDeltas = NO_INTS;
+
+    private byte[] temporalOffsets = NO_BYTES;
+    private byte[] keyFrameOffsets = NO_BYTES;
+    private byte[] flags = NO_BYTES;
+    private long[] streamOffsets = NO_LONGS;
+    private int[] sliceOffsets = NO_INTS;
+    private int[] posTables = NO_INTS;
+
+    private IndexTableSegment() {
+    }
+
+    public UUID getInstanceID() {
+        return instanceID;
+    }
+
+    public int getEditRateNumerator() {
+        return editRateNumerator;
+    }
+
+    public int getEditRateDenominator() {
+        return editRateDenominator;
+    }
+
+    public long getIndexStartPosition() {
+        return indexStartPosition;
+    }
+
+    /**
+     * @return Number of Edit Units indexed by the segment, where 0 indicates,
+     * for a CBE segment, that the segment indexes the entire Essence Container
+     */
+    public long getIndexDuration() {
+        return indexDuration;
+    }
+
+    /**
+     * @return Size in bytes of each Edit Unit, or 0 if the Edit Units are
+     * indexed using the Index Entry Array (VBE)
+     */
+    public long getEditUnitByteCount() {
+        return editUnitByteCount;
+    }
+
+    public long getIndexSID() {
+        return indexSID;
+    }
+
+    public long getBodySID() {
+        return bodySID;
+    }
+
+    public int getSliceCount() {
+        return sliceCount;
+    }
+
+    public int getPosTableCount() {
+        return posTableCount;
+    }
+
+    /**
+     * @return Stream offset of the first Edit Unit of a CBE segment, or 0 if
+     * absent
+     */
+    public long getExtStartOffset() {
+        return extStartOffset;
+    }
+
+    /**
+     * @return Size in bytes of the Edit Units indexed by a VBE segment, or 0
+     * if absent
+     */
+    public long getVBEByteCount() {
+        return vbeByteCount;
+    }
+
+    /**
+     * @return true if the size of the Edit Units indexed by the segment is constant
+     */
+    public boolean isCBE() {
+        return editUnitByteCount != 0;
+    }
+
+    /**
+     * @return Number of entries in the Delta Entry Array
+     */
+    public int getDeltaEntryCount() {
+        return elementDeltas.length;
+    }
+
+    public int getPosTableIndex(int entry) {
+        return posTableIndexes[entry];
+    }
+
+    public int getSlice(int entry) {
+        return slices[entry] & 0xFF;
+    }
+
+    /**
+     * @param entry Index of the Delta Entry
+     * @return Offset in bytes of the element from the start of its slice
+     */
+    public long getElementDelta(int entry) {
+        return elementDeltas[entry] & 0xFFFFFFFFL;
+    }
+
+    /**
+     * @return Number of entries in the Index Entry Array
+     */
+    public int getIndexEntryCount() {
+        return streamOffsets.length;
+    }
+
+    public int getTemporalOffset(int entry) {
+        return temporalOffsets[entry];
+    }
+
+    public int getKeyFrameOffset(int entry) {
+        return keyFrameOffsets[entry];
+    }
+
+    public int getFlags(int entry) {
+        return flags[entry] & 0xFF;
+    }
+
+    /**
+     * @param entry Index of the Index Entry, starting at the Edit Unit at
+     * Index Start Position
+     * @return Offset in bytes of the Edit Unit from the start of the Essence
+     * Container
+     */
+    public long getStreamOffset(int entry) {
+        return streamOffsets[entry];
+    }
+
+    /**
+     * @param entry Index of the Index Entry
+     * @param slice Slice number, starting at 1 since the first slice starts at
+     * the Stream Offset of the Edit Unit
+     * @return Offset in bytes of the slice from the Stream Offset of the Edit Unit
+     */
+    public long getSliceOffset(int entry, int slice) {
+        if (slice < 1 || slice > sliceCount) {
+            throw new IndexOutOfBoundsException();
+        }
+
+        return sliceOffsets[entry * sliceCount + slice - 1] & 0xFFFFFFFFL;
+    }
+
+    /**
+     * @param entry Index of the Index Entry
+     * @param pos PosTable number, starting at 1
+     * @return Numerator of the PosTable entry
+     */
+    public int getPosTableNumerator(int entry, int pos) {
+        if (pos < 1 || pos > posTableCount) {
+            throw new IndexOutOfBoundsException();
+        }
+
+        return posTables[2 * (entry * posTableCount + pos - 1)];
+    }
+
+    /**
+     * @param entry Index of the Index Entry
+     * @param pos PosTable number, starting at 1
+     * @return Denominator of the PosTable entry
+     */
+    public int getPosTableDenominator(int entry, int pos) {
+        if (pos < 1 || pos > posTableCount) {
+            throw new IndexOutOfBoundsException();
+        }
+
+        return posTables[2 * (entry * posTableCount + pos - 1) + 1];
+    }
+}
@@ -0,0 +1,357 @@
+/*
+ * Copyright (c) 2016, Pierre-Anthony Lemieux (pal@sandflow.com)
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ *
+ * * Redistributions of source code must retain the above copyright notice, this
+ *   list of conditions and the following disclaimer.
+ * * Redistributions in binary form must reproduce the above copyright notice,
+ *   this list of conditions and the following disclaimer in the documentation
+ *   and/or other materials provided with the distribution.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ */
+package com.sandflow.smpte.mxf;
+
+import com.sandflow.smpte.util.UL;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Classifies KLV Keys against a set of patterns, each made of a UL, a mask of
+ * the bytes of the UL that are significant and a category. Patterns that share
+ * a mask are stored in a single hash table keyed by the two 64-bit halves of
+ * the masked UL, so that a Key is classified with one table lookup per distinct
+ * mask instead of one byte-by-byte comparison per pattern.
+ * <p>
+ * Applications can combine their own patterns, e.g. for the essence element
+ * or descriptor Keys they handle, with those of MXF using
+ * {@link #addMXFPatterns(com.sandflow.smpte.mxf.KeyClassifier)}. Patterns can
+ * be added while other threads classify Keys.
+ *
+ * @param <T> Type of the categories
+ */
+public final class KeyClassifier<T> {
+
+    /**
+     * Categories of the Keys recognized by the classifier returned by
+     * {@link #createMXFClassifier()}
+     */
+    public enum MXFKey {
+
+        /**
+         * Header, Body or Footer Partition Pack (see SMPTE ST 377-1)
+         */
+        PARTITION_PACK,
+        /**
+         * Primer Pack
+         */
+        PRIMER_PACK,
+        /**
+         * KLV Fill Item
+         */
+        FILL_ITEM,
+        /**
+         * Index Table Segment
+         */
+        INDEX_TABLE_SEGMENT,
+        /**
+         * Random Index Pack
+         */
+        RANDOM_INDEX_PACK,
+        /**
+         * Preface Set
+         */
+        PREFACE,
+        /**
+         * MXF Generic Container Essence Element (see SMPTE ST 379-1)
+         */
+        ESSENCE_ELEMENT
+    }
+
+    private static final UL INDEX_TABLE_SEGMENT_KEY
+        = UL.fromURN("urn:smpte:ul:060e2b34.02530101.0d010201.01100100");
+    private static final UL PREFACE_KEY
+        = UL.fromURN("urn:smpte:ul:060e2b34.027f0101.0d010101.01012f00");
+    private static final UL ESSENCE_ELEMENT_KEY
+        = UL.fromURN("urn:smpte:ul:060e2b34.01020101.0d010301.00000000");
+
+    /* all bytes but the version byte */
+    private static final int IGNORE_VERSION = 0xfeff;
+
+    /**
+     * Creates a classifier that recognizes the structural Keys of MXF files
+     * listed in {@link MXFKey}
+     *
+     * @return New classifier
+     */
+    public static KeyClassifier<MXFKey> createMXFClassifier() {
+
+        KeyClassifier<MXFKey> c = new KeyClassifier<>();
+
+        addMXFPatterns(c);
+
+        return c;
+    }
+
+    /**
+     * Adds to a classifier the patterns of the structural Keys of MXF files
+     * listed in {@link MXFKey}. The version byte of the Keys is ignored, and so
+     * is the registry designator of the Preface Key.
+     *
+     * @param c Classifier to which the patterns are added
+     */
+    public static void addMXFPatterns(KeyClassifier<? super MXFKey> c) {
+
+        /* the kind and status of the partition are part of the Key */
+        byte[] ppkey = PartitionPack.getKey().getValue();
+
+        for (byte kind = 0x02; kind <= 0x04; kind++) {
+
+            for (byte status = 0x01; status <= 0x04; status++) {
+
+                ppkey[13] = kind;
+                ppkey[14] = status;
+
+                c.add(new UL(ppkey.clone()), 0xfefe, MXFKey.PARTITION_PACK);
+            }
+
+        }
+
+        c.add(PrimerPack.getKey(), IGNORE_VERSION, MXFKey.PRIMER_PACK);
+        c.add(FillItem.getKey(), IGNORE_VERSION, MXFKey.FILL_ITEM);
+        c.add(INDEX_TABLE_SEGMENT_KEY, IGNORE_VERSION, MXFKey.INDEX_TABLE_SEGMENT);
+        c.add(RandomIndexPack.getKey(), IGNORE_VERSION, MXFKey.RANDOM_INDEX_PACK);
+        c.add(PREFACE_KEY, 0xfaff /* ignore version and Group coding */, MXFKey.PREFACE);
+
+        /* item type, element count, element type and element number vary */
+        c.add(ESSENCE_ELEMENT_KEY, 0xfef0, MXFKey.ESSENCE_ELEMENT);
+    }
+
+    /* patterns, grouped by mask in the order the masks were first added */
+    private final LinkedHashMap<Mask, ArrayList<Pattern<T>>> patterns = new LinkedHashMap<>();
+
+    /* tables, most significant masks first */
+    private volatile List<Table<T>> tables = Collections.emptyList();
+
+    /**
+     * Adds a pattern to the classifier. If several patterns match a Key, the
+     * pattern with the most significant bytes wins, and the first pattern
+     * added wins among patterns with the same mask.
+     *
+     * @param key UL of the pattern
+     * @param bytemask 16-bit mask, where byte[n] of the UL is ignored if
+     * bit[15 - n] is 0, as in {@link UL#equalsWithMask(com.sandflow.smpte.util.UL, int)}
+     * @param category Category returned when a Key matches the pattern. Must
+     * not be null.
+     */
+    public synchronized void add(UL key, int bytemask, T category) {
+
+        if (key == null || category == null) {
+            throw new IllegalArgumentException();
+        }
+
+        Mask mask = new Mask(bytemask);
+
+        ArrayList<Pattern<T>> group = patterns.get(mask);
+
+        if (group == null) {
+            group = new ArrayList<>();
+            patterns.put(mask, group);
+        }
+
+        group.add(new Pattern<>(
+            key.getMostSignificantBits() & mask.msb,
+            key.getLeastSignificantBits() & mask.lsb,
+            category
+        ));
+
+        ArrayList<Table<T>> newtables = new ArrayList<>();
+
+        for (Map.Entry<Mask, ArrayList<Pattern<T>>> e : patterns.entrySet()) {
+            newtables.add(new Table<>(e.getKey(), e.getValue()));
+        }
+
+        /* stable sort, so that masks with the same number of significant bytes
+         are tried in the order they were added */
+        Collections.sort(newtables, new Comparator<Table<T>>() {
+
+            @Override
+            public int compare(Table<T> a, Table<T> b) {
+                return b.mask.bytecount - a.mask.bytecount;
+            }
+        });
+
+        tables = Collections.unmodifiableList(newtables);
+    }
+
+    /**
+     * Classifies a Key
+     *
+     * @param key Key to classify
+     * @return Category of the first matching pattern, or null if no pattern
+     * matches
+     */
+    public T classify(UL key) {
+        return classify(key.getMostSignificantBits(), key.getLeastSignificantBits());
+    }
+
+    /**
+     * Classifies a Key given as two 64-bit halves, e.g. read directly from a
+     * buffer, without allocating
+     *
+     * @param msb First 8 bytes of the Key, as a big-endian long
+     * @param lsb Last 8 bytes of the Key, as a big-endian long
+     * @return Category of the first matching pattern, or null if no pattern
+     * matches
+     */
+    public T classify(long msb, long lsb) {
+
+        List<Table<T>> t = tables;
+
+        for (int i = 0; i < t.size(); i++) {
+
+            T category = t.get(i).get(msb, lsb);
+
+            if (category != null) {
+                return category;
+            }
+
+        }
+
+        return null;
+    }
+
+    private static final class Mask {
+
+        final int bytemask;
+        final long msb;
+        final long lsb;
+        final int bytecount;
+
+        Mask(int bytemask) {
+            this.bytemask = bytemask & 0xFFFF;
+            this.msb = expand(this.bytemask >>> 8);
+            this.lsb = expand(this.bytemask & 0xFF);
+            this.bytecount = Integer.bitCount(this.bytemask);
+        }
+
+        /* expands each bit of an 8-bit mask into a byte of a 64-bit mask */
+        private static long expand(int bits) {
+            long mask = 0;
+
+            for (int i = 0; i < 8; i++) {
+                if ((bits & (0x80 >>> i)) != 0) {
+                    mask |= 0xFFL << (8 * (7 - i));
+                }
+            }
+
+            return mask;
+        }
+
+        @Override
+        public int hashCode() {
+            return bytemask;
+        }
+
+        @Override
+        public boolean equals(Object obj) {
+            return obj instanceof Mask && ((Mask) obj).bytemask == bytemask;
+        }
+
+    }
+
+    private static final class Pattern<T> {
+
+        final long msb;
+        final long lsb;
+        final T category;
+
+        Pattern(long msb, long lsb, T category) {
+            this.msb = msb;
+            this.lsb = lsb;
+            this.category = category;
+        }
+
+    }
+
+    /* open-addressing table of the patterns that share a mask */
+    private static final class Table<T> {
+
+        final Mask mask;
+
+        /* keys[2 * i] and keys[2 * i + 1] hold the masked Key of slot i */
+        private final long[] keys;
+        private final Object[] categories;
+
+        Table(Mask mask, List<Pattern<T>> patterns) {
+            this.mask = mask;
+
+            /* keep the load factor at or below 1/2 */
+            int capacity = Integer.highestOneBit(Math.max(2, 2 * patterns.size()) - 1) << 1;
+
+            this.keys = new long[2 * capacity];
+            this.categories = new Object[capacity];
+
+            for (Pattern<T> p : patterns) {
+
+                int i = hash(p.msb, p.lsb) & (capacity - 1);
+
+                while (categories[i] != null
+                    && !(keys[2 * i] == p.msb && keys[2 * i + 1] == p.lsb)) {
+                    i = (i + 1) & (capacity - 1);
+                }
+
+                /* the first pattern added wins */
+                if (categories[i] == null) {
+                    keys[2 * i] = p.msb;
+                    keys[2 * i + 1] = p.lsb;
+                    categories[i] = p.category;
+                }
+            }
+        }
+
+        private static int hash(long msb, long lsb) {
+            long h = (msb ^ Long.rotateLeft(lsb, 32)) * 0x9E3779B97F4A7C15L;
+
+            return (int) (h ^ (h >>> 32));
+        }
+
+        @SuppressWarnings("unchecked")
+        T get(long msb, long lsb) {
+            msb &= mask.msb;
+            lsb &= mask.lsb;
+
+            int m = categories.length - 1;
+
+            for (int i = hash(msb, lsb) & m;; i = (i + 1) & m) {
+
+                if (categories[i] == null) {
+                    return null;
+                }
+
+                if (keys[2 * i] == msb && keys[2 * i + 1] == lsb) {
+                    return (T) categories[i];
+                }
+            }
+        }
+
+    }
+
+}
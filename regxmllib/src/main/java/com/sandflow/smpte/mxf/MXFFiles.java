@@ -26,13 +26,18 @@
 package com.sandflow.smpte.mxf;
 
 import com.sandflow.smpte.klv.KLVInputStream;
+import com.sandflow.smpte.klv.KeyScanner;
+import com.sandflow.smpte.klv.SeekableKLVInputStream;
 import com.sandflow.smpte.klv.Triplet;
 import com.sandflow.smpte.klv.exceptions.KLVException;
 import com.sandflow.smpte.util.UL;
+import java.io.EOFException;
 import java.io.IOException;
 import java.nio.ByteBuffer;
 import java.nio.channels.Channels;
 import java.nio.channels.SeekableByteChannel;
+import java.util.ArrayList;
+import java.util.Collection;
 
 /**
  * Utilities for processing MXF files
@@ -40,6 +45,21 @@ import java.nio.channels.SeekableByteChannel;
  */
 public class MXFFiles {
 
+    private static final KeyClassifier<KeyClassifier.MXFKey> KEYS = KeyClassifier.createMXFClassifier();
+
+    /* the run-in is less than 64 KiB long (SMPTE ST 377-1 Section 6.5) */
+    private static final long MAX_RUN_IN_OFFSET = 65536;
+
+    private static final KeyScanner PARTITION_SCANNER = new KeyScanner(
+        PartitionPack.getKey(),
+        0xfee0 /* first eleven bytes minus the version byte */
+    );
+
+    private static final KeyScanner UL_SCANNER = new KeyScanner(
+        UL.fromURN("urn:smpte:ul:060e2b34.00000000.00000000.00000000"),
+        0xf000 /* UL designator */
+    );
+
     /**
      * Seeks to the footer partition, assuming the current position of the
      * channel is within the run-in (SMPTE ST 377-1 Section 6.5), the footer partition
@@ -67,35 +87,58 @@ public class MXFFiles {
             return mxffile.position();
         }
         
-        /* look for the RIP start */
-        
-        mxffile.position(mxffile.size() - 4);
-        
+        RandomIndexPack rip = readRandomIndexPack(mxffile);
+        if (rip == null || rip.getOffsets().isEmpty()) {
+            return -1;
+        }
+        mxffile.position(rip.getOffsets().get(rip.getOffsets().size() - 1).getOffset());
+        return mxffile.position();
+    }
+
+    /**
+     * Reads the Random Index Pack located at the end of an MXF file
+     *
+     * @param mxffile Channel containing an MXF file. The position of the
+     * channel is modified.
+     * @return Random Index Pack, or null if the file does not end with a
+     * Random Index Pack
+     * @throws IOException
+     * @throws com.sandflow.smpte.klv.exceptions.KLVException
+     */
+    public static RandomIndexPack readRandomIndexPack(SeekableByteChannel mxffile) throws IOException, KLVException {
+        long size = mxffile.size();
+
+        if (size < 4) {
+            return null;
+        }
+
+        /* the RIP ends with its overall length */
+        mxffile.position(size - 4);
+
         ByteBuffer bytes = ByteBuffer.allocate(4);
-        
+
         if (mxffile.read(bytes) != bytes.limit()) {
-            return -1;
+            return null;
         }
-        
-        /* move to start of RIP */
-        
-        mxffile.position(mxffile.size() - bytes.getInt(0));
-        
-        /* read RIP */
-        
-        kis = new KLVInputStream(Channels.newInputStream(mxffile));
-        
-        t = kis.readTriplet();
-        
-        if (t == null) {
-            return -1;
+
+        long riplength = bytes.getInt(0) & 0xFFFFFFFFL;
+
+        if (riplength < 16 || riplength > size) {
+            return null;
         }
-        RandomIndexPack rip = RandomIndexPack.fromTriplet(t);
-        if (rip == null) {
-            return -1;
+
+        SeekableKLVInputStream kis = new SeekableKLVInputStream(mxffile);
+
+        /* check the key before reading the length, which is meaningless if there is no RIP */
+        kis.position(size - riplength);
+
+        if (!RandomIndexPack.getKey().equals(kis.readUL())) {
+            return null;
         }
-        mxffile.position(rip.getOffsets().get(rip.getOffsets().size() - 1).getOffset());
-        return mxffile.position();
+
+        kis.position(size - riplength);
+
+        return RandomIndexPack.fromTriplet(kis.readTriplet());
     }
 
     /**
@@ -108,17 +151,192 @@ public class MXFFiles {
      * @throws IOException
      */
     public static long seekHeaderPartition(SeekableByteChannel mxffile) throws IOException {
-        ByteBuffer ulbytes = ByteBuffer.allocate(16);
-        long offset = mxffile.position();
-        while (mxffile.read(ulbytes) == ulbytes.limit() && offset <= 65536) {
-            UL ul = new UL(ulbytes.array());
-            if (ul.equalsWithMask(PartitionPack.getKey(), 65248 /* first eleven bytes minus the version byte */ )) {
+        return PARTITION_SCANNER.seek(mxffile, MAX_RUN_IN_OFFSET);
+    }
+
+    /**
+     * Seeks to the first byte of the next KLV Triplet whose Key is a SMPTE UL
+     * (SMPTE ST 336), at or after the current position of the channel, e.g. to
+     * resume reading after a corrupted region. A candidate Key is retained
+     * only if its Category Designator is defined, its Length is a valid BER
+     * length and the Triplet ends within the file.
+     *
+     * @param mxffile Channel containing an MXF file
+     * @return Offset of the first byte of the Triplet, or -1 if no Triplet
+     * was found
+     * @throws IOException
+     */
+    public static long seekNextKey(SeekableByteChannel mxffile) throws IOException {
+        SeekableKLVInputStream kis = new SeekableKLVInputStream(mxffile);
+
+        long size = mxffile.size();
+
+        for (long offset; (offset = UL_SCANNER.seek(mxffile, Long.MAX_VALUE)) >= 0; mxffile.position(offset + 1)) {
+
+            int category = kis.readUL().getValueOctet(4);
+
+            if (category < 1 || category > 5) {
+                continue;
+            }
+
+            try {
+
+                long len = kis.readBERLength();
+
+                if (len > size - kis.position()) {
+                    continue;
+                }
+
+            } catch (KLVException | EOFException e) {
+                continue;
+            }
+
+            mxffile.position(offset);
+
+            return offset;
+        }
+
+        return -1;
+    }
+
+    /**
+     * Seeks to the first byte of the first Partition Pack found at or after
+     * the current position of the channel, assuming the current position of
+     * the channel is at the start of a KLV Triplet. Only the Key
+     * and Length of the intervening Triplets, e.g. essence and index table
+     * segments, are read.
+     *
+     * @param mxffile Channel containing an MXF file
+     * @return Offset of the first byte of the Partition Pack, or -1 if the end
+     * of the file was reached before a Partition Pack was found
+     * @throws IOException
+     * @throws com.sandflow.smpte.klv.exceptions.KLVException
+     */
+    public static long seekNextPartition(SeekableByteChannel mxffile) throws IOException, KLVException {
+        SeekableKLVInputStream kis = new SeekableKLVInputStream(mxffile);
+
+        long size = mxffile.size();
+
+        for (long offset = mxffile.position(); offset < size; offset = mxffile.position()) {
+
+            UL key = kis.readUL();
+
+            if (KEYS.classify(key) == KeyClassifier.MXFKey.PARTITION_PACK) {
                 mxffile.position(offset);
                 return offset;
             }
-            mxffile.position(++offset);
+
+            kis.skipFully(kis.readBERLength());
         }
+
         return -1;
     }
-    
+
+    /**
+     * Reads the Index Table with a given IndexSID, assuming the current
+     * position of the channel is within the run-in (SMPTE ST 377-1 Section
+     * 6.5). If the Header Partition Pack lists the offset of the Footer
+     * Partition, partitions are visited by following the PreviousPartition
+     * offsets from the Footer Partition and only Partition Packs and Index
+     * Table Segments are read. Otherwise partitions are visited using
+     * {@link #seekNextPartition(java.nio.channels.SeekableByteChannel)}.
+     *
+     * @param mxffile Channel containing an MXF file
+     * @param indexSID IndexSID of the Index Table
+     * @return Index Table, or null if no Index Table Segment with the IndexSID
+     * was found
+     * @throws IOException
+     * @throws com.sandflow.smpte.klv.exceptions.KLVException
+     */
+    public static IndexTable readIndexTable(SeekableByteChannel mxffile, long indexSID) throws IOException, KLVException {
+        long headeroffset = seekHeaderPartition(mxffile);
+
+        if (headeroffset < 0) {
+            return null;
+        }
+
+        SeekableKLVInputStream kis = new SeekableKLVInputStream(mxffile);
+
+        ArrayList<IndexTableSegment> segments = new ArrayList<>();
+
+        PartitionPack header = readIndexTableSegments(kis, indexSID, segments);
+
+        if (header == null) {
+            return null;
+        }
+
+        if (header.getFooterPartition() != 0) {
+
+            for (long offset = header.getFooterPartition(); offset != 0;) {
+
+                kis.position(headeroffset + offset);
+
+                PartitionPack pp = readIndexTableSegments(kis, indexSID, segments);
+
+                /* stop on broken or circular links */
+                if (pp == null || pp.getPreviousPartition() >= offset) {
+                    break;
+                }
+
+                offset = pp.getPreviousPartition();
+            }
+
+        } else {
+
+            while (seekNextPartition(mxffile) >= 0) {
+
+                if (readIndexTableSegments(kis, indexSID, segments) == null) {
+                    break;
+                }
+            }
+
+        }
+
+        return segments.isEmpty() ? null : new IndexTable(segments);
+    }
+
+    /*
+     * Reads the Partition Pack at the current position and collects the Index
+     * Table Segments of the partition with the given IndexSID, skipping the
+     * Header Metadata without reading it
+     */
+    private static PartitionPack readIndexTableSegments(SeekableKLVInputStream kis, long indexSID, Collection<IndexTableSegment> segments) throws IOException, KLVException {
+        PartitionPack pp = PartitionPack.fromTriplet(kis.readTriplet());
+
+        if (pp == null || pp.getIndexSID() != indexSID || pp.getIndexByteCount() == 0) {
+            return pp;
+        }
+
+        skipFillItems(kis);
+
+        kis.skipFully(pp.getHeaderByteCount());
+
+        skipFillItems(kis);
+
+        long start = kis.position();
+
+        while (kis.position() - start < pp.getIndexByteCount()) {
+
+            IndexTableSegment its = IndexTableSegment.fromTriplet(kis.readTriplet());
+
+            if (its != null && its.getIndexSID() == indexSID) {
+                segments.add(its);
+            }
+        }
+
+        return pp;
+    }
+
+    private static void skipFillItems(SeekableKLVInputStream kis) throws IOException, KLVException {
+        for (long offset = kis.position();; offset = kis.position()) {
+
+            if (KEYS.classify(kis.readUL()) != KeyClassifier.MXFKey.FILL_ITEM) {
+                kis.position(offset);
+                return;
+            }
+
+            kis.skipFully(kis.readBERLength());
+        }
+    }
+
 }
@@ -69,19 +69,16 @@ public class MXFInputStream extends KLVInputStream {
      * @throws EOFException 
      */
     public UUID readUUID() throws IOException, EOFException {
-        byte[] uuid = new byte[16];
-
-        if (read(uuid) < uuid.length) {
-            throw new EOFException();
-        }
+        long msb = readBigEndianLong();
+        long lsb = readBigEndianLong();
         
         if (getByteorder() == ByteOrder.LITTLE_ENDIAN) {
 
-           uuidLEtoBE(uuid);
+           msb = uuidLEtoBE(msb);
             
         }
 
-        return new UUID(uuid);
+        return new UUID(msb, lsb);
     }
 
     /**
@@ -91,19 +88,16 @@ public class MXFInputStream extends KLVInputStream {
      * @throws EOFException 
      */
     public IDAU readIDAU() throws IOException, EOFException {
-        byte[] idau = new byte[16];
-        
-        if (read(idau) < idau.length) {
-            throw new EOFException();
-        }
+        long msb = readBigEndianLong();
+        long lsb = readBigEndianLong();
         
         if (getByteorder() == ByteOrder.LITTLE_ENDIAN) {
 
-           uuidLEtoBE(idau);
+           msb = uuidLEtoBE(msb);
             
         }
 
-        return new IDAU(idau);
+        return new IDAU(msb, lsb);
     }
     
     /**
@@ -113,13 +107,10 @@ public class MXFInputStream extends KLVInputStream {
      * @throws EOFException 
      */
     public AUID readAUID() throws IOException, EOFException {
-        byte[] auid = new byte[16];
+        long msb = readBigEndianLong();
+        long lsb = readBigEndianLong();
         
-        if (read(auid) < auid.length) {
-            throw new EOFException();
-        }
-        
-        return new AUID(auid);
+        return new AUID(msb, lsb);
     }
     
     /**
@@ -129,13 +120,12 @@ public class MXFInputStream extends KLVInputStream {
      * @throws EOFException 
      */
     public UMID readUMID() throws IOException, EOFException {
-        byte[] umid = new byte[32];
-
-        if (read(umid) < umid.length) {
-            throw new EOFException();
-        }
+        long w0 = readBigEndianLong();
+        long w1 = readBigEndianLong();
+        long w2 = readBigEndianLong();
+        long w3 = readBigEndianLong();
 
-        return new UMID(umid);
+        return new UMID(w0, w1, w2, w3);
     }
 
     /**
@@ -169,6 +159,7 @@ public class MXFInputStream extends KLVInputStream {
         }
         for (int i = 0; i < itemcount; i++) {
             byte[] value = new byte[(int) itemlength];
+            readFully(value);
             batch.add(W.<T>fromValue(value));
         }
         return batch;
@@ -0,0 +1,414 @@
+/*
+ * Copyright (c) 2016, Pierre-Anthony Lemieux (pal@sandflow.com)
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ *
+ * * Redistributions of source code must retain the above copyright notice, this
+ *   list of conditions and the following disclaimer.
+ * * Redistributions in binary form must reproduce the above copyright notice,
+ *   this list of conditions and the following disclaimer in the documentation
+ *   and/or other materials provided with the distribution.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ */
+package com.sandflow.smpte.mxf;
+
+import com.sandflow.smpte.klv.Group;
+import com.sandflow.smpte.klv.KLVInputStream;
+import com.sandflow.smpte.klv.SeekableKLVInputStream;
+import com.sandflow.smpte.klv.exceptions.KLVException;
+import com.sandflow.smpte.util.ChannelByteSource;
+import com.sandflow.util.events.BasicEvent;
+import com.sandflow.util.events.Event;
+import com.sandflow.util.events.EventHandler;
+import com.sandflow.util.events.LazyMessage;
+import java.io.IOException;
+import java.nio.channels.FileChannel;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
+
+/**
+ * Partition Pack and Header Metadata of a single partition of an MXF file.
+ * The partitions of a file are read concurrently using
+ * {@link #readAll(java.nio.channels.FileChannel, java.util.concurrent.ExecutorService, com.sandflow.util.events.EventHandler)},
+ * and the partition whose Header Metadata is the most reliable is selected
+ * using {@link #selectBest(java.util.Collection)}.
+ */
+public class PartitionMetadata {
+
+    /**
+     * Defines the events raised by
+     * {@link #readAll(java.nio.channels.FileChannel, java.util.concurrent.ExecutorService, com.sandflow.util.events.EventHandler)}
+     */
+    public static enum EventCodes {
+
+        /**
+         * A partition could not be read and is not considered
+         */
+        PARTITION_READ_FAILED(Event.Severity.WARN),
+        /**
+         * A Group of the Header Metadata could not be read and is skipped
+         */
+        GROUP_READ_FAILED(Event.Severity.ERROR);
+
+        public final Event.Severity severity;
+
+        private EventCodes(Event.Severity severity) {
+            this.severity = severity;
+        }
+
+    }
+
+    /**
+     * All events raised by this class are instances of this class
+     */
+    public static class PartitionEvent extends BasicEvent {
+
+        private final long offset;
+
+        /**
+         * Creates an event whose message is only built if requested
+         *
+         * @param kind Kind of event
+         * @param offset Offset of the partition
+         * @param message Describes the event
+         */
+        public PartitionEvent(EventCodes kind, long offset, LazyMessage message) {
+            super(kind.severity, kind, message);
+
+            this.offset = offset;
+        }
+
+        /**
+         * @return Offset in bytes of the partition from the start of the file
+         */
+        public long getOffset() {
+            return offset;
+        }
+
+    }
+
+    /**
+     * Reads the Partition Pack and Header Metadata, if any, of every
+     * partition of an MXF file, assuming the current position of the
+     * channel is within the run-in (SMPTE ST 377-1 Section 6.5). The
+     * partitions are located using the Random Index Pack and, if the file does
+     * not contain one, by scanning the file using
+     * {@link MXFFiles#seekNextPartition(java.nio.channels.SeekableByteChannel)}.
+     * Each partition is then read by a separate task submitted to the
+     * executor, using absolute reads so that the tasks share the channel.
+     * <p>
+     * A partition that cannot be read does not prevent other partitions from
+     * being read and is returned with the error that occurred. Groups of
+     * the Header Metadata that cannot be decoded are skipped. Both are
+     * reported to the event handler once all partitions are read, in the order
+     * of the partitions and on the calling thread.
+     *
+     * @param mxffile MXF file. The position of the channel is modified.
+     * @param executor Executor on which the partitions are read
+     * @param evthandler Calls back the caller when an event occurs. May be
+     * null, in which case reading stops at the first ERROR event.
+     * @return Partitions, in the order in which they appear in the file, or
+     * an empty list if the Header Partition was not found
+     * @throws IOException
+     * @throws KLVException if reading was stopped by the event handler
+     * @throws InterruptedException
+     */
+    public static List<PartitionMetadata> readAll(final FileChannel mxffile, ExecutorService executor, EventHandler evthandler) throws IOException, KLVException, InterruptedException {
+
+        long headeroffset = MXFFiles.seekHeaderPartition(mxffile);
+
+        if (headeroffset < 0) {
+            return Collections.emptyList();
+        }
+
+        ArrayList<Long> offsets = new ArrayList<>();
+
+        RandomIndexPack rip = MXFFiles.readRandomIndexPack(mxffile);
+
+        if (rip != null) {
+
+            for (RandomIndexPack.PartitionOffset po : rip.getOffsets()) {
+                offsets.add(headeroffset + po.getOffset());
+            }
+
+        } else {
+
+            mxffile.position(headeroffset);
+
+            SeekableKLVInputStream kis = new SeekableKLVInputStream(mxffile);
+
+            for (long offset; (offset = MXFFiles.seekNextPartition(mxffile)) >= 0;) {
+
+                offsets.add(offset);
+
+                /* move past the partition pack */
+                kis.readTriplet();
+            }
+        }
+
+        ArrayList<Future<PartitionMetadata>> futures = new ArrayList<>(offsets.size());
+
+        for (final long offset : offsets) {
+
+            futures.add(executor.submit(new Callable<PartitionMetadata>() {
+
+                @Override
+                public PartitionMetadata call() throws Exception {
+                    return read(mxffile, offset);
+                }
+            }));
+
+        }
+
+        ArrayList<PartitionMetadata> partitions = new ArrayList<>(offsets.size());
+
+        for (int i = 0; i < futures.size(); i++) {
+
+            try {
+
+                partitions.add(futures.get(i).get());
+
+            } catch (ExecutionException e) {
+
+                partitions.add(new PartitionMetadata(offsets.get(i), null, null, false, null, e.getCause()));
+
+            }
+        }
+
+        for (final PartitionMetadata p : partitions) {
+
+            if (p.error != null) {
+
+                handleEvent(evthandler, new PartitionEvent(
+                    EventCodes.PARTITION_READ_FAILED,
+                    p.offset,
+                    LazyMessage.format(
+                        "Partition at offset %d could not be read: %s",
+                        p.offset,
+                        p.error.getMessage()
+                    )
+                ));
+
+            }
+
+            for (KLVException ke : p.groupErrors) {
+
+                handleEvent(evthandler, new PartitionEvent(
+                    EventCodes.GROUP_READ_FAILED,
+                    p.offset,
+                    LazyMessage.format(
+                        "Group of partition at offset %d could not be read: %s",
+                        p.offset,
+                        ke.getMessage()
+                    )
+                ));
+
+            }
+        }
+
+        return partitions;
+    }
+
+    private static void handleEvent(EventHandler handler, Event evt) throws KLVException {
+
+        if (handler != null) {
+
+            if (!handler.handle(evt) || evt.getSeverity() == Event.Severity.FATAL) {
+
+                /* stop on FATAL events or if requested by the handler */
+                throw new KLVException(evt.getMessage());
+
+            }
+
+        } else if (evt.getSeverity() == Event.Severity.ERROR
+            || evt.getSeverity() == Event.Severity.FATAL) {
+
+            /* if no event handler was provided, stop on FATAL and ERROR events */
+            throw new KLVException(evt.getMessage());
+
+        }
+    }
+
+    /* reads a single partition */
+    private static PartitionMetadata read(FileChannel mxffile, long offset) {
+
+        try {
+
+            ChannelByteSource src = new ChannelByteSource(mxffile);
+
+            src.position(offset);
+
+            PartitionPack pp = PartitionPack.fromTriplet(new KLVInputStream(src).readTriplet());
+
+            if (pp == null) {
+                throw new KLVException("No Partition Pack found at offset " + offset);
+            }
+
+            if (pp.getHeaderByteCount() == 0) {
+                return new PartitionMetadata(offset, pp, null, false, null, null);
+            }
+
+            src.position(offset);
+
+            HeaderMetadataReader reader = new HeaderMetadataReader(src);
+
+            ArrayList<Group> groups = new ArrayList<>();
+
+            /* reported by readAll() */
+            ArrayList<KLVException> errors = new ArrayList<>();
+
+            while (true) {
+
+                Group g;
+
+                try {
+
+                    if ((g = reader.next()) == null) {
+                        break;
+                    }
+
+                } catch (KLVException e) {
+
+                    errors.add(e);
+
+                    continue;
+
+                }
+
+                groups.add(g);
+            }
+
+            return new PartitionMetadata(offset, pp, groups, reader.isIndexTableReached(), errors, null);
+
+        } catch (IOException | KLVException e) {
+
+            return new PartitionMetadata(offset, null, null, false, null, e);
+
+        }
+    }
+
+    /**
+     * Selects the partition whose Header Metadata is the most reliable, i.e.
+     * in order of preference a partition whose status is Closed and
+     * Complete, Closed and Incomplete, Open and Complete, and Open and
+     * Incomplete. Among partitions with the same status, the last one in the
+     * file is selected since its Header Metadata is the most recent.
+     *
+     * @param partitions Partitions of a file, in the order in which they appear
+     * in the file
+     * @return Selected partition, or null if no partition contains Header
+     * Metadata that was successfully read
+     */
+    public static PartitionMetadata selectBest(Collection<PartitionMetadata> partitions) {
+
+        PartitionMetadata best = null;
+
+        for (PartitionMetadata p : partitions) {
+
+            if (!p.hasHeaderMetadata()) {
+                continue;
+            }
+
+            if (best == null || getRank(p) >= getRank(best)) {
+                best = p;
+            }
+        }
+
+        return best;
+    }
+
+    private static int getRank(PartitionMetadata p) {
+        switch (p.getPartitionPack().getStatus()) {
+            case CLOSED_COMPLETE:
+                return 3;
+            case CLOSED_INCOMPLETE:
+                return 2;
+            case OPEN_COMPLETE:
+                return 1;
+            default:
+                return 0;
+        }
+    }
+
+    private final long offset;
+    private final PartitionPack partitionPack;
+    private final List<Group> headerMetadata;
+    private final boolean indexTableReached;
+    private final List<KLVException> groupErrors;
+    private final Throwable error;
+
+    private PartitionMetadata(long offset, PartitionPack partitionPack, List<Group> headerMetadata, boolean indexTableReached, List<KLVException> groupErrors, Throwable error) {
+        this.offset = offset;
+        this.partitionPack = partitionPack;
+        this.headerMetadata = headerMetadata == null ? null : Collections.unmodifiableList(headerMetadata);
+        this.indexTableReached = indexTableReached;
+        this.groupErrors = groupErrors == null ? Collections.<KLVException>emptyList() : groupErrors;
+        this.error = error;
+    }
+
+    /**
+     * @return Offset in bytes of the Partition Pack from the start of the file
+     */
+    public long getOffset() {
+        return offset;
+    }
+
+    /**
+     * @return Partition Pack, or null if the partition could not be read
+     */
+    public PartitionPack getPartitionPack() {
+        return partitionPack;
+    }
+
+    /**
+     * @return true if the partition contains Header Metadata that was read
+     * without error
+     */
+    public boolean hasHeaderMetadata() {
+        return headerMetadata != null && !headerMetadata.isEmpty();
+    }
+
+    /**
+     * @return Groups of the Header Metadata, in the order in which they appear
+     * in the partition, or null if the partition does not contain Header Metadata
+     * or could not be read
+     */
+    public List<Group> getHeaderMetadata() {
+        return headerMetadata;
+    }
+
+    /**
+     * @return true if an Index Table Segment was encountered before the end of
+     * the Header Metadata
+     */
+    public boolean isIndexTableReached() {
+        return indexTableReached;
+    }
+
+    /**
+     * @return Error that prevented the partition from being read, or null
+     */
+    public Throwable getError() {
+        return error;
+    }
+
+}
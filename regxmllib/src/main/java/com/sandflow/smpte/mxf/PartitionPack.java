@@ -26,7 +26,6 @@
 package com.sandflow.smpte.mxf;
 
 import com.sandflow.smpte.klv.Triplet;
-import com.sandflow.smpte.klv.adapters.ULValueAdapter;
 import com.sandflow.smpte.klv.exceptions.KLVException;
 import com.sandflow.smpte.util.UL;
 import java.io.IOException;
@@ -47,6 +46,25 @@ public class PartitionPack {
     public static UL getKey() {
         return KEY;
     }
+
+    /**
+     * Tests whether a Key is a Partition Pack Key, regardless of the kind and
+     * status of the partition
+     * @param key Key to test
+     * @return true if the Key is a Partition Pack Key
+     */
+    public static boolean isPartitionPackKey(UL key) {
+        if (!KEY.equalsWithMask(key, 0xfef9 /*11111110 11111001*/)) {
+            return false;
+        }
+
+        /* the Primer Pack and Random Index Pack share the same key prefix */
+        
+        int kind = key.getValueOctet(13);
+        int status = key.getValueOctet(14);
+
+        return kind >= 0x02 && kind <= 0x04 && status >= 0x01 && status <= 0x04;
+    }
     
     /**
      * Creates a Partition Pack from a Triplet
@@ -57,7 +75,7 @@ public class PartitionPack {
     public static PartitionPack fromTriplet(Triplet triplet) throws KLVException {
         PartitionPack pp = new PartitionPack();
         
-        if (!KEY.equalsWithMask(triplet.getKey(), 0xfef9 /*11111110 11111001*/)) {
+        if (!isPartitionPackKey(triplet.getKey())) {
             return null;
         }
         
@@ -122,11 +140,25 @@ public class PartitionPack {
             
             pp.setBodyOffset(kis.readLong());
             
-            pp.setBodySID(kis.readLong());
+            /* BodySID is a UInt32 */
+            pp.setBodySID(kis.readUnsignedInt());
             
             pp.setOperationalPattern(kis.readUL());
             
-            pp.setEssenceContainers(kis.<UL, ULValueAdapter>readBatch());
+            long eccount = kis.readUnsignedInt();
+
+            long eclength = kis.readUnsignedInt();
+
+            ArrayList<UL> ecs = new ArrayList<>();
+
+            /* ignore a malformed batch rather than reading past the Partition Pack */
+            if (eclength == 16 && eccount * eclength <= triplet.getLength()) {
+                for (long i = 0; i < eccount; i++) {
+                    ecs.add(kis.readUL());
+                }
+            }
+
+            pp.setEssenceContainers(ecs);
             
         } catch (IOException e) {
             throw new KLVException(e);
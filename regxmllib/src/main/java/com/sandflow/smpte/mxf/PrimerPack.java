@@ -30,7 +30,6 @@ import com.sandflow.smpte.klv.Triplet;
 import com.sandflow.smpte.klv.exceptions.KLVException;
 import com.sandflow.smpte.util.UL;
 import java.io.IOException;
-import java.util.HashMap;
 
 /**
  * Represents a MXF Primer Pack (see SMPTE ST 377-1)
@@ -52,7 +51,7 @@ public class PrimerPack {
             return null;
         }
 
-        HashMap<Long, UL> reg = new HashMap<>();
+        LocalTagRegister reg = new LocalTagRegister();
 
         MXFInputStream kis = new MXFInputStream(triplet.getValueAsStream());
 
@@ -64,14 +63,14 @@ public class PrimerPack {
 
             for (int i = 0; i < itemcount; i++) {
 
-                reg.put((long) kis.readUnsignedShort(), kis.readUL());
+                reg.add(kis.readUnsignedShort(), kis.readUL());
             }
 
         } catch (IOException e) {
             throw new KLVException(e);
         }
 
-        return new LocalTagRegister(reg);
+        return reg;
     }
 
     /**
@@ -0,0 +1,349 @@
+/*
+ * Copyright (c) 2016, Pierre-Anthony Lemieux (pal@sandflow.com)
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ *
+ * * Redistributions of source code must retain the above copyright notice, this
+ *   list of conditions and the following disclaimer.
+ * * Redistributions in binary form must reproduce the above copyright notice,
+ *   this list of conditions and the following disclaimer in the documentation
+ *   and/or other materials provided with the distribution.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ */
+package com.sandflow.smpte.mxf;
+
+import com.sandflow.smpte.util.UL;
+import com.sandflow.smpte.util.UUID;
+import java.util.AbstractList;
+import java.util.AbstractMap;
+import java.util.AbstractSet;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.List;
+import java.util.NoSuchElementException;
+
+/**
+ * Maps Instance IDs to the MXF Sets of a Header Metadata instance, and indexes
+ * the Sets by class Key. Instance IDs are held as pairs of longs and looked up
+ * by linear probing, without hashing or comparing UUID objects, and the Sets
+ * are numbered, and iterated over, in the order in which they are added. Can
+ * be used wherever a Map&lt;UUID, Set&gt; is expected, e.g. to resolve Strong
+ * References in {@link com.sandflow.smpte.regxml.FragmentBuilder}. Sets cannot
+ * be removed.
+ */
+public class SetMap extends AbstractMap<UUID, Set> {
+
+    private static final int DEFAULT_CAPACITY = 64;
+
+    /* ids[2 * n] and ids[2 * n + 1] hold the Instance ID of the nth Set */
+    private long[] ids;
+    private Set[] sets;
+    private int count;
+
+    /* open-addressing table holding n + 1 for the nth Set, with 0 marking an empty slot */
+    private int[] slots;
+
+    private final HashMap<UL, ArrayList<Set>> classes = new HashMap<>();
+
+    /**
+     * Instantiates an empty SetMap
+     */
+    public SetMap() {
+        this(DEFAULT_CAPACITY);
+    }
+
+    /**
+     * Instantiates an empty SetMap sized for an expected number of Sets
+     *
+     * @param expectedsize Number of Sets expected to be added
+     */
+    public SetMap(int expectedsize) {
+
+        if (expectedsize < 0) {
+            throw new IllegalArgumentException();
+        }
+
+        int capacity = Math.max(expectedsize, 1);
+
+        this.ids = new long[2 * capacity];
+        this.sets = new Set[capacity];
+
+        /* keep the load factor at or below 1/2 */
+        this.slots = new int[Integer.highestOneBit(2 * capacity - 1) << 1];
+    }
+
+    /**
+     * Adds a Set, indexed by its Instance ID
+     *
+     * @param set Set to add. Must not be null.
+     * @return Set previously associated with the Instance ID, or null
+     */
+    public Set add(Set set) {
+        return put(set.getInstanceID(), set);
+    }
+
+    @Override
+    public Set put(UUID instanceid, Set set) {
+
+        if (instanceid == null || set == null) {
+            throw new NullPointerException();
+        }
+
+        long msb = instanceid.getMostSignificantBits();
+        long lsb = instanceid.getLeastSignificantBits();
+
+        int i = find(msb, lsb);
+
+        if (slots[i] != 0) {
+
+            int n = slots[i] - 1;
+
+            Set old = sets[n];
+
+            sets[n] = set;
+
+            removeFromClass(old);
+            addToClass(set);
+
+            return old;
+        }
+
+        if (count == sets.length) {
+            grow();
+            i = find(msb, lsb);
+        }
+
+        ids[2 * count] = msb;
+        ids[2 * count + 1] = lsb;
+        sets[count] = set;
+
+        slots[i] = ++count;
+
+        addToClass(set);
+
+        return null;
+    }
+
+    @Override
+    public Set get(Object instanceid) {
+
+        if (!(instanceid instanceof UUID)) {
+            return null;
+        }
+
+        return get(
+            ((UUID) instanceid).getMostSignificantBits(),
+            ((UUID) instanceid).getLeastSignificantBits()
+        );
+    }
+
+    /**
+     * Returns the Set with the specified Instance ID
+     *
+     * @param msb First 8 bytes of the Instance ID
+     * @param lsb Last 8 bytes of the Instance ID
+     * @return Set, or null if no Set has the Instance ID
+     */
+    public Set get(long msb, long lsb) {
+        int n = slots[find(msb, lsb)];
+
+        return n == 0 ? null : sets[n - 1];
+    }
+
+    @Override
+    public boolean containsKey(Object instanceid) {
+        return get(instanceid) != null;
+    }
+
+    /**
+     * Returns the number of a Set, starting at 0 for the first Set added
+     *
+     * @param instanceid Instance ID of the Set
+     * @return Number of the Set, or -1 if no Set has the Instance ID
+     */
+    public int indexOf(UUID instanceid) {
+        return slots[find(instanceid.getMostSignificantBits(), instanceid.getLeastSignificantBits())] - 1;
+    }
+
+    /**
+     * Returns the nth Set added
+     *
+     * @param index Number of the Set, as returned by {@link #indexOf(com.sandflow.smpte.util.UUID)}
+     * @return Set
+     */
+    public Set getSet(int index) {
+
+        if (index < 0 || index >= count) {
+            throw new IndexOutOfBoundsException();
+        }
+
+        return sets[index];
+    }
+
+    /**
+     * Returns the Sets with the specified class Key
+     *
+     * @param key Key of the Sets
+     * @return Sets, in the order in which they were added
+     */
+    public List<Set> getByClass(UL key) {
+        ArrayList<Set> l = classes.get(key);
+
+        return l == null ? Collections.<Set>emptyList() : Collections.unmodifiableList(l);
+    }
+
+    /**
+     * @return Class Keys of the Sets
+     */
+    public java.util.Set<UL> getClasses() {
+        return Collections.unmodifiableSet(classes.keySet());
+    }
+
+    @Override
+    public int size() {
+        return count;
+    }
+
+    @Override
+    public void clear() {
+        Arrays.fill(sets, 0, count, null);
+        Arrays.fill(slots, 0);
+        classes.clear();
+        count = 0;
+    }
+
+    @Override
+    public java.util.Set<Entry<UUID, Set>> entrySet() {
+        return new AbstractSet<Entry<UUID, Set>>() {
+
+            @Override
+            public Iterator<Entry<UUID, Set>> iterator() {
+                return new Iterator<Entry<UUID, Set>>() {
+
+                    private int next = 0;
+
+                    @Override
+                    public boolean hasNext() {
+                        return next < count;
+                    }
+
+                    @Override
+                    public Entry<UUID, Set> next() {
+
+                        if (next >= count) {
+                            throw new NoSuchElementException();
+                        }
+
+                        Entry<UUID, Set> e = new AbstractMap.SimpleImmutableEntry<>(
+                            new UUID(ids[2 * next], ids[2 * next + 1]),
+                            sets[next]
+                        );
+
+                        next++;
+
+                        return e;
+                    }
+
+                    @Override
+                    public void remove() {
+                        throw new UnsupportedOperationException();
+                    }
+                };
+            }
+
+            @Override
+            public int size() {
+                return count;
+            }
+        };
+    }
+
+    @Override
+    public java.util.Collection<Set> values() {
+        return new AbstractList<Set>() {
+
+            @Override
+            public Set get(int index) {
+                return getSet(index);
+            }
+
+            @Override
+            public int size() {
+                return count;
+            }
+        };
+    }
+
+    /* returns the slot holding the Instance ID, or the empty slot where it belongs */
+    private int find(long msb, long lsb) {
+        int m = slots.length - 1;
+
+        for (int i = hash(msb, lsb) & m;; i = (i + 1) & m) {
+
+            int n = slots[i] - 1;
+
+            if (n < 0 || (ids[2 * n] == msb && ids[2 * n + 1] == lsb)) {
+                return i;
+            }
+        }
+    }
+
+    private static int hash(long msb, long lsb) {
+        long h = (msb ^ Long.rotateLeft(lsb, 32)) * 0x9E3779B97F4A7C15L;
+
+        return (int) (h ^ (h >>> 32));
+    }
+
+    private void grow() {
+        ids = Arrays.copyOf(ids, 4 * sets.length);
+        sets = Arrays.copyOf(sets, 2 * sets.length);
+        slots = new int[2 * slots.length];
+
+        for (int n = 0; n < count; n++) {
+            slots[find(ids[2 * n], ids[2 * n + 1])] = n + 1;
+        }
+    }
+
+    private void addToClass(Set set) {
+        ArrayList<Set> l = classes.get(set.getKey());
+
+        if (l == null) {
+            l = new ArrayList<>();
+            classes.put(set.getKey(), l);
+        }
+
+        l.add(set);
+    }
+
+    private void removeFromClass(Set set) {
+        ArrayList<Set> l = classes.get(set.getKey());
+
+        for (int i = 0; i < l.size(); i++) {
+            if (l.get(i) == set) {
+                l.remove(i);
+                break;
+            }
+        }
+
+        if (l.isEmpty()) {
+            classes.remove(set.getKey());
+        }
+    }
+
+}
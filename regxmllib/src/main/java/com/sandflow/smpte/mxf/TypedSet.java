@@ -0,0 +1,164 @@
+/*
+ * Copyright (c) 2016, Pierre-Anthony Lemieux (pal@sandflow.com)
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ *
+ * * Redistributions of source code must retain the above copyright notice, this
+ *   list of conditions and the following disclaimer.
+ * * Redistributions in binary form must reproduce the above copyright notice,
+ *   this list of conditions and the following disclaimer in the documentation
+ *   and/or other materials provided with the distribution.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ */
+package com.sandflow.smpte.mxf;
+
+import com.sandflow.smpte.klv.Group;
+import com.sandflow.smpte.klv.Triplet;
+import com.sandflow.smpte.util.UL;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.nio.charset.Charset;
+import java.util.Collection;
+
+/**
+ * Base class of the typed Header Metadata accessors generated by
+ * {@link com.sandflow.smpte.regxml.AccessorBuilder}. Wraps a Group, typically
+ * a {@link Set}, and provides the primitives used by the generated getters,
+ * which decode the value of a property the first time it is requested,
+ * without consulting a MetaDictionary.
+ *
+ * Instances are not thread-safe.
+ */
+public abstract class TypedSet implements Group {
+
+    private final Group group;
+
+    /**
+     * Wraps a Group
+     *
+     * @param group Group whose items are decoded. Must not be null.
+     */
+    protected TypedSet(Group group) {
+
+        if (group == null) {
+            throw new IllegalArgumentException();
+        }
+
+        this.group = group;
+    }
+
+    /**
+     * @return Group wrapped by the accessor
+     */
+    public Group getGroup() {
+        return group;
+    }
+
+    @Override
+    public Collection<Triplet> getItems() {
+        return group.getItems();
+    }
+
+    @Override
+    public UL getKey() {
+        return group.getKey();
+    }
+
+    /**
+     * Returns the value of an item of the Group. The version byte of the Keys
+     * is ignored.
+     *
+     * @param key Key of the item
+     * @return Value of the first item with the Key, or null if the Group has
+     * no such item
+     */
+    protected MXFInputStream getValue(UL key) {
+
+        for (Triplet t : group.getItems()) {
+
+            if (key.equalsIgnoreVersion(t.getKey())) {
+                return new MXFInputStream(t.getValueAsStream());
+            }
+
+        }
+
+        return null;
+    }
+
+    /**
+     * Reads the remaining bytes of a value
+     *
+     * @param value Value
+     * @return Newly-allocated array of the bytes
+     * @throws IOException
+     */
+    public static byte[] readRemaining(MXFInputStream value) throws IOException {
+        ByteArrayOutputStream bos = new ByteArrayOutputStream();
+
+        byte[] buffer = new byte[32];
+
+        for (int sz = 0; (sz = value.read(buffer)) > -1;) {
+            bos.write(buffer, 0, sz);
+        }
+
+        return bos.toByteArray();
+    }
+
+    /**
+     * Reads the remaining bytes of a value as a string, which is truncated at
+     * the first null character
+     *
+     * @param value Value
+     * @param cs Character encoding of the string
+     * @return String
+     * @throws IOException
+     */
+    public static String readCharacters(MXFInputStream value, Charset cs) throws IOException {
+        String s = new String(readRemaining(value), cs);
+
+        int end = s.indexOf('\0');
+
+        return end < 0 ? s : s.substring(0, end);
+    }
+
+    /**
+     * Normalizes the Key of a Group so that it can be compared with the
+     * identification of a class definition: the version byte is set to 0 and
+     * the registry designator of Group ULs to 0x7f.
+     *
+     * @param key Key of a Group
+     * @return Normalized Key
+     */
+    public static UL normalizeKey(UL key) {
+        long msb = key.getMostSignificantBits();
+
+        /* UUIDs have the MSB of the first byte set and are not normalized */
+        if (msb < 0) {
+            return key;
+        }
+
+        /* set version (byte 8) to 0 */
+        msb &= ~0xFFL;
+
+        /* set registry designator (byte 6) of Group ULs to 0x7f */
+        if (((msb >>> 24) & 0xFF) == 0x02) {
+            msb = (msb & ~0xFF0000L) | 0x7F0000L;
+        }
+
+        return new UL(msb, key.getLeastSignificantBits());
+    }
+
+}
@@ -27,13 +27,13 @@ package com.sandflow.smpte.register;
 
 import com.sandflow.smpte.register.exceptions.DuplicateEntryException;
 import com.sandflow.smpte.util.UL;
+import com.sandflow.smpte.util.xml.JAXBContextRegistry;
 import java.io.IOException;
 import java.io.Reader;
 import java.io.Writer;
 import java.net.URI;
 import java.util.Collection;
 import java.util.HashMap;
-import javax.xml.bind.JAXBContext;
 import javax.xml.bind.JAXBException;
 import javax.xml.bind.Marshaller;
 import javax.xml.bind.Unmarshaller;
@@ -65,9 +65,7 @@ public abstract class LabelsRegister {
 
     public void toXML(Writer writer) throws JAXBException, IOException {
 
-        JAXBContext ctx = JAXBContext.newInstance(this.getClass());
-
-        Marshaller m = ctx.createMarshaller();
+        Marshaller m = JAXBContextRegistry.createMarshaller(this.getClass());
         m.setProperty(Marshaller.JAXB_FORMATTED_OUTPUT, true);
         m.marshal(this, writer);
         writer.close();
@@ -75,9 +73,7 @@ public abstract class LabelsRegister {
 
     public static LabelsRegister fromXML(Reader reader) throws JAXBException, IOException, DuplicateEntryException {
 
-        JAXBContext ctx = JAXBContext.newInstance(com.sandflow.smpte.register.catsup.LabelsRegisterModel.class);
-
-        Unmarshaller m = ctx.createUnmarshaller();
+        Unmarshaller m = JAXBContextRegistry.getUnmarshaller(com.sandflow.smpte.register.catsup.LabelsRegisterModel.class);
         LabelsRegister reg = (LabelsRegister) m.unmarshal(reader);
 
         for (Entry te : reg.getEntries()) {
@@ -27,6 +27,7 @@ package com.sandflow.smpte.register;
 
 import com.sandflow.smpte.register.exceptions.DuplicateEntryException;
 import com.sandflow.smpte.util.UL;
+import com.sandflow.smpte.util.xml.JAXBContextRegistry;
 import java.io.IOException;
 import java.io.Reader;
 import java.io.Writer;
@@ -35,7 +36,6 @@ import java.util.Collection;
 import java.util.EnumSet;
 import java.util.HashMap;
 import java.util.List;
-import javax.xml.bind.JAXBContext;
 import javax.xml.bind.JAXBException;
 import javax.xml.bind.Marshaller;
 import javax.xml.bind.Unmarshaller;
@@ -67,9 +67,7 @@ public abstract class TypesRegister {
 
     public void toXML(Writer writer) throws JAXBException, IOException {
 
-        JAXBContext ctx = JAXBContext.newInstance(this.getClass());
-
-        Marshaller m = ctx.createMarshaller();
+        Marshaller m = JAXBContextRegistry.createMarshaller(this.getClass());
         m.setProperty(Marshaller.JAXB_FORMATTED_OUTPUT, true);
         m.marshal(this, writer);
         writer.close();
@@ -77,9 +75,7 @@ public abstract class TypesRegister {
 
     public static TypesRegister fromXML(Reader reader) throws JAXBException, IOException, DuplicateEntryException {
 
-        JAXBContext ctx = JAXBContext.newInstance(com.sandflow.smpte.register.catsup.TypesRegisterModel.class);
-
-        Unmarshaller m = ctx.createUnmarshaller();
+        Unmarshaller m = JAXBContextRegistry.getUnmarshaller(com.sandflow.smpte.register.catsup.TypesRegisterModel.class);
         TypesRegister reg = (TypesRegister) m.unmarshal(reader);
 
         for (Entry te : reg.getEntries()) {
@@ -0,0 +1,971 @@
+/*
+ * Copyright (c) 2016, Pierre-Anthony Lemieux (pal@sandflow.com)
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ *
+ * * Redistributions of source code must retain the above copyright notice, this
+ *   list of conditions and the following disclaimer.
+ * * Redistributions in binary form must reproduce the above copyright notice,
+ *   this list of conditions and the following disclaimer in the documentation
+ *   and/or other materials provided with the distribution.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ */
+package com.sandflow.smpte.regxml;
+
+import com.sandflow.smpte.mxf.TypedSet;
+import com.sandflow.smpte.regxml.dict.ClassLattice;
+import com.sandflow.smpte.regxml.dict.DefinitionResolver;
+import com.sandflow.smpte.regxml.dict.definitions.CharacterTypeDefinition;
+import com.sandflow.smpte.regxml.dict.definitions.ClassDefinition;
+import com.sandflow.smpte.regxml.dict.definitions.Definition;
+import com.sandflow.smpte.regxml.dict.definitions.EnumerationTypeDefinition;
+import com.sandflow.smpte.regxml.dict.definitions.FixedArrayTypeDefinition;
+import com.sandflow.smpte.regxml.dict.definitions.FloatTypeDefinition;
+import com.sandflow.smpte.regxml.dict.definitions.IntegerTypeDefinition;
+import com.sandflow.smpte.regxml.dict.definitions.PropertyDefinition;
+import com.sandflow.smpte.regxml.dict.definitions.RecordTypeDefinition;
+import com.sandflow.smpte.regxml.dict.definitions.SetTypeDefinition;
+import com.sandflow.smpte.regxml.dict.definitions.StringTypeDefinition;
+import com.sandflow.smpte.regxml.dict.definitions.VariableArrayTypeDefinition;
+import com.sandflow.smpte.regxml.dict.definitions.WeakReferenceTypeDefinition;
+import com.sandflow.smpte.util.AUID;
+import com.sandflow.smpte.util.UL;
+import com.sandflow.util.events.BasicEvent;
+import com.sandflow.util.events.Event;
+import com.sandflow.util.events.EventHandler;
+import java.security.InvalidParameterException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.IdentityHashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Generates the Java source code of typed accessors to MXF Header Metadata
+ * Sets from RegXML dictionaries. One class is generated for each class
+ * definition of a {@link ClassLattice}, which extends the class generated for
+ * its parent class, or {@link TypedSet}, and has one getter for each property
+ * of the class definition, e.g. CDCIDescriptor.getStoredWidth(). A getter
+ * locates its item by Key and decodes it the first time it is called, using a
+ * decoder generated for the type of the property, so that the generated code
+ * does not look up definitions at runtime.
+ *
+ * Integers, floats, strings, UL, UUID, AUID and PackageID values are mapped to
+ * the corresponding Java types, enumerations to their integer value, Strong
+ * References to the Instance ID of the target Set, Weak References to the
+ * unique identifier of the target Set, arrays and sets to lists, and other
+ * records to generated immutable classes. The value of a property whose type
+ * cannot be mapped is returned as raw bytes. The generated Accessors class
+ * wraps a Group in the accessor of its class.
+ */
+public class AccessorBuilder {
+
+    private static final UL AUID_UL = UL.fromDotValue("06.0E.2B.34.01.04.01.01.01.03.01.00.00.00.00.00");
+    private static final UL UUID_UL = UL.fromDotValue("06.0E.2B.34.01.04.01.01.01.03.03.00.00.00.00.00");
+    private static final UL PackageID_UL = UL.fromDotValue("06.0E.2B.34.01.04.01.01.01.03.02.00.00.00.00.00");
+    private static final UL Character_UL = UL.fromURN("urn:smpte:ul:060e2b34.01040101.01100100.00000000");
+    private static final UL Char_UL = UL.fromURN("urn:smpte:ul:060e2b34.01040101.01100300.00000000");
+    private static final UL UTF8Character_UL = UL.fromURN("urn:smpte:ul:060e2b34.01040101.01100500.00000000");
+    private static final UL ProductReleaseType_UL = UL.fromURN("urn:smpte:ul:060e2b34.01040101.02010101.00000000");
+    private static final UL Boolean_UL = UL.fromURN("urn:smpte:ul:060e2b34.01040101.01040100.00000000");
+
+    /**
+     * Name of the generated class that holds the decoders
+     */
+    public static final String DECODERS_CLASS = "Decoders";
+
+    /**
+     * Name of the generated class that wraps Groups in accessors
+     */
+    public static final String ACCESSORS_CLASS = "Accessors";
+
+    /* names of the classes referenced by the generated code */
+    private static final List<String> RESERVED_CLASSES = Arrays.asList(
+        DECODERS_CLASS, ACCESSORS_CLASS, "TypedSet", "Group", "MXFInputStream", "IOException",
+        "UL", "UUID", "AUID", "UMID", "HalfFloat", "StandardCharsets", "List", "ArrayList",
+        "HashMap", "Boolean", "Byte", "Short", "Integer", "Long", "Float", "Double", "String"
+    );
+
+    /* methods of TypedSet and Object that cannot be overridden by getters */
+    private static final List<String> RESERVED_GETTERS = Arrays.asList(
+        "getClass", "getGroup", "getItems", "getKey", "getValue"
+    );
+
+    private static final List<String> KEYWORDS = Arrays.asList(
+        "abstract", "assert", "boolean", "break", "byte", "case", "catch", "char", "class",
+        "const", "continue", "default", "do", "double", "else", "enum", "extends", "false",
+        "final", "finally", "float", "for", "goto", "if", "implements", "import", "instanceof",
+        "int", "interface", "long", "native", "new", "null", "package", "private", "protected",
+        "public", "return", "short", "static", "strictfp", "super", "switch", "synchronized",
+        "this", "throw", "throws", "transient", "true", "try", "void", "volatile", "while"
+    );
+
+    private static final String HEADER = "/* Generated by regxmllib AccessorBuilder. Do not edit. */\n";
+
+    private final DecodePlanCache plans;
+    private final ClassLattice lattice;
+    private final EventHandler evthandler;
+
+    /**
+     * Defines the events returned by this class
+     */
+    public static enum EventCodes {
+
+        /**
+         * Raised when the type of a property is not found. The value of the
+         * property is returned as raw bytes.
+         */
+        UNKNOWN_TYPE(Event.Severity.WARN),
+        /**
+         * Raised when the type of a property cannot be mapped to a Java type.
+         * The value of the property is returned as raw bytes.
+         */
+        UNSUPPORTED_TYPE(Event.Severity.INFO);
+
+        public final Event.Severity severity;
+
+        private EventCodes(Event.Severity severity) {
+            this.severity = severity;
+        }
+
+    }
+
+    /**
+     * All events raised by this class are instances of this class.
+     */
+    public static class AccessorEvent extends BasicEvent {
+
+        final String reason;
+        final String where;
+
+        public AccessorEvent(EventCodes kind, String reason) {
+            this(kind, reason, null);
+        }
+
+        public AccessorEvent(EventCodes kind, String reason, String where) {
+            super(kind.severity, kind, reason + (where != null ? " at " + where : ""));
+
+            this.reason = reason;
+            this.where = where;
+        }
+
+        public String getReason() {
+            return reason;
+        }
+
+        public String getWhere() {
+            return where;
+        }
+
+    }
+
+    void handleEvent(AccessorEvent evt) throws RuleException {
+
+        if (evthandler != null) {
+
+            if (!evthandler.handle(evt) || evt.getSeverity() == Event.Severity.FATAL) {
+
+                /* die on FATAL events or if requested by the handler */
+                throw new RuleException(evt.getMessage());
+
+            }
+
+        } else if (evt.getSeverity() == Event.Severity.ERROR
+            || evt.getSeverity() == Event.Severity.FATAL) {
+
+            /* if no event handler was provided, die on FATAL and ERROR events */
+            throw new RuleException(evt.getMessage());
+
+        }
+
+    }
+
+    /**
+     * Creates an AccessorBuilder for the classes of a class lattice. The caller
+     * can optionally provide an EventHandler to receive notifications of
+     * events encountered in the process.
+     *
+     * @param resolver Collection of Metadictionary definitions, typically a
+     * {@link com.sandflow.smpte.regxml.dict.MetaDictionaryCollection}
+     * @param lattice Class lattice created from the same resolver
+     * @param handler Event handler provided by the caller. May be null.
+     */
+    public AccessorBuilder(DefinitionResolver resolver, ClassLattice lattice, EventHandler handler) {
+        if (resolver == null) {
+            throw new InvalidParameterException("A resolver must be provided");
+        }
+
+        if (lattice == null) {
+            throw new InvalidParameterException("A class lattice must be provided");
+        }
+
+        this.plans = DecodePlanCache.of(resolver, lattice);
+        this.lattice = lattice;
+        this.evthandler = handler;
+    }
+
+    /**
+     * Generates the accessors of all the classes of the class lattice, the
+     * classes of the records they use, and the Decoders and Accessors classes.
+     *
+     * @param packagename Java package of the generated classes
+     * @return Source code of each generated class, indexed by the simple name
+     * of the class
+     * @throws RuleException
+     */
+    public Map<String, String> generate(String packagename) throws RuleException {
+        return new Generation(packagename).run();
+    }
+
+    /**
+     * Converts a symbol into a Java identifier
+     */
+    static String toIdentifier(String symbol) {
+        StringBuilder sb = new StringBuilder();
+
+        for (int i = 0; i < symbol.length(); i++) {
+            char c = symbol.charAt(i);
+
+            sb.append(c < 128 && Character.isJavaIdentifierPart(c) && c != '$' ? c : '_');
+        }
+
+        if (sb.length() == 0 || !Character.isJavaIdentifierStart(sb.charAt(0))) {
+            sb.insert(0, '_');
+        }
+
+        return sb.toString();
+    }
+
+    /* returns the first of name, name2, name3... that is not in used, and adds
+       it to used, ignoring case if requested */
+    private static String uniqueName(String name, HashSet<String> used, boolean ignorecase) {
+        String candidate = name;
+
+        for (int i = 2; !used.add(ignorecase ? candidate.toLowerCase() : candidate); i++) {
+            candidate = name + i;
+        }
+
+        return candidate;
+    }
+
+    private static String toLiteral(UL ul) {
+        return String.format("new UL(0x%016xL, 0x%016xL)", ul.getMostSignificantBits(), ul.getLeastSignificantBits());
+    }
+
+    /**
+     * Java type of a value and expression that decodes it from a MXFInputStream
+     * named "in"
+     */
+    private static final class JavaType {
+
+        private static final JavaType UNSUPPORTED = new JavaType(null, null, false);
+
+        private final String name;
+        private final String decoder;
+        private final boolean remaining;
+
+        private JavaType(String name, String decoder, boolean remaining) {
+            this.name = name;
+            this.decoder = decoder;
+            this.remaining = remaining;
+        }
+
+        /**
+         * @return true if the decoder reads the remaining bytes of the value,
+         * in which case the type can only be that of a property
+         */
+        boolean isRemaining() {
+            return remaining;
+        }
+
+    }
+
+    /**
+     * State of a call to {@link #generate(java.lang.String)}
+     */
+    private final class Generation {
+
+        private final String packagename;
+        private final LinkedHashMap<String, String> sources = new LinkedHashMap<>();
+        private final HashSet<String> classnames = new HashSet<>();
+        private final HashSet<String> decodernames = new HashSet<>();
+        private final IdentityHashMap<Definition, JavaType> types = new IdentityHashMap<>();
+        private final IdentityHashMap<ClassDefinition, String> accessors = new IdentityHashMap<>();
+        private final IdentityHashMap<ClassDefinition, HashSet<String>> getters = new IdentityHashMap<>();
+        private final StringBuilder decoders = new StringBuilder();
+
+        Generation(String packagename) {
+            this.packagename = packagename;
+
+            for (String name : RESERVED_CLASSES) {
+                classnames.add(name.toLowerCase());
+            }
+        }
+
+        Map<String, String> run() throws RuleException {
+
+            for (int i = 0; i < lattice.size(); i++) {
+                generateAccessor(lattice.getClassDefinition(i));
+            }
+
+            sources.put(DECODERS_CLASS, generateDecoders());
+            sources.put(ACCESSORS_CLASS, generateAccessors());
+
+            return sources;
+        }
+
+        private StringBuilder startClass(String... imports) {
+            StringBuilder sb = new StringBuilder(HEADER);
+
+            if (packagename != null && !packagename.isEmpty()) {
+                sb.append("package ").append(packagename).append(";\n\n");
+            }
+
+            for (String i : imports) {
+                sb.append("import ").append(i).append(";\n");
+            }
+
+            return sb.append('\n');
+        }
+
+        private void generateAccessor(ClassDefinition definition) throws RuleException {
+
+            String name = uniqueName(toIdentifier(definition.getSymbol()), classnames, true);
+
+            accessors.put(definition, name);
+
+            ClassDefinition parent = null;
+
+            if (definition.getParentClass() != null) {
+                parent = (ClassDefinition) plans.getDefinition(definition.getParentClass());
+            }
+
+            if (!accessors.containsKey(parent)) {
+                parent = null;
+            }
+
+            HashSet<String> names = new HashSet<>(parent == null ? RESERVED_GETTERS : getters.get(parent));
+
+            getters.put(definition, names);
+
+            HashSet<String> fields = new HashSet<>(KEYWORDS);
+
+            StringBuilder body = new StringBuilder();
+
+            for (AUID auid : plans.getMembersOf(definition)) {
+
+                Definition def = plans.getDefinition(auid);
+
+                if (!(def instanceof PropertyDefinition)) {
+                    continue;
+                }
+
+                PropertyDefinition propdef = (PropertyDefinition) def;
+
+                JavaType type = getPropertyType(definition, propdef);
+
+                String symbol = toIdentifier(propdef.getSymbol());
+
+                String getter = "get" + symbol;
+
+                if (names.contains(getter)) {
+                    getter = "get" + name + symbol;
+                }
+
+                getter = uniqueName(getter, names, false);
+
+                String field = uniqueName(Character.toLowerCase(getter.charAt(3)) + getter.substring(4), fields, false);
+                String key = uniqueName(getter.substring(3) + "_UL", fields, false);
+                String decoded = uniqueName(field + "Decoded", fields, false);
+
+                body.append("    private static final UL ").append(key).append(" = ")
+                    .append(toLiteral(propdef.getIdentification().asUL())).append(";\n\n");
+                body.append("    private ").append(type.name).append(' ').append(field).append(";\n");
+                body.append("    private boolean ").append(decoded).append(";\n\n");
+                body.append("    /**\n");
+                body.append("     * @return Value of the ").append(propdef.getSymbol()).append(" property (")
+                    .append(propdef.getIdentification()).append("), or null if absent\n");
+                body.append("     * @throws IOException\n");
+                body.append("     */\n");
+                body.append("    public ").append(type.name).append(' ').append(getter).append("() throws IOException {\n\n");
+                body.append("        if (!").append(decoded).append(") {\n");
+                body.append("            MXFInputStream in = getValue(").append(key).append(");\n\n");
+                body.append("            ").append(field).append(" = in == null ? null : ").append(type.decoder).append(";\n\n");
+                body.append("            ").append(decoded).append(" = true;\n");
+                body.append("        }\n\n");
+                body.append("        return ").append(field).append(";\n");
+                body.append("    }\n\n");
+            }
+
+            StringBuilder sb = startClass(
+                "com.sandflow.smpte.klv.Group",
+                "com.sandflow.smpte.mxf.MXFInputStream",
+                "com.sandflow.smpte.mxf.TypedSet",
+                "com.sandflow.smpte.util.AUID",
+                "com.sandflow.smpte.util.UL",
+                "com.sandflow.smpte.util.UMID",
+                "com.sandflow.smpte.util.UUID",
+                "java.io.IOException",
+                "java.util.List"
+            );
+
+            sb.append("/**\n");
+            sb.append(" * Accessor of the ").append(definition.getSymbol()).append(" class (")
+                .append(definition.getIdentification()).append(")\n");
+            sb.append(" */\n");
+            sb.append("public class ").append(name).append(" extends ")
+                .append(parent == null ? "TypedSet" : accessors.get(parent)).append(" {\n\n");
+            sb.append(body);
+            sb.append("    public ").append(name).append("(Group group) {\n");
+            sb.append("        super(group);\n");
+            sb.append("    }\n\n");
+            sb.append("}\n");
+
+            sources.put(name, sb.toString());
+        }
+
+        private JavaType getPropertyType(ClassDefinition definition, PropertyDefinition propdef) throws RuleException {
+
+            DecodePlanCache.PropertyPlan plan = plans.getPropertyPlan(propdef);
+
+            JavaType type = null;
+
+            switch (plan.getKind()) {
+
+                case BYTE_ORDER:
+                    type = new JavaType("Integer", "in.readUnsignedShort()", false);
+                    break;
+
+                case PRIMARY_PACKAGE:
+
+                    /* the value of the PrimaryPackage property is the Instance ID of the Package */
+                    type = new JavaType("UUID", "in.readUUID()", false);
+                    break;
+
+                case UNKNOWN_TYPE:
+
+                    handleEvent(new AccessorEvent(
+                        EventCodes.UNKNOWN_TYPE,
+                        String.format("Type %s not found", plan.getResolvedDefinition().getType()),
+                        definition.getSymbol() + "/" + propdef.getSymbol()
+                    ));
+
+                    break;
+
+                case VALUE:
+
+                    type = getType(plan.getType());
+
+                    if (type == null) {
+                        handleEvent(new AccessorEvent(
+                            EventCodes.UNSUPPORTED_TYPE,
+                            String.format("Type %s not supported", plan.getType().getSymbol()),
+                            definition.getSymbol() + "/" + propdef.getSymbol()
+                        ));
+                    }
+
+                    break;
+            }
+
+            if (type == null) {
+                type = new JavaType("byte[]", "TypedSet.readRemaining(in)", true);
+            }
+
+            return type;
+        }
+
+        /**
+         * Returns the Java type of a type definition, generating its decoder
+         * the first time
+         *
+         * @param definition Type definition
+         * @return Java type, or null if the type cannot be mapped
+         */
+        private JavaType getType(Definition definition) throws RuleException {
+
+            definition = plans.findBaseDefinition(definition);
+
+            if (definition == null) {
+                return null;
+            }
+
+            JavaType type = types.get(definition);
+
+            if (type == null) {
+
+                /* protects against recursive definitions */
+                types.put(definition, JavaType.UNSUPPORTED);
+
+                type = createType(definition);
+
+                types.put(definition, type == null ? JavaType.UNSUPPORTED : type);
+            }
+
+            return type == JavaType.UNSUPPORTED ? null : type;
+        }
+
+        /* returns the Java type of an element of an array, set or record */
+        private JavaType getElementType(AUID identification) throws RuleException {
+            JavaType type = getType(plans.getDefinition(identification));
+
+            return type == null || type.isRemaining() ? null : type;
+        }
+
+        private JavaType createType(Definition definition) throws RuleException {
+
+            switch (plans.getRule(definition)) {
+
+                case INTEGER: {
+                    IntegerTypeDefinition idef = (IntegerTypeDefinition) definition;
+
+                    switch (idef.getSize()) {
+                        case ONE:
+                            return idef.isSigned()
+                                ? addDecoder(definition, "Byte", "return in.readByte();")
+                                : addDecoder(definition, "Short", "return (short) in.readUnsignedByte();");
+                        case TWO:
+                            return idef.isSigned()
+                                ? addDecoder(definition, "Short", "return in.readShort();")
+                                : addDecoder(definition, "Integer", "return in.readUnsignedShort();");
+                        case FOUR:
+                            return idef.isSigned()
+                                ? addDecoder(definition, "Integer", "return in.readInt();")
+                                : addDecoder(definition, "Long", "return in.readUnsignedInt();");
+                        case EIGHT:
+
+                            /* UInt64 values above Long.MAX_VALUE are negative */
+                            return addDecoder(definition, "Long", "return in.readLong();");
+                    }
+
+                    return null;
+                }
+
+                case FLOAT:
+
+                    switch (((FloatTypeDefinition) definition).getSize()) {
+                        case HALF:
+                            return addDecoder(definition, "Double", "return HalfFloat.toDouble(in.readUnsignedShort());");
+                        case SINGLE:
+                            return addDecoder(definition, "Float", "return in.readFloat();");
+                        case DOUBLE:
+                            return addDecoder(definition, "Double", "return in.readDouble();");
+                    }
+
+                    return null;
+
+                case ENUMERATION: {
+                    EnumerationTypeDefinition edef = (EnumerationTypeDefinition) definition;
+
+                    if (edef.getElementType().equals(Boolean_UL)) {
+                        return addDecoder(definition, "Boolean", "return in.readUnsignedByte() != 0;");
+                    }
+
+                    if (edef.getIdentification().equals(ProductReleaseType_UL)) {
+
+                        /* EXCEPTION: ProductReleaseType_UL is listed as
+                         a UInt8 enum but encoded as a UInt16 */
+                        return addDecoder(definition, "Integer", "return in.readUnsignedShort();");
+                    }
+
+                    Definition bdef = plans.findBaseDefinition(plans.getDefinition(edef.getElementType()));
+
+                    if (!(bdef instanceof IntegerTypeDefinition)) {
+                        return null;
+                    }
+
+                    JavaType element = getType(bdef);
+
+                    return addDecoder(definition, element.name, "return " + element.decoder + ";");
+                }
+
+                case EXTENDIBLE_ENUMERATION:
+                    return addDecoder(definition, "UL", "return in.readUL();");
+
+                case STRONG_REFERENCE:
+                    return addDecoder(definition, "UUID", "return in.readUUID();");
+
+                case WEAK_REFERENCE: {
+                    Definition target = plans.getDefinition(((WeakReferenceTypeDefinition) definition).getReferencedType());
+
+                    if (!(target instanceof ClassDefinition)) {
+                        return null;
+                    }
+
+                    DecodePlanCache.PropertyPlan unique = plans.getClassPlan((ClassDefinition) target).getUniqueProperty();
+
+                    if (unique == null || unique.getKind() != DecodePlanCache.PropertyKind.VALUE) {
+                        return null;
+                    }
+
+                    /* a weak reference is encoded as the unique identifier of its target */
+                    JavaType type = getType(unique.getType());
+
+                    return type == null || type.isRemaining() ? null : type;
+                }
+
+                case STRING: {
+                    Definition cdef = plans.findBaseDefinition(plans.getDefinition(((StringTypeDefinition) definition).getElementType()));
+
+                    if (!(cdef instanceof CharacterTypeDefinition)) {
+                        return null;
+                    }
+
+                    String cs;
+
+                    if (cdef.getIdentification().equals(Character_UL)) {
+                        cs = "UTF_16BE";
+                    } else if (cdef.getIdentification().equals(Char_UL)) {
+                        cs = "US_ASCII";
+                    } else if (cdef.getIdentification().equals(UTF8Character_UL)) {
+
+                        /* NOTE: Use of UTF-8 character encoding is specified in RP 2057 */
+                        cs = "UTF_8";
+                    } else {
+                        return null;
+                    }
+
+                    return addDecoder(definition, "String", true, "return TypedSet.readCharacters(in, StandardCharsets." + cs + ");");
+                }
+
+                case FIXED_ARRAY: {
+                    FixedArrayTypeDefinition fdef = (FixedArrayTypeDefinition) definition;
+
+                    if (fdef.getIdentification().equals(UUID_UL)) {
+                        return addDecoder(definition, "UUID", "return in.readUUID();");
+                    }
+
+                    if (isUInt8(fdef.getElementType())) {
+                        return addDecoder(
+                            definition,
+                            "byte[]",
+                            "byte[] value = new byte[" + fdef.getElementCount() + "];",
+                            "",
+                            "in.readFully(value);",
+                            "",
+                            "return value;"
+                        );
+                    }
+
+                    JavaType element = getElementType(fdef.getElementType());
+
+                    if (element == null) {
+                        return null;
+                    }
+
+                    return addDecoder(
+                        definition,
+                        "List<" + element.name + ">",
+                        "ArrayList<" + element.name + "> value = new ArrayList<>(" + fdef.getElementCount() + ");",
+                        "",
+                        "for (int i = 0; i < " + fdef.getElementCount() + "; i++) {",
+                        "    value.add(" + element.decoder + ");",
+                        "}",
+                        "",
+                        "return value;"
+                    );
+                }
+
+                case VARIABLE_ARRAY:
+
+                    if (definition.getSymbol().equals("DataValue")) {
+
+                        /* DataValue is string of octets, without number of elements or size of elements */
+                        return addDecoder(definition, "byte[]", true, "return TypedSet.readRemaining(in);");
+                    }
+
+                    return createBatchType(definition, ((VariableArrayTypeDefinition) definition).getElementType());
+
+                case SET:
+                    return createBatchType(definition, ((SetTypeDefinition) definition).getElementType());
+
+                case RECORD:
+
+                    if (definition.getIdentification().equals(AUID_UL)) {
+                        return addDecoder(definition, "AUID", "return in.readAUID();");
+                    }
+
+                    if (definition.getIdentification().equals(PackageID_UL)) {
+                        return addDecoder(definition, "UMID", "return in.readUMID();");
+                    }
+
+                    return createRecordType((RecordTypeDefinition) definition);
+
+                default:
+                    return null;
+            }
+        }
+
+        private boolean isUInt8(AUID identification) {
+            Definition def = plans.findBaseDefinition(plans.getDefinition(identification));
+
+            return def instanceof IntegerTypeDefinition
+                && ((IntegerTypeDefinition) def).getSize() == IntegerTypeDefinition.Size.ONE
+                && !((IntegerTypeDefinition) def).isSigned();
+        }
+
+        /* arrays and sets are preceded by the number and the length of their elements */
+        private JavaType createBatchType(Definition definition, AUID elementtype) throws RuleException {
+            JavaType element = getElementType(elementtype);
+
+            if (element == null) {
+                return null;
+            }
+
+            return addDecoder(
+                definition,
+                "List<" + element.name + ">",
+                "long count = in.readUnsignedInt();",
+                "",
+                "/* length of each element */",
+                "in.readUnsignedInt();",
+                "",
+                "ArrayList<" + element.name + "> value = new ArrayList<>();",
+                "",
+                "for (long i = 0; i < count; i++) {",
+                "    value.add(" + element.decoder + ");",
+                "}",
+                "",
+                "return value;"
+            );
+        }
+
+        private JavaType createRecordType(RecordTypeDefinition definition) throws RuleException {
+
+            ArrayList<JavaType> membertypes = new ArrayList<>();
+
+            for (RecordTypeDefinition.Member member : definition.getMembers()) {
+
+                JavaType type = getElementType(member.getType());
+
+                if (type == null) {
+                    return null;
+                }
+
+                membertypes.add(type);
+            }
+
+            String name = uniqueName(toIdentifier(definition.getSymbol()), classnames, true);
+
+            HashSet<String> fields = new HashSet<>(KEYWORDS);
+            HashSet<String> names = new HashSet<>(Arrays.asList("getClass"));
+
+            StringBuilder decls = new StringBuilder();
+            StringBuilder params = new StringBuilder();
+            StringBuilder assigns = new StringBuilder();
+            StringBuilder methods = new StringBuilder();
+            StringBuilder tostring = new StringBuilder();
+            StringBuilder args = new StringBuilder();
+
+            int i = 0;
+
+            for (RecordTypeDefinition.Member member : definition.getMembers()) {
+
+                JavaType type = membertypes.get(i++);
+
+                String symbol = toIdentifier(member.getName());
+                String field = uniqueName(Character.toLowerCase(symbol.charAt(0)) + symbol.substring(1), fields, false);
+
+                String getter = uniqueName("get" + symbol, names, false);
+
+                decls.append("    private final ").append(type.name).append(' ').append(field).append(";\n");
+
+                if (params.length() > 0) {
+                    params.append(", ");
+                    args.append(", ");
+                    tostring.append(" + \", \"");
+                }
+
+                params.append(type.name).append(' ').append(field);
+                args.append(type.decoder);
+                tostring.append(" + \"").append(symbol).append("=\" + ").append(field);
+
+                assigns.append("        this.").append(field).append(" = ").append(field).append(";\n");
+
+                methods.append("    /**\n");
+                methods.append("     * @return Value of the ").append(member.getName()).append(" member\n");
+                methods.append("     */\n");
+                methods.append("    public ").append(type.name).append(' ').append(getter).append("() {\n");
+                methods.append("        return ").append(field).append(";\n");
+                methods.append("    }\n\n");
+            }
+
+            StringBuilder sb = startClass(
+                "com.sandflow.smpte.util.AUID",
+                "com.sandflow.smpte.util.UL",
+                "com.sandflow.smpte.util.UMID",
+                "com.sandflow.smpte.util.UUID",
+                "java.util.List"
+            );
+
+            sb.append("/**\n");
+            sb.append(" * Value of the ").append(definition.getSymbol()).append(" record type (")
+                .append(definition.getIdentification()).append(")\n");
+            sb.append(" */\n");
+            sb.append("public class ").append(name).append(" {\n\n");
+            sb.append(decls).append('\n');
+            sb.append("    public ").append(name).append('(').append(params).append(") {\n");
+            sb.append(assigns);
+            sb.append("    }\n\n");
+            sb.append(methods);
+            sb.append("    @Override\n");
+            sb.append("    public String toString() {\n");
+            sb.append("        return \"").append(name).append("[\"").append(tostring).append(" + \"]\";\n");
+            sb.append("    }\n\n");
+            sb.append("}\n");
+
+            sources.put(name, sb.toString());
+
+            /* members are decoded in order since arguments are evaluated left to right */
+            return addDecoder(definition, name, "return new " + name + "(" + args + ");");
+        }
+
+        private JavaType addDecoder(Definition definition, String type, String... body) {
+            return addDecoder(definition, type, false, body);
+        }
+
+        private JavaType addDecoder(Definition definition, String type, boolean remaining, String... body) {
+
+            String name = uniqueName("decode" + toIdentifier(definition.getSymbol()), decodernames, false);
+
+            decoders.append("    /**\n");
+            decoders.append("     * Decodes a value of the ").append(definition.getSymbol()).append(" type (")
+                .append(definition.getIdentification()).append(")\n");
+            decoders.append("     */\n");
+            decoders.append("    public static ").append(type).append(' ').append(name)
+                .append("(MXFInputStream in) throws IOException {\n");
+
+            for (String line : body) {
+                if (line.isEmpty()) {
+                    decoders.append('\n');
+                } else {
+                    decoders.append("        ").append(line).append('\n');
+                }
+            }
+
+            decoders.append("    }\n\n");
+
+            return new JavaType(type, DECODERS_CLASS + "." + name + "(in)", remaining);
+        }
+
+        private String generateDecoders() {
+            StringBuilder sb = startClass(
+                "com.sandflow.smpte.mxf.MXFInputStream",
+                "com.sandflow.smpte.mxf.TypedSet",
+                "com.sandflow.smpte.util.AUID",
+                "com.sandflow.smpte.util.HalfFloat",
+                "com.sandflow.smpte.util.UL",
+                "com.sandflow.smpte.util.UMID",
+                "com.sandflow.smpte.util.UUID",
+                "java.io.IOException",
+                "java.nio.charset.StandardCharsets",
+                "java.util.ArrayList",
+                "java.util.List"
+            );
+
+            sb.append("/**\n");
+            sb.append(" * Decoders of the types used by the accessors\n");
+            sb.append(" */\n");
+            sb.append("public final class ").append(DECODERS_CLASS).append(" {\n\n");
+            sb.append("    private ").append(DECODERS_CLASS).append("() {\n");
+            sb.append("    }\n\n");
+            sb.append(decoders);
+            sb.append("}\n");
+
+            return sb.toString();
+        }
+
+        private String generateAccessors() {
+            StringBuilder puts = new StringBuilder();
+            StringBuilder cases = new StringBuilder();
+
+            HashSet<UL> keys = new HashSet<>();
+
+            for (int i = 0; i < lattice.size(); i++) {
+
+                ClassDefinition definition = lattice.getClassDefinition(i);
+
+                if (!definition.getIdentification().isUL()) {
+                    continue;
+                }
+
+                UL key = TypedSet.normalizeKey(definition.getIdentification().asUL());
+
+                if (!keys.add(key)) {
+                    continue;
+                }
+
+                puts.append("        CLASSES.put(").append(toLiteral(key)).append(", ").append(i).append(");\n");
+
+                cases.append("            case ").append(i).append(":\n");
+                cases.append("                return new ").append(accessors.get(definition)).append("(group);\n");
+            }
+
+            StringBuilder sb = startClass(
+                "com.sandflow.smpte.klv.Group",
+                "com.sandflow.smpte.mxf.TypedSet",
+                "com.sandflow.smpte.util.UL",
+                "java.util.HashMap"
+            );
+
+            sb.append("/**\n");
+            sb.append(" * Wraps Groups in the accessors of their classes\n");
+            sb.append(" */\n");
+            sb.append("public final class ").append(ACCESSORS_CLASS).append(" {\n\n");
+            sb.append("    private static final HashMap<UL, Integer> CLASSES = new HashMap<>();\n\n");
+            sb.append("    static {\n");
+            sb.append(puts);
+            sb.append("    }\n\n");
+            sb.append("    private ").append(ACCESSORS_CLASS).append("() {\n");
+            sb.append("    }\n\n");
+            sb.append("    /**\n");
+            sb.append("     * Wraps a Group in the accessor of its class\n");
+            sb.append("     *\n");
+            sb.append("     * @param group Group, typically a Set of the Header Metadata\n");
+            sb.append("     * @return Accessor, or null if the class of the Group is unknown\n");
+            sb.append("     */\n");
+            sb.append("    public static TypedSet wrap(Group group) {\n");
+            sb.append("        Integer id = CLASSES.get(TypedSet.normalizeKey(group.getKey()));\n\n");
+            sb.append("        if (id == null) {\n");
+            sb.append("            return null;\n");
+            sb.append("        }\n\n");
+            sb.append("        switch (id) {\n");
+            sb.append(cases);
+            sb.append("            default:\n");
+            sb.append("                return null;\n");
+            sb.append("        }\n");
+            sb.append("    }\n\n");
+            sb.append("}\n");
+
+            return sb.toString();
+        }
+
+    }
+
+    public static class RuleException extends Exception {
+
+        public RuleException(Throwable t) {
+            super(t);
+        }
+
+        public RuleException(String msg) {
+            super(msg);
+        }
+
+    }
+
+}
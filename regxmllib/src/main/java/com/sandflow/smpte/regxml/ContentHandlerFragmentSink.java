@@ -0,0 +1,176 @@
+/*
+ * Copyright (c) 2014, Pierre-Anthony Lemieux (pal@sandflow.com)
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ *
+ * * Redistributions of source code must retain the above copyright notice, this
+ *   list of conditions and the following disclaimer.
+ * * Redistributions in binary form must reproduce the above copyright notice,
+ *   this list of conditions and the following disclaimer in the documentation
+ *   and/or other materials provided with the distribution.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ */
+package com.sandflow.smpte.regxml;
+
+import com.sandflow.util.events.LazyMessage;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.HashSet;
+import org.xml.sax.ContentHandler;
+import org.xml.sax.SAXException;
+import org.xml.sax.ext.LexicalHandler;
+import org.xml.sax.helpers.AttributesImpl;
+
+/**
+ * Writes a RegXML Fragment to a SAX ContentHandler, e.g. a
+ * javax.xml.transform.sax.TransformerHandler. Each namespace prefix is mapped
+ * on the outermost element where it is used, unless it is already in scope.
+ * Comments are written only if a LexicalHandler is provided.
+ */
+public class ContentHandlerFragmentSink implements FragmentSink {
+
+    private final ContentHandler handler;
+    private final LexicalHandler lexhandler;
+
+    /* prefixes mapped by each open element */
+    private final ArrayList<ArrayList<String>> declared = new ArrayList<>();
+    private final HashSet<String> inscope = new HashSet<>();
+
+    /* namespace, local name and qualified name of each open element */
+    private final ArrayList<String[]> open = new ArrayList<>();
+
+    /* element whose start has not been written yet, since attributes may follow */
+    private boolean pending = false;
+    private final AttributesImpl pendingAttrs = new AttributesImpl();
+
+    /**
+     * Instantiates a ContentHandlerFragmentSink
+     *
+     * @param handler Handler to which elements and text are written. Must not be null.
+     * @param lexhandler Handler to which comments are written. May be null.
+     */
+    public ContentHandlerFragmentSink(ContentHandler handler, LexicalHandler lexhandler) {
+
+        if (handler == null) throw new NullPointerException();
+
+        this.handler = handler;
+        this.lexhandler = lexhandler;
+    }
+
+    private void declare(String namespace, String prefix) throws SAXException {
+        if (inscope.add(prefix)) {
+            handler.startPrefixMapping(prefix, namespace);
+
+            declared.get(declared.size() - 1).add(prefix);
+        }
+    }
+
+    private void flush() throws SAXException {
+        if (pending) {
+
+            String[] name = open.get(open.size() - 1);
+
+            handler.startElement(name[0], name[1], name[2], pendingAttrs);
+
+            pending = false;
+            pendingAttrs.clear();
+        }
+    }
+
+    @Override
+    public void startElement(String namespace, String prefix, String localName) throws IOException {
+        try {
+            flush();
+
+            declared.add(new ArrayList<String>());
+
+            declare(namespace, prefix);
+
+            open.add(new String[]{namespace, localName, prefix + ":" + localName});
+
+            pending = true;
+
+        } catch (SAXException e) {
+            throw new IOException(e);
+        }
+    }
+
+    @Override
+    public void attribute(String namespace, String prefix, String localName, String value) throws IOException {
+
+        if (!pending) {
+            throw new IllegalStateException("Attribute added after element content.");
+        }
+
+        try {
+            declare(namespace, prefix);
+
+            pendingAttrs.addAttribute(namespace, localName, prefix + ":" + localName, "CDATA", value);
+
+        } catch (SAXException e) {
+            throw new IOException(e);
+        }
+    }
+
+    @Override
+    public void text(String text) throws IOException {
+        try {
+            flush();
+
+            handler.characters(text.toCharArray(), 0, text.length());
+
+        } catch (SAXException e) {
+            throw new IOException(e);
+        }
+    }
+
+    @Override
+    public void comment(LazyMessage comment) throws IOException {
+        try {
+            flush();
+
+            /* the comment is not built if it is not written */
+            if (lexhandler != null) {
+                String text = comment.toString();
+
+                lexhandler.comment(text.toCharArray(), 0, text.length());
+            }
+
+        } catch (SAXException e) {
+            throw new IOException(e);
+        }
+    }
+
+    @Override
+    public void endElement() throws IOException {
+        try {
+            flush();
+
+            String[] name = open.remove(open.size() - 1);
+
+            handler.endElement(name[0], name[1], name[2]);
+
+            for (String prefix : declared.remove(declared.size() - 1)) {
+                handler.endPrefixMapping(prefix);
+                inscope.remove(prefix);
+            }
+
+        } catch (SAXException e) {
+            throw new IOException(e);
+        }
+    }
+
+}
@@ -0,0 +1,115 @@
+/*
+ * Copyright (c) 2014, Pierre-Anthony Lemieux (pal@sandflow.com)
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ *
+ * * Redistributions of source code must retain the above copyright notice, this
+ *   list of conditions and the following disclaimer.
+ * * Redistributions in binary form must reproduce the above copyright notice,
+ *   this list of conditions and the following disclaimer in the documentation
+ *   and/or other materials provided with the distribution.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ */
+package com.sandflow.smpte.regxml;
+
+import com.sandflow.util.events.LazyMessage;
+import java.util.HashMap;
+import java.util.Map;
+import javax.xml.XMLConstants;
+import org.w3c.dom.Attr;
+import org.w3c.dom.Document;
+import org.w3c.dom.Element;
+import org.w3c.dom.Node;
+
+/**
+ * Appends a RegXML Fragment to a DOM node. The namespaces used by a Fragment
+ * are declared on its root element once the root element is ended.
+ */
+class DOMFragmentSink implements FragmentSink {
+
+    private final Document document;
+    private final Node root;
+    private Node current;
+
+    /* prefixes used since the last root element was started, by namespace */
+    private final HashMap<String, String> prefixes = new HashMap<>();
+
+    /**
+     * Instantiates a DOMFragmentSink
+     *
+     * @param node Node to which elements will be appended. Must not be null.
+     */
+    DOMFragmentSink(Node node) {
+
+        if (node == null) throw new NullPointerException();
+
+        this.document = node.getNodeType() == Node.DOCUMENT_NODE ? (Document) node : node.getOwnerDocument();
+        this.root = node;
+        this.current = node;
+    }
+
+    @Override
+    public void startElement(String namespace, String prefix, String localName) {
+        prefixes.put(namespace, prefix);
+
+        Element elem = document.createElementNS(namespace, localName);
+
+        elem.setPrefix(prefix);
+
+        current.appendChild(elem);
+
+        current = elem;
+    }
+
+    @Override
+    public void attribute(String namespace, String prefix, String localName, String value) {
+        prefixes.put(namespace, prefix);
+
+        Attr attr = document.createAttributeNS(namespace, localName);
+
+        attr.setPrefix(prefix);
+        attr.setTextContent(value);
+
+        ((Element) current).setAttributeNodeNS(attr);
+    }
+
+    @Override
+    public void text(String text) {
+        current.appendChild(document.createTextNode(text));
+    }
+
+    @Override
+    public void comment(LazyMessage comment) {
+        current.appendChild(document.createComment(comment.toString()));
+    }
+
+    @Override
+    public void endElement() {
+        Node ended = current;
+
+        current = current.getParentNode();
+
+        if (current == root) {
+
+            for (Map.Entry<String, String> entry : prefixes.entrySet()) {
+                ((Element) ended).setAttributeNS(XMLConstants.XMLNS_ATTRIBUTE_NS_URI, "xmlns:" + entry.getValue(), entry.getKey());
+            }
+
+            prefixes.clear();
+        }
+    }
+
+}
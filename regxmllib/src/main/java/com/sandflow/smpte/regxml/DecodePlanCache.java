@@ -0,0 +1,562 @@
+/*
+ * Copyright (c) 2016, Pierre-Anthony Lemieux (pal@sandflow.com)
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ *
+ * * Redistributions of source code must retain the above copyright notice, this
+ *   list of conditions and the following disclaimer.
+ * * Redistributions in binary form must reproduce the above copyright notice,
+ *   this list of conditions and the following disclaimer in the documentation
+ *   and/or other materials provided with the distribution.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ */
+package com.sandflow.smpte.regxml;
+
+import com.sandflow.smpte.regxml.dict.ClassLattice;
+import com.sandflow.smpte.regxml.dict.DefinitionResolver;
+import com.sandflow.smpte.regxml.dict.definitions.CharacterTypeDefinition;
+import com.sandflow.smpte.regxml.dict.definitions.ClassDefinition;
+import com.sandflow.smpte.regxml.dict.definitions.Definition;
+import com.sandflow.smpte.regxml.dict.definitions.EnumerationTypeDefinition;
+import com.sandflow.smpte.regxml.dict.definitions.ExtendibleEnumerationTypeDefinition;
+import com.sandflow.smpte.regxml.dict.definitions.FixedArrayTypeDefinition;
+import com.sandflow.smpte.regxml.dict.definitions.FloatTypeDefinition;
+import com.sandflow.smpte.regxml.dict.definitions.IndirectTypeDefinition;
+import com.sandflow.smpte.regxml.dict.definitions.IntegerTypeDefinition;
+import com.sandflow.smpte.regxml.dict.definitions.LensSerialFloatTypeDefinition;
+import com.sandflow.smpte.regxml.dict.definitions.OpaqueTypeDefinition;
+import com.sandflow.smpte.regxml.dict.definitions.PropertyAliasDefinition;
+import com.sandflow.smpte.regxml.dict.definitions.PropertyDefinition;
+import com.sandflow.smpte.regxml.dict.definitions.RecordTypeDefinition;
+import com.sandflow.smpte.regxml.dict.definitions.RenameTypeDefinition;
+import com.sandflow.smpte.regxml.dict.definitions.SetTypeDefinition;
+import com.sandflow.smpte.regxml.dict.definitions.StreamTypeDefinition;
+import com.sandflow.smpte.regxml.dict.definitions.StringTypeDefinition;
+import com.sandflow.smpte.regxml.dict.definitions.StrongReferenceTypeDefinition;
+import com.sandflow.smpte.regxml.dict.definitions.VariableArrayTypeDefinition;
+import com.sandflow.smpte.regxml.dict.definitions.WeakReferenceTypeDefinition;
+import com.sandflow.smpte.util.AUID;
+import com.sandflow.smpte.util.UL;
+import java.util.Collection;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Definition resolver that remembers, for each definition it returns, how
+ * {@link FragmentBuilder} decodes it: the namespace and symbol of the XML
+ * element, the base type of properties after aliases and renames are resolved,
+ * and the encoding rule of each type. The lookups are performed once per
+ * definition instead of once per item of each Set.
+ * 
+ * The underlying resolver must not be modified once the cache is created. The
+ * cache is thread-safe and can be shared by multiple FragmentBuilders, e.g. when
+ * processing several files against the same MetaDictionaryCollection. A single
+ * cache should be created per set of dictionaries: only the definitions found
+ * in the underlying resolver are remembered, so its size is bounded by the
+ * dictionaries and not by the Keys encountered in the files.
+ * 
+ * When a {@link ClassLattice} is provided, the unique identifier of classes is
+ * taken from it and {@link MXFFragmentBuilder} uses it to find the root object.
+ */
+public class DecodePlanCache implements DefinitionResolver {
+
+    private static final UL UUID_UL = UL.fromDotValue("06.0E.2B.34.01.04.01.01.01.03.03.00.00.00.00.00");
+    private static final UL ByteOrder_UL = UL.fromDotValue("06.0E.2B.34.01.01.01.01.03.01.02.01.02.00.00.00");
+    private static final UL PrimaryPackage_UL = UL.fromURN("urn:smpte:ul:060e2b34.01010104.06010104.01080000");
+    private static final UL LinkedGenerationID_UL = UL.fromURN("urn:smpte:ul:060e2b34.01010102.05200701.08000000");
+    private static final UL GenerationID_UL = UL.fromURN("urn:smpte:ul:060e2b34.01010102.05200701.01000000");
+    private static final UL ApplicationProductID_UL = UL.fromURN("urn:smpte:ul:060e2b34.01010102.05200701.07000000");
+
+    /* returned for Keys unknown to the resolver, which are not remembered */
+    private static final ItemPlan MISSING = new ItemPlan(null);
+
+    private final DefinitionResolver resolver;
+    private final ClassLattice lattice;
+
+    private final ConcurrentHashMap<AUID, ItemPlan> plansByAUID = new ConcurrentHashMap<>();
+    private final ConcurrentHashMap<UL, ItemPlan> plansByUL = new ConcurrentHashMap<>();
+    private final ConcurrentHashMap<Definition, Rule> rules = new ConcurrentHashMap<>();
+    private final ConcurrentHashMap<Definition, ClassPlan> classplans = new ConcurrentHashMap<>();
+
+    /**
+     * Creates a cache in front of a definition resolver
+     *
+     * @param resolver Definition resolver. Must not be null.
+     */
+    public DecodePlanCache(DefinitionResolver resolver) {
+        this(resolver, null);
+    }
+
+    /**
+     * Creates a cache in front of a definition resolver
+     *
+     * @param resolver Definition resolver. Must not be null.
+     * @param lattice Class lattice created from the same resolver. May be null.
+     */
+    public DecodePlanCache(DefinitionResolver resolver, ClassLattice lattice) {
+
+        if (resolver == null) {
+            throw new IllegalArgumentException();
+        }
+
+        this.resolver = resolver;
+        this.lattice = lattice;
+    }
+
+    /**
+     * Returns a cache in front of a definition resolver
+     *
+     * @param resolver Definition resolver. Must not be null.
+     * @return The resolver itself if it is already a cache, a new cache otherwise
+     */
+    static DecodePlanCache of(DefinitionResolver resolver) {
+        return of(resolver, null);
+    }
+
+    /**
+     * Returns a cache in front of a definition resolver
+     *
+     * @param resolver Definition resolver. Must not be null.
+     * @param lattice Class lattice created from the same resolver. May be null.
+     * @return The resolver itself if it is already a cache, a new cache otherwise
+     */
+    static DecodePlanCache of(DefinitionResolver resolver, ClassLattice lattice) {
+        return resolver instanceof DecodePlanCache
+            ? (DecodePlanCache) resolver : new DecodePlanCache(resolver, lattice);
+    }
+
+    /**
+     * @return Class lattice provided at construction, or null
+     */
+    public ClassLattice getClassLattice() {
+        return lattice;
+    }
+
+    @Override
+    public Definition getDefinition(AUID identification) {
+        return getItemPlan(identification).getDefinition();
+    }
+
+    @Override
+    public Collection<AUID> getSubclassesOf(ClassDefinition definition) {
+        return resolver.getSubclassesOf(definition);
+    }
+
+    @Override
+    public Collection<AUID> getMembersOf(ClassDefinition definition) {
+        return resolver.getMembersOf(definition);
+    }
+
+    ItemPlan getItemPlan(AUID identification) {
+        ItemPlan plan = plansByAUID.get(identification);
+
+        if (plan == null) {
+            Definition definition = resolver.getDefinition(identification);
+
+            if (definition == null) {
+                return MISSING;
+            }
+
+            plan = new ItemPlan(definition);
+
+            ItemPlan existing = plansByAUID.putIfAbsent(identification, plan);
+
+            if (existing != null) {
+                plan = existing;
+            }
+        }
+
+        return plan;
+    }
+
+    /**
+     * Returns the plan of the definition associated with the Key of a KLV item
+     *
+     * @param key Item Key
+     * @return Plan, whose definition is null if the Key is unknown
+     */
+    ItemPlan getItemPlan(UL key) {
+        ItemPlan plan = plansByUL.get(key);
+
+        if (plan == null) {
+            plan = getItemPlan(new AUID(key));
+
+            if (plan != MISSING) {
+                plansByUL.putIfAbsent(key, plan);
+            }
+        }
+
+        return plan;
+    }
+
+    /**
+     * Returns the plan of a property, compiling it the first time
+     *
+     * @param item Plan returned by {@link #getItemPlan(com.sandflow.smpte.util.UL)}
+     * @return Plan, or null if the item is not a property
+     */
+    PropertyPlan getPropertyPlan(ItemPlan item) {
+
+        if (!(item.definition instanceof PropertyDefinition)) {
+            return null;
+        }
+
+        /* plans are immutable, so a plan compiled concurrently can be discarded */
+        PropertyPlan plan = item.property;
+
+        if (plan == null) {
+            plan = compilePropertyPlan((PropertyDefinition) item.definition);
+
+            item.property = plan;
+        }
+
+        return plan;
+    }
+
+    PropertyPlan getPropertyPlan(PropertyDefinition definition) {
+        ItemPlan item = getItemPlan(definition.getIdentification());
+
+        /* the definition may not be the one returned by the resolver */
+        return item.definition == definition ? getPropertyPlan(item) : compilePropertyPlan(definition);
+    }
+
+    /**
+     * Returns the encoding rule of a type definition
+     *
+     * @param definition Type definition
+     * @return Rule
+     */
+    Rule getRule(Definition definition) {
+        Rule rule = rules.get(definition);
+
+        if (rule == null) {
+            rule = Rule.of(definition);
+
+            rules.put(definition, rule);
+        }
+
+        return rule;
+    }
+
+    /**
+     * Returns the plan of a class, which is used to resolve weak references
+     *
+     * @param definition Class definition
+     * @return Plan
+     */
+    ClassPlan getClassPlan(ClassDefinition definition) {
+        ClassPlan plan = classplans.get(definition);
+
+        if (plan == null) {
+            plan = compileClassPlan(definition);
+
+            classplans.put(definition, plan);
+        }
+
+        return plan;
+    }
+
+    private PropertyPlan compilePropertyPlan(PropertyDefinition definition) {
+
+        if (definition.getIdentification().equals(ByteOrder_UL)) {
+            return new PropertyPlan(definition, definition, PropertyKind.BYTE_ORDER, null, null);
+        }
+
+        PropertyDefinition resolved = definition;
+
+        if (definition instanceof PropertyAliasDefinition) {
+            resolved = (PropertyDefinition) getDefinition(((PropertyAliasDefinition) definition).getOriginalProperty());
+        }
+
+        Definition typedef = findBaseDefinition(getDefinition(resolved.getType()));
+
+        if (typedef == null) {
+            return new PropertyPlan(definition, resolved, PropertyKind.UNKNOWN_TYPE, null, null);
+        }
+
+        if (resolved.getIdentification().equals(PrimaryPackage_UL)) {
+            return new PropertyPlan(definition, resolved, PropertyKind.PRIMARY_PACKAGE, typedef, null);
+        }
+
+        if (resolved.getIdentification().equals(LinkedGenerationID_UL)
+            || resolved.getIdentification().equals(GenerationID_UL)
+            || resolved.getIdentification().equals(ApplicationProductID_UL)) {
+
+            /* EXCEPTION: LinkedGenerationID, GenerationID and ApplicationProductID
+             are encoded using UUID */
+            typedef = getDefinition(new AUID(UUID_UL));
+        }
+
+        return new PropertyPlan(definition, resolved, PropertyKind.VALUE, typedef, typedef == null ? Rule.UNKNOWN : getRule(typedef));
+    }
+
+    private ClassPlan compileClassPlan(ClassDefinition definition) {
+
+        if (lattice != null && lattice.getId(definition) >= 0) {
+
+            PropertyDefinition unique = lattice.getUniqueIdentifier(definition);
+
+            return new ClassPlan(definition, unique == null ? null : getPropertyPlan(unique));
+        }
+
+        ClassDefinition cdef = definition;
+
+        while (cdef != null) {
+
+            for (AUID auid : resolver.getMembersOf(cdef)) {
+
+                PropertyDefinition propdef = (PropertyDefinition) getDefinition(auid);
+
+                if (propdef.isUniqueIdentifier()) {
+                    return new ClassPlan(definition, getPropertyPlan(propdef));
+                }
+            }
+
+            if (cdef.getParentClass() != null) {
+                cdef = (ClassDefinition) getDefinition(cdef.getParentClass());
+            } else {
+                cdef = null;
+            }
+
+        }
+
+        return new ClassPlan(definition, null);
+    }
+
+    Definition findBaseDefinition(Definition definition) {
+
+        while (definition instanceof RenameTypeDefinition) {
+            definition = getDefinition(((RenameTypeDefinition) definition).getRenamedType());
+        }
+
+        return definition;
+    }
+
+    /**
+     * Encoding rules of ST 2001-1 Section 5
+     */
+    enum Rule {
+        CHARACTER,
+        ENUMERATION,
+        EXTENDIBLE_ENUMERATION,
+        FIXED_ARRAY,
+        INDIRECT,
+        INTEGER,
+        OPAQUE,
+        RECORD,
+        RENAME,
+        SET,
+        STREAM,
+        STRING,
+        STRONG_REFERENCE,
+        VARIABLE_ARRAY,
+        WEAK_REFERENCE,
+        FLOAT,
+        LENS_SERIAL_FLOAT,
+        UNKNOWN;
+
+        static Rule of(Definition definition) {
+
+            if (definition instanceof CharacterTypeDefinition) {
+                return CHARACTER;
+            } else if (definition instanceof EnumerationTypeDefinition) {
+                return ENUMERATION;
+            } else if (definition instanceof ExtendibleEnumerationTypeDefinition) {
+                return EXTENDIBLE_ENUMERATION;
+            } else if (definition instanceof FixedArrayTypeDefinition) {
+                return FIXED_ARRAY;
+            } else if (definition instanceof IndirectTypeDefinition) {
+                return INDIRECT;
+            } else if (definition instanceof IntegerTypeDefinition) {
+                return INTEGER;
+            } else if (definition instanceof OpaqueTypeDefinition) {
+                return OPAQUE;
+            } else if (definition instanceof RecordTypeDefinition) {
+                return RECORD;
+            } else if (definition instanceof RenameTypeDefinition) {
+                return RENAME;
+            } else if (definition instanceof SetTypeDefinition) {
+                return SET;
+            } else if (definition instanceof StreamTypeDefinition) {
+                return STREAM;
+            } else if (definition instanceof StringTypeDefinition) {
+                return STRING;
+            } else if (definition instanceof StrongReferenceTypeDefinition) {
+                return STRONG_REFERENCE;
+            } else if (definition instanceof VariableArrayTypeDefinition) {
+                return VARIABLE_ARRAY;
+            } else if (definition instanceof WeakReferenceTypeDefinition) {
+                return WEAK_REFERENCE;
+            } else if (definition instanceof FloatTypeDefinition) {
+                return FLOAT;
+            } else if (definition instanceof LensSerialFloatTypeDefinition) {
+                return LENS_SERIAL_FLOAT;
+            } else {
+                return UNKNOWN;
+            }
+        }
+    }
+
+    /**
+     * How the value of a property is decoded
+     */
+    enum PropertyKind {
+        /**
+         * ByteOrder property
+         */
+        BYTE_ORDER,
+        /**
+         * PrimaryPackage property, which is replaced by the unique ID of the
+         * target Set
+         */
+        PRIMARY_PACKAGE,
+        /**
+         * Type of the property could not be found
+         */
+        UNKNOWN_TYPE,
+        /**
+         * Value decoded according to its type
+         */
+        VALUE
+    }
+
+    /**
+     * Definition associated with an identification
+     */
+    static final class ItemPlan {
+
+        private final Definition definition;
+        private final String namespace;
+        private final int version;
+        private volatile PropertyPlan property;
+
+        private ItemPlan(Definition definition) {
+            this.definition = definition;
+
+            if (definition != null) {
+                this.namespace = definition.getNamespace().toString();
+                this.version = definition.getIdentification().asUL().getVersion();
+            } else {
+                this.namespace = null;
+                this.version = 0;
+            }
+        }
+
+        Definition getDefinition() {
+            return definition;
+        }
+
+        String getNamespace() {
+            return namespace;
+        }
+
+        int getVersion() {
+            return version;
+        }
+
+    }
+
+    /**
+     * Resolved type and decoding of a property
+     */
+    static final class PropertyPlan {
+
+        private final PropertyDefinition definition;
+        private final PropertyDefinition resolved;
+        private final String namespace;
+        private final PropertyKind kind;
+        private final Definition type;
+        private final Rule rule;
+
+        private PropertyPlan(PropertyDefinition definition, PropertyDefinition resolved, PropertyKind kind, Definition type, Rule rule) {
+            this.definition = definition;
+            this.resolved = resolved;
+            this.namespace = definition.getNamespace().toString();
+            this.kind = kind;
+            this.type = type;
+            this.rule = rule;
+        }
+
+        /**
+         * @return Property definition, possibly an alias
+         */
+        PropertyDefinition getDefinition() {
+            return definition;
+        }
+
+        /**
+         * @return Original property definition if the property is an alias
+         */
+        PropertyDefinition getResolvedDefinition() {
+            return resolved;
+        }
+
+        String getNamespace() {
+            return namespace;
+        }
+
+        String getSymbol() {
+            return definition.getSymbol();
+        }
+
+        boolean isUniqueIdentifier() {
+            return definition.isUniqueIdentifier();
+        }
+
+        PropertyKind getKind() {
+            return kind;
+        }
+
+        /**
+         * @return Base type of the property, or null if unknown
+         */
+        Definition getType() {
+            return type;
+        }
+
+        Rule getRule() {
+            return rule;
+        }
+
+    }
+
+    /**
+     * Unique identifier of a class, including inherited properties
+     */
+    static final class ClassPlan {
+
+        private final ClassDefinition definition;
+        private final PropertyPlan unique;
+
+        private ClassPlan(ClassDefinition definition, PropertyPlan unique) {
+            this.definition = definition;
+            this.unique = unique;
+        }
+
+        ClassDefinition getDefinition() {
+            return definition;
+        }
+
+        /**
+         * @return Plan of the unique identifier property, or null if the class
+         * has none
+         */
+        PropertyPlan getUniqueProperty() {
+            return unique;
+        }
+
+    }
+
+}
@@ -43,7 +43,6 @@ import com.sandflow.smpte.regxml.dict.definitions.IndirectTypeDefinition;
 import com.sandflow.smpte.regxml.dict.definitions.IntegerTypeDefinition;
 import com.sandflow.smpte.regxml.dict.definitions.LensSerialFloatTypeDefinition;
 import com.sandflow.smpte.regxml.dict.definitions.OpaqueTypeDefinition;
-import com.sandflow.smpte.regxml.dict.definitions.PropertyAliasDefinition;
 import com.sandflow.smpte.regxml.dict.definitions.PropertyDefinition;
 import com.sandflow.smpte.regxml.dict.definitions.RecordTypeDefinition;
 import com.sandflow.smpte.regxml.dict.definitions.RenameTypeDefinition;
@@ -55,35 +54,33 @@ import com.sandflow.smpte.regxml.dict.definitions.VariableArrayTypeDefinition;
 import com.sandflow.smpte.regxml.dict.definitions.WeakReferenceTypeDefinition;
 import com.sandflow.smpte.util.AUID;
 import com.sandflow.util.events.EventHandler;
+import com.sandflow.util.events.LazyMessage;
 import com.sandflow.smpte.util.HalfFloat;
 import com.sandflow.smpte.util.IDAU;
 import com.sandflow.smpte.util.UL;
 import com.sandflow.smpte.util.UMID;
 import com.sandflow.smpte.util.UUID;
 import com.sandflow.util.events.Event;
-import java.io.DataInputStream;
 import java.io.EOFException;
 import java.io.IOException;
-import java.io.InputStreamReader;
-import java.io.Reader;
 import java.io.UnsupportedEncodingException;
-import java.math.BigInteger;
-import java.net.URI;
-import java.net.URISyntaxException;
+import java.nio.charset.Charset;
+import java.nio.charset.StandardCharsets;
 import java.util.ArrayList;
-import java.util.Collection;
 import java.util.HashMap;
+import java.util.HashSet;
 import java.util.Map;
 import java.util.logging.Logger;
-import org.w3c.dom.Attr;
 import org.w3c.dom.Document;
 import org.w3c.dom.DocumentFragment;
-import org.w3c.dom.Element;
-import org.w3c.dom.Node;
 
 /**
  * Builds a RegXML Fragment of a single KLV Group, typically a Header Metadata
  * MXF Set, using a collection of MetaDictionary definitions
+ * 
+ * A FragmentBuilder is not thread-safe and is intended to be used by a single
+ * thread. The DefinitionResolver it uses can however be shared by
+ * FragmentBuilders running concurrently, as long as it is not modified.
  */
 public class FragmentBuilder {
 
@@ -182,26 +179,53 @@ public class FragmentBuilder {
      */
     public static class FragmentEvent extends com.sandflow.util.events.BasicEvent {
 
-        final String reason;
-        final String where;
+        final LazyMessage reason;
+        final LazyMessage where;
 
         public FragmentEvent(EventCodes kind, String reason) {
             this(kind, reason, null);
         }
 
         public FragmentEvent(EventCodes kind, String reason, String where) {
-            super(kind.severity, kind, reason + (where != null ? " at " + where : ""));
+            this(kind, LazyMessage.of(reason), LazyMessage.of(where));
+        }
+
+        /**
+         * Creates an event whose message is only built if requested
+         *
+         * @param kind Kind of event
+         * @param reason Describes the event
+         */
+        public FragmentEvent(EventCodes kind, LazyMessage reason) {
+            this(kind, reason, null);
+        }
+
+        /**
+         * Creates an event whose message is only built if requested
+         *
+         * @param kind Kind of event
+         * @param reason Describes the event
+         * @param where Location of the event, or null
+         */
+        public FragmentEvent(EventCodes kind, final LazyMessage reason, final LazyMessage where) {
+            super(kind.severity, kind, new LazyMessage() {
+
+                @Override
+                protected String build() {
+                    return reason + (where != null ? " at " + where : "");
+                }
+            });
             
             this.reason = reason;
             this.where = where;
         }
 
         public String getReason() {
-            return reason;
+            return reason.toString();
         }
 
         public String getWhere() {
-            return where;
+            return where == null ? null : where.toString();
         }
 
     }
@@ -217,30 +241,38 @@ public class FragmentBuilder {
     private static final UL TimeStruct_UL = UL.fromDotValue("06.0E.2B.34.01.04.01.01.03.01.06.00.00.00.00.00");
     private static final UL TimeStamp_UL = UL.fromDotValue("06.0E.2B.34.01.04.01.01.03.01.07.00.00.00.00.00");
     private static final UL VersionType_UL = UL.fromDotValue("06.0E.2B.34.01.04.01.01.03.01.03.00.00.00.00.00");
-    private static final UL ByteOrder_UL = UL.fromDotValue("06.0E.2B.34.01.01.01.01.03.01.02.01.02.00.00.00");
     private static final UL Character_UL = UL.fromURN("urn:smpte:ul:060e2b34.01040101.01100100.00000000");
     private static final UL Char_UL = UL.fromURN("urn:smpte:ul:060e2b34.01040101.01100300.00000000");
     private static final UL UTF8Character_UL = UL.fromURN("urn:smpte:ul:060e2b34.01040101.01100500.00000000");
     private static final UL ProductReleaseType_UL = UL.fromURN("urn:smpte:ul:060e2b34.01040101.02010101.00000000");
     private static final UL Boolean_UL = UL.fromURN("urn:smpte:ul:060e2b34.01040101.01040100.00000000");
-    private static final UL PrimaryPackage_UL = UL.fromURN("urn:smpte:ul:060e2b34.01010104.06010104.01080000");
-    private static final UL LinkedGenerationID_UL = UL.fromURN("urn:smpte:ul:060e2b34.01010102.05200701.08000000");
-    private static final UL GenerationID_UL = UL.fromURN("urn:smpte:ul:060e2b34.01010102.05200701.01000000");
-    private static final UL ApplicationProductID_UL = UL.fromURN("urn:smpte:ul:060e2b34.01010102.05200701.07000000");
 
     private static final String REGXML_NS = "http://sandflow.com/ns/SMPTEST2001-1/baseline";
-    private final static String XMLNS_NS = "http://www.w3.org/2000/xmlns/";
 
     private static final String BYTEORDER_BE = "BigEndian";
     private static final String BYTEORDER_LE = "LittleEndian";
     private static final String UID_ATTR = "uid";
     private static final String ACTUALTYPE_ATTR = "actualType";
 
-    private final DefinitionResolver defresolver;
+    private final DecodePlanCache defresolver;
     private final Map<UUID, Set> setresolver;
-    private final HashMap<URI, String> nsprefixes = new HashMap<>();
+    private final StrongReferenceGraph graph;
+    private final HashMap<String, String> nsprefixes = new HashMap<>();
     private final AUIDNameResolver anameresolver;
     private final EventHandler evthandler;
+    private final Metrics metrics;
+
+    /* state of the Fragment being generated */
+    private FragmentSink out;
+    private final ArrayList<String> elementnames = new ArrayList<>();
+    private final HashSet<String> instanceids = new HashSet<>();
+    private StringBuilder capturedtext;
+    private final ValueDecoder values = new ValueDecoder();
+
+    /* counts reported to the metrics once the Fragment is generated */
+    private long propertycount;
+    private long hitcount;
+    private long misscount;
 
     /**
      * Resolves a AUID into a local name
@@ -266,8 +298,8 @@ public class FragmentBuilder {
      *
      * @param defresolver Maps Group Keys to MetaDictionary definitions. Must
      * not be null;
-     * @param setresolver Resolves Strong References to groups. Must not be
-     * null.
+     * @param setresolver Resolves Strong References to groups, e.g. a
+     * {@link com.sandflow.smpte.mxf.SetMap}. Must not be null.
      * @param anameresolver Resolves a AUID to a human-readable symbol. May be
      * null.
      * @param evthandler Calls back the caller when an event occurs. May be
@@ -277,16 +309,76 @@ public class FragmentBuilder {
         Map<UUID, Set> setresolver,
         AUIDNameResolver anameresolver,
         EventHandler evthandler) {
+        this(defresolver, setresolver, null, anameresolver, evthandler, Metrics.NONE);
+    }
+
+    /**
+     * Instantiates a FragmentBuilder that renders the Sets of a Strong
+     * Reference graph. Circular and dangling Strong References are reported by
+     * {@link StrongReferenceGraph#validate(com.sandflow.smpte.util.UUID, com.sandflow.util.events.EventHandler)},
+     * which must have been called with the root of each Fragment created, and
+     * are only marked by comments in the Fragment.
+     *
+     * @param defresolver Maps Group Keys to MetaDictionary definitions. Must
+     * not be null;
+     * @param graph Strong Reference graph, which has been validated. Must not
+     * be null.
+     * @param anameresolver Resolves a AUID to a human-readable symbol. May be
+     * null.
+     * @param evthandler Calls back the caller when an event occurs. May be
+     * null.
+     */
+    public FragmentBuilder(DefinitionResolver defresolver,
+        StrongReferenceGraph graph,
+        AUIDNameResolver anameresolver,
+        EventHandler evthandler) {
+        this(defresolver, graph, anameresolver, evthandler, Metrics.NONE);
+    }
+
+    /**
+     * Instantiates a FragmentBuilder that renders the Sets of a Strong
+     * Reference graph and reports to metrics the properties written, the
+     * dictionary lookups, the events raised and the time spent generating
+     * each Fragment.
+     *
+     * @param defresolver Maps Group Keys to MetaDictionary definitions. Must
+     * not be null;
+     * @param graph Strong Reference graph, which has been validated. Must not
+     * be null.
+     * @param anameresolver Resolves a AUID to a human-readable symbol. May be
+     * null.
+     * @param evthandler Calls back the caller when an event occurs. May be
+     * null.
+     * @param metrics Receives measurements. Must not be null.
+     */
+    public FragmentBuilder(DefinitionResolver defresolver,
+        StrongReferenceGraph graph,
+        AUIDNameResolver anameresolver,
+        EventHandler evthandler,
+        Metrics metrics) {
+        this(defresolver, graph == null ? null : graph.getSets(), graph, anameresolver, evthandler, metrics);
+    }
 
-        if (defresolver == null || setresolver == null) {
+    private FragmentBuilder(DefinitionResolver defresolver,
+        Map<UUID, Set> setresolver,
+        StrongReferenceGraph graph,
+        AUIDNameResolver anameresolver,
+        EventHandler evthandler,
+        Metrics metrics) {
+
+        if (defresolver == null || setresolver == null || metrics == null) {
             throw new IllegalArgumentException();
 
         }
 
-        this.defresolver = defresolver;
+        /* definitions are resolved through a cache of decode plans, which callers
+         can share across FragmentBuilders by providing a DecodePlanCache */
+        this.defresolver = DecodePlanCache.of(defresolver);
         this.setresolver = setresolver;
+        this.graph = graph;
         this.anameresolver = anameresolver;
         this.evthandler = evthandler;
+        this.metrics = metrics;
     }
 
     /**
@@ -367,17 +459,57 @@ public class FragmentBuilder {
 
         DocumentFragment df = document.createDocumentFragment();
 
-        applyRule3(df, group);
+        /* the sink declares the namespaces on the root element */
+        fromTriplet(group, new DOMFragmentSink(df));
+
+        return df;
+    }
+
+    /**
+     * Creates a RegXML Fragment and writes it to a sink as it is generated.
+     * Unlike {@link #fromTriplet(com.sandflow.smpte.klv.Group, org.w3c.dom.Document)},
+     * the Fragment is not held in memory.
+     *
+     * @param group KLV Group for which the Fragment will be generated.
+     * @param sink Sink to which the Fragment is written. Must not be null.
+     *
+     * @throws KLVException
+     * @throws com.sandflow.smpte.regxml.FragmentBuilder.RuleException
+     */
+    public void fromTriplet(Group group, FragmentSink sink) throws KLVException, RuleException {
 
-        /* NOTE: Hack to clean-up namespace prefixes */
-        for (Map.Entry<URI, String> entry : nsprefixes.entrySet()) {
-            ((Element) df.getFirstChild()).setAttributeNS(XMLNS_NS, "xmlns:" + entry.getValue(), entry.getKey().toString());
+        if (sink == null) {
+            throw new IllegalArgumentException();
         }
 
-        return df;
+        out = sink;
+
+        long start = System.nanoTime();
+
+        try {
+
+            applyRule3(group);
+
+        } finally {
+
+            out = null;
+            elementnames.clear();
+            instanceids.clear();
+            capturedtext = null;
+
+            metrics.addTime(Metrics.Stage.BUILD, System.nanoTime() - start);
+            metrics.add(Metrics.Counter.PROPERTIES_DECODED, propertycount);
+            metrics.add(Metrics.Counter.DEFINITION_HITS, hitcount);
+            metrics.add(Metrics.Counter.DEFINITION_MISSES, misscount);
+
+            propertycount = 0;
+            hitcount = 0;
+            misscount = 0;
+
+        }
     }
 
-    private String getPrefix(URI ns) {
+    String getPrefix(String ns) {
         String prefix = this.nsprefixes.get(ns);
 
         /* if prefix does not exist, create one */
@@ -390,21 +522,62 @@ public class FragmentBuilder {
         return prefix;
     }
 
-    String getPrefix(String ns) {
+    void startElement(String namespace, String localName) throws RuleException {
+        try {
+            out.startElement(namespace, getPrefix(namespace), localName);
+        } catch (IOException e) {
+            throw new RuleException(e);
+        }
+
+        elementnames.add(localName);
+    }
 
+    void endElement() throws RuleException {
         try {
-            return getPrefix(new URI(ns));
-        } catch (URISyntaxException ex) {
-            throw new RuntimeException(ex);
+            out.endElement();
+        } catch (IOException e) {
+            throw new RuleException(e);
         }
+
+        elementnames.remove(elementnames.size() - 1);
     }
 
-    void addInformativeComment(Element element, String comment) {
-        element.appendChild(element.getOwnerDocument().createComment(comment));
+    void addAttribute(String namespace, String localName, String value) throws RuleException {
+        try {
+            out.attribute(namespace, getPrefix(namespace), localName, value);
+        } catch (IOException e) {
+            throw new RuleException(e);
+        }
+    }
+
+    void addText(String text) throws RuleException {
+        try {
+            out.text(text);
+        } catch (IOException e) {
+            throw new RuleException(e);
+        }
+
+        if (capturedtext != null) {
+            capturedtext.append(text);
+        }
+    }
+
+    void addInformativeComment(LazyMessage comment) throws RuleException {
+        try {
+            out.comment(comment);
+        } catch (IOException e) {
+            throw new RuleException(e);
+        }
+    }
+
+    String getElementName() {
+        return elementnames.get(elementnames.size() - 1);
     }
 
     void handleEvent(FragmentEvent evt) throws RuleException {
 
+        metrics.event(evt);
+
         if (evthandler != null) {
 
             if (! evthandler.handle(evt) ||
@@ -427,17 +600,21 @@ public class FragmentBuilder {
         
     }
 
-    void applyRule3(Node node, Group group) throws RuleException {
+    void applyRule3(Group group) throws RuleException {
+
+        DecodePlanCache.ItemPlan groupplan = defresolver.getItemPlan(group.getKey());
 
-        Definition definition = defresolver.getDefinition(new AUID(group.getKey()));
+        Definition definition = groupplan.getDefinition();
 
         if (definition == null) {
 
+            misscount++;
+
             handleEvent(new FragmentEvent(
                 EventCodes.UNKNOWN_GROUP,
-                String.format(
+                LazyMessage.format(
                     "Unknown Group UL %s",
-                    group.getKey().toString()
+                    group.getKey()
                 )
             )
             );
@@ -445,11 +622,13 @@ public class FragmentBuilder {
             return;
         }
 
-        if (definition.getIdentification().asUL().getVersion() != group.getKey().getVersion()) {
+        hitcount++;
+
+        if (groupplan.getVersion() != group.getKey().getVersion()) {
 
             handleEvent(new FragmentEvent(
                 EventCodes.VERSION_BYTE_MISMATCH,
-                String.format(
+                LazyMessage.format(
                     "Group UL %s in file does not have the same version as in the register (0x%02x)",
                     group.getKey(),
                     definition.getIdentification().asUL().getVersion()
@@ -459,56 +638,97 @@ public class FragmentBuilder {
 
         }
 
-        Element objelem = node.getOwnerDocument().createElementNS(definition.getNamespace().toString(), definition.getSymbol());
+        /* the reg:uid attribute is written as part of the start tag, so the
+         items up to the last unique ID item are buffered */
+        int lastuniqueitem = -1;
+
+        int itemindex = 0;
+
+        for (Triplet item : group.getItems()) {
+
+            DecodePlanCache.ItemPlan itemplan = defresolver.getItemPlan(item.getKey());
+
+            if (itemplan.getDefinition() instanceof PropertyDefinition
+                && ((PropertyDefinition) itemplan.getDefinition()).isUniqueIdentifier()) {
+                lastuniqueitem = itemindex;
+            }
+
+            itemindex++;
+        }
+
+        ObjectElement objelem = new ObjectElement(
+            groupplan.getNamespace(),
+            getPrefix(groupplan.getNamespace()),
+            definition.getSymbol()
+        );
+
+        if (lastuniqueitem < 0) {
+            objelem.start();
+        } else {
+            objelem.buffer();
+        }
 
-        node.appendChild(objelem);
+        String instanceid = null;
 
-        objelem.setPrefix(getPrefix(definition.getNamespace()));
+        itemindex = -1;
 
         for (Triplet item : group.getItems()) {
 
+            itemindex++;
+
             /* skip if the property is not defined in the registers */
-            Definition itemdef = defresolver.getDefinition(new AUID(item.getKey()));
+            DecodePlanCache.ItemPlan itemplan = defresolver.getItemPlan(item.getKey());
+
+            Definition itemdef = itemplan.getDefinition();
 
             if (itemdef == null) {
 
+                misscount++;
+
                 handleEvent(new FragmentEvent(
                         EventCodes.UNKNOWN_PROPERTY,
-                        String.format(
+                        LazyMessage.format(
                             "Unknown property %s",
-                            item.getKey().toString()
+                            item.getKey()
                         ),
-                        String.format(
+                        LazyMessage.format(
                             "Group %s",
                             definition.getSymbol()
                         )
                     )
                 );
 
+                final Triplet darkitem = item;
+
                 /* inserts the full value of the dark property as a comment */
-                addInformativeComment(
-                    objelem,
-                    String.format(
-                        "Unknown property\nKey: %s\nData: %s",
-                        item.getKey().toString(),
-                        bytesToString(item.getValue())
-                    )
-                );
+                addInformativeComment(new LazyMessage() {
+
+                    @Override
+                    protected String build() {
+                        return String.format(
+                            "Unknown property\nKey: %s\nData: %s",
+                            darkitem.getKey(),
+                            bytesToString(darkitem.getValue())
+                        );
+                    }
+                });
 
                 continue;
 
             }
 
+            hitcount++;
+
             /* make sure this is a property definition */
             if (!(itemdef instanceof PropertyDefinition)) {
 
                 FragmentEvent evt = new FragmentEvent(
                     EventCodes.UNEXPECTED_DEFINITION,
-                    String.format(
+                    LazyMessage.format(
                         "Item %s is not a property",
-                        item.getKey().toString()
+                        item.getKey()
                     ),
-                    String.format(
+                    LazyMessage.format(
                         "Group %s",
                         definition.getSymbol()
                     )
@@ -516,22 +736,22 @@ public class FragmentBuilder {
 
                 handleEvent(evt);
 
-                addInformativeComment(objelem, evt.getReason());
+                addInformativeComment(evt.reason);
 
                 continue;
             }
 
             /* warn if version byte of the property does not match the register version byte  */
-            if (itemdef.getIdentification().asUL().getVersion() != item.getKey().getVersion()) {
+            if (itemplan.getVersion() != item.getKey().getVersion()) {
 
                 handleEvent(new FragmentEvent(
                     EventCodes.VERSION_BYTE_MISMATCH,
-                    String.format(
+                    LazyMessage.format(
                         "Property UL %s in file does not have the same version as in the register (0x%02x)",
-                        item.getKey().toString(),
-                        itemdef.getIdentification().asUL().getVersion()
+                        item.getKey(),
+                        itemplan.getVersion()
                     ),
-                    String.format(
+                    LazyMessage.format(
                         "Group %s",
                         definition.getSymbol()
                     )
@@ -540,82 +760,259 @@ public class FragmentBuilder {
 
             }
 
-            Element elem = node.getOwnerDocument().createElementNS(itemdef.getNamespace().toString(), itemdef.getSymbol());
+            boolean isinstanceid = item.getKey().equals(INSTANCE_UID_ITEM_UL);
+            DecodePlanCache.PropertyPlan propplan = defresolver.getPropertyPlan(itemplan);
+
+            boolean isunique = propplan.isUniqueIdentifier();
 
-            objelem.appendChild(elem);
+            /* capture the text of the property if it identifies the object */
+            StringBuilder enclosingtext = capturedtext;
 
-            elem.setPrefix(getPrefix(itemdef.getNamespace()));
+            if (isinstanceid || isunique) {
+                capturedtext = new StringBuilder();
+            }
+
+            startElement(propplan.getNamespace(), propplan.getSymbol());
 
             /* write the property */
-            applyRule4(elem, new MXFInputStream(item.getValueAsStream()), itemdef);
+            applyRule4(new MXFInputStream(item.getValueAsStream()), propplan);
 
-            /* detect cyclic references  */
-            if (item.getKey().equals(INSTANCE_UID_ITEM_UL)) {
+            endElement();
 
-                String iidns = objelem.getLastChild().getNamespaceURI();
-                String iidname = objelem.getLastChild().getLocalName();
-                String iid = objelem.getLastChild().getTextContent();
+            propertycount++;
 
-                /* look for identical instanceID in parent elements */
-                Node parent = node;
+            String itemtext = null;
 
-                while (parent.getNodeType() == Node.ELEMENT_NODE) {
+            if (isinstanceid || isunique) {
+                itemtext = capturedtext.toString();
 
-                    for (Node n = parent.getFirstChild(); n != null; n = n.getNextSibling()) {
+                if (enclosingtext != null) {
+                    enclosingtext.append(itemtext);
+                }
 
-                        if (n.getNodeType() == Node.ELEMENT_NODE
-                            && iidname.equals(n.getLocalName())
-                            && iidns.equals(n.getNamespaceURI())
-                            && iid.equals(n.getTextContent())) {
+                capturedtext = enclosingtext;
+            }
 
-                            FragmentEvent evt = new FragmentEvent(
-                                EventCodes.CIRCULAR_STRONG_REFERENCE,
-                                String.format(
-                                    "Circular Strong Reference to Set UID %s",
-                                    iid
-                                ),
-                                String.format(
-                                    "Group %s",
-                                    definition.getSymbol()
-                                )
-                            );
+            /* detect cyclic references  */
+            if (isinstanceid) {
 
-                            handleEvent(evt);
+                /* look for identical instanceID in parent elements */
+                if (instanceids.contains(itemtext)) {
 
-                            addInformativeComment(
-                                (Element) node,
-                                evt.getReason()
-                            );
+                    FragmentEvent evt = new FragmentEvent(
+                        EventCodes.CIRCULAR_STRONG_REFERENCE,
+                        LazyMessage.format(
+                            "Circular Strong Reference to Set UID %s",
+                            itemtext
+                        ),
+                        LazyMessage.format(
+                            "Group %s",
+                            definition.getSymbol()
+                        )
+                    );
 
-                            return;
-                        }
+                    /* already reported if the Sets were validated */
+                    if (graph == null) {
+                        handleEvent(evt);
+                    }
+
+                    objelem.end();
+
+                    if (instanceid != null) {
+                        instanceids.remove(instanceid);
                     }
 
-                    parent = parent.getParentNode();
+                    addInformativeComment(evt.reason);
+
+                    return;
+                }
+
+                if (instanceid == null && instanceids.add(itemtext)) {
+                    instanceid = itemtext;
                 }
 
             }
 
             /* add reg:uid if property is a unique ID */
-            if (((PropertyDefinition) itemdef).isUniqueIdentifier()) {
+            if (isunique) {
+                objelem.setUID(itemtext);
+            }
+
+            if (itemindex == lastuniqueitem) {
+                objelem.start();
+            }
+
+        }
 
-                Attr attr = node.getOwnerDocument().createAttributeNS(REGXML_NS, UID_ATTR);
+        objelem.end();
 
-                attr.setPrefix(getPrefix(REGXML_NS));
-                attr.setTextContent(objelem.getLastChild().getTextContent());
+        if (instanceid != null) {
+            instanceids.remove(instanceid);
+        }
+
+    }
+
+    /**
+     * Element corresponding to a Set, whose start may be deferred until its
+     * reg:uid attribute is known
+     */
+    private class ObjectElement {
+
+        private final String namespace;
+        private final String prefix;
+        private final String localName;
+        private String uidprefix;
+        private String uid;
+        private FragmentSink parentout;
+        private RecordingFragmentSink recording;
+
+        ObjectElement(String namespace, String prefix, String localName) {
+            this.namespace = namespace;
+            this.prefix = prefix;
+            this.localName = localName;
+        }
+
+        /* buffer the content of the element until start() is called */
+        void buffer() {
+            parentout = out;
+            recording = new RecordingFragmentSink();
+            out = recording;
+            elementnames.add(localName);
+        }
+
+        void setUID(String uid) {
+            /* the prefix is allocated when the attribute would be created */
+            this.uidprefix = getPrefix(REGXML_NS);
+            this.uid = uid;
+        }
+
+        /* write the start tag, followed by any buffered content */
+        void start() throws RuleException {
+
+            if (recording == null) {
+                elementnames.add(localName);
+            } else {
+                out = parentout;
+            }
+
+            try {
+                out.startElement(namespace, prefix, localName);
+
+                if (uid != null) {
+                    out.attribute(REGXML_NS, uidprefix, UID_ATTR, uid);
+                }
+
+                if (recording != null) {
+                    recording.replay(out);
+                    recording = null;
+                }
 
-                objelem.setAttributeNodeNS(attr);
+            } catch (IOException e) {
+                throw new RuleException(e);
             }
+        }
+
+        void end() throws RuleException {
+
+            if (recording != null) {
+                start();
+            }
+
+            endElement();
+        }
+
+    }
+
+    /**
+     * Records events so that they can be written to another sink later
+     */
+    private static class RecordingFragmentSink implements FragmentSink {
+
+        private static enum Kind {
+            START,
+            ATTRIBUTE,
+            TEXT,
+            COMMENT,
+            END
+        }
+
+        private static class RecordedEvent {
+
+            final Kind kind;
+            final String[] args;
+            final LazyMessage comment;
+
+            RecordedEvent(Kind kind, String... args) {
+                this.kind = kind;
+                this.args = args;
+                this.comment = null;
+            }
+
+            RecordedEvent(LazyMessage comment) {
+                this.kind = Kind.COMMENT;
+                this.args = null;
+                this.comment = comment;
+            }
+        }
+
+        private final ArrayList<RecordedEvent> events = new ArrayList<>();
 
+        @Override
+        public void startElement(String namespace, String prefix, String localName) {
+            events.add(new RecordedEvent(Kind.START, namespace, prefix, localName));
+        }
+
+        @Override
+        public void attribute(String namespace, String prefix, String localName, String value) {
+            events.add(new RecordedEvent(Kind.ATTRIBUTE, namespace, prefix, localName, value));
+        }
+
+        @Override
+        public void text(String text) {
+            events.add(new RecordedEvent(Kind.TEXT, text));
+        }
+
+        @Override
+        public void comment(LazyMessage comment) {
+            events.add(new RecordedEvent(comment));
+        }
+
+        @Override
+        public void endElement() {
+            events.add(new RecordedEvent(Kind.END));
+        }
+
+        void replay(FragmentSink sink) throws IOException {
+            for (RecordedEvent evt : events) {
+                switch (evt.kind) {
+                    case START:
+                        sink.startElement(evt.args[0], evt.args[1], evt.args[2]);
+                        break;
+                    case ATTRIBUTE:
+                        sink.attribute(evt.args[0], evt.args[1], evt.args[2], evt.args[3]);
+                        break;
+                    case TEXT:
+                        sink.text(evt.args[0]);
+                        break;
+                    case COMMENT:
+                        sink.comment(evt.comment);
+                        break;
+                    case END:
+                        sink.endElement();
+                        break;
+                }
+            }
         }
 
     }
 
-    void applyRule4(Element element, MXFInputStream value, Definition propdef) throws RuleException {
+    void applyRule4(MXFInputStream value, DecodePlanCache.PropertyPlan propplan) throws RuleException {
+
+        Definition propdef = propplan.getDefinition();
 
         try {
 
-            if (propdef.getIdentification().equals(ByteOrder_UL)) {
+            if (propplan.getKind() == DecodePlanCache.PropertyKind.BYTE_ORDER) {
 
                 int byteorder;
 
@@ -624,11 +1021,11 @@ public class FragmentBuilder {
                 /* ISSUE: ST 2001-1 inverses these constants */
                 if (byteorder == 0x4D4D) {
 
-                    element.setTextContent(BYTEORDER_BE);
+                    addText(BYTEORDER_BE);
 
                 } else if (byteorder == 0x4949) {
 
-                    element.setTextContent(BYTEORDER_LE);
+                    addText(BYTEORDER_LE);
 
                     FragmentEvent evt = new FragmentEvent(
                         EventCodes.UNEXPECTED_BYTE_ORDER,
@@ -639,7 +1036,7 @@ public class FragmentBuilder {
 
                     handleEvent(evt);
 
-                    addInformativeComment(element, evt.getReason());
+                    addInformativeComment(evt.reason);
 
                 } else {
                     throw new RuleException("Unknown ByteOrder value.");
@@ -647,37 +1044,33 @@ public class FragmentBuilder {
 
             } else {
 
-                if (propdef instanceof PropertyAliasDefinition) {
-                    propdef = defresolver.getDefinition(((PropertyAliasDefinition) propdef).getOriginalProperty());
-                }
-
-                Definition typedef = findBaseDefinition(defresolver.getDefinition(((PropertyDefinition) propdef).getType()));
+                propdef = propplan.getResolvedDefinition();
 
                 /* return if no type definition is found */
-                if (typedef == null) {
+                if (propplan.getKind() == DecodePlanCache.PropertyKind.UNKNOWN_TYPE) {
 
                     FragmentEvent evt = new FragmentEvent(
                         EventCodes.UNKNOWN_TYPE,
-                        String.format(
+                        LazyMessage.format(
                             "Type %s not found",
                             ((PropertyDefinition) propdef).getType().toString()
                         ),
-                        String.format(
+                        LazyMessage.format(
                             "Property %s at Element %s",
                             propdef.getSymbol(),
-                            element.getLocalName()
+                            getElementName()
                         )
                     );
 
                     handleEvent(evt);
 
-                    addInformativeComment(element, evt.getReason());
+                    addInformativeComment(evt.reason);
 
                     return;
 
                 }
 
-                if (propdef.getIdentification().equals(PrimaryPackage_UL)) {
+                if (propplan.getKind() == DecodePlanCache.PropertyKind.PRIMARY_PACKAGE) {
 
                     /* EXCEPTION: PrimaryPackage is encoded as the Instance UUID of the target set
                      but needs to be the UMID contained in the unique ID of the target set */
@@ -693,13 +1086,12 @@ public class FragmentBuilder {
                         /* find the unique identifier in the group */
                         for (Triplet item : g.getItems()) {
 
-                            Definition itemdef = defresolver.getDefinition(new AUID(item.getKey()));
+                            DecodePlanCache.ItemPlan itemplan = defresolver.getItemPlan(item.getKey());
 
-                            if (itemdef != null
-                                && itemdef instanceof PropertyDefinition
-                                && ((PropertyDefinition) itemdef).isUniqueIdentifier()) {
+                            if (itemplan.getDefinition() instanceof PropertyDefinition
+                                && ((PropertyDefinition) itemplan.getDefinition()).isUniqueIdentifier()) {
 
-                                applyRule4(element, new MXFInputStream(item.getValueAsStream()), itemdef);
+                                applyRule4(new MXFInputStream(item.getValueAsStream()), defresolver.getPropertyPlan(itemplan));
 
                                 foundUniqueID = true;
 
@@ -713,20 +1105,20 @@ public class FragmentBuilder {
 
                             FragmentEvent evt = new FragmentEvent(
                                 EventCodes.MISSING_UNIQUE,
-                                String.format(
+                                LazyMessage.format(
                                     "Target Primary Package with Instance UID %s has no IsUnique element.",
-                                    uuid.toString()
+                                    uuid
                                 ),
-                                String.format(
+                                LazyMessage.format(
                                     "Property %s at Element %s",
                                     propdef.getSymbol(),
-                                    element.getLocalName()
+                                    getElementName()
                                 )
                             );
 
                             handleEvent(evt);
 
-                            addInformativeComment(element, evt.getReason());
+                            addInformativeComment(evt.reason);
 
                         }
 
@@ -734,35 +1126,28 @@ public class FragmentBuilder {
 
                         FragmentEvent evt = new FragmentEvent(
                             EventCodes.MISSING_PRIMARY_PACKAGE,
-                            String.format(
+                            LazyMessage.format(
                                 "Target Primary Package with Instance UID %s not found",
-                                uuid.toString()
+                                uuid
                             ),
-                            String.format(
+                            LazyMessage.format(
                                 "Property %s at Element %s",
                                 propdef.getSymbol(),
-                                element.getLocalName()
+                                getElementName()
                             )
                         );
 
                         handleEvent(evt);
 
-                        addInformativeComment(element, evt.getReason());
+                        addInformativeComment(evt.reason);
 
                     }
 
                 } else {
 
-                    if (propdef.getIdentification().equals(LinkedGenerationID_UL)
-                        || propdef.getIdentification().equals(GenerationID_UL)
-                        || propdef.getIdentification().equals(ApplicationProductID_UL)) {
-
-                        /* EXCEPTION: LinkedGenerationID, GenerationID and ApplicationProductID
-                         are encoded using UUID */
-                        typedef = defresolver.getDefinition(new AUID(UUID_UL));
-                    }
-
-                    applyRule5(element, value, typedef);
+                    /* EXCEPTION: LinkedGenerationID, GenerationID and ApplicationProductID
+                     are encoded using UUID, which the plan accounts for */
+                    applyRule5(value, propplan.getType(), propplan.getRule());
                 }
             }
 
@@ -770,17 +1155,17 @@ public class FragmentBuilder {
 
             FragmentEvent evt = new FragmentEvent(
                 EventCodes.VALUE_LENGTH_MISMATCH,
-                "Value too short",
-                String.format(
+                LazyMessage.of("Value too short"),
+                LazyMessage.format(
                     "Property %s at Element %s",
                     propdef.getSymbol(),
-                    element.getLocalName()
+                    getElementName()
                 )
             );
 
             handleEvent(evt);
 
-            addInformativeComment(element, evt.getReason());
+            addInformativeComment(evt.reason);
 
         } catch (IOException ioe) {
 
@@ -790,127 +1175,131 @@ public class FragmentBuilder {
 
     }
 
-    void applyRule5(Element element, MXFInputStream value, Definition definition) throws RuleException, IOException {
-
-        if (definition instanceof CharacterTypeDefinition) {
-            applyRule5_1(element, value, (CharacterTypeDefinition) definition);
-        } else if (definition instanceof EnumerationTypeDefinition) {
-            applyRule5_2(element, value, (EnumerationTypeDefinition) definition);
-        } else if (definition instanceof ExtendibleEnumerationTypeDefinition) {
-            applyRule5_3(element, value, (ExtendibleEnumerationTypeDefinition) definition);
-        } else if (definition instanceof FixedArrayTypeDefinition) {
-            applyRule5_4(element, value, (FixedArrayTypeDefinition) definition);
-        } else if (definition instanceof IndirectTypeDefinition) {
-            applyRule5_5(element, value, (IndirectTypeDefinition) definition);
-        } else if (definition instanceof IntegerTypeDefinition) {
-            applyRule5_6(element, value, (IntegerTypeDefinition) definition);
-        } else if (definition instanceof OpaqueTypeDefinition) {
-            applyRule5_7(element, value, (OpaqueTypeDefinition) definition);
-        } else if (definition instanceof RecordTypeDefinition) {
-            applyRule5_8(element, value, (RecordTypeDefinition) definition);
-        } else if (definition instanceof RenameTypeDefinition) {
-            applyRule5_9(element, value, (RenameTypeDefinition) definition);
-        } else if (definition instanceof SetTypeDefinition) {
-            applyRule5_10(element, value, (SetTypeDefinition) definition);
-        } else if (definition instanceof StreamTypeDefinition) {
-            applyRule5_11(element, value, (StreamTypeDefinition) definition);
-        } else if (definition instanceof StringTypeDefinition) {
-            applyRule5_12(element, value, (StringTypeDefinition) definition);
-        } else if (definition instanceof StrongReferenceTypeDefinition) {
-            applyRule5_13(element, value, (StrongReferenceTypeDefinition) definition);
-        } else if (definition instanceof VariableArrayTypeDefinition) {
-            applyRule5_14(element, value, (VariableArrayTypeDefinition) definition);
-        } else if (definition instanceof WeakReferenceTypeDefinition) {
-            applyRule5_15(element, value, (WeakReferenceTypeDefinition) definition);
-        } else if (definition instanceof FloatTypeDefinition) {
-            applyRule5_alpha(element, value, (FloatTypeDefinition) definition);
-        } else if (definition instanceof LensSerialFloatTypeDefinition) {
-            applyRule5_beta(element, value, (LensSerialFloatTypeDefinition) definition);
-        } else {
+    void applyRule5(MXFInputStream value, Definition definition) throws RuleException, IOException {
+        applyRule5(value, definition, defresolver.getRule(definition));
+    }
 
-            throw new RuleException(
-                String.format(
-                    "Unknown Definition %s in Rule 5.",
-                    definition.getClass().toString()
-                )
-            );
+    private void applyRule5(MXFInputStream value, Definition definition, DecodePlanCache.Rule rule) throws RuleException, IOException {
+
+        switch (rule) {
+            case CHARACTER:
+                applyRule5_1(value, (CharacterTypeDefinition) definition);
+                break;
+            case ENUMERATION:
+                applyRule5_2(value, (EnumerationTypeDefinition) definition);
+                break;
+            case EXTENDIBLE_ENUMERATION:
+                applyRule5_3(value, (ExtendibleEnumerationTypeDefinition) definition);
+                break;
+            case FIXED_ARRAY:
+                applyRule5_4(value, (FixedArrayTypeDefinition) definition);
+                break;
+            case INDIRECT:
+                applyRule5_5(value, (IndirectTypeDefinition) definition);
+                break;
+            case INTEGER:
+                applyRule5_6(value, (IntegerTypeDefinition) definition);
+                break;
+            case OPAQUE:
+                applyRule5_7(value, (OpaqueTypeDefinition) definition);
+                break;
+            case RECORD:
+                applyRule5_8(value, (RecordTypeDefinition) definition);
+                break;
+            case RENAME:
+                applyRule5_9(value, (RenameTypeDefinition) definition);
+                break;
+            case SET:
+                applyRule5_10(value, (SetTypeDefinition) definition);
+                break;
+            case STREAM:
+                applyRule5_11(value, (StreamTypeDefinition) definition);
+                break;
+            case STRING:
+                applyRule5_12(value, (StringTypeDefinition) definition);
+                break;
+            case STRONG_REFERENCE:
+                applyRule5_13(value, (StrongReferenceTypeDefinition) definition);
+                break;
+            case VARIABLE_ARRAY:
+                applyRule5_14(value, (VariableArrayTypeDefinition) definition);
+                break;
+            case WEAK_REFERENCE:
+                applyRule5_15(value, (WeakReferenceTypeDefinition) definition);
+                break;
+            case FLOAT:
+                applyRule5_alpha(value, (FloatTypeDefinition) definition);
+                break;
+            case LENS_SERIAL_FLOAT:
+                applyRule5_beta(value, (LensSerialFloatTypeDefinition) definition);
+                break;
+            default:
+
+                throw new RuleException(
+                    String.format(
+                        "Unknown Definition %s in Rule 5.",
+                        definition.getClass().toString()
+                    )
+                );
 
         }
 
     }
 
-    private void readCharacters(Element element, MXFInputStream value, CharacterTypeDefinition definition, boolean removeTrailingZeroes) throws RuleException, IOException {
+    private void readCharacters(MXFInputStream value, CharacterTypeDefinition definition, boolean removeTrailingZeroes) throws RuleException, IOException {
 
-        StringBuilder sb = new StringBuilder();
-
-        Reader in = null;
+        Charset cs;
 
         if (definition.getIdentification().equals(Character_UL)) {
 
             if (value.getByteorder() == ByteOrder.BIG_ENDIAN) {
 
-                in = new InputStreamReader(value, "UTF-16BE");
+                cs = StandardCharsets.UTF_16BE;
 
             } else {
 
-                in = new InputStreamReader(value, "UTF-16LE");
+                cs = StandardCharsets.UTF_16LE;
 
             }
 
         } else if (definition.getIdentification().equals(Char_UL)) {
 
-            in = new InputStreamReader(value, "US-ASCII");
+            cs = StandardCharsets.US_ASCII;
 
         } else if (definition.getIdentification().equals(UTF8Character_UL)) {
 
             /* NOTE: Use of UTF-8 character encoding is specified in RP 2057 */
-            in = new InputStreamReader(value, "UTF-8");
+            cs = StandardCharsets.UTF_8;
 
         } else {
 
             FragmentEvent evt = new FragmentEvent(
                 EventCodes.UNSUPPORTED_CHAR_TYPE,
-                String.format(
+                LazyMessage.format(
                     "Character type %s is not supported at Element %s",
                     definition.getSymbol(),
-                    element.getLocalName()
+                    getElementName()
                 )
             );
 
             handleEvent(evt);
 
-            addInformativeComment(element, evt.getReason());
+            addInformativeComment(evt.reason);
 
             return;
 
         }
 
-        char[] chars = new char[32];
-
-        for (int c; (c = in.read(chars)) != -1;) {
-            sb.append(chars, 0, c);
-        }
-
-        if (removeTrailingZeroes) {
-
-            /* remove trailing zeroes if any */
-            int nullpos = sb.indexOf("\0");
-
-            if (nullpos > -1) {
-                sb.setLength(nullpos);
-            }
-        }
-
-        element.setTextContent(sb.toString());
+        addText(values.readCharacters(value, cs, removeTrailingZeroes));
     }
 
-    void applyRule5_1(Element element, MXFInputStream value, CharacterTypeDefinition definition) throws RuleException, IOException {
+    void applyRule5_1(MXFInputStream value, CharacterTypeDefinition definition) throws RuleException, IOException {
 
-        readCharacters(element, value, definition, false /* do not remove trailing zeroes for a single char */);
+        readCharacters(value, definition, false /* do not remove trailing zeroes for a single char */);
 
     }
 
-    void applyRule5_2(Element element, MXFInputStream value, EnumerationTypeDefinition definition) throws RuleException, IOException {
+    void applyRule5_2(MXFInputStream value, EnumerationTypeDefinition definition) throws RuleException, IOException {
 
         try {
 
@@ -920,17 +1309,17 @@ public class FragmentBuilder {
 
                 FragmentEvent evt = new FragmentEvent(
                     EventCodes.UNSUPPORTED_ENUM_TYPE,
-                    "Enum does not have an Integer base type.",
-                    String.format(
+                    LazyMessage.of("Enum does not have an Integer base type."),
+                    LazyMessage.format(
                         "Enum %s at Element %s",
                         definition.getSymbol(),
-                        element.getLocalName()
+                        getElementName()
                     )
                 );
 
                 handleEvent(evt);
 
-                addInformativeComment(element, evt.getReason());
+                addInformativeComment(evt.reason);
 
                 return;
             }
@@ -962,9 +1351,7 @@ public class FragmentBuilder {
                 }
             }
 
-            byte[] val = new byte[len];
-
-            int br = value.read(val);
+            int br = values.readInteger(value, len);
 
             String str = null;
 
@@ -974,29 +1361,29 @@ public class FragmentBuilder {
 
                 FragmentEvent evt = new FragmentEvent(
                     EventCodes.VALUE_LENGTH_MISMATCH,
-                    "No data",
-                    String.format(
+                    LazyMessage.of("No data"),
+                    LazyMessage.format(
                         "Enum %s at Element %s",
                         definition.getSymbol(),
-                        element.getLocalName()
+                        getElementName()
                     )
                 );
 
                 handleEvent(evt);
 
-                addInformativeComment(element, evt.getReason());
+                addInformativeComment(evt.reason);
 
             } else {
 
                 /* always try to read the value even if the length is not as expected */
-                BigInteger bi = idef.isSigned() ? new BigInteger(val) : new BigInteger(1, val);
+                int intval = (int) values.getInteger(idef.isSigned());
 
                 if (definition.getElementType().equals(Boolean_UL)) {
 
                     /* find the "true" enum element */
                     /* MXF can encode "true" as any value other than 0 */
                     for (EnumerationTypeDefinition.Element e : definition.getElements()) {
-                        if ((bi.intValue() == 0 && e.getValue() == 0) || (bi.intValue() != 0 && e.getValue() == 1)) {
+                        if ((intval == 0 && e.getValue() == 0) || (intval != 0 && e.getValue() == 1)) {
                             str = e.getName();
                         }
                     }
@@ -1004,7 +1391,7 @@ public class FragmentBuilder {
                 } else {
 
                     for (EnumerationTypeDefinition.Element e : definition.getElements()) {
-                        if (e.getValue() == bi.intValue()) {
+                        if (e.getValue() == intval) {
                             str = e.getName();
                         }
                     }
@@ -1017,64 +1404,64 @@ public class FragmentBuilder {
 
                     FragmentEvent evt = new FragmentEvent(
                         EventCodes.UNKNOWN_ENUM_VALUE,
-                        String.format(
+                        LazyMessage.format(
                             "Undefined value %d",
-                            bi.intValue()
+                            intval
                         ),
-                        String.format(
+                        LazyMessage.format(
                             "Enum %s at Element %s",
                             definition.getSymbol(),
-                            element.getLocalName()
+                            getElementName()
                         )
                     );
 
                     handleEvent(evt);
 
-                    addInformativeComment(element, evt.getReason());
+                    addInformativeComment(evt.reason);
 
                 } else if (br != len) {
 
                     FragmentEvent evt = new FragmentEvent(
                         EventCodes.VALUE_LENGTH_MISMATCH,
-                        String.format(
+                        LazyMessage.format(
                             "Incorrect length: expected %d and received %d",
                             len,
                             br
                         ),
-                        String.format(
+                        LazyMessage.format(
                             "Enumeration %s at Element %s",
                             definition.getSymbol(),
-                            element.getLocalName()
+                            getElementName()
                         )
                     );
 
                     handleEvent(evt);
 
-                    addInformativeComment(element, evt.getReason());
+                    addInformativeComment(evt.reason);
 
                 }
             }
 
-            element.setTextContent(str);
+            addText(str);
 
         } catch (UnsupportedEncodingException e) {
             throw new RuntimeException(e);
         }
     }
 
-    void appendCommentWithAUIDName(AUIDNameResolver anr, AUID auid, Element elem) {
+    void appendCommentWithAUIDName(AUIDNameResolver anr, AUID auid) throws RuleException {
         if (this.anameresolver != null) {
 
             String ename = this.anameresolver.getLocalName(auid);
 
             if (ename != null) {
-                elem.appendChild(elem.getOwnerDocument().createComment(ename));
+                addInformativeComment(LazyMessage.of(ename));
             }
 
         }
     }
 
-    void applyRule5_3(Element element, MXFInputStream value, ExtendibleEnumerationTypeDefinition definition) throws RuleException, IOException {
+    void applyRule5_3(MXFInputStream value, ExtendibleEnumerationTypeDefinition definition) throws RuleException, IOException {
 
         try {
 
@@ -1082,57 +1469,55 @@ public class FragmentBuilder {
 
             /* NOTE: ST 2001-1 XML Schema does not allow ULs as values for Extendible Enumerations, which
              defeats the purpose of the type. This issue could be addressed at the next revision opportunity. */
-            element.setTextContent(ul.toString());
+            addText(ul.toString());
 
-            appendCommentWithAUIDName(anameresolver, new AUID(ul), element);
+            appendCommentWithAUIDName(anameresolver, new AUID(ul));
 
         } catch (UnsupportedEncodingException e) {
             throw new RuntimeException(e);
         }
     }
 
-    void applyRule5_4(Element element, MXFInputStream value, FixedArrayTypeDefinition definition) throws RuleException, IOException {
+    void applyRule5_4(MXFInputStream value, FixedArrayTypeDefinition definition) throws RuleException, IOException {
 
         if (definition.getIdentification().equals(UUID_UL)) {
 
             UUID uuid = value.readUUID();
 
-            element.setTextContent(uuid.toString());
+            addText(uuid.toString());
 
         } else {
 
             Definition typedef = findBaseDefinition(defresolver.getDefinition(definition.getElementType()));
 
-            applyCoreRule5_4(element, value, typedef, definition.getElementCount());
+            applyCoreRule5_4(value, typedef, definition.getElementCount());
 
         }
     }
 
-    void applyCoreRule5_4(Element element, MXFInputStream value, Definition typedef, int elementcount) throws RuleException, IOException {
+    void applyCoreRule5_4(MXFInputStream value, Definition typedef, int elementcount) throws RuleException, IOException {
 
         for (int i = 0; i < elementcount; i++) {
 
             if (typedef instanceof StrongReferenceTypeDefinition) {
 
                 /* Rule 5.4.1 */
-                applyRule5_13(element, value, (StrongReferenceTypeDefinition) typedef);
+                applyRule5_13(value, (StrongReferenceTypeDefinition) typedef);
 
             } else {
 
                 /* Rule 5.4.2 */
-                Element elem = element.getOwnerDocument().createElementNS(typedef.getNamespace().toString(), typedef.getSymbol());
-
-                elem.setPrefix(getPrefix(typedef.getNamespace()));
+                startElement(typedef.getNamespace().toString(), typedef.getSymbol());
 
-                applyRule5(elem, value, typedef);
+                applyRule5(value, typedef);
 
-                element.appendChild(elem);
+                endElement();
 
             }
         }
     }
 
-    void applyRule5_5(Element element, MXFInputStream value, IndirectTypeDefinition definition) throws RuleException, IOException {
+    void applyRule5_5(MXFInputStream value, IndirectTypeDefinition definition) throws RuleException, IOException {
 
         /* see https://github.com/sandflow/regxmllib/issues/74 for a discussion on Indirect Type */
         ByteOrder bo;
@@ -1156,17 +1541,17 @@ public class FragmentBuilder {
 
             FragmentEvent evt = new FragmentEvent(
                 EventCodes.INVALID_IDAU,
-                "Invalid IDAU",
-                String.format(
+                LazyMessage.of("Invalid IDAU"),
+                LazyMessage.format(
                     "Indirect Type %s at Element %s",
                     definition.getSymbol(),
-                    element.getLocalName()
+                    getElementName()
                 )
             );
 
             handleEvent(evt);
 
-            addInformativeComment(element, evt.getReason());
+            addInformativeComment(evt.reason);
 
             return;
         }
@@ -1179,35 +1564,32 @@ public class FragmentBuilder {
 
             FragmentEvent evt = new FragmentEvent(
                 EventCodes.UNKNOWN_TYPE,
-                String.format(
+                LazyMessage.format(
                     "No definition found for indirect type %s.",
-                    auid.toString()
+                    auid
                 ),
-                String.format(
+                LazyMessage.format(
                     "Indirect Type %s at Element %s",
                     definition.getSymbol(),
-                    element.getLocalName()
+                    getElementName()
                 )
             );
 
             handleEvent(evt);
 
-            addInformativeComment(element, evt.getReason());
+            addInformativeComment(evt.reason);
 
             return;
         }
 
         // create reg:actualType attribute
-        Attr attr = element.getOwnerDocument().createAttributeNS(REGXML_NS, ACTUALTYPE_ATTR);
-        attr.setPrefix(getPrefix(REGXML_NS));
-        attr.setTextContent(def.getSymbol());
-        element.setAttributeNodeNS(attr);
+        addAttribute(REGXML_NS, ACTUALTYPE_ATTR, def.getSymbol());
 
-        applyRule5(element, orderedval, def);
+        applyRule5(orderedval, def);
 
     }
 
-    void applyRule5_6(Element element, MXFInputStream value, IntegerTypeDefinition definition) throws RuleException, IOException {
+    void applyRule5_6(MXFInputStream value, IntegerTypeDefinition definition) throws RuleException, IOException {
 
         try {
 
@@ -1228,55 +1610,55 @@ public class FragmentBuilder {
                     break;
             }
 
-            byte[] val = new byte[len];
-
-            int br = value.read(val);
+            int br = values.readInteger(value, len);
 
             if (br == 0) {
 
-                element.setTextContent("NaN");
+                addText("NaN");
 
                 FragmentEvent evt = new FragmentEvent(
                     EventCodes.VALUE_LENGTH_MISMATCH,
-                    "No data",
-                    String.format(
+                    LazyMessage.of("No data"),
+                    LazyMessage.format(
                         "Integer %s at Element %s",
                         definition.getSymbol(),
-                        element.getLocalName()
+                        getElementName()
                     )
                 );
 
                 handleEvent(evt);
 
-                addInformativeComment(element, evt.getReason());
+                addInformativeComment(evt.reason);
 
             } else {
 
                 try {
 
-                    BigInteger bi = definition.isSigned() ? new BigInteger(val) : new BigInteger(1, val);
+                    if (len == 0) {
+                        throw new NumberFormatException("Zero length integer");
+                    }
 
-                    element.setTextContent(bi.toString());
+                    addText(values.formatInteger(definition.isSigned()));
 
                     if (br != len) {
 
                         FragmentEvent evt = new FragmentEvent(
                             EventCodes.VALUE_LENGTH_MISMATCH,
-                            String.format(
+                            LazyMessage.format(
                                 "Incorrect field length: expected %d and parsed %d.",
                                 len,
                                 br
                             ),
-                            String.format(
+                            LazyMessage.format(
                                 "Integer %s at Element %s",
                                 definition.getSymbol(),
-                                element.getLocalName()
+                                getElementName()
                             )
                         );
 
                         handleEvent(evt);
 
-                        addInformativeComment(element, evt.getReason());
+                        addInformativeComment(evt.reason);
 
                     }
 
@@ -1284,17 +1666,17 @@ public class FragmentBuilder {
 
                     FragmentEvent evt = new FragmentEvent(
                         EventCodes.INVALID_INTEGER_VALUE,
-                        "Invalid integer value",
-                        String.format(
+                        LazyMessage.of("Invalid integer value"),
+                        LazyMessage.format(
                             "Integer %s at Element %s",
                             definition.getSymbol(),
-                            element.getLocalName()
+                            getElementName()
                         )
                     );
 
                     handleEvent(evt);
 
-                    addInformativeComment(element, evt.getReason());
+                    addInformativeComment(evt.reason);
                 }
 
             }
@@ -1305,7 +1687,7 @@ public class FragmentBuilder {
 
     }
 
-    void applyRule5_7(Element element, MXFInputStream value, OpaqueTypeDefinition definition) throws RuleException {
+    void applyRule5_7(MXFInputStream value, OpaqueTypeDefinition definition) throws RuleException {
 
         /* NOTE: Opaque Types are not used in MXF */
         throw new RuleException("Opaque types are not supported.");
@@ -1313,32 +1695,22 @@ public class FragmentBuilder {
     }
 
     String generateISO8601Time(int hour, int minutes, int seconds, int millis) {
-        StringBuilder sb = new StringBuilder();
-
-        sb.append(String.format("%02d:%02d:%02d", hour, minutes, seconds));
-
-        if (millis != 0) {
-            sb.append(String.format(".%03d", millis));
-        }
-
-        sb.append("Z");
-
-        return sb.toString();
+        return values.formatTime(hour, minutes, seconds, millis);
     }
 
     String generateISO8601Date(int year, int month, int day) {
-        return String.format("%04d-%02d-%02d", year, month, day);
+        return values.formatDate(year, month, day);
     }
 
-    void applyRule5_8(Element element, MXFInputStream value, RecordTypeDefinition definition) throws RuleException, IOException {
+    void applyRule5_8(MXFInputStream value, RecordTypeDefinition definition) throws RuleException, IOException {
 
         if (definition.getIdentification().equals(AUID_UL)) {
 
             AUID auid = value.readAUID();
 
-            element.setTextContent(auid.toString());
+            addText(auid.toString());
 
-            appendCommentWithAUIDName(anameresolver, auid, element);
+            appendCommentWithAUIDName(anameresolver, auid);
 
         } else if (definition.getIdentification().equals(DateStruct_UL)) {
 
@@ -1346,20 +1718,20 @@ public class FragmentBuilder {
             int month = value.readUnsignedByte();
             int day = value.readUnsignedByte();
 
-            element.setTextContent(generateISO8601Date(year, month, day));
+            addText(generateISO8601Date(year, month, day));
 
         } else if (definition.getIdentification().equals(PackageID_UL)) {
 
             UMID umid = value.readUMID();
 
-            element.setTextContent(umid.toString());
+            addText(umid.toString());
 
         } else if (definition.getIdentification().equals(Rational_UL)) {
 
             int numerator = value.readInt();
             int denominator = value.readInt();
 
-            element.setTextContent(String.format("%d/%d", numerator, denominator));
+            addText(values.formatPair(numerator, '/', denominator));
 
         } else if (definition.getIdentification().equals(TimeStruct_UL)) {
 
@@ -1370,7 +1742,7 @@ public class FragmentBuilder {
             int second = value.readUnsignedByte();
             int fraction = value.readUnsignedByte();
 
-            element.setTextContent(generateISO8601Time(hour, minute, second, 4 * fraction));
+            addText(generateISO8601Time(hour, minute, second, 4 * fraction));
 
         } else if (definition.getIdentification().equals(TimeStamp_UL)) {
 
@@ -1382,7 +1754,7 @@ public class FragmentBuilder {
             int second = value.readUnsignedByte();
             int fraction = value.readUnsignedByte();
 
-            element.setTextContent(generateISO8601Date(year, month, day) + "T" + generateISO8601Time(hour, minute, second, 4 * fraction));
+            addText(values.formatTimeStamp(year, month, day, hour, minute, second, 4 * fraction));
 
         } else if (definition.getIdentification().equals(VersionType_UL)) {
 
@@ -1390,7 +1762,7 @@ public class FragmentBuilder {
             int major = value.readUnsignedByte();
             int minor = value.readUnsignedByte();
 
-            element.setTextContent(String.format("%d.%d", major, minor));
+            addText(values.formatPair(major, '.', minor));
 
         } else {
 
@@ -1398,52 +1770,42 @@ public class FragmentBuilder {
 
                 Definition itemdef = findBaseDefinition(defresolver.getDefinition(member.getType()));
 
-                Element elem = element.getOwnerDocument().createElementNS(definition.getNamespace().toString(), member.getName());
-
-                elem.setPrefix(getPrefix(definition.getNamespace()));
+                startElement(definition.getNamespace().toString(), member.getName());
 
-                applyRule5(elem, value, itemdef);
+                applyRule5(value, itemdef);
 
-                element.appendChild(elem);
+                endElement();
             }
         }
 
     }
 
-    void applyRule5_9(Element element, MXFInputStream value, RenameTypeDefinition definition) throws RuleException, IOException {
+    void applyRule5_9(MXFInputStream value, RenameTypeDefinition definition) throws RuleException, IOException {
 
         Definition rdef = defresolver.getDefinition(definition.getRenamedType());
 
-        applyRule5(element, value, rdef);
+        applyRule5(value, rdef);
 
     }
 
-    void applyRule5_10(Element element, MXFInputStream value, SetTypeDefinition definition) throws RuleException, IOException {
+    void applyRule5_10(MXFInputStream value, SetTypeDefinition definition) throws RuleException, IOException {
 
         Definition typedef = findBaseDefinition(defresolver.getDefinition(definition.getElementType()));
 
-        try {
-
-            DataInputStream dis = new DataInputStream(value);
-
-            long itemcount = dis.readInt() & 0xfffffffL;
-            long itemlength = dis.readInt() & 0xfffffffL;
+        long itemcount = values.readInt(value) & 0xfffffffL;
+        long itemlength = values.readInt(value) & 0xfffffffL;
 
-            applyCoreRule5_4(element, value, typedef, (int) itemcount);
-
-        } catch (UnsupportedEncodingException e) {
-            throw new RuntimeException(e);
-        }
+        applyCoreRule5_4(value, typedef, (int) itemcount);
 
     }
 
-    void applyRule5_11(Element element, MXFInputStream value, StreamTypeDefinition definition) throws RuleException {
+    void applyRule5_11(MXFInputStream value, StreamTypeDefinition definition) throws RuleException {
 
         throw new RuleException("Rule 5.11 is not supported yet.");
 
     }
 
-    void applyRule5_12(Element element, MXFInputStream value, StringTypeDefinition definition) throws RuleException, IOException {
+    void applyRule5_12(MXFInputStream value, StringTypeDefinition definition) throws RuleException, IOException {
 
         /* Rule 5.12 */
         Definition chrdef = findBaseDefinition(defresolver.getDefinition(definition.getElementType()));
@@ -1455,26 +1817,25 @@ public class FragmentBuilder {
 
             FragmentEvent evt = new FragmentEvent(
                 EventCodes.UNSUPPORTED_STRING_TYPE,
-                String.format(
+                LazyMessage.format(
                     "Unsupported String with Element %s",
                     chrdef.getSymbol()
                 ),
-                String.format(
+                LazyMessage.format(
                     "String %s at Element %s",
                     definition.getSymbol(),
-                    element.getLocalName()
+                    getElementName()
                 )
             );
 
             handleEvent(evt);
 
-            addInformativeComment(element, evt.getReason());
+            addInformativeComment(evt.reason);
 
             return;
         }
 
         readCharacters(
-            element,
             value,
             (CharacterTypeDefinition) chrdef,
             true /* remove trailing zeroes */
@@ -1482,7 +1843,7 @@ public class FragmentBuilder {
 
     }
 
-    void applyRule5_13(Element element, MXFInputStream value, StrongReferenceTypeDefinition definition) throws RuleException, IOException {
+    void applyRule5_13(MXFInputStream value, StrongReferenceTypeDefinition definition) throws RuleException, IOException {
 
         Definition typedef = findBaseDefinition(defresolver.getDefinition(definition.getReferenceType()));
 
@@ -1490,20 +1851,20 @@ public class FragmentBuilder {
 
             FragmentEvent evt = new FragmentEvent(
                 EventCodes.INVALID_STRONG_REFERENCE_TYPE,
-                String.format(
+                LazyMessage.format(
                     "Target %s of Strong Reference Type is not a class",
                     typedef.getSymbol()
                 ),
-                String.format(
+                LazyMessage.format(
                     "Type %s at Element %s",
                     definition.getSymbol(),
-                    element.getLocalName()
+                    getElementName()
                 )
             );
 
             handleEvent(evt);
 
-            addInformativeComment(element, evt.getReason());
+            addInformativeComment(evt.reason);
 
             return;
 
@@ -1515,96 +1876,64 @@ public class FragmentBuilder {
 
         if (g != null) {
 
-            applyRule3(element, g);
+            applyRule3(g);
 
         } else {
 
             FragmentEvent evt = new FragmentEvent(
                 EventCodes.STRONG_REFERENCE_NOT_FOUND,
-                String.format(
+                LazyMessage.format(
                     "Strong Reference target %s is not found",
-                    uuid.toString()
+                    uuid
                 ),
-                String.format(
+                LazyMessage.format(
                     "Type %s at Element %s",
                     definition.getSymbol(),
-                    element.getLocalName()
+                    getElementName()
                 )
             );
 
-            handleEvent(evt);
+            /* already reported if the Sets were validated */
+            if (graph == null) {
+                handleEvent(evt);
+            }
 
-            addInformativeComment(element, evt.getReason());
+            addInformativeComment(evt.reason);
 
         }
 
     }
 
-    void applyRule5_alpha(Element element, MXFInputStream value, FloatTypeDefinition definition) throws RuleException, IOException {
-
-        try {
-
-            DataInputStream dis = new DataInputStream(value);
+    void applyRule5_alpha(MXFInputStream value, FloatTypeDefinition definition) throws RuleException, IOException {
 
-            double val = 0;
+        double val = 0;
 
-            switch (definition.getSize()) {
-                case HALF:
-
-                    val = HalfFloat.toDouble(dis.readUnsignedShort());
-
-                    break;
-                case SINGLE:
-                    val = dis.readFloat();
-                    break;
-                case DOUBLE:
-                    val = dis.readDouble();
-                    break;
-            }
+        switch (definition.getSize()) {
+            case HALF:
 
-            element.setTextContent(Double.toString(val));
+                val = HalfFloat.toDouble(values.readUnsignedShort(value));
 
-        } catch (UnsupportedEncodingException e) {
-            throw new RuntimeException(e);
+                break;
+            case SINGLE:
+                val = Float.intBitsToFloat(values.readInt(value));
+                break;
+            case DOUBLE:
+                val = Double.longBitsToDouble(values.readLong(value));
+                break;
         }
 
+        addText(Double.toString(val));
+
     }
 
-    void applyRule5_beta(Element element, MXFInputStream value, LensSerialFloatTypeDefinition definition) throws RuleException {
+    void applyRule5_beta(MXFInputStream value, LensSerialFloatTypeDefinition definition) throws RuleException {
 
         throw new RuleException("Lens serial floats not supported.");
 
     }
 
     Definition findBaseDefinition(Definition definition) {
-
-        while (definition instanceof RenameTypeDefinition) {
-            definition = defresolver.getDefinition(((RenameTypeDefinition) definition).getRenamedType());
-        }
-
-        return definition;
-    }
-
-    private Collection<PropertyDefinition> getAllMembersOf(ClassDefinition definition) {
-        ClassDefinition cdef = definition;
-
-        ArrayList<PropertyDefinition> props = new ArrayList<>();
-
-        while (cdef != null) {
-
-            for (AUID auid : defresolver.getMembersOf(cdef)) {
-                props.add((PropertyDefinition) defresolver.getDefinition(auid));
-            }
-
-            if (cdef.getParentClass() != null) {
-                cdef = (ClassDefinition) defresolver.getDefinition(cdef.getParentClass());
-            } else {
-                cdef = null;
-            }
-
-        }
-
-        return props;
+        return defresolver.findBaseDefinition(definition);
     }
 
     final static char[] HEXMAP = "0123456789abcdef".toCharArray();
@@ -1623,14 +1952,12 @@ public class FragmentBuilder {
         return new String(out);
     }
 
-    void applyRule5_14(Element element, MXFInputStream value, VariableArrayTypeDefinition definition) throws RuleException, IOException {
+    void applyRule5_14(MXFInputStream value, VariableArrayTypeDefinition definition) throws RuleException, IOException {
 
         Definition typedef = findBaseDefinition(defresolver.getDefinition(definition.getElementType()));
 
         try {
 
-            DataInputStream dis = new DataInputStream(value);
-
             if (definition.getSymbol().equals("DataValue")) {
 
                 /* RULE 5.14.2 */
@@ -1639,7 +1966,7 @@ public class FragmentBuilder {
 
                 StringBuilder sb = new StringBuilder();
 
-                for (int sz = 0; (sz = dis.read(buffer)) > -1;) {
+                for (int sz = 0; (sz = value.read(buffer)) > -1;) {
 
                     for (int j = 0; j < sz; j++) {
 
@@ -1649,7 +1976,7 @@ public class FragmentBuilder {
                     }
                 }
 
-                element.setTextContent(sb.toString());
+                addText(sb.toString());
 
             } else {
 
@@ -1663,10 +1990,10 @@ public class FragmentBuilder {
 
                 } else {
 
-                    long itemcount = dis.readInt() & 0xfffffffL;
-                    long itemlength = dis.readInt() & 0xfffffffL;
+                    long itemcount = values.readInt(value) & 0xfffffffL;
+                    long itemlength = values.readInt(value) & 0xfffffffL;
 
-                    applyCoreRule5_4(element, value, typedef, (int) itemcount);
+                    applyCoreRule5_4(value, typedef, (int) itemcount);
                 }
 
             }
@@ -1679,59 +2006,51 @@ public class FragmentBuilder {
 
             FragmentEvent evt = new FragmentEvent(
                 EventCodes.VALUE_LENGTH_MISMATCH,
-                "Value too short",
-                String.format(
+                LazyMessage.of("Value too short"),
+                LazyMessage.format(
                     "Array %s at Element %s",
                     definition.getSymbol(),
-                    element.getLocalName()
+                    getElementName()
                 )
             );
 
             handleEvent(evt);
 
-            addInformativeComment(element, evt.getReason());
+            addInformativeComment(evt.reason);
 
         }
 
     }
 
-    void applyRule5_15(Element element, MXFInputStream value, WeakReferenceTypeDefinition typedefinition) throws RuleException {
+    void applyRule5_15(MXFInputStream value, WeakReferenceTypeDefinition typedefinition) throws RuleException {
 
         ClassDefinition classdef = (ClassDefinition) defresolver.getDefinition(typedefinition.getReferencedType());
 
-        PropertyDefinition uniquepropdef = null;
-
-        for (PropertyDefinition propdef : getAllMembersOf(classdef)) {
-
-            if (propdef.isUniqueIdentifier()) {
-                uniquepropdef = propdef;
-                break;
-            }
-        }
+        DecodePlanCache.PropertyPlan uniqueprop = defresolver.getClassPlan(classdef).getUniqueProperty();
 
-        if (uniquepropdef == null) {
+        if (uniqueprop == null) {
 
             FragmentEvent evt = new FragmentEvent(
                 EventCodes.MISSING_UNIQUE,
-                String.format(
+                LazyMessage.format(
                     "Weak reference target %s has no IsUnique element.",
                     classdef.getSymbol()
                 ),
-                String.format(
+                LazyMessage.format(
                     "Type %s at Element %s",
                     typedefinition.getSymbol(),
-                    element.getLocalName()
+                    getElementName()
                 )
             );
 
             handleEvent(evt);
 
-            addInformativeComment(element, evt.getReason());
+            addInformativeComment(evt.reason);
 
             return;
         }
 
-        applyRule4(element, value, uniquepropdef);
+        applyRule4(value, uniqueprop);
 
     }
 
@@ -0,0 +1,88 @@
+/*
+ * Copyright (c) 2014, Pierre-Anthony Lemieux (pal@sandflow.com)
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ *
+ * * Redistributions of source code must retain the above copyright notice, this
+ *   list of conditions and the following disclaimer.
+ * * Redistributions in binary form must reproduce the above copyright notice,
+ *   this list of conditions and the following disclaimer in the documentation
+ *   and/or other materials provided with the distribution.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ */
+package com.sandflow.smpte.regxml;
+
+import com.sandflow.util.events.LazyMessage;
+import java.io.IOException;
+
+/**
+ * Receives the RegXML Fragment generated by a {@link FragmentBuilder} as a
+ * sequence of events, allowing the Fragment to be written as it is generated
+ * instead of being built in memory. Events are received in document order:
+ * attributes of an element are received immediately after the element is
+ * started and before any of its content. The sink is not responsible for
+ * starting or ending the document that contains the Fragment.
+ */
+public interface FragmentSink {
+
+    /**
+     * Starts an element
+     *
+     * @param namespace Namespace of the element
+     * @param prefix Prefix associated with the namespace. A given prefix is
+     * always associated with the same namespace within a Fragment.
+     * @param localName Local name of the element
+     * @throws IOException
+     */
+    void startElement(String namespace, String prefix, String localName) throws IOException;
+
+    /**
+     * Adds an attribute to the element that was last started
+     *
+     * @param namespace Namespace of the attribute
+     * @param prefix Prefix associated with the namespace
+     * @param localName Local name of the attribute
+     * @param value Value of the attribute
+     * @throws IOException
+     */
+    void attribute(String namespace, String prefix, String localName, String value) throws IOException;
+
+    /**
+     * Adds text to the current element
+     *
+     * @param text Text content
+     * @throws IOException
+     */
+    void text(String text) throws IOException;
+
+    /**
+     * Adds an informative comment to the current element. The text of the
+     * comment is built, by calling its toString() method, only if the comment
+     * is written.
+     *
+     * @param comment Comment text
+     * @throws IOException
+     */
+    void comment(LazyMessage comment) throws IOException;
+
+    /**
+     * Ends the current element
+     *
+     * @throws IOException
+     */
+    void endElement() throws IOException;
+
+}
@@ -0,0 +1,249 @@
+/*
+ * Copyright (c) 2016, Pierre-Anthony Lemieux (pal@sandflow.com)
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ *
+ * * Redistributions of source code must retain the above copyright notice, this
+ *   list of conditions and the following disclaimer.
+ * * Redistributions in binary form must reproduce the above copyright notice,
+ *   this list of conditions and the following disclaimer in the documentation
+ *   and/or other materials provided with the distribution.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ */
+package com.sandflow.smpte.regxml;
+
+import com.sandflow.util.events.Event;
+import java.lang.management.ManagementFactory;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+import javax.management.JMException;
+import javax.management.ObjectName;
+
+/**
+ * Accumulates metrics in memory. Measurements can be forwarded to a parent,
+ * so that the metrics of a single conversion and the metrics aggregated
+ * across conversions are both available, e.g.
+ * <pre>
+ * InMemoryMetrics total = new InMemoryMetrics();
+ * total.registerMBean(new ObjectName("com.sandflow.regxmllib:type=Metrics"));
+ *
+ * for (...) {
+ *     InMemoryMetrics run = new InMemoryMetrics(total);
+ *     MXFFragmentBuilder.fromInputStream(..., run);
+ * }
+ * </pre>
+ * This class is thread-safe.
+ */
+public class InMemoryMetrics implements Metrics, MetricsMXBean {
+
+    private final InMemoryMetrics parent;
+
+    private final AtomicLongArray counters = new AtomicLongArray(Counter.values().length);
+    private final AtomicLongArray times = new AtomicLongArray(Stage.values().length);
+    private final ConcurrentHashMap<Enum<?>, AtomicLong> events = new ConcurrentHashMap<>();
+
+    /**
+     * Creates metrics without a parent
+     */
+    public InMemoryMetrics() {
+        this(null);
+    }
+
+    /**
+     * Creates metrics that forward all measurements to a parent
+     *
+     * @param parent Parent metrics. May be null.
+     */
+    public InMemoryMetrics(InMemoryMetrics parent) {
+        this.parent = parent;
+    }
+
+    @Override
+    public void add(Counter counter, long value) {
+        counters.addAndGet(counter.ordinal(), value);
+
+        if (parent != null) {
+            parent.add(counter, value);
+        }
+    }
+
+    @Override
+    public void addTime(Stage stage, long nanos) {
+        times.addAndGet(stage.ordinal(), nanos);
+
+        if (parent != null) {
+            parent.addTime(stage, nanos);
+        }
+    }
+
+    @Override
+    public void event(Event evt) {
+        AtomicLong count = events.get(evt.getCode());
+
+        if (count == null) {
+            AtomicLong existing = events.putIfAbsent(evt.getCode(), count = new AtomicLong());
+
+            if (existing != null) {
+                count = existing;
+            }
+        }
+
+        count.incrementAndGet();
+
+        if (parent != null) {
+            parent.event(evt);
+        }
+    }
+
+    /**
+     * @param counter Counter
+     * @return Value of the counter
+     */
+    public long getCount(Counter counter) {
+        return counters.get(counter.ordinal());
+    }
+
+    /**
+     * @param stage Stage
+     * @return Time spent in the stage, in nanoseconds
+     */
+    public long getTime(Stage stage) {
+        return times.get(stage.ordinal());
+    }
+
+    /**
+     * @param code Event code
+     * @return Number of events raised with the code
+     */
+    public long getEventCount(Enum<?> code) {
+        AtomicLong count = events.get(code);
+
+        return count == null ? 0 : count.get();
+    }
+
+    /**
+     * Registers the metrics with the platform MBean server
+     *
+     * @param name Name of the MBean
+     * @throws JMException
+     */
+    public void registerMBean(ObjectName name) throws JMException {
+        ManagementFactory.getPlatformMBeanServer().registerMBean(this, name);
+    }
+
+    @Override
+    public long getRuns() {
+        return getCount(Counter.RUNS);
+    }
+
+    @Override
+    public long getBytesRead() {
+        return getCount(Counter.BYTES_READ);
+    }
+
+    @Override
+    public long getTripletsRead() {
+        return getCount(Counter.TRIPLETS_READ);
+    }
+
+    @Override
+    public long getSetsDecoded() {
+        return getCount(Counter.SETS_DECODED);
+    }
+
+    @Override
+    public long getPropertiesDecoded() {
+        return getCount(Counter.PROPERTIES_DECODED);
+    }
+
+    @Override
+    public long getDefinitionHits() {
+        return getCount(Counter.DEFINITION_HITS);
+    }
+
+    @Override
+    public long getDefinitionMisses() {
+        return getCount(Counter.DEFINITION_MISSES);
+    }
+
+    @Override
+    public long getReadTime() {
+        return getTime(Stage.READ);
+    }
+
+    @Override
+    public long getValidateTime() {
+        return getTime(Stage.VALIDATE);
+    }
+
+    @Override
+    public long getBuildTime() {
+        return getTime(Stage.BUILD);
+    }
+
+    @Override
+    public Map<String, Long> getEventCounts() {
+        TreeMap<String, Long> counts = new TreeMap<>();
+
+        for (Map.Entry<Enum<?>, AtomicLong> entry : events.entrySet()) {
+            counts.put(
+                entry.getKey().getClass().getCanonicalName() + "::" + entry.getKey().toString(),
+                entry.getValue().get()
+            );
+        }
+
+        return counts;
+    }
+
+    /**
+     * Sets all counts and times to zero. The parent, if any, is not reset.
+     */
+    @Override
+    public void reset() {
+        for (int i = 0; i < counters.length(); i++) {
+            counters.set(i, 0);
+        }
+
+        for (int i = 0; i < times.length(); i++) {
+            times.set(i, 0);
+        }
+
+        events.clear();
+    }
+
+    @Override
+    public String toString() {
+        StringBuilder sb = new StringBuilder();
+
+        for (Counter counter : Counter.values()) {
+            sb.append(counter.name()).append('=').append(getCount(counter)).append(' ');
+        }
+
+        for (Stage stage : Stage.values()) {
+            sb.append(stage.name()).append("_MS=").append(getTime(stage) / 1000000).append(' ');
+        }
+
+        for (Map.Entry<String, Long> entry : getEventCounts().entrySet()) {
+            sb.append(entry.getKey()).append('=').append(entry.getValue()).append(' ');
+        }
+
+        return sb.toString().trim();
+    }
+
+}
@@ -26,46 +26,45 @@
 package com.sandflow.smpte.regxml;
 
 import com.sandflow.smpte.klv.Group;
-import com.sandflow.smpte.klv.KLVInputStream;
-import com.sandflow.smpte.klv.LocalSet;
-import com.sandflow.smpte.klv.LocalTagRegister;
-import com.sandflow.smpte.klv.Triplet;
 import com.sandflow.smpte.klv.exceptions.KLVException;
-import com.sandflow.smpte.mxf.FillItem;
-import com.sandflow.smpte.mxf.PartitionPack;
-import com.sandflow.smpte.mxf.PrimerPack;
+import com.sandflow.smpte.mxf.HeaderMetadataReader;
+import com.sandflow.smpte.mxf.KeyClassifier;
+import com.sandflow.smpte.mxf.PartitionMetadata;
 import com.sandflow.smpte.mxf.Set;
+import com.sandflow.smpte.mxf.SetMap;
+import com.sandflow.smpte.regxml.dict.ClassLattice;
 import com.sandflow.smpte.regxml.dict.DefinitionResolver;
 import com.sandflow.smpte.regxml.dict.definitions.ClassDefinition;
 import com.sandflow.smpte.regxml.dict.definitions.Definition;
 import com.sandflow.smpte.util.AUID;
+import com.sandflow.smpte.util.ByteSource;
 import com.sandflow.smpte.util.CountingInputStream;
 import com.sandflow.smpte.util.UL;
-import com.sandflow.smpte.util.UUID;
 import com.sandflow.util.events.BasicEvent;
 import com.sandflow.util.events.Event;
 import com.sandflow.util.events.EventHandler;
+import com.sandflow.util.events.LazyMessage;
+import com.sandflow.util.events.LoggingEventHandler;
 import java.io.IOException;
 import java.io.InputStream;
-import java.util.ArrayList;
-import java.util.HashMap;
-import java.util.Iterator;
+import java.util.Collections;
+import java.util.List;
 import java.util.logging.Logger;
 import org.w3c.dom.Document;
 import org.w3c.dom.DocumentFragment;
 
 /**
  * Builds a RegXML Fragment (SMPTE ST 2001-1) from an MXF file (SMPTE ST 377-1).
+ * 
+ * The methods of this class can be called concurrently, e.g. to process several
+ * files in parallel against the same DefinitionResolver, provided the
+ * DefinitionResolver and AUIDNameResolver are not modified in the meantime.
  */
 public class MXFFragmentBuilder {
 
     private final static Logger LOG = Logger.getLogger(MXFFragmentBuilder.class.getName());
 
-    private static final UL INDEX_TABLE_SEGMENT_UL
-        = UL.fromURN("urn:smpte:ul:060e2b34.02530101.0d010201.01100100");
-
-    private static final UL PREFACE_KEY
-        = UL.fromURN("urn:smpte:ul:060e2b34.027f0101.0d010101.01012f00");
+    private static final KeyClassifier<KeyClassifier.MXFKey> KEYS = KeyClassifier.createMXFClassifier();
 
     /**
      * Defines all events raised by this class
@@ -110,6 +109,16 @@ public class MXFFragmentBuilder {
             super(kind.severity, kind, message);
         }
 
+        /**
+         * Creates an event whose message is only built if requested
+         *
+         * @param kind Kind of event
+         * @param message Describes the event
+         */
+        public MXFEvent(EventCodes kind, LazyMessage message) {
+            super(kind.severity, kind, message);
+        }
+
     }
 
     static void handleEvent(EventHandler handler, com.sandflow.util.events.Event evt) throws MXFException {
@@ -192,25 +201,7 @@ public class MXFFragmentBuilder {
         UL rootclasskey,
         Document document) throws IOException, KLVException, MXFException, FragmentBuilder.RuleException {
         
-        EventHandler handler = new EventHandler() {
-
-                @Override
-                public boolean handle(Event evt) {
-                    switch (evt.getSeverity()) {
-                        case ERROR:
-                        case FATAL:
-                            LOG.severe(evt.getMessage());
-                            break;
-                        case INFO:
-                            LOG.info(evt.getMessage());
-                            break;
-                        case WARN:
-                            LOG.warning(evt.getMessage());
-                    }
-
-                    return true;
-                }
-            };
+        EventHandler handler = new LoggingEventHandler(LOG);
 
         return fromInputStream(mxfpartition,
             defresolver,
@@ -223,7 +214,12 @@ public class MXFFragmentBuilder {
     /**
      * Returns a DOM Document Fragment containing a RegXML Fragment rooted at
      * the first Header Metadata object with a class that descends from the
-     * specified class.
+     * specified class. The Values of the Triplets that precede the Partition
+     * Pack are skipped using InputStream.skip(), which avoids reading them
+     * if mxfpartition is a {@link com.sandflow.smpte.util.ChannelByteSource} or a
+     * {@link com.sandflow.smpte.klv.SeekableKLVInputStream}. The Strong
+     * References of the Sets rendered in the Fragment are checked using
+     * {@link StrongReferenceGraph} before the Fragment is created.
      *
      * @param mxfpartition MXF partition, including the Partition Pack. Must not be null.
      * @param defresolver MetaDictionary definitions. Must not be null.
@@ -249,213 +245,530 @@ public class MXFFragmentBuilder {
         Document document
     ) throws IOException, KLVException, MXFException, FragmentBuilder.RuleException {
 
-        CountingInputStream cis = new CountingInputStream(mxfpartition);
+        return fromInputStream(mxfpartition,
+            defresolver,
+            enumnameresolver,
+            evthandler,
+            rootclasskey,
+            document,
+            Metrics.NONE);
+    }
+
+    /**
+     * Returns a DOM Document Fragment containing a RegXML Fragment rooted at
+     * the first Header Metadata object with a class that descends from the
+     * specified class, and reports to metrics the bytes read, the Triplets,
+     * Sets and properties decoded, the dictionary lookups, the events raised
+     * and the time spent in each stage.
+     *
+     * @param mxfpartition MXF partition, including the Partition Pack. Must not be null.
+     * @param defresolver MetaDictionary definitions. Must not be null.
+     * @param enumnameresolver Allows the local name of extendible enumeration
+     * values to be inserted as comments. May be null.
+     * @param evthandler Calls back the caller when an event occurs. Must not be null.
+     * @param rootclasskey Root class of Fragment. The Preface class is used if null.
+     * @param document DOM for which the Document Fragment is created. Must not be null.
+     * @param metrics Receives measurements. Must not be null.
+     *
+     * @return Document Fragment containing a single RegXML Fragment
+     *
+     * @throws IOException
+     * @throws KLVException
+     * @throws com.sandflow.smpte.regxml.MXFFragmentBuilder.MXFException
+     * @throws com.sandflow.smpte.regxml.FragmentBuilder.RuleException
+     */
+    public static DocumentFragment fromInputStream(
+        InputStream mxfpartition,
+        DefinitionResolver defresolver,
+        FragmentBuilder.AUIDNameResolver enumnameresolver,
+        EventHandler evthandler,
+        UL rootclasskey,
+        Document document,
+        Metrics metrics
+    ) throws IOException, KLVException, MXFException, FragmentBuilder.RuleException {
 
-        /* look for the partition pack */
-        KLVInputStream kis = new KLVInputStream(cis);
+        DocumentFragment df = document.createDocumentFragment();
 
-        PartitionPack pp = null;
+        fromInputStream(mxfpartition,
+            defresolver,
+            enumnameresolver,
+            evthandler,
+            rootclasskey,
+            new DOMFragmentSink(df),
+            metrics);
 
-        for (Triplet t; (t = kis.readTriplet()) != null;) {
+        return df;
+    }
 
-            if ((pp = PartitionPack.fromTriplet(t)) != null) {
-                break;
-            }
+    /**
+     * Writes a RegXML Fragment rooted at the first Header Metadata object
+     * with a class that descends from the specified class to a sink. The
+     * Header Metadata is read in its entirety, and the Strong References
+     * of the Sets rendered in the Fragment checked, before it is written. The Values of the Triplets that precede the Partition Pack are skipped
+     * using InputStream.skip().
+     *
+     * @param mxfpartition MXF partition, including the Partition Pack. Must not be null.
+     * @param defresolver MetaDictionary definitions. Must not be null.
+     * @param enumnameresolver Allows the local name of extendible enumeration
+     * values to be inserted as comments. May be null.
+     * @param evthandler Calls back the caller when an event occurs. Must not be null.
+     * @param rootclasskey Root class of Fragment. The Preface class is used if null.
+     * @param sink Sink to which the RegXML Fragment is written. Must not be null.
+     *
+     * @throws IOException
+     * @throws KLVException
+     * @throws com.sandflow.smpte.regxml.MXFFragmentBuilder.MXFException
+     * @throws com.sandflow.smpte.regxml.FragmentBuilder.RuleException
+     */
+    public static void fromInputStream(
+        InputStream mxfpartition,
+        DefinitionResolver defresolver,
+        FragmentBuilder.AUIDNameResolver enumnameresolver,
+        EventHandler evthandler,
+        UL rootclasskey,
+        FragmentSink sink
+    ) throws IOException, KLVException, MXFException, FragmentBuilder.RuleException {
+
+        fromInputStream(mxfpartition,
+            defresolver,
+            enumnameresolver,
+            evthandler,
+            rootclasskey,
+            sink,
+            Metrics.NONE);
+    }
+
+    /**
+     * Writes a RegXML Fragment rooted at the first Header Metadata object
+     * with a class that descends from the specified class to a sink, and
+     * reports to metrics the bytes read, the Triplets, Sets and properties
+     * decoded, the dictionary lookups, the events raised and the time spent
+     * in each stage.
+     *
+     * @param mxfpartition MXF partition, including the Partition Pack. Must not be null.
+     * @param defresolver MetaDictionary definitions. Must not be null.
+     * @param enumnameresolver Allows the local name of extendible enumeration
+     * values to be inserted as comments. May be null.
+     * @param evthandler Calls back the caller when an event occurs. Must not be null.
+     * @param rootclasskey Root class of Fragment. The Preface class is used if null.
+     * @param sink Sink to which the RegXML Fragment is written. Must not be null.
+     * @param metrics Receives measurements. Must not be null.
+     *
+     * @throws IOException
+     * @throws KLVException
+     * @throws com.sandflow.smpte.regxml.MXFFragmentBuilder.MXFException
+     * @throws com.sandflow.smpte.regxml.FragmentBuilder.RuleException
+     */
+    public static void fromInputStream(
+        InputStream mxfpartition,
+        DefinitionResolver defresolver,
+        FragmentBuilder.AUIDNameResolver enumnameresolver,
+        EventHandler evthandler,
+        UL rootclasskey,
+        FragmentSink sink,
+        Metrics metrics
+    ) throws IOException, KLVException, MXFException, FragmentBuilder.RuleException {
+
+        EventHandler handler = countEvents(evthandler, metrics);
+
+        metrics.add(Metrics.Counter.RUNS, 1);
+
+        long start = System.nanoTime();
+
+        /* the same decode plans are used to read, validate and render the sets */
+        DecodePlanCache plans = DecodePlanCache.of(defresolver);
+
+        SetMap setresolver = new SetMap();
+
+        Group rootgroup = readHeaderMetadata(mxfpartition, plans, handler, rootclasskey, setresolver, metrics);
+
+        long read = System.nanoTime();
+
+        metrics.addTime(Metrics.Stage.READ, read - start);
+
+        StrongReferenceGraph graph = validateHeaderMetadata(setresolver, plans, handler, rootgroup);
+
+        metrics.addTime(Metrics.Stage.VALIDATE, System.nanoTime() - read);
+
+        /* the FragmentBuilder reports its own events */
+        FragmentBuilder fb = new FragmentBuilder(plans, graph, enumnameresolver, evthandler, metrics);
+
+        fb.fromTriplet(rootgroup, sink);
+    }
+
+    /**
+     * Writes a RegXML Fragment rooted at the first Header Metadata object
+     * with a class that descends from the specified class to a sink, using the
+     * Header Metadata of a partition that has already been read, e.g. by
+     * {@link PartitionMetadata#readAll(java.nio.channels.FileChannel, java.util.concurrent.ExecutorService, com.sandflow.util.events.EventHandler)},
+     * and reports to metrics the Sets decoded, the dictionary lookups, the
+     * events raised and the time spent in each stage. The Groups of the
+     * partition are not read again.
+     *
+     * @param partition Partition whose Header Metadata is used. Must not be null.
+     * @param defresolver MetaDictionary definitions. Must not be null.
+     * @param enumnameresolver Allows the local name of extendible enumeration
+     * values to be inserted as comments. May be null.
+     * @param evthandler Calls back the caller when an event occurs. Must not be null.
+     * @param rootclasskey Root class of Fragment. The Preface class is used if null.
+     * @param sink Sink to which the RegXML Fragment is written. Must not be null.
+     * @param metrics Receives measurements. Must not be null.
+     *
+     * @throws KLVException
+     * @throws com.sandflow.smpte.regxml.MXFFragmentBuilder.MXFException
+     * @throws com.sandflow.smpte.regxml.FragmentBuilder.RuleException
+     */
+    public static void fromPartitionMetadata(
+        PartitionMetadata partition,
+        DefinitionResolver defresolver,
+        FragmentBuilder.AUIDNameResolver enumnameresolver,
+        EventHandler evthandler,
+        UL rootclasskey,
+        FragmentSink sink,
+        Metrics metrics
+    ) throws KLVException, MXFException, FragmentBuilder.RuleException {
+
+        EventHandler handler = countEvents(evthandler, metrics);
+
+        metrics.add(Metrics.Counter.RUNS, 1);
+
+        long start = System.nanoTime();
+
+        /* the same decode plans are used to collect, validate and render the sets */
+        DecodePlanCache plans = DecodePlanCache.of(defresolver);
+
+        List<Group> groups = partition.getHeaderMetadata() == null
+            ? Collections.<Group>emptyList() : partition.getHeaderMetadata();
+
+        SetMap setresolver = new SetMap(groups.size());
+
+        HeaderMetadataCollector collector = new HeaderMetadataCollector(plans, handler, rootclasskey, setresolver);
+
+        for (Group g : groups) {
+            collector.add(g);
         }
 
-        if (pp == null) {
+        metrics.add(Metrics.Counter.TRIPLETS_READ, groups.size());
+        metrics.add(Metrics.Counter.SETS_DECODED, collector.setcount);
+
+        if (partition.isIndexTableReached()) {
 
             MXFEvent evt = new MXFEvent(
-                EventCodes.MISSING_PARTITION_PACK,
-                "No Partition Pack found"
+                EventCodes.UNEXPECTED_STRUCTURE,
+                "Index Table Segment encountered before Header Byte Count bytes read"
             );
 
-            handleEvent(evthandler, evt);
+            handleEvent(handler, evt);
 
         }
 
-        /* start counting header metadata bytes */
-        cis.resetCount();
+        Group rootgroup = collector.getRootGroup();
 
-        /* look for the primer pack */
-        LocalTagRegister localreg = null;
+        long read = System.nanoTime();
 
-        for (Triplet t; (t = kis.readTriplet()) != null; cis.resetCount()) {
+        metrics.addTime(Metrics.Stage.READ, read - start);
 
-            /* skip fill items, if any */
-            if (!t.getKey().equalsIgnoreVersion(FillItem.getKey())) {
-                localreg = PrimerPack.createLocalTagRegister(t);
-                break;
-            }
+        StrongReferenceGraph graph = validateHeaderMetadata(setresolver, plans, handler, rootgroup);
+
+        metrics.addTime(Metrics.Stage.VALIDATE, System.nanoTime() - read);
+
+        /* the FragmentBuilder reports its own events */
+        FragmentBuilder fb = new FragmentBuilder(plans, graph, enumnameresolver, evthandler, metrics);
+
+        fb.fromTriplet(rootgroup, sink);
+    }
+
+    /* forwards events to the metrics before the handler */
+    private static EventHandler countEvents(final EventHandler evthandler, final Metrics metrics) {
 
+        if (metrics == Metrics.NONE) {
+            return evthandler;
         }
 
-        if (localreg == null) {
+        return new EventHandler() {
 
-            MXFEvent evt = new MXFEvent(
-                EventCodes.MISSING_PRIMER_PACK,
-                "No Primer Pack found"
-            );
+            @Override
+            public boolean handle(Event evt) {
 
-            handleEvent(evthandler, evt);
+                metrics.event(evt);
+
+                if (evthandler == null) {
+
+                    /* die on FATAL and ERROR events, as if no event handler was provided */
+                    return evt.getSeverity() != Event.Severity.ERROR
+                        && evt.getSeverity() != Event.Severity.FATAL;
+
+                }
+
+                return evthandler.handle(evt);
+            }
+        };
+    }
+
+    /* checks the strong references of the header metadata sets rendered
+     from the root set */
+    private static StrongReferenceGraph validateHeaderMetadata(
+        SetMap setresolver,
+        DefinitionResolver defresolver,
+        final EventHandler evthandler,
+        Group rootgroup
+    ) throws FragmentBuilder.RuleException {
+
+        StrongReferenceGraph graph = new StrongReferenceGraph(setresolver, defresolver);
+
+        if (rootgroup == null) {
+            return graph;
         }
 
-        /* capture all local sets within the header metadata */
-        ArrayList<Group> gs = new ArrayList<>();
-        HashMap<UUID, Set> setresolver = new HashMap<>();
+        /* the event that stopped the validation, if any */
+        final Event[] last = new Event[1];
 
-        for (Triplet t;
-            cis.getCount() < pp.getHeaderByteCount()
-            && (t = kis.readTriplet()) != null;) {
+        EventHandler handler = new EventHandler() {
 
-            if (t.getKey().equalsIgnoreVersion(INDEX_TABLE_SEGMENT_UL)) {
+            @Override
+            public boolean handle(Event evt) {
 
-                /* stop if Index Table reached */
-                MXFEvent evt = new MXFEvent(
-                    EventCodes.UNEXPECTED_STRUCTURE,
-                    "Index Table Segment encountered before Header Byte Count bytes read"
-                );
+                last[0] = evt;
 
-                handleEvent(evthandler, evt);
+                if (evthandler == null) {
 
-                break;
+                    /* die on FATAL and ERROR events, as if no event handler was provided */
+                    return evt.getSeverity() != Event.Severity.ERROR
+                        && evt.getSeverity() != Event.Severity.FATAL;
 
-            } else if (t.getKey().equalsIgnoreVersion(FillItem.getKey())) {
+                }
 
-                /* skip fill items */
-                continue;
+                return evthandler.handle(evt);
             }
+        };
 
-            try {
-                Group g = LocalSet.fromTriplet(t, localreg);
+        if (!graph.validate(rootgroup, handler)) {
 
-                if (g != null) {
+            /* as if the FragmentBuilder had encountered the event */
+            throw new FragmentBuilder.RuleException(last[0].getMessage());
 
-                    gs.add(g);
+        }
 
-                    Set set = Set.fromGroup(g);
+        return graph;
+    }
 
-                    if (set != null) {
-                        setresolver.put(set.getInstanceID(), set);
-                    }
+    /* reads the header metadata sets into setresolver and returns the root set */
+    private static Group readHeaderMetadata(
+        InputStream mxfpartition,
+        DefinitionResolver defresolver,
+        EventHandler evthandler,
+        UL rootclasskey,
+        SetMap setresolver,
+        Metrics metrics
+    ) throws IOException, KLVException, MXFException {
 
-                } else {
+        /* count the bytes read using the position of the source, if available */
+        ByteSource src = mxfpartition instanceof ByteSource || metrics == Metrics.NONE
+            ? null : new CountingInputStream(mxfpartition);
 
-                    MXFEvent evt = new MXFEvent(
-                        EventCodes.GROUP_READ_FAILED,
-                        String.format(
-                            "Failed to read Group: {0}",
-                            t.getKey().toString()
-                        )
-                    );
+        if (src == null && mxfpartition instanceof ByteSource) {
+            src = (ByteSource) mxfpartition;
+        }
 
-                    handleEvent(evthandler, evt);
+        long startposition = src == null ? 0 : src.position();
+
+        HeaderMetadataReader reader = new HeaderMetadataReader(src == null ? mxfpartition : src);
+
+        if (reader.getLocalTagRegister() == null) {
+
+            MXFEvent evt = new MXFEvent(
+                EventCodes.MISSING_PRIMER_PACK,
+                "No Primer Pack found"
+            );
+
+            handleEvent(evthandler, evt);
+        }
+
+        HeaderMetadataCollector collector = new HeaderMetadataCollector(defresolver, evthandler, rootclasskey, setresolver);
+
+        long tripletcount = 0;
+
+        while (true) {
 
+            Group g;
+
+            try {
+
+                if ((g = reader.next()) == null) {
+                    break;
                 }
+
             } catch (KLVException ke) {
 
+                tripletcount++;
+
                 MXFEvent evt = new MXFEvent(
                     EventCodes.GROUP_READ_FAILED,
-                    String.format(
-                        "Failed to read Group %s with error %s",
-                        t.getKey().toString(),
-                        ke.getMessage()
-                    )
+                    ke.getMessage()
                 );
 
                 handleEvent(evthandler, evt);
 
+                continue;
             }
+
+            tripletcount++;
+
+            collector.add(g);
         }
 
-        for (Group agroup : gs) {
+        metrics.add(Metrics.Counter.TRIPLETS_READ, tripletcount);
+        metrics.add(Metrics.Counter.SETS_DECODED, collector.setcount);
 
-            /* in MXF, the first header metadata set should be the 
-             Preface set according to ST 377-1 Section 9.5.1, preceded
-             by Class 14 groups
-             */
-            if (agroup.getKey().equalsWithMask(PREFACE_KEY, 0b1111101011111111 /* ignore version and Group coding */)) {
+        if (src != null) {
+            metrics.add(Metrics.Counter.BYTES_READ, src.position() - startposition);
+        }
 
-                break;
+        if (reader.isIndexTableReached()) {
 
-            } else if (!agroup.getKey().isClass14()) {
+            MXFEvent evt = new MXFEvent(
+                EventCodes.UNEXPECTED_STRUCTURE,
+                "Index Table Segment encountered before Header Byte Count bytes read"
+            );
 
-                MXFEvent evt = new MXFEvent(
-                    EventCodes.UNEXPECTED_STRUCTURE,
-                    String.format(
-                        "At least one non-class 14 Set %s was found between"
-                        + " the Primer Pack and the Preface Set.",
-                        agroup.getKey()
-                    )
-                );
+            handleEvent(evthandler, evt);
 
-                handleEvent(evthandler, evt);
+        }
 
-                break;
+        return collector.getRootGroup();
 
-            }
+    }
+
+    /* adds header metadata groups to a set map and finds the root group */
+    private static class HeaderMetadataCollector {
+
+        private final DefinitionResolver defresolver;
+        private final EventHandler evthandler;
+        private final UL rootclasskey;
+        private final SetMap setresolver;
+        private final ClassLattice lattice;
+        private final int rootclassid;
+
+        /* in MXF, the first header metadata set should be the 
+         Preface set according to ST 377-1 Section 9.5.1, preceded
+         by Class 14 groups
+         */
+        private boolean beforePreface = true;
 
+        private Group rootgroup;
+
+        long setcount;
+
+        HeaderMetadataCollector(DefinitionResolver defresolver, EventHandler evthandler, UL rootclasskey, SetMap setresolver) {
+            this.defresolver = defresolver;
+            this.evthandler = evthandler;
+            this.rootclasskey = rootclasskey;
+            this.setresolver = setresolver;
+
+            /* use the class lattice, if one is available, to find the root object */
+            this.lattice = defresolver instanceof DecodePlanCache
+                ? ((DecodePlanCache) defresolver).getClassLattice() : null;
+
+            this.rootclassid = lattice == null || rootclasskey == null ? -1
+                : lattice.getId(rootclasskey.getMostSignificantBits(), rootclasskey.getLeastSignificantBits());
         }
 
-        /* create the fragment */
-        FragmentBuilder fb = new FragmentBuilder(defresolver, setresolver, enumnameresolver, evthandler);
+        void add(Group g) throws MXFException {
+
+            Set set = Set.fromGroup(g);
+
+            if (set != null) {
+                setresolver.add(set);
+
+                setcount++;
+            }
+
+            if (beforePreface) {
 
-        Group rootgroup = null;
+                if (KEYS.classify(g.getKey()) == KeyClassifier.MXFKey.PREFACE) {
 
-        if (rootclasskey != null) {
+                    beforePreface = false;
 
-            Iterator<Group> iter = gs.iterator();
+                } else if (!g.getKey().isClass14()) {
 
-            /* find first essence descriptor */
-            while (rootgroup == null && iter.hasNext()) {
+                    MXFEvent evt = new MXFEvent(
+                        EventCodes.UNEXPECTED_STRUCTURE,
+                        LazyMessage.format(
+                            "At least one non-class 14 Set %s was found between"
+                            + " the Primer Pack and the Preface Set.",
+                            g.getKey()
+                        )
+                    );
 
-                Group g = iter.next();
+                    handleEvent(evthandler, evt);
 
-                AUID gid = new AUID(g.getKey());
+                    beforePreface = false;
 
-                /* go up the class hierarchy */
-                while (rootgroup == null && gid != null) {
+                }
+            }
 
-                    Definition def = defresolver.getDefinition(gid);
+            if (rootgroup == null) {
 
-                    /* skip if not a class instance */
-                    if (!(def instanceof ClassDefinition)) {
-                        break;
-                    }
+                if (rootclasskey == null) {
+                    rootgroup = g;
+                } else if (rootclassid >= 0) {
 
-                    /* is it an instance of the requested root object */
-                    UL gul = def.getIdentification().asUL();
+                    int classid = lattice.getId(g.getKey().getMostSignificantBits(), g.getKey().getLeastSignificantBits());
 
-                    if (gul.equalsWithMask(rootclasskey, 0b1111101011111111 /* ignore version and Group coding */)) {
+                    if (lattice.isSubclassOf(classid, rootclassid)) {
                         rootgroup = g;
-
-                    } else {
-                        /* get parent class */
-                        gid = ((ClassDefinition) def).getParentClass();
                     }
-                }
 
+                } else if (isInstanceOf(g, rootclasskey, defresolver)) {
+                    rootgroup = g;
+                }
             }
+        }
+
+        Group getRootGroup() throws MXFException {
+
+            if (rootgroup == null) {
+
+                MXFEvent evt = new MXFEvent(
+                    EventCodes.MISSING_ROOT_OBJECT,
+                    "No Root Object found"
+                );
 
-        } else {
+                handleEvent(evthandler, evt);
 
-            rootgroup = gs.get(0);
+            }
 
+            return rootgroup;
         }
+    }
 
-        if (rootgroup == null) {
+    /* is the group an instance of the class, or of one of its subclasses */
+    private static boolean isInstanceOf(Group g, UL classkey, DefinitionResolver defresolver) {
 
-            MXFEvent evt = new MXFEvent(
-                EventCodes.MISSING_ROOT_OBJECT,
-                "No Root Object found"
-            );
+        AUID gid = new AUID(g.getKey());
 
-            handleEvent(evthandler, evt);
+        /* go up the class hierarchy */
+        while (gid != null) {
 
-        }
+            Definition def = defresolver.getDefinition(gid);
+
+            /* skip if not a class instance */
+            if (!(def instanceof ClassDefinition)) {
+                break;
+            }
 
-        return fb.fromTriplet(rootgroup, document);
+            /* is it an instance of the requested root object */
+            UL gul = def.getIdentification().asUL();
+
+            if (gul.equalsWithMask(classkey, 0b1111101011111111 /* ignore version and Group coding */)) {
+                return true;
+            }
+
+            /* get parent class */
+            gid = ((ClassDefinition) def).getParentClass();
+        }
 
+        return false;
     }
 
     public static class MXFException extends Exception {
@@ -0,0 +1,143 @@
+/*
+ * Copyright (c) 2016, Pierre-Anthony Lemieux (pal@sandflow.com)
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ *
+ * * Redistributions of source code must retain the above copyright notice, this
+ *   list of conditions and the following disclaimer.
+ * * Redistributions in binary form must reproduce the above copyright notice,
+ *   this list of conditions and the following disclaimer in the documentation
+ *   and/or other materials provided with the distribution.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ */
+package com.sandflow.smpte.regxml;
+
+import com.sandflow.util.events.Event;
+
+/**
+ * Receives measurements from the stages of the conversion of MXF Header
+ * Metadata to a RegXML Fragment, i.e. {@link MXFFragmentBuilder} and
+ * {@link FragmentBuilder}. Implementations must be thread-safe if they are
+ * shared by conversions that run concurrently.
+ *
+ * @see InMemoryMetrics
+ */
+public interface Metrics {
+
+    /**
+     * Stages of a conversion
+     */
+    public static enum Stage {
+
+        /**
+         * Reading of the partition and decoding of the Local Sets
+         */
+        READ,
+
+        /**
+         * Validation of the Strong References between Sets
+         */
+        VALIDATE,
+
+        /**
+         * Generation of the RegXML Fragment
+         */
+        BUILD
+    }
+
+    /**
+     * Quantities counted during a conversion
+     */
+    public static enum Counter {
+
+        /**
+         * Conversions started
+         */
+        RUNS,
+
+        /**
+         * Bytes read from the MXF partition
+         */
+        BYTES_READ,
+
+        /**
+         * Header Metadata Triplets read, excluding Fill Items
+         */
+        TRIPLETS_READ,
+
+        /**
+         * Sets decoded from Local Sets
+         */
+        SETS_DECODED,
+
+        /**
+         * Properties written to the RegXML Fragment
+         */
+        PROPERTIES_DECODED,
+
+        /**
+         * Group and property Keys found in the dictionaries
+         */
+        DEFINITION_HITS,
+
+        /**
+         * Group and property Keys not found in the dictionaries
+         */
+        DEFINITION_MISSES
+    }
+
+    /**
+     * Metrics that discards all measurements
+     */
+    public static final Metrics NONE = new Metrics() {
+
+        @Override
+        public void add(Counter counter, long value) {
+        }
+
+        @Override
+        public void addTime(Stage stage, long nanos) {
+        }
+
+        @Override
+        public void event(Event evt) {
+        }
+    };
+
+    /**
+     * Increments a counter
+     *
+     * @param counter Counter
+     * @param value Increment
+     */
+    public void add(Counter counter, long value);
+
+    /**
+     * Records time spent in a stage
+     *
+     * @param stage Stage
+     * @param nanos Elapsed time in nanoseconds
+     */
+    public void addTime(Stage stage, long nanos);
+
+    /**
+     * Records an event raised during a conversion
+     *
+     * @param evt Event
+     */
+    public void event(Event evt);
+
+}
@@ -0,0 +1,671 @@
+/*
+ * Copyright (c) 2016, Pierre-Anthony Lemieux (pal@sandflow.com)
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ *
+ * * Redistributions of source code must retain the above copyright notice, this
+ *   list of conditions and the following disclaimer.
+ * * Redistributions in binary form must reproduce the above copyright notice,
+ *   this list of conditions and the following disclaimer in the documentation
+ *   and/or other materials provided with the distribution.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ */
+package com.sandflow.smpte.regxml;
+
+import com.sandflow.smpte.klv.Group;
+import com.sandflow.smpte.klv.Triplet;
+import com.sandflow.smpte.mxf.MXFInputStream;
+import com.sandflow.smpte.mxf.Set;
+import com.sandflow.smpte.mxf.SetMap;
+import com.sandflow.smpte.regxml.dict.DefinitionResolver;
+import com.sandflow.smpte.regxml.dict.definitions.ClassDefinition;
+import com.sandflow.smpte.regxml.dict.definitions.Definition;
+import com.sandflow.smpte.regxml.dict.definitions.FixedArrayTypeDefinition;
+import com.sandflow.smpte.regxml.dict.definitions.SetTypeDefinition;
+import com.sandflow.smpte.regxml.dict.definitions.StrongReferenceTypeDefinition;
+import com.sandflow.smpte.regxml.dict.definitions.VariableArrayTypeDefinition;
+import com.sandflow.smpte.util.AUID;
+import com.sandflow.smpte.util.UUID;
+import com.sandflow.util.events.BasicEvent;
+import com.sandflow.util.events.Event;
+import com.sandflow.util.events.EventHandler;
+import com.sandflow.util.events.LazyMessage;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Graph of the Strong References between the Sets of a Header Metadata
+ * instance. The Strong Reference properties of each Set, including Sets and
+ * Arrays of Strong References, are decoded once when the graph is created, and
+ * {@link #validate(com.sandflow.smpte.util.UUID, com.sandflow.util.events.EventHandler)}
+ * checks the graph in time linear in the number of Sets and references, without
+ * generating any XML.
+ *
+ * Once validated from a root Set, the graph can be rendered from the same root
+ * Set using
+ * {@link FragmentBuilder#FragmentBuilder(com.sandflow.smpte.regxml.dict.DefinitionResolver, com.sandflow.smpte.regxml.StrongReferenceGraph, com.sandflow.smpte.regxml.FragmentBuilder.AUIDNameResolver, com.sandflow.util.events.EventHandler)}.
+ */
+public final class StrongReferenceGraph {
+
+    /**
+     * Defines the events returned by
+     * {@link #validateAll(com.sandflow.smpte.util.UUID, com.sandflow.util.events.EventHandler)}
+     */
+    public static enum EventCodes {
+
+        /**
+         * Raised when a Set references, directly or not, one of the Sets that
+         * reference it
+         */
+        CIRCULAR_STRONG_REFERENCE(Event.Severity.WARN),
+        /**
+         * Raised when the target of a Strong Reference is not found
+         */
+        STRONG_REFERENCE_NOT_FOUND(Event.Severity.WARN),
+        /**
+         * Raised when a Set is the target of more than one Strong Reference
+         */
+        MULTIPLE_STRONG_REFERENCES(Event.Severity.INFO),
+        /**
+         * Raised when a Set other than the root Set is not the target of any
+         * Strong Reference
+         */
+        UNREFERENCED_SET(Event.Severity.INFO);
+
+        public final Event.Severity severity;
+
+        private EventCodes(Event.Severity severity) {
+            this.severity = severity;
+        }
+
+    }
+
+    /**
+     * All events raised by this class are instances of this class
+     */
+    public static class GraphEvent extends BasicEvent {
+
+        final LazyMessage reason;
+        final LazyMessage where;
+
+        public GraphEvent(EventCodes kind, String reason, String where) {
+            this(kind, LazyMessage.of(reason), LazyMessage.of(where));
+        }
+
+        /**
+         * Creates an event whose message is only built if requested
+         *
+         * @param kind Kind of event
+         * @param reason Describes the event
+         * @param where Location of the event, or null
+         */
+        public GraphEvent(EventCodes kind, final LazyMessage reason, final LazyMessage where) {
+            super(kind.severity, kind, new LazyMessage() {
+
+                @Override
+                protected String build() {
+                    return reason + (where != null ? " at " + where : "");
+                }
+            });
+
+            this.reason = reason;
+            this.where = where;
+        }
+
+        public String getReason() {
+            return reason.toString();
+        }
+
+        public String getWhere() {
+            return where == null ? null : where.toString();
+        }
+
+    }
+
+    private static final int UNVISITED = 0;
+    private static final int ON_PATH = 1;
+    private static final int VISITED = 2;
+
+    private final Map<UUID, Set> sets;
+    private final DecodePlanCache plans;
+
+    /* Sets are numbered in the iteration order of the map */
+    private final SetMap ids;
+    private final Set[] nodes;
+
+    /* targets of the Strong References of each Set, in the order of its items */
+    private final UUID[][] targets;
+    private final int[] ownercount;
+
+    /**
+     * Creates the graph of the Strong References between Sets
+     *
+     * @param sets Sets of the Header Metadata, indexed by Instance ID. Must not
+     * be modified once the graph is created.
+     * @param defresolver Maps Group and Property Keys to MetaDictionary
+     * definitions
+     */
+    public StrongReferenceGraph(Map<UUID, Set> sets, DefinitionResolver defresolver) {
+
+        if (sets == null || defresolver == null) {
+            throw new IllegalArgumentException();
+        }
+
+        this.sets = sets;
+        this.plans = DecodePlanCache.of(defresolver);
+
+        if (sets instanceof SetMap) {
+
+            this.ids = (SetMap) sets;
+
+        } else {
+
+            this.ids = new SetMap(sets.size());
+
+            for (Map.Entry<UUID, Set> e : sets.entrySet()) {
+                ids.put(e.getKey(), e.getValue());
+            }
+
+        }
+
+        this.nodes = new Set[ids.size()];
+
+        for (int i = 0; i < nodes.length; i++) {
+            nodes[i] = ids.getSet(i);
+        }
+
+        this.targets = new UUID[nodes.length][];
+        this.ownercount = new int[nodes.length];
+
+        ArrayList<UUID> refs = new ArrayList<>();
+
+        for (int i = 0; i < nodes.length; i++) {
+
+            refs.clear();
+
+            for (Triplet item : nodes[i].getItems()) {
+                readReferences(item, refs);
+            }
+
+            targets[i] = refs.toArray(new UUID[refs.size()]);
+
+            for (UUID target : targets[i]) {
+
+                int id = ids.indexOf(target);
+
+                if (id >= 0) {
+                    ownercount[id]++;
+                }
+            }
+        }
+    }
+
+    /* appends the targets of the Strong References contained in an item and
+     returns their type, or null if the item contains no Strong Reference */
+    private StrongReferenceTypeDefinition readReferences(Triplet item, ArrayList<UUID> refs) {
+
+        DecodePlanCache.PropertyPlan propplan = plans.getPropertyPlan(plans.getItemPlan(item.getKey()));
+
+        if (propplan == null
+            || propplan.getKind() != DecodePlanCache.PropertyKind.VALUE
+            || propplan.getType() == null) {
+            return null;
+        }
+
+        Definition typedef = propplan.getType();
+
+        StrongReferenceTypeDefinition reftype = null;
+
+        try {
+
+            MXFInputStream value;
+
+            switch (propplan.getRule()) {
+
+                case STRONG_REFERENCE:
+
+                    reftype = asClassReference(typedef);
+
+                    if (reftype != null) {
+                        refs.add(new MXFInputStream(item.getValueAsStream()).readUUID());
+                    }
+
+                    break;
+
+                case SET:
+                case VARIABLE_ARRAY:
+
+                    AUID elemtype = typedef instanceof SetTypeDefinition
+                        ? ((SetTypeDefinition) typedef).getElementType()
+                        : ((VariableArrayTypeDefinition) typedef).getElementType();
+
+                    reftype = asClassReference(plans.findBaseDefinition(plans.getDefinition(elemtype)));
+
+                    if (reftype == null) {
+                        break;
+                    }
+
+                    value = new MXFInputStream(item.getValueAsStream());
+
+                    long itemcount = value.readUnsignedInt();
+
+                    /* item length */
+                    value.readUnsignedInt();
+
+                    for (long i = 0; i < itemcount; i++) {
+                        refs.add(value.readUUID());
+                    }
+
+                    break;
+
+                case FIXED_ARRAY:
+
+                    FixedArrayTypeDefinition arraydef = (FixedArrayTypeDefinition) typedef;
+
+                    reftype = asClassReference(plans.findBaseDefinition(plans.getDefinition(arraydef.getElementType())));
+
+                    if (reftype == null) {
+                        break;
+                    }
+
+                    value = new MXFInputStream(item.getValueAsStream());
+
+                    for (int i = 0; i < arraydef.getElementCount(); i++) {
+                        refs.add(value.readUUID());
+                    }
+
+                    break;
+
+                default:
+            }
+
+        } catch (IOException e) {
+
+            /* truncated values are reported when the Set is rendered */
+        }
+
+        return reftype;
+    }
+
+    /* returns the definition if it is a strong reference to a class, or null */
+    private StrongReferenceTypeDefinition asClassReference(Definition definition) {
+        if (definition instanceof StrongReferenceTypeDefinition
+            && plans.findBaseDefinition(
+                plans.getDefinition(((StrongReferenceTypeDefinition) definition).getReferenceType())
+            ) instanceof ClassDefinition) {
+            return (StrongReferenceTypeDefinition) definition;
+        }
+
+        return null;
+    }
+
+    /**
+     * @return Sets of the graph, indexed by Instance ID
+     */
+    public Map<UUID, Set> getSets() {
+        return sets;
+    }
+
+    /**
+     * Returns the targets of the Strong References of a Set, which may include
+     * Sets that are not part of the graph
+     *
+     * @param instanceid Instance ID of the Set
+     * @return Instance IDs of the targets, in the order of the items of the
+     * Set, or null if the Set is not part of the graph
+     */
+    public List<UUID> getReferences(UUID instanceid) {
+        int id = ids.indexOf(instanceid);
+
+        return id < 0 ? null : Collections.unmodifiableList(Arrays.asList(targets[id]));
+    }
+
+    /**
+     * Returns the number of Strong References to a Set
+     *
+     * @param instanceid Instance ID of the Set
+     * @return Number of Strong References, or -1 if the Set is not part of the
+     * graph
+     */
+    public int getReferenceCount(UUID instanceid) {
+        int id = ids.indexOf(instanceid);
+
+        return id < 0 ? -1 : ownercount[id];
+    }
+
+    /**
+     * Checks the Sets that are reachable from a root Set, i.e. the Sets that
+     * are rendered when the root Set is rendered, and reports each dangling and
+     * each circular Strong Reference using the
+     * {@link FragmentBuilder.EventCodes} that {@link FragmentBuilder} would
+     * otherwise have raised. Sets that are not reachable from the root Set are
+     * not checked.
+     *
+     * @param root Instance ID of the root Set. Must not be null.
+     * @param evthandler Calls back the caller when an event occurs. May be
+     * null, in which case validation stops at the first ERROR or FATAL event.
+     *
+     * @return false if validation was stopped by the event handler, or by an
+     * ERROR or FATAL event if no event handler was provided
+     */
+    public boolean validate(UUID root, EventHandler evthandler) {
+
+        if (root == null) {
+            throw new IllegalArgumentException();
+        }
+
+        int rootid = ids.indexOf(root);
+
+        return rootid < 0 || validate(nodes[rootid], evthandler);
+    }
+
+    /**
+     * Checks the Sets that are reachable from a root Group, which need not be
+     * part of the graph, e.g. if it has no Instance ID.
+     *
+     * @param root Root Group. Must not be null.
+     * @param evthandler Calls back the caller when an event occurs. May be
+     * null, in which case validation stops at the first ERROR or FATAL event.
+     *
+     * @return false if validation was stopped by the event handler, or by an
+     * ERROR or FATAL event if no event handler was provided
+     *
+     * @see #validate(com.sandflow.smpte.util.UUID, com.sandflow.util.events.EventHandler)
+     */
+    public boolean validate(Group root, EventHandler evthandler) {
+
+        if (root == null) {
+            throw new IllegalArgumentException();
+        }
+
+        byte[] state = new byte[nodes.length];
+        int[] path = new int[nodes.length];
+        int[] next = new int[nodes.length];
+
+        Set rootset = Set.fromGroup(root);
+
+        int rootid = rootset == null ? -1 : ids.indexOf(rootset.getInstanceID());
+
+        if (rootid >= 0) {
+            return traverse(rootid, state, path, next, evthandler, false);
+        }
+
+        ArrayList<UUID> refs = new ArrayList<>();
+
+        for (Triplet item : root.getItems()) {
+            readReferences(item, refs);
+        }
+
+        for (UUID target : refs) {
+
+            int child = ids.indexOf(target);
+
+            if (child < 0) {
+
+                if (!handleEvent(evthandler, createNotFoundEvent(root, target))) {
+                    return false;
+                }
+
+            } else if (state[child] == UNVISITED
+                && !traverse(child, state, path, next, evthandler, false)) {
+                return false;
+            }
+        }
+
+        return true;
+    }
+
+    /**
+     * Checks all the Sets of the graph and reports each dangling Strong
+     * Reference, each circular Strong Reference, each Set referenced more than
+     * once and each Set other than the root that is not referenced, using
+     * {@link EventCodes}. None of these events is an ERROR, and the Sets that
+     * are rendered are checked by
+     * {@link #validate(com.sandflow.smpte.util.UUID, com.sandflow.util.events.EventHandler)}.
+     *
+     * @param root Instance ID of the root Set, typically the Preface. If null,
+     * unreferenced Sets are not reported.
+     * @param evthandler Calls back the caller when an event occurs. May be
+     * null.
+     *
+     * @return false if the check was stopped by the event handler
+     */
+    public boolean validateAll(UUID root, EventHandler evthandler) {
+
+        int rootid = root == null ? -1 : ids.indexOf(root);
+
+        for (int i = 0; i < nodes.length; i++) {
+
+            GraphEvent evt = null;
+
+            if (ownercount[i] > 1) {
+
+                evt = new GraphEvent(
+                    EventCodes.MULTIPLE_STRONG_REFERENCES,
+                    LazyMessage.format(
+                        "Set is the target of %d Strong References",
+                        ownercount[i]
+                    ),
+                    LazyMessage.format(
+                        "Set %s",
+                        nodes[i].getInstanceID()
+                    )
+                );
+
+            } else if (ownercount[i] == 0 && root != null && rootid != i) {
+
+                evt = new GraphEvent(
+                    EventCodes.UNREFERENCED_SET,
+                    LazyMessage.of("Set is not the target of any Strong Reference"),
+                    LazyMessage.format(
+                        "Set %s",
+                        nodes[i].getInstanceID()
+                    )
+                );
+
+            }
+
+            if (evt != null && !handleEvent(evthandler, evt)) {
+                return false;
+            }
+        }
+
+        /* depth-first traversal, starting from the root so that the cycles
+         are reported as they would be encountered when rendering it */
+        byte[] state = new byte[nodes.length];
+
+        /* path[depth] is a Set on the current path and next[depth] is the
+         index of its next reference to be followed */
+        int[] path = new int[nodes.length];
+        int[] next = new int[nodes.length];
+
+        if (rootid >= 0 && !traverse(rootid, state, path, next, evthandler, true)) {
+            return false;
+        }
+
+        for (int i = 0; i < nodes.length; i++) {
+
+            if (state[i] == UNVISITED && !traverse(i, state, path, next, evthandler, true)) {
+                return false;
+            }
+
+        }
+
+        return true;
+    }
+
+    /* reports the dangling and circular references of the Sets reachable
+     from a Set, using the codes of this class if all is true, or the codes
+     of FragmentBuilder otherwise */
+    private boolean traverse(int start, byte[] state, int[] path, int[] next, EventHandler evthandler, boolean all) {
+
+        int depth = 0;
+
+        path[0] = start;
+        next[0] = 0;
+        state[start] = ON_PATH;
+
+        while (depth >= 0) {
+
+            int node = path[depth];
+
+            if (next[depth] == targets[node].length) {
+                state[node] = VISITED;
+                depth--;
+                continue;
+            }
+
+            UUID target = targets[node][next[depth]++];
+
+            final int child = ids.indexOf(target);
+
+            BasicEvent evt = null;
+
+            if (child < 0) {
+
+                if (all) {
+
+                    evt = new GraphEvent(
+                        EventCodes.STRONG_REFERENCE_NOT_FOUND,
+                        LazyMessage.format(
+                            "Strong Reference target %s is not found",
+                            target
+                        ),
+                        LazyMessage.format(
+                            "Set %s",
+                            nodes[node].getInstanceID()
+                        )
+                    );
+
+                } else {
+
+                    evt = createNotFoundEvent(nodes[node], target);
+
+                }
+
+            } else if (state[child] == ON_PATH) {
+
+                LazyMessage reason = LazyMessage.format(
+                    "Circular Strong Reference to Set UID %s",
+                    target
+                );
+
+                if (all) {
+
+                    evt = new GraphEvent(
+                        EventCodes.CIRCULAR_STRONG_REFERENCE,
+                        reason,
+                        LazyMessage.format(
+                            "Set %s",
+                            nodes[node].getInstanceID()
+                        )
+                    );
+
+                } else {
+
+                    evt = new FragmentBuilder.FragmentEvent(
+                        FragmentBuilder.EventCodes.CIRCULAR_STRONG_REFERENCE,
+                        reason,
+                        new LazyMessage() {
+
+                            @Override
+                            protected String build() {
+                                Definition def = plans.getDefinition(new AUID(nodes[child].getKey()));
+
+                                return "Group " + (def == null ? nodes[child].getKey() : def.getSymbol());
+                            }
+                        }
+                    );
+
+                }
+
+            } else if (state[child] == UNVISITED) {
+
+                depth++;
+                path[depth] = child;
+                next[depth] = 0;
+                state[child] = ON_PATH;
+
+            }
+
+            if (evt != null && !handleEvent(evthandler, evt)) {
+                return false;
+            }
+        }
+
+        return true;
+    }
+
+    private FragmentBuilder.FragmentEvent createNotFoundEvent(final Group group, final UUID target) {
+        return new FragmentBuilder.FragmentEvent(
+            FragmentBuilder.EventCodes.STRONG_REFERENCE_NOT_FOUND,
+            LazyMessage.format(
+                "Strong Reference target %s is not found",
+                target
+            ),
+            new LazyMessage() {
+
+                @Override
+                protected String build() {
+                    return locateReference(group, target);
+                }
+            }
+        );
+    }
+
+    /* describes the property of a Group that contains a Strong Reference, as
+     FragmentBuilder does when it encounters the reference */
+    private String locateReference(Group group, UUID target) {
+
+        ArrayList<UUID> refs = new ArrayList<>();
+
+        for (Triplet item : group.getItems()) {
+
+            refs.clear();
+
+            StrongReferenceTypeDefinition typedef = readReferences(item, refs);
+
+            if (refs.contains(target)) {
+                return String.format(
+                    "Type %s at Element %s",
+                    typedef.getSymbol(),
+                    plans.getPropertyPlan(plans.getItemPlan(item.getKey())).getSymbol()
+                );
+            }
+        }
+
+        return String.format("Group %s", group.getKey());
+    }
+
+    private static boolean handleEvent(EventHandler handler, Event evt) {
+
+        if (handler != null) {
+
+            /* stop on FATAL events or if requested by the handler */
+            return handler.handle(evt) && evt.getSeverity() != Event.Severity.FATAL;
+
+        }
+
+        /* if no event handler was provided, stop on FATAL and ERROR events */
+        return evt.getSeverity() != Event.Severity.ERROR
+            && evt.getSeverity() != Event.Severity.FATAL;
+    }
+
+}
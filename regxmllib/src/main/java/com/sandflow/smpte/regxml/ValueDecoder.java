@@ -0,0 +1,347 @@
+/*
+ * Copyright (c) 2016, Pierre-Anthony Lemieux (pal@sandflow.com)
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ *
+ * * Redistributions of source code must retain the above copyright notice, this
+ *   list of conditions and the following disclaimer.
+ * * Redistributions in binary form must reproduce the above copyright notice,
+ *   this list of conditions and the following disclaimer in the documentation
+ *   and/or other materials provided with the distribution.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ */
+package com.sandflow.smpte.regxml;
+
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.nio.CharBuffer;
+import java.nio.charset.Charset;
+import java.nio.charset.CharsetDecoder;
+import java.nio.charset.CoderResult;
+import java.nio.charset.CodingErrorAction;
+import java.util.Arrays;
+import java.util.HashMap;
+
+/**
+ * Decodes the Values of integers, characters and well-known records into
+ * their text representation as used by {@link FragmentBuilder}. Bytes and
+ * characters are decoded into buffers that are reused across Values, so that
+ * the only object allocated per Value is the resulting String.
+ * 
+ * Instances are not thread-safe and are owned by a single FragmentBuilder.
+ */
+final class ValueDecoder {
+
+    private static final int MAX_INTEGER_SIZE = 8;
+
+    private final byte[] intbytes = new byte[MAX_INTEGER_SIZE];
+    private int intlen;
+
+    private final StringBuilder text = new StringBuilder(64);
+
+    private byte[] bytes = new byte[256];
+    private CharBuffer chars = CharBuffer.allocate(256);
+    private final HashMap<Charset, CharsetDecoder> decoders = new HashMap<>();
+
+    /**
+     * Reads a big-endian unsigned 16-bit integer, regardless of the byte
+     * order of the stream, as DataInputStream does
+     *
+     * @param is Stream to read from
+     * @return Value of the integer
+     * @throws IOException
+     * @throws EOFException if the end of the stream is reached
+     */
+    int readUnsignedShort(InputStream is) throws IOException {
+        int b0 = is.read();
+        int b1 = is.read();
+
+        if ((b0 | b1) < 0) {
+            throw new EOFException();
+        }
+
+        return (b0 << 8) | b1;
+    }
+
+    /**
+     * Reads a big-endian 32-bit integer, regardless of the byte order of the
+     * stream, as DataInputStream does
+     *
+     * @param is Stream to read from
+     * @return Value of the integer
+     * @throws IOException
+     * @throws EOFException if the end of the stream is reached
+     */
+    int readInt(InputStream is) throws IOException {
+        return (readUnsignedShort(is) << 16) | readUnsignedShort(is);
+    }
+
+    /**
+     * Reads a big-endian 64-bit integer, regardless of the byte order of the
+     * stream, as DataInputStream does
+     *
+     * @param is Stream to read from
+     * @return Value of the integer
+     * @throws IOException
+     * @throws EOFException if the end of the stream is reached
+     */
+    long readLong(InputStream is) throws IOException {
+        return ((long) readInt(is) << 32) | (readInt(is) & 0xFFFFFFFFL);
+    }
+
+    /**
+     * Reads an integer of len bytes. The bytes that could not be read, if any,
+     * are set to zero.
+     *
+     * @param is Stream to read from
+     * @param len Size of the integer, in bytes, no greater than 8
+     * @return Number of bytes read, or -1 if the end of the stream was reached
+     * @throws IOException
+     */
+    int readInteger(InputStream is, int len) throws IOException {
+
+        Arrays.fill(intbytes, (byte) 0);
+
+        intlen = len;
+
+        return is.read(intbytes, 0, len);
+    }
+
+    /**
+     * Returns the integer last read by {@link #readInteger}, interpreting its
+     * bytes in big-endian order. An unsigned 8-byte integer greater than
+     * Long.MAX_VALUE is returned as a negative value.
+     *
+     * @param signed true if the integer is signed
+     * @return Value of the integer
+     */
+    long getInteger(boolean signed) {
+
+        long val = 0;
+
+        for (int i = 0; i < intlen; i++) {
+            val = (val << 8) | (intbytes[i] & 0xFF);
+        }
+
+        if (signed && intlen > 0 && intlen < MAX_INTEGER_SIZE) {
+
+            /* sign extension */
+            int shift = 64 - 8 * intlen;
+
+            val = (val << shift) >> shift;
+        }
+
+        return val;
+    }
+
+    /**
+     * Returns the decimal representation of the integer last read by
+     * {@link #readInteger}
+     *
+     * @param signed true if the integer is signed
+     * @return Decimal representation
+     */
+    String formatInteger(boolean signed) {
+
+        long val = getInteger(signed);
+
+        text.setLength(0);
+
+        if (val < 0 && !signed) {
+
+            /* unsigned 64-bit integer greater than Long.MAX_VALUE */
+            long quotient = (val >>> 1) / 5;
+
+            text.append(quotient).append(val - quotient * 10);
+
+        } else {
+
+            text.append(val);
+
+        }
+
+        return text.toString();
+    }
+
+    /**
+     * Formats a date as YYYY-MM-DD
+     */
+    String formatDate(int year, int month, int day) {
+        text.setLength(0);
+
+        appendDate(year, month, day);
+
+        return text.toString();
+    }
+
+    /**
+     * Formats a time as hh:mm:ss[.fff]Z
+     */
+    String formatTime(int hour, int minutes, int seconds, int millis) {
+        text.setLength(0);
+
+        appendTime(hour, minutes, seconds, millis);
+
+        return text.toString();
+    }
+
+    /**
+     * Formats a date and time as YYYY-MM-DDThh:mm:ss[.fff]Z
+     */
+    String formatTimeStamp(int year, int month, int day, int hour, int minutes, int seconds, int millis) {
+        text.setLength(0);
+
+        appendDate(year, month, day);
+
+        text.append('T');
+
+        appendTime(hour, minutes, seconds, millis);
+
+        return text.toString();
+    }
+
+    /**
+     * Formats two integers separated by a character, e.g. a Rational as n/d
+     */
+    String formatPair(int first, char separator, int second) {
+        text.setLength(0);
+
+        text.append(first).append(separator).append(second);
+
+        return text.toString();
+    }
+
+    private void appendDate(int year, int month, int day) {
+        appendPadded(year, 4);
+        text.append('-');
+        appendPadded(month, 2);
+        text.append('-');
+        appendPadded(day, 2);
+    }
+
+    private void appendTime(int hour, int minutes, int seconds, int millis) {
+        appendPadded(hour, 2);
+        text.append(':');
+        appendPadded(minutes, 2);
+        text.append(':');
+        appendPadded(seconds, 2);
+
+        if (millis != 0) {
+            text.append('.');
+            appendPadded(millis, 3);
+        }
+
+        text.append('Z');
+    }
+
+    /* equivalent to %0<width>d */
+    private void appendPadded(int val, int width) {
+
+        if (val < 0) {
+            text.append('-');
+            val = -val;
+            width--;
+        }
+
+        int digits = 1;
+
+        for (int v = val; v >= 10; v /= 10) {
+            digits++;
+        }
+
+        for (int i = digits; i < width; i++) {
+            text.append('0');
+        }
+
+        text.append(val);
+    }
+
+    /**
+     * Reads the remainder of a stream and decodes it as characters.
+     * Malformed input and unmappable characters are replaced.
+     *
+     * @param is Stream to read from
+     * @param charset Character encoding of the stream
+     * @param removeTrailingZeroes Truncates the text at the first null character if true
+     * @return Decoded text
+     * @throws IOException
+     */
+    String readCharacters(InputStream is, Charset charset, boolean removeTrailingZeroes) throws IOException {
+
+        int len = 0;
+
+        for (int r; (r = is.read(bytes, len, bytes.length - len)) != -1;) {
+
+            len += r;
+
+            if (len == bytes.length) {
+                bytes = Arrays.copyOf(bytes, 2 * bytes.length);
+            }
+        }
+
+        CharsetDecoder decoder = decoders.get(charset);
+
+        if (decoder == null) {
+            decoder = charset.newDecoder()
+                .onMalformedInput(CodingErrorAction.REPLACE)
+                .onUnmappableCharacter(CodingErrorAction.REPLACE);
+
+            decoders.put(charset, decoder);
+        }
+
+        int maxchars = (int) Math.ceil(len * (double) decoder.maxCharsPerByte()) + 1;
+
+        if (chars.capacity() < maxchars) {
+            chars = CharBuffer.allocate(Math.max(maxchars, 2 * chars.capacity()));
+        }
+
+        chars.clear();
+
+        decoder.reset();
+
+        ByteBuffer in = ByteBuffer.wrap(bytes, 0, len);
+
+        CoderResult cr = decoder.decode(in, chars, true);
+
+        if (cr.isUnderflow()) {
+            cr = decoder.flush(chars);
+        }
+
+        if (cr.isError()) {
+            cr.throwException();
+        }
+
+        chars.flip();
+
+        int end = chars.limit();
+
+        if (removeTrailingZeroes) {
+
+            /* remove trailing zeroes if any */
+            for (int i = 0; i < end; i++) {
+                if (chars.get(i) == '\0') {
+                    end = i;
+                    break;
+                }
+            }
+        }
+
+        return new String(chars.array(), 0, end);
+    }
+
+}
@@ -26,6 +26,7 @@
 package com.sandflow.smpte.regxml;
 
 import com.sandflow.smpte.klv.exceptions.KLVException;
+import com.sandflow.smpte.regxml.dict.ClassLattice;
 import com.sandflow.smpte.regxml.dict.DefinitionResolver;
 import com.sandflow.smpte.regxml.dict.MetaDictionary;
 import com.sandflow.smpte.regxml.dict.definitions.CharacterTypeDefinition;
@@ -57,7 +58,9 @@ import com.sandflow.util.events.EventHandler;
 import java.io.IOException;
 import java.net.URI;
 import java.security.InvalidParameterException;
+import java.util.ArrayList;
 import java.util.HashMap;
+import java.util.List;
 import java.util.Set;
 import java.util.logging.Logger;
 import javax.xml.parsers.DocumentBuilder;
@@ -96,6 +99,7 @@ public class XMLSchemaBuilder {
     private static final AUID InstanceID_AUID = new AUID(UL.fromURN("urn:smpte:ul:060e2b34.01010101.01011502.00000000"));
 
     private DefinitionResolver resolver;
+    private final ClassLattice lattice;
     private final NamespacePrefixMapper prefixes = new NamespacePrefixMapper();
     private final EventHandler evthandler;
 
@@ -182,11 +186,26 @@ public class XMLSchemaBuilder {
      * @param handler Event handler provided by the caller. May be null.
      */
     public XMLSchemaBuilder(DefinitionResolver resolver, EventHandler handler) {
+        this(resolver, null, handler);
+    }
+
+    /**
+     * Creates an XMLSchemaBuilder that retrieves the members of classes,
+     * including inherited members, from a class lattice instead of walking the
+     * class hierarchy for each class.
+     *
+     * @param resolver Collection of Metadictionary definitions, typically a
+     * {@link com.sandflow.smpte.regxml.dict.MetaDictionaryCollection}
+     * @param lattice Class lattice created from the same resolver. May be null.
+     * @param handler Event handler provided by the caller. May be null.
+     */
+    public XMLSchemaBuilder(DefinitionResolver resolver, ClassLattice lattice, EventHandler handler) {
         if (resolver == null) {
             throw new InvalidParameterException("A resolver must be provided");
         }
 
         this.resolver = resolver;
+        this.lattice = lattice;
         this.evthandler = handler;
     }
 
@@ -348,35 +367,21 @@ public class XMLSchemaBuilder {
         complexType.appendChild(all);
 
         boolean hasUID = false;
-        ClassDefinition cdef = definition;
 
-        while (cdef != null) {
-
-            for (AUID auid : resolver.getMembersOf(cdef)) {
+        for (PropertyDefinition pdef : getAllMembersOf(definition)) {
 
-                PropertyDefinition pdef
-                    = (PropertyDefinition) resolver.getDefinition(auid);
-
-                element = root.getOwnerDocument().createElementNS(XSD_NS, "xs:element");
-                element.setAttribute("ref", createQName(pdef.getNamespace(), pdef.getSymbol()));
-
-                if (pdef.isOptional() || pdef.getIdentification().equals(ObjectClass_AUID)) {
-                    element.setAttribute("minOccurs", "0");
-                }
-
-                /* NOTE: require reg:uid only if the object has one property
-                 with IsUniqueIdentifier */
-                hasUID |= pdef.isUniqueIdentifier();
-
-                all.appendChild(element);
+            element = root.getOwnerDocument().createElementNS(XSD_NS, "xs:element");
+            element.setAttribute("ref", createQName(pdef.getNamespace(), pdef.getSymbol()));
 
+            if (pdef.isOptional() || pdef.getIdentification().equals(ObjectClass_AUID)) {
+                element.setAttribute("minOccurs", "0");
             }
 
-            if (cdef.getParentClass() != null) {
-                cdef = (ClassDefinition) resolver.getDefinition(cdef.getParentClass());
-            } else {
-                cdef = null;
-            }
+            /* NOTE: require reg:uid only if the object has one property
+             with IsUniqueIdentifier */
+            hasUID |= pdef.isUniqueIdentifier();
+
+            all.appendChild(element);
 
         }
 
@@ -398,6 +403,35 @@ public class XMLSchemaBuilder {
 
     }
 
+    private List<PropertyDefinition> getAllMembersOf(ClassDefinition definition) {
+
+        List<PropertyDefinition> members = lattice == null ? null : lattice.getAllMembersOf(definition);
+
+        if (members != null) {
+            return members;
+        }
+
+        ArrayList<PropertyDefinition> props = new ArrayList<>();
+
+        ClassDefinition cdef = definition;
+
+        while (cdef != null) {
+
+            for (AUID auid : resolver.getMembersOf(cdef)) {
+                props.add((PropertyDefinition) resolver.getDefinition(auid));
+            }
+
+            if (cdef.getParentClass() != null) {
+                cdef = (ClassDefinition) resolver.getDefinition(cdef.getParentClass());
+            } else {
+                cdef = null;
+            }
+
+        }
+
+        return props;
+    }
+
     void applyRule5(Element root, PropertyDefinition definition) throws RuleException {
 
         Element elem = root.getOwnerDocument().createElementNS(XSD_NS, "xs:element");
@@ -0,0 +1,124 @@
+/*
+ * Copyright (c) 2014, Pierre-Anthony Lemieux (pal@sandflow.com)
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ *
+ * * Redistributions of source code must retain the above copyright notice, this
+ *   list of conditions and the following disclaimer.
+ * * Redistributions in binary form must reproduce the above copyright notice,
+ *   this list of conditions and the following disclaimer in the documentation
+ *   and/or other materials provided with the distribution.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ */
+package com.sandflow.smpte.regxml;
+
+import com.sandflow.util.events.LazyMessage;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.HashSet;
+import javax.xml.stream.XMLStreamException;
+import javax.xml.stream.XMLStreamWriter;
+
+/**
+ * Writes a RegXML Fragment to an XMLStreamWriter. Each namespace prefix is
+ * declared on the outermost element where it is used, unless it is already in
+ * scope. The writer is not flushed or closed.
+ */
+public class XMLStreamWriterFragmentSink implements FragmentSink {
+
+    private final XMLStreamWriter writer;
+
+    /* prefixes declared by each open element */
+    private final ArrayList<ArrayList<String>> declared = new ArrayList<>();
+    private final HashSet<String> inscope = new HashSet<>();
+
+    /**
+     * Instantiates a XMLStreamWriterFragmentSink
+     *
+     * @param writer Writer to which the Fragment is written. Must not be null.
+     */
+    public XMLStreamWriterFragmentSink(XMLStreamWriter writer) {
+
+        if (writer == null) throw new NullPointerException();
+
+        this.writer = writer;
+    }
+
+    private void declare(String namespace, String prefix) throws XMLStreamException {
+        if (inscope.add(prefix)) {
+            writer.writeNamespace(prefix, namespace);
+
+            declared.get(declared.size() - 1).add(prefix);
+        }
+    }
+
+    @Override
+    public void startElement(String namespace, String prefix, String localName) throws IOException {
+        try {
+            writer.writeStartElement(prefix, localName, namespace);
+
+            declared.add(new ArrayList<String>());
+
+            declare(namespace, prefix);
+
+        } catch (XMLStreamException e) {
+            throw new IOException(e);
+        }
+    }
+
+    @Override
+    public void attribute(String namespace, String prefix, String localName, String value) throws IOException {
+        try {
+            declare(namespace, prefix);
+
+            writer.writeAttribute(prefix, namespace, localName, value);
+
+        } catch (XMLStreamException e) {
+            throw new IOException(e);
+        }
+    }
+
+    @Override
+    public void text(String text) throws IOException {
+        try {
+            writer.writeCharacters(text);
+        } catch (XMLStreamException e) {
+            throw new IOException(e);
+        }
+    }
+
+    @Override
+    public void comment(LazyMessage comment) throws IOException {
+        try {
+            writer.writeComment(comment.toString());
+        } catch (XMLStreamException e) {
+            throw new IOException(e);
+        }
+    }
+
+    @Override
+    public void endElement() throws IOException {
+        try {
+            writer.writeEndElement();
+
+            inscope.removeAll(declared.remove(declared.size() - 1));
+
+        } catch (XMLStreamException e) {
+            throw new IOException(e);
+        }
+    }
+
+}
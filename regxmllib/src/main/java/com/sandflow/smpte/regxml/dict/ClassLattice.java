@@ -0,0 +1,342 @@
+/*
+ * Copyright (c) 2016, Pierre-Anthony Lemieux (pal@sandflow.com)
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ *
+ * * Redistributions of source code must retain the above copyright notice, this
+ *   list of conditions and the following disclaimer.
+ * * Redistributions in binary form must reproduce the above copyright notice,
+ *   this list of conditions and the following disclaimer in the documentation
+ *   and/or other materials provided with the distribution.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ */
+package com.sandflow.smpte.regxml.dict;
+
+import com.sandflow.smpte.regxml.dict.definitions.ClassDefinition;
+import com.sandflow.smpte.regxml.dict.definitions.Definition;
+import com.sandflow.smpte.regxml.dict.definitions.PropertyDefinition;
+import com.sandflow.smpte.util.AUID;
+import java.util.ArrayList;
+import java.util.BitSet;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.IdentityHashMap;
+import java.util.List;
+
+/**
+ * Class hierarchy of a set of Metadictionary definitions, computed once. Each
+ * class is assigned a dense id, parent classes before their subclasses, and
+ * the ancestors of each class are stored as a bitset, so that
+ * {@link #isSubclassOf(int, int)} does not walk the hierarchy. The members of
+ * each class, including inherited members, and its unique identifier property
+ * are also computed once.
+ *
+ * The definitions must not be modified once the lattice is created. The
+ * lattice is immutable and can be shared across threads.
+ */
+public final class ClassLattice {
+
+    private final DefinitionIndex index = new DefinitionIndex();
+    private final IdentityHashMap<ClassDefinition, Integer> ids = new IdentityHashMap<>();
+    private final ClassDefinition[] classes;
+    private final BitSet[] ancestors;
+    private final BitSet[] descendants;
+    private final ArrayList<List<PropertyDefinition>> members;
+    private final PropertyDefinition[] uniques;
+
+    /**
+     * Creates the lattice of all the classes defined in a collection of
+     * MetaDictionaries
+     *
+     * @param mds Collection of MetaDictionaries
+     * @return Class lattice
+     */
+    public static ClassLattice fromDictionaries(MetaDictionaryCollection mds) {
+        ArrayList<Definition> defs = new ArrayList<>();
+
+        for (MetaDictionary md : mds.getDictionaries()) {
+            defs.addAll(md.getDefinitions());
+        }
+
+        return new ClassLattice(mds, defs);
+    }
+
+    /**
+     * Creates the lattice of a set of class definitions. Definitions that are
+     * not class definitions are ignored, and the parent classes of the class
+     * definitions are included even if they are not listed.
+     *
+     * @param resolver Resolver used to retrieve parent classes and members
+     * @param definitions Definitions from which the class definitions are taken
+     */
+    public ClassLattice(DefinitionResolver resolver, Collection<? extends Definition> definitions) {
+
+        ArrayList<ClassDefinition> order = new ArrayList<>();
+
+        for (Definition def : definitions) {
+
+            if (!(def instanceof ClassDefinition)) {
+                continue;
+            }
+
+            /* use the definition returned by the resolver, which may differ
+             if the class is defined more than once */
+            Definition rdef = resolver.getDefinition(def.getIdentification());
+
+            if (rdef instanceof ClassDefinition) {
+                addClass((ClassDefinition) rdef, resolver, order);
+            }
+        }
+
+        int size = order.size();
+
+        this.classes = order.toArray(new ClassDefinition[size]);
+        this.ancestors = new BitSet[size];
+        this.descendants = new BitSet[size];
+        this.members = new ArrayList<>(size);
+        this.uniques = new PropertyDefinition[size];
+
+        for (int i = 0; i < size; i++) {
+
+            ClassDefinition cdef = classes[i];
+
+            index.put(
+                cdef.getIdentification().getMostSignificantBits(),
+                cdef.getIdentification().getLeastSignificantBits(),
+                cdef
+            );
+
+            /* parents are always assigned a lower id */
+            int parent = getParentId(cdef, resolver);
+
+            if (parent >= i) {
+                parent = -1;
+            }
+
+            ancestors[i] = parent < 0 ? new BitSet(size) : (BitSet) ancestors[parent].clone();
+            ancestors[i].set(i);
+
+            descendants[i] = new BitSet(size);
+
+            for (int j = ancestors[i].nextSetBit(0); j >= 0; j = ancestors[i].nextSetBit(j + 1)) {
+                descendants[j].set(i);
+            }
+
+            /* members of the class first, followed by inherited members */
+            ArrayList<PropertyDefinition> allmembers = new ArrayList<>();
+            PropertyDefinition unique = null;
+
+            for (AUID auid : resolver.getMembersOf(cdef)) {
+
+                Definition pdef = resolver.getDefinition(auid);
+
+                if (!(pdef instanceof PropertyDefinition)) {
+                    continue;
+                }
+
+                allmembers.add((PropertyDefinition) pdef);
+
+                if (unique == null && ((PropertyDefinition) pdef).isUniqueIdentifier()) {
+                    unique = (PropertyDefinition) pdef;
+                }
+            }
+
+            if (parent >= 0) {
+                allmembers.addAll(members.get(parent));
+
+                if (unique == null) {
+                    unique = uniques[parent];
+                }
+            }
+
+            allmembers.trimToSize();
+
+            members.add(Collections.unmodifiableList(allmembers));
+            uniques[i] = unique;
+        }
+
+    }
+
+    /* adds a class after its parent classes, ignoring loops in the hierarchy */
+    private void addClass(ClassDefinition definition, DefinitionResolver resolver, ArrayList<ClassDefinition> order) {
+
+        ArrayList<ClassDefinition> chain = new ArrayList<>();
+
+        ClassDefinition cdef = definition;
+
+        while (cdef != null && !ids.containsKey(cdef) && !chain.contains(cdef)) {
+
+            chain.add(cdef);
+
+            Definition pdef = cdef.getParentClass() == null ? null : resolver.getDefinition(cdef.getParentClass());
+
+            cdef = pdef instanceof ClassDefinition ? (ClassDefinition) pdef : null;
+        }
+
+        for (int i = chain.size() - 1; i >= 0; i--) {
+            ids.put(chain.get(i), order.size());
+            order.add(chain.get(i));
+        }
+    }
+
+    private int getParentId(ClassDefinition definition, DefinitionResolver resolver) {
+
+        if (definition.getParentClass() == null) {
+            return -1;
+        }
+
+        Integer id = ids.get(resolver.getDefinition(definition.getParentClass()));
+
+        return id == null ? -1 : id;
+    }
+
+    /**
+     * @return Number of classes in the lattice
+     */
+    public int size() {
+        return classes.length;
+    }
+
+    /**
+     * Returns the id of a class
+     *
+     * @param definition Class definition
+     * @return Id of the class, or -1 if the class is not part of the lattice
+     */
+    public int getId(ClassDefinition definition) {
+        Integer id = ids.get(definition);
+
+        if (id != null) {
+            return id;
+        }
+
+        return getId(definition.getIdentification());
+    }
+
+    /**
+     * Returns the id of a class. The version byte of the identification is
+     * ignored, and so is the registry designator of Group ULs.
+     *
+     * @param identification Identification of the class
+     * @return Id of the class, or -1 if no class of the lattice has the
+     * identification
+     */
+    public int getId(AUID identification) {
+        return getId(identification.getMostSignificantBits(), identification.getLeastSignificantBits());
+    }
+
+    /**
+     * Returns the id of a class. The version byte of the identification is
+     * ignored, and so is the registry designator of Group ULs.
+     *
+     * @param msb Most significant 64 bits of the identification of the class
+     * @param lsb Least significant 64 bits of the identification of the class
+     * @return Id of the class, or -1 if no class of the lattice has the
+     * identification
+     */
+    public int getId(long msb, long lsb) {
+        Definition def = index.get(msb, lsb);
+
+        return def == null ? -1 : ids.get((ClassDefinition) def);
+    }
+
+    /**
+     * @param id Id of the class
+     * @return Class definition
+     */
+    public ClassDefinition getClassDefinition(int id) {
+        return classes[id];
+    }
+
+    /**
+     * Tests whether a class is a subclass of another
+     *
+     * @param id Id of the class, or -1
+     * @param ancestor Id of the candidate ancestor
+     * @return true if the class is the ancestor or one of its subclasses, and
+     * false if id is -1
+     */
+    public boolean isSubclassOf(int id, int ancestor) {
+        return id >= 0 && ancestors[id].get(ancestor);
+    }
+
+    /**
+     * Tests whether a class is a subclass of another
+     *
+     * @param definition Class definition
+     * @param ancestor Candidate ancestor
+     * @return true if the class is the ancestor or one of its subclasses, and
+     * false if either class is not part of the lattice
+     */
+    public boolean isSubclassOf(ClassDefinition definition, ClassDefinition ancestor) {
+        int ancestorid = getId(ancestor);
+
+        return ancestorid >= 0 && isSubclassOf(getId(definition), ancestorid);
+    }
+
+    /**
+     * Returns all the subclasses of a class, including indirect subclasses
+     *
+     * @param definition Class definition
+     * @return Subclasses, parent classes before their subclasses, or null if
+     * the class is not part of the lattice
+     */
+    public List<ClassDefinition> getAllSubclassesOf(ClassDefinition definition) {
+        int id = getId(definition);
+
+        if (id < 0) {
+            return null;
+        }
+
+        ArrayList<ClassDefinition> subclasses = new ArrayList<>(descendants[id].cardinality() - 1);
+
+        for (int i = descendants[id].nextSetBit(id + 1); i >= 0; i = descendants[id].nextSetBit(i + 1)) {
+            subclasses.add(classes[i]);
+        }
+
+        return subclasses;
+    }
+
+    /**
+     * Returns all the members of a class, including the members inherited from
+     * its parent classes
+     *
+     * @param definition Class definition
+     * @return Unmodifiable list of the members of the class, followed by the
+     * members of its parent class, and so on, or null if the class is not part
+     * of the lattice
+     */
+    public List<PropertyDefinition> getAllMembersOf(ClassDefinition definition) {
+        int id = getId(definition);
+
+        return id < 0 ? null : members.get(id);
+    }
+
+    /**
+     * Returns the unique identifier property of a class, which may be inherited
+     *
+     * @param definition Class definition
+     * @return First member with IsUniqueIdentifier set in the order of
+     * {@link #getAllMembersOf(com.sandflow.smpte.regxml.dict.definitions.ClassDefinition)},
+     * or null if the class has none or is not part of the lattice
+     */
+    public PropertyDefinition getUniqueIdentifier(ClassDefinition definition) {
+        int id = getId(definition);
+
+        return id < 0 ? null : uniques[id];
+    }
+
+}
@@ -0,0 +1,185 @@
+/*
+ * Copyright (c) 2016, Pierre-Anthony Lemieux (pal@sandflow.com)
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ *
+ * * Redistributions of source code must retain the above copyright notice, this
+ *   list of conditions and the following disclaimer.
+ * * Redistributions in binary form must reproduce the above copyright notice,
+ *   this list of conditions and the following disclaimer in the documentation
+ *   and/or other materials provided with the distribution.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ */
+package com.sandflow.smpte.regxml.dict;
+
+import com.sandflow.smpte.regxml.dict.definitions.Definition;
+
+/**
+ * Index of definitions keyed by their normalized identification, stored as
+ * pairs of longs in an open-addressing table. Lookups do not allocate.
+ * 
+ * Identifications are normalized as in
+ * {@link MetaDictionary#createNormalizedAUID(com.sandflow.smpte.util.AUID)}:
+ * the version byte of ULs is ignored, and so is the registry designator of
+ * Group ULs.
+ */
+final class DefinitionIndex {
+
+    private static final int INITIAL_CAPACITY = 256;
+
+    /* keys[2 * i] and keys[2 * i + 1] hold the key of slot i */
+    private long[] keys = new long[2 * INITIAL_CAPACITY];
+    private Definition[] values = new Definition[INITIAL_CAPACITY];
+    private int size = 0;
+
+    /**
+     * Normalizes the most significant 64 bits of an identification. The least
+     * significant bits are not affected by normalization.
+     *
+     * @param msb Most significant 64 bits of the identification
+     * @return Normalized most significant 64 bits
+     */
+    static long normalize(long msb) {
+
+        /* UUIDs have the MSB of the first byte set and are not normalized */
+        if (msb < 0) {
+            return msb;
+        }
+
+        /* set version (byte 8) to 0 */
+        msb &= ~0xFFL;
+
+        /* set registry designator (byte 6) of Group ULs to 0x7f */
+        if (((msb >>> 24) & 0xFF) == 0x02) {
+            msb = (msb & ~0xFF0000L) | 0x7F0000L;
+        }
+
+        return msb;
+    }
+
+    private static int hash(long msb, long lsb) {
+        long h = (msb ^ Long.rotateLeft(lsb, 32)) * 0x9E3779B97F4A7C15L;
+
+        return (int) (h ^ (h >>> 32));
+    }
+
+    /**
+     * Retrieves a definition
+     *
+     * @param msb Most significant 64 bits of the identification
+     * @param lsb Least significant 64 bits of the identification
+     * @return Definition, or null if none is associated with the identification
+     */
+    Definition get(long msb, long lsb) {
+        msb = normalize(msb);
+
+        int mask = values.length - 1;
+
+        for (int i = hash(msb, lsb) & mask;; i = (i + 1) & mask) {
+
+            Definition def = values[i];
+
+            if (def == null) {
+                return null;
+            }
+
+            if (keys[2 * i] == msb && keys[2 * i + 1] == lsb) {
+                return def;
+            }
+        }
+    }
+
+    /**
+     * Associates a definition with an identification, unless a definition is
+     * already associated with it
+     *
+     * @param msb Most significant 64 bits of the identification
+     * @param lsb Least significant 64 bits of the identification
+     * @param def Definition. Must not be null.
+     * @return false if a definition is already associated with the
+     * identification
+     */
+    boolean put(long msb, long lsb, Definition def) {
+
+        if (def == null) {
+            throw new IllegalArgumentException();
+        }
+
+        /* keep the load factor at or below 1/2 */
+        if (2 * (size + 1) > values.length) {
+            grow();
+        }
+
+        msb = normalize(msb);
+
+        int mask = values.length - 1;
+
+        int i = hash(msb, lsb) & mask;
+
+        while (values[i] != null) {
+
+            if (keys[2 * i] == msb && keys[2 * i + 1] == lsb) {
+                return false;
+            }
+
+            i = (i + 1) & mask;
+        }
+
+        keys[2 * i] = msb;
+        keys[2 * i + 1] = lsb;
+        values[i] = def;
+
+        size++;
+
+        return true;
+    }
+
+    /**
+     * @return Number of definitions in the index
+     */
+    int size() {
+        return size;
+    }
+
+    private void grow() {
+        long[] oldkeys = keys;
+        Definition[] oldvalues = values;
+
+        keys = new long[2 * oldkeys.length];
+        values = new Definition[2 * oldvalues.length];
+
+        int mask = values.length - 1;
+
+        for (int j = 0; j < oldvalues.length; j++) {
+
+            if (oldvalues[j] == null) {
+                continue;
+            }
+
+            /* keys are already normalized */
+            int i = hash(oldkeys[2 * j], oldkeys[2 * j + 1]) & mask;
+
+            while (values[i] != null) {
+                i = (i + 1) & mask;
+            }
+
+            keys[2 * i] = oldkeys[2 * j];
+            keys[2 * i + 1] = oldkeys[2 * j + 1];
+            values[i] = oldvalues[j];
+        }
+    }
+
+}
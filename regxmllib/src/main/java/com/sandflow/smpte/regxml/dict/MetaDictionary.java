@@ -51,6 +51,7 @@ import com.sandflow.smpte.regxml.dict.exceptions.IllegalDefinitionException;
 import com.sandflow.smpte.util.AUID;
 import com.sandflow.smpte.util.UL;
 import com.sandflow.smpte.util.UUID;
+import com.sandflow.smpte.util.xml.JAXBContextRegistry;
 import com.sandflow.smpte.util.xml.UUIDAdapter;
 import java.io.IOException;
 import java.io.Reader;
@@ -60,7 +61,6 @@ import java.util.Collection;
 import java.util.HashMap;
 import java.util.HashSet;
 import java.util.Set;
-import javax.xml.bind.JAXBContext;
 import javax.xml.bind.JAXBException;
 import javax.xml.bind.Marshaller;
 import javax.xml.bind.Unmarshaller;
@@ -97,7 +97,7 @@ public class MetaDictionary implements DefinitionResolver {
     }
 
     static UL createNormalizedUL(UL ul) {
-        byte[] value = ul.getValue().clone();
+        byte[] value = ul.getValue();
         /* set version to 0 */
         
         value[7] = 0;
@@ -130,9 +130,7 @@ public class MetaDictionary implements DefinitionResolver {
      * @throws IllegalDefinitionException 
      */
     public static MetaDictionary fromXML(Reader reader) throws JAXBException, IOException, IllegalDefinitionException {
-        JAXBContext ctx = JAXBContext.newInstance(MetaDictionary.class);
-        
-        Unmarshaller m = ctx.createUnmarshaller();
+        Unmarshaller m = JAXBContextRegistry.getUnmarshaller(MetaDictionary.class);
         MetaDictionary md = (MetaDictionary) m.unmarshal(reader);
         
         for (Definition def : md.definitions) {
@@ -158,7 +156,7 @@ public class MetaDictionary implements DefinitionResolver {
     private String description;
 
     private final ArrayList<Definition> definitions = new ArrayList<>();
-    private final HashMap<AUID, Definition> definitionsByAUID = new HashMap<>();
+    private final DefinitionIndex definitionsByAUID = new DefinitionIndex();
     private final HashMap<String, Definition> definitionsBySymbol = new HashMap<>();
     private final HashMap<AUID, Set<AUID>> membersOf = new HashMap<>();
     private final HashMap<AUID, Set<AUID>> subclassesOf = new HashMap<>();
@@ -176,13 +174,19 @@ public class MetaDictionary implements DefinitionResolver {
         this.schemeID = UUID.fromURIName(schemeURI);
         this.schemeURI = schemeURI;
     }
+
+    MetaDictionary(UUID schemeID, URI schemeURI, String description) {
+        this.schemeID = schemeID;
+        this.schemeURI = schemeURI;
+        this.description = description;
+    }
     
     void indexDefinition(Definition def) throws IllegalDefinitionException {
         AUID defid = createNormalizedAUID(def.getIdentification());
         
         if (def.getClass() != PropertyAliasDefinition.class) {
             
-            if (this.definitionsByAUID.containsKey(defid)) {
+            if (this.definitionsByAUID.get(defid.getMostSignificantBits(), defid.getLeastSignificantBits()) != null) {
                 throw new IllegalDefinitionException("Duplicate AUID: " + def.getIdentification());
             }
             
@@ -190,7 +194,7 @@ public class MetaDictionary implements DefinitionResolver {
                 throw new DuplicateSymbolException("Duplicate Symbol: " + def.getSymbol());
             }
             
-            this.definitionsByAUID.put(defid, def);
+            this.definitionsByAUID.put(defid.getMostSignificantBits(), defid.getLeastSignificantBits(), def);
             this.definitionsBySymbol.put(def.getSymbol(), def);
             
         }
@@ -313,7 +317,20 @@ public class MetaDictionary implements DefinitionResolver {
 
     @Override
     public Definition getDefinition(AUID id) {
-        return definitionsByAUID.get(createNormalizedAUID(id));
+        return definitionsByAUID.get(id.getMostSignificantBits(), id.getLeastSignificantBits());
+    }
+
+    /**
+     * Retrieves a Definition based on the 128-bit value of its identification,
+     * without allocating. As with {@link #getDefinition(com.sandflow.smpte.util.AUID)},
+     * the version byte of ULs is ignored.
+     * 
+     * @param msb Most significant 64 bits of the identification
+     * @param lsb Least significant 64 bits of the identification
+     * @return Definition, or null if none is associated with the identification
+     */
+    public Definition getDefinition(long msb, long lsb) {
+        return definitionsByAUID.get(msb, lsb);
     }
 
     /**
@@ -336,7 +353,7 @@ public class MetaDictionary implements DefinitionResolver {
         try {
 
             doc = DocumentBuilderFactory.newInstance().newDocumentBuilder().newDocument();
-            Marshaller m = JAXBContext.newInstance(MetaDictionary.class).createMarshaller();
+            Marshaller m = JAXBContextRegistry.createMarshaller(MetaDictionary.class);
             m.marshal(this, doc);
 
         } catch (JAXBException | ParserConfigurationException e) {
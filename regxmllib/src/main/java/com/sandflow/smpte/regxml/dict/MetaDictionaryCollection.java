@@ -27,27 +27,116 @@ package com.sandflow.smpte.regxml.dict;
 
 import com.sandflow.smpte.regxml.dict.definitions.ClassDefinition;
 import com.sandflow.smpte.regxml.dict.definitions.Definition;
+import com.sandflow.smpte.regxml.dict.definitions.PropertyAliasDefinition;
 import com.sandflow.smpte.regxml.dict.exceptions.IllegalDefinitionException;
 import com.sandflow.smpte.regxml.dict.exceptions.IllegalDictionaryException;
 import com.sandflow.smpte.util.AUID;
+import java.io.IOException;
+import java.io.Reader;
 import java.net.URI;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
 import java.util.ArrayList;
 import java.util.Collection;
+import java.util.Collections;
 import java.util.HashMap;
+import java.util.IdentityHashMap;
+import javax.xml.bind.JAXBException;
 
 /**
  * A collection of multiple RegXML Metadictionary as specified in SMPTE ST 2001-1
+ * 
+ * A collection can be read from multiple threads once all its dictionaries and
+ * definitions have been added. It must not be modified while being read.
+ * 
+ * Once {@link #freeze()} is called, the collection can no longer be modified
+ * and lookups are served from a single index merged across dictionaries.
  */
 public class MetaDictionaryCollection implements DefinitionResolver {
 
     final private HashMap<URI, MetaDictionary> dicts = new HashMap<>();
 
+    /* merged indexes, which are created when the collection is frozen */
+    private DefinitionIndex frozenDefinitions;
+    private IdentityHashMap<ClassDefinition, Collection<AUID>> frozenMembersOf;
+    private IdentityHashMap<ClassDefinition, Collection<AUID>> frozenSubclassesOf;
+
+    /**
+     * Prevents further changes to the collection and merges the definitions,
+     * members and subclasses of all its MetaDictionaries into a single index,
+     * so that lookups no longer iterate over the MetaDictionaries or allocate.
+     * Lookups return the same results as before the collection was frozen.
+     * The MetaDictionaries of the collection must not be modified afterwards.
+     * Calling this method on a frozen collection has no effect.
+     */
+    public void freeze() {
+
+        if (isFrozen()) {
+            return;
+        }
+
+        DefinitionIndex definitions = new DefinitionIndex();
+        IdentityHashMap<ClassDefinition, Collection<AUID>> membersOf = new IdentityHashMap<>();
+        IdentityHashMap<ClassDefinition, Collection<AUID>> subclassesOf = new IdentityHashMap<>();
+
+        for (MetaDictionary md : dicts.values()) {
+
+            for (Definition def : md.getDefinitions()) {
+
+                /* the first MetaDictionary that defines an identification wins,
+                 as in getDefinition() */
+                if (def.getClass() != PropertyAliasDefinition.class) {
+                    definitions.put(
+                        def.getIdentification().getMostSignificantBits(),
+                        def.getIdentification().getLeastSignificantBits(),
+                        def
+                    );
+                }
+
+                if (def instanceof ClassDefinition) {
+                    membersOf.put((ClassDefinition) def, Collections.unmodifiableCollection(getMembersOf((ClassDefinition) def)));
+                    subclassesOf.put((ClassDefinition) def, Collections.unmodifiableCollection(getSubclassesOf((ClassDefinition) def)));
+                }
+
+            }
+
+        }
+
+        frozenMembersOf = membersOf;
+        frozenSubclassesOf = subclassesOf;
+        frozenDefinitions = definitions;
+    }
+
+    /**
+     * @return true if {@link #freeze()} has been called
+     */
+    public boolean isFrozen() {
+        return frozenDefinitions != null;
+    }
+
     @Override
     public Definition getDefinition(AUID auid) {
+        return getDefinition(auid.getMostSignificantBits(), auid.getLeastSignificantBits());
+    }
+
+    /**
+     * Retrieves a definition from the collection based on the 128-bit value of
+     * its identification, without allocating
+     * @param msb Most significant 64 bits of the identification
+     * @param lsb Least significant 64 bits of the identification
+     * @return Definition, or null if none found
+     */
+    public Definition getDefinition(long msb, long lsb) {
+
+        if (isFrozen()) {
+            return frozenDefinitions.get(msb, lsb);
+        }
+
         Definition def = null;
 
         for (MetaDictionary md : dicts.values()) {
-            if ((def = md.getDefinition(auid)) != null) {
+            if ((def = md.getDefinition(msb, lsb)) != null) {
                 break;
             }
         }
@@ -78,8 +167,14 @@ public class MetaDictionaryCollection implements DefinitionResolver {
      * 
      * @param metadictionary MetaDictionary to be added
      * @throws IllegalDictionaryException If the MetaDictionary
+     * @throws IllegalStateException If the collection is frozen
      */
     public void addDictionary(MetaDictionary metadictionary) throws IllegalDictionaryException {
+
+        if (isFrozen()) {
+            throw new IllegalStateException("Metadictionary collection is frozen.");
+        }
+
         MetaDictionary oldmd = dicts.get(metadictionary.getSchemeURI());
 
         if (oldmd == null) {
@@ -90,14 +185,50 @@ public class MetaDictionaryCollection implements DefinitionResolver {
 
     }
 
+    /**
+     * Adds the MetaDictionaries stored in a file, which contains either the XML
+     * representation of a single MetaDictionary or a
+     * {@link MetaDictionarySnapshot} of one or more MetaDictionaries.
+     * 
+     * @param path Path to the file
+     * @throws IOException
+     * @throws JAXBException
+     * @throws IllegalDictionaryException If a MetaDictionary is already
+     * present in the collection or the snapshot is invalid
+     * @throws IllegalDefinitionException
+     * @throws IllegalStateException If the collection is frozen
+     */
+    public void addDictionaries(Path path) throws IOException, JAXBException, IllegalDictionaryException, IllegalDefinitionException {
+
+        if (MetaDictionarySnapshot.isSnapshot(path)) {
+
+            for (MetaDictionary md : MetaDictionarySnapshot.read(path)) {
+                addDictionary(md);
+            }
+
+        } else {
+
+            try (Reader r = Files.newBufferedReader(path, StandardCharsets.UTF_8)) {
+                addDictionary(MetaDictionary.fromXML(r));
+            }
+
+        }
+    }
+
     /**
      * Adds a definition to the collection. Automatically creates a MetaDictionary
      * if none exists with the namespace of the definition.
      * 
      * @param def Definition to be added
      * @throws IllegalDefinitionException 
+     * @throws IllegalStateException If the collection is frozen
      */
     public void addDefinition(Definition def) throws IllegalDefinitionException {
+
+        if (isFrozen()) {
+            throw new IllegalStateException("Metadictionary collection is frozen.");
+        }
+
         MetaDictionary md = dicts.get(def.getNamespace());
 
         if (md == null) {
@@ -120,6 +251,16 @@ public class MetaDictionaryCollection implements DefinitionResolver {
     @Override
     public Collection<AUID> getSubclassesOf(ClassDefinition parent) {
 
+        if (isFrozen()) {
+
+            Collection<AUID> subclasses = frozenSubclassesOf.get(parent);
+
+            if (subclasses != null) {
+                return subclasses;
+            }
+
+        }
+
         ArrayList<AUID> subclasses = new ArrayList<>();
 
         for (MetaDictionary md : dicts.values()) {
@@ -135,6 +276,17 @@ public class MetaDictionaryCollection implements DefinitionResolver {
 
     @Override
     public Collection<AUID> getMembersOf(ClassDefinition parent) {
+
+        if (isFrozen()) {
+
+            Collection<AUID> members = frozenMembersOf.get(parent);
+
+            if (members != null) {
+                return members;
+            }
+
+        }
+
         ArrayList<AUID> members = new ArrayList<>();
 
         for (MetaDictionary md : dicts.values()) {
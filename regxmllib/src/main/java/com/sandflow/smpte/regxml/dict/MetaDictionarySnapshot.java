@@ -0,0 +1,862 @@
+/*
+ * Copyright (c) 2016, Pierre-Anthony Lemieux (pal@sandflow.com)
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ *
+ * * Redistributions of source code must retain the above copyright notice, this
+ *   list of conditions and the following disclaimer.
+ * * Redistributions in binary form must reproduce the above copyright notice,
+ *   this list of conditions and the following disclaimer in the documentation
+ *   and/or other materials provided with the distribution.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ */
+package com.sandflow.smpte.regxml.dict;
+
+import com.sandflow.smpte.regxml.dict.definitions.CharacterTypeDefinition;
+import com.sandflow.smpte.regxml.dict.definitions.ClassDefinition;
+import com.sandflow.smpte.regxml.dict.definitions.Definition;
+import com.sandflow.smpte.regxml.dict.definitions.DefinitionVisitor;
+import com.sandflow.smpte.regxml.dict.definitions.EnumerationTypeDefinition;
+import com.sandflow.smpte.regxml.dict.definitions.ExtendibleEnumerationTypeDefinition;
+import com.sandflow.smpte.regxml.dict.definitions.FixedArrayTypeDefinition;
+import com.sandflow.smpte.regxml.dict.definitions.FloatTypeDefinition;
+import com.sandflow.smpte.regxml.dict.definitions.IndirectTypeDefinition;
+import com.sandflow.smpte.regxml.dict.definitions.IntegerTypeDefinition;
+import com.sandflow.smpte.regxml.dict.definitions.LensSerialFloatTypeDefinition;
+import com.sandflow.smpte.regxml.dict.definitions.OpaqueTypeDefinition;
+import com.sandflow.smpte.regxml.dict.definitions.PropertyAliasDefinition;
+import com.sandflow.smpte.regxml.dict.definitions.PropertyDefinition;
+import com.sandflow.smpte.regxml.dict.definitions.RecordTypeDefinition;
+import com.sandflow.smpte.regxml.dict.definitions.RenameTypeDefinition;
+import com.sandflow.smpte.regxml.dict.definitions.SetTypeDefinition;
+import com.sandflow.smpte.regxml.dict.definitions.StreamTypeDefinition;
+import com.sandflow.smpte.regxml.dict.definitions.StringTypeDefinition;
+import com.sandflow.smpte.regxml.dict.definitions.StrongReferenceTypeDefinition;
+import com.sandflow.smpte.regxml.dict.definitions.VariableArrayTypeDefinition;
+import com.sandflow.smpte.regxml.dict.definitions.WeakReferenceTypeDefinition;
+import com.sandflow.smpte.regxml.dict.exceptions.IllegalDefinitionException;
+import com.sandflow.smpte.regxml.dict.exceptions.IllegalDictionaryException;
+import com.sandflow.smpte.util.AUID;
+import com.sandflow.smpte.util.UUID;
+import java.io.ByteArrayOutputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.URI;
+import java.net.URISyntaxException;
+import java.nio.BufferUnderflowException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.zip.CRC32;
+
+/**
+ * Compact binary snapshot of one or more MetaDictionaries, which can be loaded
+ * much faster than the XML representation of SMPTE ST 2001-1.
+ * 
+ * A snapshot consists of a 16-byte header followed by a payload. The header
+ * contains, as big-endian integers, the magic number "RXMD", the version of
+ * the format, the length of the payload and the CRC-32 of the payload.
+ * Snapshots are validated against all four before being loaded.
+ */
+public final class MetaDictionarySnapshot {
+
+    /**
+     * Version of the snapshot format, which is incremented whenever the
+     * format changes
+     */
+    public static final int VERSION = 1;
+
+    private static final int MAGIC = 0x52584d44; /* RXMD */
+    private static final int HEADER_SIZE = 16;
+
+    /* definition kinds */
+    private static final byte CLASS = 1;
+    private static final byte PROPERTY = 2;
+    private static final byte PROPERTY_ALIAS = 3;
+    private static final byte CHARACTER = 4;
+    private static final byte ENUMERATION = 5;
+    private static final byte EXTENDIBLE_ENUMERATION = 6;
+    private static final byte FIXED_ARRAY = 7;
+    private static final byte INDIRECT = 8;
+    private static final byte INTEGER = 9;
+    private static final byte OPAQUE = 10;
+    private static final byte RECORD = 11;
+    private static final byte RENAME = 12;
+    private static final byte SET = 13;
+    private static final byte STREAM = 14;
+    private static final byte STRING = 15;
+    private static final byte STRONG_REFERENCE = 16;
+    private static final byte VARIABLE_ARRAY = 17;
+    private static final byte WEAK_REFERENCE = 18;
+    private static final byte FLOAT = 19;
+    private static final byte LENS_SERIAL_FLOAT = 20;
+
+    private MetaDictionarySnapshot() {
+    }
+
+    /**
+     * Writes a snapshot of MetaDictionaries
+     *
+     * @param mds MetaDictionaries to be written
+     * @param os Stream to which the snapshot is written
+     * @throws IOException
+     */
+    public static void write(Collection<MetaDictionary> mds, OutputStream os) throws IOException {
+
+        ByteArrayOutputStream payload = new ByteArrayOutputStream();
+
+        DataOutputStream dos = new DataOutputStream(payload);
+
+        dos.writeInt(mds.size());
+
+        DefinitionWriter writer = new DefinitionWriter(dos);
+
+        for (MetaDictionary md : mds) {
+
+            writeUUID(dos, md.getSchemeID());
+            writeString(dos, md.getSchemeURI().toString());
+            writeString(dos, md.getDescription());
+
+            dos.writeInt(md.getDefinitions().size());
+
+            for (Definition def : md.getDefinitions()) {
+
+                try {
+                    def.accept(writer);
+                } catch (DefinitionVisitor.VisitorException e) {
+                    throw new IOException(e.getCause());
+                }
+
+            }
+        }
+
+        dos.flush();
+
+        byte[] bytes = payload.toByteArray();
+
+        CRC32 crc = new CRC32();
+
+        crc.update(bytes);
+
+        DataOutputStream header = new DataOutputStream(os);
+
+        header.writeInt(MAGIC);
+        header.writeInt(VERSION);
+        header.writeInt(bytes.length);
+        header.writeInt((int) crc.getValue());
+        header.write(bytes);
+        header.flush();
+    }
+
+    /**
+     * Tests whether a file starts with the magic number of a snapshot
+     *
+     * @param path Path to the file
+     * @return true if the file is a snapshot, regardless of its version
+     * @throws IOException
+     */
+    public static boolean isSnapshot(Path path) throws IOException {
+
+        try (InputStream is = Files.newInputStream(path)) {
+
+            int magic = 0;
+
+            for (int i = 0; i < 4; i++) {
+
+                int b = is.read();
+
+                if (b < 0) {
+                    return false;
+                }
+
+                magic = (magic << 8) | b;
+            }
+
+            return magic == MAGIC;
+        }
+    }
+
+    /**
+     * Reads a snapshot from a file, which is memory-mapped
+     *
+     * @param path Path to the snapshot
+     * @return MetaDictionaries contained in the snapshot
+     * @throws IOException
+     * @throws IllegalDictionaryException If the snapshot is invalid
+     * @throws IllegalDefinitionException
+     */
+    public static Collection<MetaDictionary> read(Path path) throws IOException, IllegalDictionaryException, IllegalDefinitionException {
+
+        try (FileChannel fc = FileChannel.open(path, StandardOpenOption.READ)) {
+
+            return read(fc.map(FileChannel.MapMode.READ_ONLY, 0, fc.size()));
+
+        }
+    }
+
+    /**
+     * Reads a snapshot from a buffer
+     *
+     * @param buffer Snapshot, from the position to the limit of the buffer.
+     * The position of the buffer is not modified.
+     * @return MetaDictionaries contained in the snapshot
+     * @throws IllegalDictionaryException If the snapshot is invalid
+     * @throws IllegalDefinitionException
+     */
+    public static Collection<MetaDictionary> read(ByteBuffer buffer) throws IllegalDictionaryException, IllegalDefinitionException {
+
+        ByteBuffer bb = buffer.slice();
+
+        if (bb.remaining() < HEADER_SIZE || bb.getInt() != MAGIC) {
+            throw new IllegalDictionaryException("Not a MetaDictionary snapshot.");
+        }
+
+        int version = bb.getInt();
+
+        if (version != VERSION) {
+            throw new IllegalDictionaryException(
+                String.format("Unsupported MetaDictionary snapshot version %d.", version)
+            );
+        }
+
+        int length = bb.getInt();
+        int checksum = bb.getInt();
+
+        if (length != bb.remaining()) {
+            throw new IllegalDictionaryException("MetaDictionary snapshot has the wrong length.");
+        }
+
+        if (checksum != crc32(bb.duplicate())) {
+            throw new IllegalDictionaryException("MetaDictionary snapshot checksum mismatch.");
+        }
+
+        try {
+
+            int count = bb.getInt();
+
+            ArrayList<MetaDictionary> mds = new ArrayList<>(count);
+
+            for (int i = 0; i < count; i++) {
+
+                UUID schemeID = readUUID(bb);
+                URI schemeURI = new URI(readString(bb));
+                String description = readString(bb);
+
+                MetaDictionary md = new MetaDictionary(schemeID, schemeURI, description);
+
+                int defcount = bb.getInt();
+
+                for (int j = 0; j < defcount; j++) {
+
+                    Definition def = readDefinition(bb);
+
+                    def.setNamespace(schemeURI);
+
+                    md.add(def);
+                }
+
+                mds.add(md);
+            }
+
+            return mds;
+
+        } catch (BufferUnderflowException | URISyntaxException e) {
+
+            throw new IllegalDictionaryException("Corrupt MetaDictionary snapshot: " + e.getMessage());
+
+        }
+    }
+
+    private static int crc32(ByteBuffer bb) {
+
+        CRC32 crc = new CRC32();
+
+        byte[] chunk = new byte[64 * 1024];
+
+        while (bb.hasRemaining()) {
+
+            int len = Math.min(chunk.length, bb.remaining());
+
+            bb.get(chunk, 0, len);
+
+            crc.update(chunk, 0, len);
+        }
+
+        return (int) crc.getValue();
+    }
+
+    private static Definition readDefinition(ByteBuffer bb) throws IllegalDictionaryException {
+
+        byte kind = bb.get();
+
+        AUID identification = readAUID(bb);
+        String symbol = readString(bb);
+        String name = readString(bb);
+        String description = readString(bb);
+
+        Definition def;
+
+        switch (kind) {
+
+            case CLASS: {
+                ClassDefinition cdef = new ClassDefinition();
+                cdef.setParentClass(readAUID(bb));
+                cdef.setConcrete(bb.get() != 0);
+                def = cdef;
+                break;
+            }
+
+            case PROPERTY:
+            case PROPERTY_ALIAS: {
+                PropertyDefinition pdef = kind == PROPERTY ? new PropertyDefinition() : new PropertyAliasDefinition();
+                pdef.setType(readAUID(bb));
+                pdef.setOptional(bb.get() != 0);
+                pdef.setUniqueIdentifier(bb.get() != 0);
+                pdef.setLocalIdentification(bb.getInt());
+                pdef.setMemberOf(readAUID(bb));
+                if (kind == PROPERTY_ALIAS) {
+                    ((PropertyAliasDefinition) pdef).setOriginalProperty(readAUID(bb));
+                }
+                def = pdef;
+                break;
+            }
+
+            case CHARACTER:
+                def = new CharacterTypeDefinition();
+                break;
+
+            case ENUMERATION: {
+                AUID elementType = readAUID(bb);
+                int count = bb.getInt();
+                EnumerationTypeDefinition edef;
+                if (count < 0) {
+                    edef = new EnumerationTypeDefinition();
+                } else {
+                    ArrayList<EnumerationTypeDefinition.Element> elements = new ArrayList<>(count);
+                    for (int i = 0; i < count; i++) {
+                        EnumerationTypeDefinition.Element e = new EnumerationTypeDefinition.Element();
+                        e.setName(readString(bb));
+                        e.setValue(bb.getInt());
+                        e.setDescription(readString(bb));
+                        elements.add(e);
+                    }
+                    edef = new EnumerationTypeDefinition(elements);
+                }
+                edef.setElementType(elementType);
+                def = edef;
+                break;
+            }
+
+            case EXTENDIBLE_ENUMERATION: {
+                int count = bb.getInt();
+                if (count < 0) {
+                    def = new ExtendibleEnumerationTypeDefinition();
+                } else {
+                    ArrayList<ExtendibleEnumerationTypeDefinition.Element> elements = new ArrayList<>(count);
+                    for (int i = 0; i < count; i++) {
+                        ExtendibleEnumerationTypeDefinition.Element e = new ExtendibleEnumerationTypeDefinition.Element();
+                        e.setName(readString(bb));
+                        e.setValue(readAUID(bb));
+                        e.setDescription(readString(bb));
+                        elements.add(e);
+                    }
+                    def = new ExtendibleEnumerationTypeDefinition(elements);
+                }
+                break;
+            }
+
+            case FIXED_ARRAY: {
+                FixedArrayTypeDefinition fdef = new FixedArrayTypeDefinition();
+                fdef.setElementCount(bb.getInt());
+                fdef.setElementType(readAUID(bb));
+                def = fdef;
+                break;
+            }
+
+            case INDIRECT:
+                def = new IndirectTypeDefinition();
+                break;
+
+            case INTEGER: {
+                IntegerTypeDefinition idef = new IntegerTypeDefinition();
+                byte size = bb.get();
+                idef.setSize(size < 0 ? null : IntegerTypeDefinition.Size.values()[size]);
+                idef.setSigned(bb.get() != 0);
+                def = idef;
+                break;
+            }
+
+            case OPAQUE:
+                def = new OpaqueTypeDefinition();
+                break;
+
+            case RECORD: {
+                int count = bb.getInt();
+                if (count < 0) {
+                    def = new RecordTypeDefinition(null);
+                } else {
+                    ArrayList<RecordTypeDefinition.Member> members = new ArrayList<>(count);
+                    for (int i = 0; i < count; i++) {
+                        RecordTypeDefinition.Member m = new RecordTypeDefinition.Member();
+                        m.setName(readString(bb));
+                        m.setType(readAUID(bb));
+                        m.setDescription(readString(bb));
+                        members.add(m);
+                    }
+                    def = new RecordTypeDefinition(members);
+                }
+                break;
+            }
+
+            case RENAME: {
+                RenameTypeDefinition rdef = new RenameTypeDefinition();
+                rdef.setRenamedType(readAUID(bb));
+                def = rdef;
+                break;
+            }
+
+            case SET: {
+                SetTypeDefinition sdef = new SetTypeDefinition();
+                sdef.setElementType(readAUID(bb));
+                def = sdef;
+                break;
+            }
+
+            case STREAM:
+                def = new StreamTypeDefinition();
+                break;
+
+            case STRING: {
+                StringTypeDefinition sdef = new StringTypeDefinition();
+                sdef.setElementType(readAUID(bb));
+                def = sdef;
+                break;
+            }
+
+            case STRONG_REFERENCE: {
+                StrongReferenceTypeDefinition sdef = new StrongReferenceTypeDefinition();
+                sdef.setReferenceType(readAUID(bb));
+                def = sdef;
+                break;
+            }
+
+            case VARIABLE_ARRAY: {
+                VariableArrayTypeDefinition vdef = new VariableArrayTypeDefinition();
+                vdef.setElementType(readAUID(bb));
+                def = vdef;
+                break;
+            }
+
+            case WEAK_REFERENCE: {
+                WeakReferenceTypeDefinition wdef = new WeakReferenceTypeDefinition();
+                wdef.setReferencedType(readAUID(bb));
+                int count = bb.getInt();
+                if (count < 0) {
+                    wdef.setTargetSet(null);
+                } else {
+                    ArrayList<AUID> targetset = new ArrayList<>(count);
+                    for (int i = 0; i < count; i++) {
+                        targetset.add(readAUID(bb));
+                    }
+                    wdef.setTargetSet(targetset);
+                }
+                def = wdef;
+                break;
+            }
+
+            case FLOAT: {
+                FloatTypeDefinition fdef = new FloatTypeDefinition();
+                byte size = bb.get();
+                fdef.setSize(size < 0 ? null : FloatTypeDefinition.Size.values()[size]);
+                def = fdef;
+                break;
+            }
+
+            case LENS_SERIAL_FLOAT:
+                def = new LensSerialFloatTypeDefinition();
+                break;
+
+            default:
+                throw new IllegalDictionaryException(
+                    String.format("Unknown definition kind %d in MetaDictionary snapshot.", kind)
+                );
+        }
+
+        def.setIdentification(identification);
+        def.setSymbol(symbol);
+        def.setName(name);
+        def.setDescription(description);
+
+        return def;
+    }
+
+    private static AUID readAUID(ByteBuffer bb) {
+
+        if (bb.get() == 0) {
+            return null;
+        }
+
+        long msb = bb.getLong();
+        long lsb = bb.getLong();
+
+        return new AUID(msb, lsb);
+    }
+
+    private static UUID readUUID(ByteBuffer bb) {
+
+        if (bb.get() == 0) {
+            return null;
+        }
+
+        long msb = bb.getLong();
+        long lsb = bb.getLong();
+
+        return new UUID(msb, lsb);
+    }
+
+    private static String readString(ByteBuffer bb) {
+
+        int len = bb.getInt();
+
+        if (len < 0) {
+            return null;
+        }
+
+        byte[] value = new byte[len];
+
+        bb.get(value);
+
+        return new String(value, StandardCharsets.UTF_8);
+    }
+
+    private static void writeAUID(DataOutputStream dos, AUID auid) throws IOException {
+
+        if (auid == null) {
+            dos.writeByte(0);
+            return;
+        }
+
+        dos.writeByte(1);
+        dos.writeLong(auid.getMostSignificantBits());
+        dos.writeLong(auid.getLeastSignificantBits());
+    }
+
+    private static void writeUUID(DataOutputStream dos, UUID uuid) throws IOException {
+
+        if (uuid == null) {
+            dos.writeByte(0);
+            return;
+        }
+
+        dos.writeByte(1);
+        dos.writeLong(uuid.getMostSignificantBits());
+        dos.writeLong(uuid.getLeastSignificantBits());
+    }
+
+    private static void writeString(DataOutputStream dos, String str) throws IOException {
+
+        if (str == null) {
+            dos.writeInt(-1);
+            return;
+        }
+
+        byte[] value = str.getBytes(StandardCharsets.UTF_8);
+
+        dos.writeInt(value.length);
+        dos.write(value);
+    }
+
+    /**
+     * Writes each definition it visits
+     */
+    private static class DefinitionWriter implements DefinitionVisitor {
+
+        private final DataOutputStream dos;
+
+        DefinitionWriter(DataOutputStream dos) {
+            this.dos = dos;
+        }
+
+        private void writeHeader(byte kind, Definition def) throws VisitorException {
+            try {
+                dos.writeByte(kind);
+                writeAUID(dos, def.getIdentification());
+                writeString(dos, def.getSymbol());
+                writeString(dos, def.getName());
+                writeString(dos, def.getDescription());
+            } catch (IOException e) {
+                throw new VisitorException(e);
+            }
+        }
+
+        @Override
+        public void visit(ClassDefinition def) throws VisitorException {
+            writeHeader(CLASS, def);
+
+            try {
+                writeAUID(dos, def.getParentClass());
+                dos.writeBoolean(def.isConcrete());
+            } catch (IOException e) {
+                throw new VisitorException(e);
+            }
+        }
+
+        private void writeProperty(PropertyDefinition def) throws IOException {
+            writeAUID(dos, def.getType());
+            dos.writeBoolean(def.isOptional());
+            dos.writeBoolean(def.isUniqueIdentifier());
+            dos.writeInt(def.getLocalIdentification());
+            writeAUID(dos, def.getMemberOf());
+        }
+
+        @Override
+        public void visit(PropertyDefinition def) throws VisitorException {
+            writeHeader(PROPERTY, def);
+
+            try {
+                writeProperty(def);
+            } catch (IOException e) {
+                throw new VisitorException(e);
+            }
+        }
+
+        @Override
+        public void visit(PropertyAliasDefinition def) throws VisitorException {
+            writeHeader(PROPERTY_ALIAS, def);
+
+            try {
+                writeProperty(def);
+                writeAUID(dos, def.getOriginalProperty());
+            } catch (IOException e) {
+                throw new VisitorException(e);
+            }
+        }
+
+        @Override
+        public void visit(CharacterTypeDefinition def) throws VisitorException {
+            writeHeader(CHARACTER, def);
+        }
+
+        @Override
+        public void visit(EnumerationTypeDefinition def) throws VisitorException {
+            writeHeader(ENUMERATION, def);
+
+            try {
+                writeAUID(dos, def.getElementType());
+
+                if (def.getElements() == null) {
+                    dos.writeInt(-1);
+                    return;
+                }
+
+                dos.writeInt(def.getElements().size());
+
+                for (EnumerationTypeDefinition.Element e : def.getElements()) {
+                    writeString(dos, e.getName());
+                    dos.writeInt(e.getValue());
+                    writeString(dos, e.getDescription());
+                }
+            } catch (IOException e) {
+                throw new VisitorException(e);
+            }
+        }
+
+        @Override
+        public void visit(ExtendibleEnumerationTypeDefinition def) throws VisitorException {
+            writeHeader(EXTENDIBLE_ENUMERATION, def);
+
+            try {
+                if (def.getElements() == null) {
+                    dos.writeInt(-1);
+                    return;
+                }
+
+                dos.writeInt(def.getElements().size());
+
+                for (ExtendibleEnumerationTypeDefinition.Element e : def.getElements()) {
+                    writeString(dos, e.getName());
+                    writeAUID(dos, e.getValue());
+                    writeString(dos, e.getDescription());
+                }
+            } catch (IOException e) {
+                throw new VisitorException(e);
+            }
+        }
+
+        @Override
+        public void visit(FixedArrayTypeDefinition def) throws VisitorException {
+            writeHeader(FIXED_ARRAY, def);
+
+            try {
+                dos.writeInt(def.getElementCount());
+                writeAUID(dos, def.getElementType());
+            } catch (IOException e) {
+                throw new VisitorException(e);
+            }
+        }
+
+        @Override
+        public void visit(IndirectTypeDefinition def) throws VisitorException {
+            writeHeader(INDIRECT, def);
+        }
+
+        @Override
+        public void visit(IntegerTypeDefinition def) throws VisitorException {
+            writeHeader(INTEGER, def);
+
+            try {
+                dos.writeByte(def.getSize() == null ? -1 : def.getSize().ordinal());
+                dos.writeBoolean(def.isSigned());
+            } catch (IOException e) {
+                throw new VisitorException(e);
+            }
+        }
+
+        @Override
+        public void visit(OpaqueTypeDefinition def) throws VisitorException {
+            writeHeader(OPAQUE, def);
+        }
+
+        @Override
+        public void visit(RecordTypeDefinition def) throws VisitorException {
+            writeHeader(RECORD, def);
+
+            try {
+                if (def.getMembers() == null) {
+                    dos.writeInt(-1);
+                    return;
+                }
+
+                dos.writeInt(def.getMembers().size());
+
+                for (RecordTypeDefinition.Member m : def.getMembers()) {
+                    writeString(dos, m.getName());
+                    writeAUID(dos, m.getType());
+                    writeString(dos, m.getDescription());
+                }
+            } catch (IOException e) {
+                throw new VisitorException(e);
+            }
+        }
+
+        @Override
+        public void visit(RenameTypeDefinition def) throws VisitorException {
+            writeHeader(RENAME, def);
+
+            try {
+                writeAUID(dos, def.getRenamedType());
+            } catch (IOException e) {
+                throw new VisitorException(e);
+            }
+        }
+
+        @Override
+        public void visit(SetTypeDefinition def) throws VisitorException {
+            writeHeader(SET, def);
+
+            try {
+                writeAUID(dos, def.getElementType());
+            } catch (IOException e) {
+                throw new VisitorException(e);
+            }
+        }
+
+        @Override
+        public void visit(StreamTypeDefinition def) throws VisitorException {
+            writeHeader(STREAM, def);
+        }
+
+        @Override
+        public void visit(StringTypeDefinition def) throws VisitorException {
+            writeHeader(STRING, def);
+
+            try {
+                writeAUID(dos, def.getElementType());
+            } catch (IOException e) {
+                throw new VisitorException(e);
+            }
+        }
+
+        @Override
+        public void visit(StrongReferenceTypeDefinition def) throws VisitorException {
+            writeHeader(STRONG_REFERENCE, def);
+
+            try {
+                writeAUID(dos, def.getReferenceType());
+            } catch (IOException e) {
+                throw new VisitorException(e);
+            }
+        }
+
+        @Override
+        public void visit(VariableArrayTypeDefinition def) throws VisitorException {
+            writeHeader(VARIABLE_ARRAY, def);
+
+            try {
+                writeAUID(dos, def.getElementType());
+            } catch (IOException e) {
+                throw new VisitorException(e);
+            }
+        }
+
+        @Override
+        public void visit(WeakReferenceTypeDefinition def) throws VisitorException {
+            writeHeader(WEAK_REFERENCE, def);
+
+            try {
+                writeAUID(dos, def.getReferencedType());
+
+                if (def.getTargetSet() == null) {
+                    dos.writeInt(-1);
+                    return;
+                }
+
+                dos.writeInt(def.getTargetSet().size());
+
+                for (AUID auid : def.getTargetSet()) {
+                    writeAUID(dos, auid);
+                }
+            } catch (IOException e) {
+                throw new VisitorException(e);
+            }
+        }
+
+        @Override
+        public void visit(FloatTypeDefinition def) throws VisitorException {
+            writeHeader(FLOAT, def);
+
+            try {
+                dos.writeByte(def.getSize() == null ? -1 : def.getSize().ordinal());
+            } catch (IOException e) {
+                throw new VisitorException(e);
+            }
+        }
+
+        @Override
+        public void visit(LensSerialFloatTypeDefinition def) throws VisitorException {
+            writeHeader(LENS_SERIAL_FLOAT, def);
+        }
+
+    }
+
+}
@@ -54,6 +54,15 @@ public class RecordTypeDefinition extends Definition {
     public RecordTypeDefinition() {
     }
 
+    /**
+     * Instantiates a Record Type Definition with the specified members
+     *
+     * @param members Members of the record, or null if the definition has none
+     */
+    public RecordTypeDefinition(Collection<Member> members) {
+        this.members = members == null ? null : new ArrayList<>(members);
+    }
+
     @Override
     public void accept(DefinitionVisitor visitor) throws DefinitionVisitor.VisitorException {
         visitor.visit(this);
@@ -56,6 +56,8 @@ import com.sandflow.smpte.util.AUID;
 import com.sandflow.smpte.util.UL;
 import com.sandflow.util.events.Event;
 import com.sandflow.util.events.EventHandler;
+import com.sandflow.util.events.LazyMessage;
+import com.sandflow.util.events.LoggingEventHandler;
 import java.util.ArrayList;
 import java.util.HashMap;
 import java.util.HashSet;
@@ -121,6 +123,16 @@ public class RegisterImporter {
             super(kind.severity, kind, message);
         }
 
+        /**
+         * Creates an event whose message is only built if requested
+         *
+         * @param kind Kind of event
+         * @param message Describes the event
+         */
+        public RegisterEvent(EventKind kind, LazyMessage message) {
+            super(kind.severity, kind, message);
+        }
+
     }
 
     static void handleEvent(EventHandler handler, com.sandflow.util.events.Event evt) throws Exception {
@@ -163,25 +175,7 @@ public class RegisterImporter {
         ElementsRegister er
     ) throws Exception {
 
-        EventHandler handler = new EventHandler() {
-
-            @Override
-            public boolean handle(com.sandflow.util.events.Event evt) {
-                switch (evt.getSeverity()) {
-                    case ERROR:
-                    case FATAL:
-                        LOGGER.severe(evt.getMessage());
-                        break;
-                    case INFO:
-                        LOGGER.info(evt.getMessage());
-                        break;
-                    case WARN:
-                        LOGGER.warning(evt.getMessage());
-                }
-
-                return true;
-            }
-        };
+        EventHandler handler = new LoggingEventHandler(LOGGER);
 
         return fromRegister(tr, gr, er, handler);
     }
@@ -288,7 +282,7 @@ public class RegisterImporter {
 
                     RegisterEvent evt = new RegisterEvent(
                         EventKind.UNKNOWN_ELEMENT,
-                        String.format(
+                        LazyMessage.format(
                             "Undefined Element %s for Group %s",
                             child.getItem(),
                             group.getUL()
@@ -310,7 +304,7 @@ public class RegisterImporter {
 
                     RegisterEvent evt = new RegisterEvent(
                         EventKind.UNKNOWN_TYPE,
-                        String.format(
+                        LazyMessage.format(
                             "Missing Type UL at Element %s for Group %s",
                             child.getItem(),
                             group.getUL()
@@ -481,9 +475,9 @@ public class RegisterImporter {
 
                         RegisterEvent evt = new RegisterEvent(
                             EventKind.UNKNOWN_TARGET_SET,
-                            String.format(
+                            LazyMessage.format(
                                 "Missing Target Set UL at Type %s",
-                                type.getUL().toString()
+                                type.getUL()
                             )
                         );
 
@@ -496,9 +490,9 @@ public class RegisterImporter {
 
                         RegisterEvent evt = new RegisterEvent(
                             EventKind.DUP_TARGET_SET,
-                            String.format(
+                            LazyMessage.format(
                                 "Duplicate Target Set UL at Type %s",
-                                type.getUL().toString()
+                                type.getUL()
                             )
                         );
 
@@ -574,10 +568,10 @@ public class RegisterImporter {
 
                 RegisterEvent evt = new RegisterEvent(
                     EventKind.UNKNOWN_TYPE_KIND,
-                    String.format(
+                    LazyMessage.format(
                         "Unknown type kind of %s for Type UL %s.",
                         type.getTypeKind(),
-                        type.getUL().toString()
+                        type.getUL()
                     )
                 );
 
@@ -616,9 +610,9 @@ public class RegisterImporter {
 
                 RegisterEvent evt = new RegisterEvent(
                     EventKind.TYPE_IMPORT_FAILED,
-                    String.format(
+                    LazyMessage.format(
                         "Type UL %s import failed",
-                        type.getUL().toString()
+                        type.getUL()
                     )
                 );
 
@@ -658,7 +652,7 @@ public class RegisterImporter {
 
                     RegisterEvent evt = new RegisterEvent(
                         EventKind.DUPLICATE_SYMBOL,
-                        String.format(
+                        LazyMessage.format(
                             "Duplicate symbol %s (%s) renamed %s",
                             def.getSymbol(),
                             def.getNamespace().toASCIIString(),
@@ -0,0 +1,76 @@
+/*
+ * Copyright (c) 2016, Pierre-Anthony Lemieux (pal@sandflow.com)
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ *
+ * * Redistributions of source code must retain the above copyright notice, this
+ *   list of conditions and the following disclaimer.
+ * * Redistributions in binary form must reproduce the above copyright notice,
+ *   this list of conditions and the following disclaimer in the documentation
+ *   and/or other materials provided with the distribution.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ */
+package com.sandflow.smpte.tools;
+
+import com.sandflow.smpte.regxml.dict.MetaDictionaryCollection;
+import com.sandflow.smpte.regxml.dict.MetaDictionarySnapshot;
+import java.io.OutputStream;
+import java.nio.file.Files;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+
+/**
+ *
+ * @author Pierre-Anthony Lemieux (pal@sandflow.com)
+ */
+public class DictToSnapshot {
+
+    protected final static String USAGE = "Converts RegXML metadictionaries to a single binary metadictionary snapshot.\n"
+        + "  Usage:\n"
+        + "     DictToSnapshot -d regxmldictionary1 regxmldictionary2 regxmldictionary3 ... -o snapshotfile\n"
+        + "     DictToSnapshot -?\n"
+        + "  Where:\n"
+        + "     -d: each regxmldictionary is either a RegXML metadictionary or a metadictionary snapshot\n";
+
+    /**
+     * Usage is specified at {@link #USAGE}
+     */
+    public static void main(String[] args) throws Exception {
+
+        if (args.length < 4
+            || "-?".equals(args[0])
+            || (!"-d".equals(args[0]))
+            || (!"-o".equals(args[args.length - 2]))) {
+
+            System.out.println(USAGE);
+
+            return;
+        }
+
+        /* load the metadictionaries */
+        MetaDictionaryCollection mds = new MetaDictionaryCollection();
+
+        for (int i = 1; i < args.length - 2; i++) {
+            mds.addDictionaries(Paths.get(args[i]));
+        }
+
+        try (OutputStream os = Files.newOutputStream(Paths.get(args[args.length - 1]))) {
+            MetaDictionarySnapshot.write(new ArrayList<>(mds.getDictionaries()), os);
+        }
+
+    }
+
+}
@@ -0,0 +1,126 @@
+/*
+ * Copyright (c) 2016, Pierre-Anthony Lemieux (pal@sandflow.com)
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ *
+ * * Redistributions of source code must retain the above copyright notice, this
+ *   list of conditions and the following disclaimer.
+ * * Redistributions in binary form must reproduce the above copyright notice,
+ *   this list of conditions and the following disclaimer in the documentation
+ *   and/or other materials provided with the distribution.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ */
+package com.sandflow.smpte.tools;
+
+import com.sandflow.smpte.regxml.AccessorBuilder;
+import com.sandflow.smpte.regxml.dict.ClassLattice;
+import com.sandflow.smpte.regxml.dict.MetaDictionaryCollection;
+import com.sandflow.util.events.Event;
+import com.sandflow.util.events.EventHandler;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.Map;
+import java.util.logging.Logger;
+
+/**
+ *
+ * @author Pierre-Anthony Lemieux (pal@sandflow.com)
+ */
+public class GenerateAccessors {
+
+    private final static Logger LOG = Logger.getLogger(GenerateAccessors.class.getName());
+
+    protected final static String USAGE = "Generate typed Java accessors to MXF Header Metadata from RegXML Metadictionaries.\n"
+        + "  Usage:\n"
+        + "     GenerateAccessors -d regxmldictionary1 regxmldictionary2 regxmldictionary3 ... -p javapackage -o outputdir\n"
+        + "     GenerateAccessors -?\n"
+        + "  Where:\n"
+        + "     -d: each regxmldictionary is either a RegXML metadictionary or a metadictionary snapshot (see DictToSnapshot)\n"
+        + "     -p: Java package of the generated classes, e.g. com.example.mxf\n"
+        + "     -o: root directory of the generated source files\n";
+
+    /**
+     * Usage is specified at {@link #USAGE}
+     */
+    public static void main(String[] args) throws IOException, AccessorBuilder.RuleException, Exception {
+
+        if (args.length < 6
+            || "-?".equals(args[0])
+            || (!"-d".equals(args[0]))
+            || (!"-p".equals(args[args.length - 4]))
+            || (!"-o".equals(args[args.length - 2]))) {
+
+            System.out.println(USAGE);
+
+            return;
+        }
+
+        /* load the metadictionaries */
+        MetaDictionaryCollection mds = new MetaDictionaryCollection();
+
+        for (int i = 1; i < args.length - 4; i++) {
+
+            /* load the regxml metadictionary, or metadictionary snapshot,
+             and add it to the dictionary group */
+            mds.addDictionaries(Paths.get(args[i]));
+
+        }
+
+        /* create the accessor builder */
+        AccessorBuilder ab = new AccessorBuilder(
+            mds,
+            ClassLattice.fromDictionaries(mds),
+            new EventHandler() {
+
+                @Override
+                public boolean handle(Event evt) {
+                    String msg = evt.getCode().getClass().getCanonicalName() + "::" + evt.getCode().toString() + " " + evt.getMessage();
+
+                    switch (evt.getSeverity()) {
+                        case ERROR:
+                        case FATAL:
+                            LOG.severe(msg);
+                            break;
+                        case INFO:
+                            LOG.info(msg);
+                            break;
+                        case WARN:
+                            LOG.warning(msg);
+                            break;
+                    }
+                    return true;
+                }
+            }
+        );
+
+        String pkg = args[args.length - 3];
+
+        Path dir = Paths.get(args[args.length - 1], pkg.split("\\."));
+
+        Files.createDirectories(dir);
+
+        for (Map.Entry<String, String> source : ab.generate(pkg).entrySet()) {
+
+            Files.write(dir.resolve(source.getKey() + ".java"), source.getValue().getBytes(StandardCharsets.UTF_8));
+
+        }
+
+    }
+
+}
@@ -28,6 +28,7 @@ package com.sandflow.smpte.tools;
 import com.sandflow.smpte.klv.exceptions.KLVException;
 import com.sandflow.smpte.regxml.FragmentBuilder;
 import com.sandflow.smpte.regxml.XMLSchemaBuilder;
+import com.sandflow.smpte.regxml.dict.ClassLattice;
 import com.sandflow.smpte.regxml.dict.MetaDictionary;
 import com.sandflow.smpte.regxml.dict.MetaDictionaryCollection;
 import com.sandflow.smpte.regxml.dict.exceptions.IllegalDefinitionException;
@@ -36,7 +37,6 @@ import com.sandflow.util.events.Event;
 import com.sandflow.util.events.EventHandler;
 import java.io.EOFException;
 import java.io.File;
-import java.io.FileReader;
 import java.io.IOException;
 import java.io.InputStream;
 import java.nio.file.Files;
@@ -67,7 +67,9 @@ public class GenerateDictionaryXMLSchema {
     protected final static String USAGE = "Generate XML Schema for RegXML Metadictionaries.\n"
         + "  Usage:\n"
         + "     GenerateDictionaryXMLSchema -d regxmldictionary1 regxmldictionary2 regxmldictionary3 ... -o outputdir\n"
-        + "     GenerateDictionaryXMLSchema -?\n";
+        + "     GenerateDictionaryXMLSchema -?\n"
+        + "  Where:\n"
+        + "     -d: each regxmldictionary is either a RegXML metadictionary or a metadictionary snapshot (see DictToSnapshot)\n";
 
     private final static String XMLSCHEMA_NS = "http://www.w3.org/2001/XMLSchema";
 
@@ -91,13 +93,9 @@ public class GenerateDictionaryXMLSchema {
 
         for (int i = 1; i < args.length - 2; i++) {
 
-            /* load the regxml metadictionary */
-            FileReader fr = new FileReader(args[i]);
-
-            MetaDictionary md = MetaDictionary.fromXML(fr);
-
-            /* add it to the dictionary group */
-            mds.addDictionary(md);
+            /* load the regxml metadictionary, or metadictionary snapshot,
+             and add it to the dictionary group */
+            mds.addDictionaries(Paths.get(args[i]));
 
         }
 
@@ -130,6 +128,7 @@ public class GenerateDictionaryXMLSchema {
         /* create the fragment builder */
         XMLSchemaBuilder sb = new XMLSchemaBuilder(
             mds,
+            ClassLattice.fromDictionaries(mds),
             new EventHandler() {
 
                 @Override
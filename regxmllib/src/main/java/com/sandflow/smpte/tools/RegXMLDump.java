@@ -26,33 +26,55 @@
 package com.sandflow.smpte.tools;
 
 import com.sandflow.smpte.mxf.MXFFiles;
+import com.sandflow.smpte.mxf.PartitionMetadata;
 import com.sandflow.smpte.register.LabelsRegister;
+import com.sandflow.smpte.regxml.ContentHandlerFragmentSink;
+import com.sandflow.smpte.regxml.DecodePlanCache;
 import com.sandflow.smpte.regxml.FragmentBuilder;
+import com.sandflow.smpte.regxml.InMemoryMetrics;
 import com.sandflow.smpte.regxml.MXFFragmentBuilder;
-import com.sandflow.smpte.regxml.dict.MetaDictionary;
+import com.sandflow.smpte.regxml.Metrics;
+import com.sandflow.smpte.regxml.dict.ClassLattice;
+import com.sandflow.smpte.regxml.dict.DefinitionResolver;
 import com.sandflow.smpte.regxml.dict.MetaDictionaryCollection;
 import com.sandflow.smpte.util.AUID;
+import com.sandflow.smpte.util.ChannelByteSource;
 import com.sandflow.smpte.util.UL;
+import com.sandflow.util.events.AsyncLoggingEventHandler;
+import com.sandflow.util.events.BasicEvent;
 import com.sandflow.util.events.Event;
 import com.sandflow.util.events.EventHandler;
+import com.sandflow.util.events.FilteringEventHandler;
+import com.sandflow.util.events.LazyMessage;
 import java.io.FileReader;
+import java.io.IOException;
 import java.io.InputStream;
-import java.nio.channels.Channels;
-import java.nio.channels.SeekableByteChannel;
+import java.io.OutputStream;
+import java.nio.channels.FileChannel;
+import java.nio.file.DirectoryStream;
 import java.nio.file.Files;
 import java.nio.file.Path;
 import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.Collections;
 import java.util.Date;
+import java.util.EnumMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Locale;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
 import java.util.logging.Logger;
-import javax.xml.parsers.DocumentBuilder;
-import javax.xml.parsers.DocumentBuilderFactory;
 import javax.xml.transform.OutputKeys;
-import javax.xml.transform.Transformer;
+import javax.xml.transform.TransformerConfigurationException;
 import javax.xml.transform.TransformerFactory;
-import javax.xml.transform.dom.DOMSource;
+import javax.xml.transform.sax.SAXTransformerFactory;
+import javax.xml.transform.sax.TransformerHandler;
 import javax.xml.transform.stream.StreamResult;
-import org.w3c.dom.Document;
-import org.w3c.dom.DocumentFragment;
+import org.xml.sax.SAXException;
 
 /**
  *
@@ -70,15 +92,30 @@ public class RegXMLDump {
 
     protected final static String USAGE = "Dump header metadata of an MXF file as a RegXML structure.\n"
         + "  Usage:\n"
-        + "     RegXMLDump ( -all | -ed ) ( -header | -footer | -auto ) (-l labelsregister) -d regxmldictionary1 regxmldictionary2 regxmldictionary3 ... -i mxffile\n"
+        + "     RegXMLDump ( -all | -ed ) ( -header | -footer | -auto ) (-l labelsregister) (-threads n) (-metrics) -d regxmldictionary1 regxmldictionary2 regxmldictionary3 ... -i mxffile\n"
+        + "     RegXMLDump ( -all | -ed ) ( -header | -footer | -auto ) (-l labelsregister) (-threads n) (-metrics) -d regxmldictionary1 regxmldictionary2 ... -o outputdir -i mxffileordir1 mxffileordir2 ...\n"
         + "     RegXMLDump -?\n"
         + "  Where:\n"
         + "     -all: dumps all header metadata (default)\n"
         + "     -ed: dumps only the first essence descriptor found\n"
+        + "     -d: each regxmldictionary is either a RegXML metadictionary or a metadictionary snapshot (see DictToSnapshot)\n"
         + "     -l labelsregister: given a SMPTE labels register, inserts the symbol of labels as XML comment\n"
         + "     -header: dumps metadata from the header partition (default)\n"
         + "     -footer: dumps metadata from the footer partition\n"
-        + "     -auto: dumps metadata from the footer partition if available and from the header if not\n";
+        + "     -auto: reads all partitions concurrently and dumps metadata from the partition with the most reliable header\n"
+        + "            metadata, i.e. closed and complete, preferring the last such partition in the file\n"
+        + "     -o outputdir: dumps each input file, or each .mxf file of each input directory, to outputdir/<filename>.xml\n"
+        + "                   and prints a summary of the events raised for each file. An input file whose name has already\n"
+        + "                   been used is dumped to outputdir/<filename>.<n>.xml instead, with n = 1, 2, ...\n"
+        + "     -threads n: number of files dumped concurrently when -o is specified, and number of partitions read\n"
+        + "                 concurrently when -auto is specified (default: number of processors). Requires -o or -auto\n"
+        + "     -metrics: prints the bytes read, the number of sets and properties decoded, the dictionary hits and misses,\n"
+        + "               the event counts and the time spent in each stage, for each file and in total. When -o is not\n"
+        + "               specified, the metrics are printed to stderr\n"
+        + "  At most 100 events of each kind are logged for each file, but all events are counted in the summary.\n";
+
+    /* maximum number of events logged per event code and per file */
+    private static final int MAX_LOGGED_EVENTS = 100;
 
     private enum TargetPartition {
         HEADER,
@@ -95,9 +132,11 @@ public class RegXMLDump {
         TargetPartition selectedpartition = null;
         Boolean isEssenceDescriptorOnly = null;
         MetaDictionaryCollection mds = null;
-        SeekableByteChannel f = null;
         FileReader labelreader = null;
-        Path p = null;
+        ArrayList<Path> inputs = null;
+        Path outputdir = null;
+        Integer threads = null;
+        boolean metrics = false;
 
         for (int i = 0; i < args.length;) {
 
@@ -175,11 +214,9 @@ public class RegXMLDump {
 
                 for (; i < args.length && args[i].charAt(0) != '-'; i++) {
 
-                    /* load the regxml metadictionary */
-                    FileReader fr = new FileReader(args[i]);
-
-                    /* add it to the dictionary group */
-                    mds.addDictionary(MetaDictionary.fromXML(fr));
+                    /* load the regxml metadictionary, or metadictionary snapshot,
+                     and add it to the dictionary group */
+                    mds.addDictionaries(Paths.get(args[i]));
 
                 }
 
@@ -201,26 +238,91 @@ public class RegXMLDump {
 
                 i++;
 
-            } else if ("-i".equals(args[i])) {
+            } else if ("-o".equals(args[i])) {
 
                 i++;
 
-                if (f != null || i >= args.length || args[i].charAt(0) == '-') {
+                if (outputdir != null || i >= args.length || args[i].charAt(0) == '-') {
+                    error = true;
+                    break;
+                }
+
+                outputdir = Paths.get(args[i++]);
+
+            } else if ("-threads".equals(args[i])) {
+
+                i++;
+
+                if (threads != null || i >= args.length) {
+                    error = true;
+                    break;
+                }
+
+                try {
+                    threads = Integer.parseInt(args[i++]);
+                } catch (NumberFormatException e) {
+                    error = true;
+                    break;
+                }
 
+                if (threads < 1) {
                     error = true;
                     break;
+                }
+
+            } else if ("-metrics".equals(args[i])) {
 
+                if (metrics) {
+                    error = true;
+                    break;
                 }
 
-                /* retrieve the mxf file */
-                p = Paths.get(args[i++]);
+                metrics = true;
+
+                i++;
+
+            } else if ("-i".equals(args[i])) {
 
-                if (p == null) {
+                if (inputs != null) {
                     error = true;
                     break;
                 }
 
-                f = Files.newByteChannel(p);
+                i++;
+
+                inputs = new ArrayList<>();
+
+                /* retrieve the mxf files */
+                for (; i < args.length && args[i].charAt(0) != '-'; i++) {
+
+                    Path p = Paths.get(args[i]);
+
+                    if (Files.isDirectory(p)) {
+
+                        ArrayList<Path> files = new ArrayList<>();
+
+                        try (DirectoryStream<Path> ds = Files.newDirectoryStream(p, "*.mxf")) {
+                            for (Path entry : ds) {
+                                files.add(entry);
+                            }
+                        }
+
+                        Collections.sort(files);
+
+                        inputs.addAll(files);
+
+                    } else {
+
+                        inputs.add(p);
+
+                    }
+
+                }
+
+                if (inputs.isEmpty()) {
+                    error = true;
+                    break;
+                }
 
             } else {
 
@@ -239,11 +341,17 @@ public class RegXMLDump {
             isEssenceDescriptorOnly = false;
         }
 
-        if (error || f == null || mds == null || p == null) {
+        if (error || inputs == null || mds == null
+            || (outputdir == null && inputs.size() != 1)
+            || (threads != null && outputdir == null && selectedpartition != TargetPartition.AUTO)) {
             System.out.println(USAGE);
             return;
         }
 
+        if (threads == null) {
+            threads = Runtime.getRuntime().availableProcessors();
+        }
+
         /* create an enum name resolver, if available */
         final LabelsRegister lr;
 
@@ -273,123 +381,412 @@ public class RegXMLDump {
             };
         }
 
-        /* create DOM */
-        DocumentBuilderFactory docFactory = DocumentBuilderFactory.newInstance();
-        DocumentBuilder docBuilder = docFactory.newDocumentBuilder();
-        Document doc = docBuilder.newDocument();
+        /* no further dictionaries are added */
+        mds.freeze();
 
-        doc.setXmlStandalone(true);
+        DecodePlanCache plans = new DecodePlanCache(mds, ClassLattice.fromDictionaries(mds));
 
         UL root = isEssenceDescriptorOnly ? ESSENCE_DESCRIPTOR_KEY : PREFACE_KEY;
 
-        DocumentFragment df = null;
+        /* partitions are read on their own threads, so that files dumped concurrently do not wait on each other */
+        ExecutorService partitionexecutor = TargetPartition.AUTO.equals(selectedpartition)
+            ? Executors.newFixedThreadPool(threads) : null;
 
-        TargetPartition actualpartition
-            = TargetPartition.AUTO.equals(selectedpartition)
-                ? TargetPartition.FOOTER : selectedpartition;
+        /* totals across all files */
+        InMemoryMetrics total = metrics ? new InMemoryMetrics() : null;
 
-        boolean retry = true;
+        /* events are logged on a background thread */
+        AsyncLoggingEventHandler eventlog = new AsyncLoggingEventHandler(LOG);
 
-        /*
-         if selectedpartition is AUTO, then try FOOTER first and then HEADER 
-         if any exceptions occur
-         */
-        while (retry) {
+        boolean success = true;
 
-            try {
+        try {
 
-                switch (actualpartition) {
-                    case FOOTER:
+            if (outputdir == null) {
 
-                        if (MXFFiles.seekFooterPartition(f) < 0) {
-                            throw new Exception("Footer partition not found");
-                        }
+                EventSummary summary = new EventSummary(null, total == null ? null : new InMemoryMetrics(total), eventlog);
 
-                        break;
+                /* write the fragment to stdout as it is generated */
+                dump(inputs.get(0), plans, anr, summary, root, selectedpartition, partitionexecutor, summary.getMetrics(), System.out);
 
-                    case HEADER:
+                if (total != null) {
+                    System.err.println(summary.getMetrics().toString());
+                }
 
-                        if (MXFFiles.seekHeaderPartition(f) < 0) {
-                            throw new Exception("Header partition not found");
-                        }
+            } else {
 
-                        break;
+                success = dumpAll(inputs, outputdir, threads, plans, anr, root, selectedpartition, partitionexecutor, total, eventlog);
 
+                if (total != null) {
+                    System.out.println("total: " + total.toString());
                 }
 
-                InputStream is = Channels.newInputStream(f);
-
-                EventHandler evthandler = new EventHandler() {
-
-                    @Override
-                    public boolean handle(Event evt) {
-                        String msg = evt.getCode().getClass().getCanonicalName() + "::" + evt.getCode().toString() + " " + evt.getMessage();
-
-                        switch (evt.getSeverity()) {
-                            case ERROR:
-                            case FATAL:
-                                LOG.severe(msg);
-                                break;
-                            case INFO:
-                                LOG.info(msg);
-                                break;
-                            case WARN:
-                                LOG.warning(msg);
-                                break;
-                        }
-                        return true;
+            }
+
+        } finally {
+
+            if (partitionexecutor != null) {
+                partitionexecutor.shutdown();
+            }
+
+            eventlog.close();
+
+        }
+
+        if (!success) {
+            System.exit(1);
+        }
+
+    }
+
+    /**
+     * Dumps multiple files concurrently, sharing the dictionaries and the decode
+     * plans across files, and prints a summary of the events raised for each
+     * file, in the order of the input files.
+     *
+     * @return true if all files were dumped
+     */
+    private static boolean dumpAll(
+        ArrayList<Path> inputs,
+        final Path outputdir,
+        int threads,
+        final DecodePlanCache plans,
+        final FragmentBuilder.AUIDNameResolver anr,
+        final UL root,
+        final TargetPartition selectedpartition,
+        final ExecutorService partitionexecutor,
+        final InMemoryMetrics total,
+        final EventHandler eventlog) throws IOException, InterruptedException {
+
+        Files.createDirectories(outputdir);
+
+        /* each file is dumped to its own output file, so that a failed dump
+         does not delete the output of another */
+        final ArrayList<String> names = getOutputNames(inputs);
+
+        ExecutorService executor = Executors.newFixedThreadPool(threads);
+
+        ArrayList<Future<EventSummary>> results = new ArrayList<>();
+
+        for (int i = 0; i < inputs.size(); i++) {
+
+            final Path p = inputs.get(i);
+            final String name = names.get(i);
+
+            results.add(executor.submit(new Callable<EventSummary>() {
+
+                @Override
+                public EventSummary call() throws Exception {
+
+                    EventSummary summary = new EventSummary(
+                        name,
+                        total == null ? null : new InMemoryMetrics(total),
+                        eventlog
+                    );
+
+                    Path out = outputdir.resolve(name + ".xml");
+
+                    try (OutputStream os = Files.newOutputStream(out)) {
+
+                        dump(p, plans, anr, summary, root, selectedpartition, partitionexecutor, summary.getMetrics(), os);
+
+                    } catch (Exception e) {
+
+                        /* do not leave a partial fragment behind */
+                        Files.deleteIfExists(out);
+
+                        throw e;
+                    }
+
+                    return summary;
+                }
+            }));
+
+        }
+
+        executor.shutdown();
+
+        boolean success = true;
+
+        for (int i = 0; i < inputs.size(); i++) {
+
+            String name = names.get(i);
+
+            try {
+
+                System.out.println(name + ": " + results.get(i).get().toString());
+
+            } catch (ExecutionException e) {
+
+                success = false;
+
+                System.out.println(name + ": FAILED " + e.getCause().getMessage());
+
+            }
+
+        }
+
+        return success;
+    }
+
+    /**
+     * Returns the name of the output file of each input file, without
+     * extension. An input file whose name has already been used, e.g. because
+     * files with the same name are read from different directories or the same
+     * file is listed twice, is named &lt;filename&gt;.&lt;n&gt;, where n is the
+     * smallest positive integer that makes the name unique. Names are compared
+     * ignoring case.
+     */
+    static ArrayList<String> getOutputNames(List<Path> inputs) {
+
+        ArrayList<String> names = new ArrayList<>();
+
+        HashSet<String> used = new HashSet<>();
+
+        for (Path p : inputs) {
+
+            String filename = p.getFileName().toString();
+
+            String name = filename;
+
+            for (int n = 1; !used.add(name.toLowerCase(Locale.ROOT)); n++) {
+                name = filename + "." + n;
+            }
+
+            names.add(name);
+        }
+
+        return names;
+    }
+
+    /**
+     * Dumps the header metadata of a single file
+     */
+    private static void dump(
+        Path p,
+        DefinitionResolver mds,
+        FragmentBuilder.AUIDNameResolver anr,
+        EventHandler evthandler,
+        UL root,
+        TargetPartition selectedpartition,
+        ExecutorService partitionexecutor,
+        Metrics metrics,
+        OutputStream os) throws Exception {
+
+        TransformerHandler th = newTransformerHandler();
+
+        th.setResult(new StreamResult(os));
+
+        DocumentSink sink = null;
+
+        try (FileChannel f = FileChannel.open(p)) {
+
+            String partitionname = selectedpartition.name();
+
+            PartitionMetadata best = null;
+
+            switch (selectedpartition) {
+                case FOOTER:
+
+                    if (MXFFiles.seekFooterPartition(f) < 0) {
+                        throw new Exception("Footer partition not found");
+                    }
+
+                    break;
+
+                case HEADER:
+
+                    if (MXFFiles.seekHeaderPartition(f) < 0) {
+                        throw new Exception("Header partition not found");
+                    }
+
+                    break;
+
+                case AUTO:
+
+                    /* read all partitions concurrently and pick the most reliable header metadata */
+                    best = PartitionMetadata.selectBest(PartitionMetadata.readAll(f, partitionexecutor, evthandler));
+
+                    if (best == null) {
+                        throw new Exception("No partition with header metadata found");
                     }
-                };
 
-                df = MXFFragmentBuilder.fromInputStream(is, mds, anr, evthandler, root, doc);
+                    partitionname = best.getPartitionPack().getKind().name();
 
-            } catch (Exception e) {
+                    break;
+            }
 
-                if (TargetPartition.AUTO.equals(selectedpartition)) {
+            sink = new DocumentSink(th, p, partitionname);
 
-                    /* if an exception occurred and the target partition is AUTO,
-                     try again with the header partition */
-                    actualpartition = TargetPartition.HEADER;
+            if (best != null) {
 
-                    f.position(0);
+                /* the header metadata of the selected partition has already been read */
+                MXFFragmentBuilder.fromPartitionMetadata(best, mds, anr, evthandler, root, sink, metrics);
+
+            } else {
 
-                } else {
+                InputStream is = new ChannelByteSource(f);
+
+                MXFFragmentBuilder.fromInputStream(is, mds, anr, evthandler, root, sink, metrics);
+
+            }
 
-                    /* otherwise give up */
-                    LOG.severe(e.getMessage());
+        } catch (Exception e) {
+
+            LOG.severe(e.getMessage());
+
+            throw e;
+
+        }
+
+        if (sink.isStarted()) {
+            th.endDocument();
+        }
 
-                    throw e;
+    }
+
+    private static TransformerHandler newTransformerHandler() throws TransformerConfigurationException {
+
+        TransformerHandler th = ((SAXTransformerFactory) TransformerFactory.newInstance()).newTransformerHandler();
+
+        th.getTransformer().setOutputProperty(OutputKeys.INDENT, "yes");
+        th.getTransformer().setOutputProperty("{http://xml.apache.org/xslt}indent-amount", "2");
+
+        return th;
+    }
+
+    /**
+     * Counts events by severity, logs at most MAX_LOGGED_EVENTS events per
+     * code, and optionally holds the metrics of the file
+     */
+    private static class EventSummary implements EventHandler {
+
+        private final String name;
+        private final InMemoryMetrics metrics;
+        private final FilteringEventHandler log;
+        private final EnumMap<Event.Severity, Integer> counts = new EnumMap<>(Event.Severity.class);
+
+        /**
+         * @param name Name prefixed to logged events, or null
+         * @param metrics Metrics of the file, or null
+         * @param eventlog Handler to which logged events are forwarded
+         */
+        EventSummary(final String name, InMemoryMetrics metrics, final EventHandler eventlog) {
+            this.name = name;
+            this.metrics = metrics;
+
+            this.log = new FilteringEventHandler(new EventHandler() {
+
+                @Override
+                public boolean handle(final Event evt) {
+
+                    /* the message is built when the event is logged */
+                    return eventlog.handle(new BasicEvent(evt.getSeverity(), evt.getCode(), new LazyMessage() {
+
+                        @Override
+                        protected String build() {
+                            String msg = evt.getCode().getClass().getCanonicalName() + "::" + evt.getCode().toString() + " " + evt.getMessage();
+
+                            return name == null ? msg : name + ": " + msg;
+                        }
+                    }));
                 }
+            });
 
-            } finally {
+            this.log.setRateLimit(MAX_LOGGED_EVENTS);
+        }
 
-                retry = false;
+        Metrics getMetrics() {
+            return metrics == null ? Metrics.NONE : metrics;
+        }
+
+        @Override
+        public boolean handle(Event evt) {
+            log.handle(evt);
+
+            Integer count = counts.get(evt.getSeverity());
+
+            counts.put(evt.getSeverity(), count == null ? 1 : count + 1);
+
+            return true;
+        }
 
+        @Override
+        public String toString() {
+            StringBuilder sb = new StringBuilder("OK");
+
+            for (Event.Severity severity : Event.Severity.values()) {
+
+                Integer count = counts.get(severity);
+
+                sb.append(' ').append(severity.name()).append('=').append(count == null ? 0 : count);
             }
 
+            long notlogged = 0;
+
+            for (Long count : log.getDroppedCounts().values()) {
+                notlogged += count;
+            }
+
+            if (notlogged > 0) {
+                sb.append(" NOT_LOGGED=").append(notlogged);
+            }
+
+            if (metrics != null) {
+                sb.append(' ').append(metrics.toString());
+            }
+
+            return sb.toString();
         }
 
-        /* date and build version */
-        Date now = new java.util.Date();
-        doc.appendChild(doc.createComment("Created: " + now.toString()));
-        doc.appendChild(doc.createComment("From: " + p.getFileName().toString()));
-        doc.appendChild(doc.createComment("Partition: " + actualpartition.name()));
-        doc.appendChild(doc.createComment("By: regxmllib build " + BuildVersionSingleton.getBuildVersion()));
-        doc.appendChild(doc.createComment("See: https://github.com/sandflow/regxmllib"));
+    }
 
-        /* add regxml fragment */
-        doc.appendChild(df);
+    /**
+     * Writes the document preamble before the first element of the fragment
+     */
+    private static class DocumentSink extends ContentHandlerFragmentSink {
 
-        /* write DOM to file */
-        Transformer tr = TransformerFactory.newInstance().newTransformer();
+        private final TransformerHandler th;
+        private final Path path;
+        private final String partition;
+        private boolean started = false;
 
-        tr.setOutputProperty(OutputKeys.INDENT, "yes");
-        tr.setOutputProperty("{http://xml.apache.org/xslt}indent-amount", "2");
+        DocumentSink(TransformerHandler th, Path path, String partition) {
+            super(th, th);
 
-        tr.transform(
-            new DOMSource(doc),
-            new StreamResult(System.out)
-        );
+            this.th = th;
+            this.path = path;
+            this.partition = partition;
+        }
+
+        boolean isStarted() {
+            return started;
+        }
+
+        @Override
+        public void startElement(String namespace, String prefix, String localName) throws IOException {
+
+            if (!started) {
+
+                started = true;
+
+                try {
+                    th.startDocument();
+                } catch (SAXException e) {
+                    throw new IOException(e);
+                }
+
+                /* date and build version */
+                Date now = new java.util.Date();
+                comment(LazyMessage.of("Created: " + now.toString()));
+                comment(LazyMessage.of("From: " + path.getFileName().toString()));
+                comment(LazyMessage.of("Partition: " + partition));
+                comment(LazyMessage.of("By: regxmllib build " + BuildVersionSingleton.getBuildVersion()));
+                comment(LazyMessage.of("See: https://github.com/sandflow/regxmllib"));
+            }
+
+            super.startElement(namespace, prefix, localName);
+        }
 
     }
 }
@@ -25,55 +25,62 @@
  */
 package com.sandflow.smpte.util;
 
-import java.util.Arrays;
-
 /**
  * AUID as specified in SMPTE ST 377-1
  */
 public class AUID {
-    
+
     /**
-     * Creates a AUID from a UL or UUID URN. 
+     * Creates a AUID from a UL or UUID URN.
      * @param urn URN from which to create the AUID
      * @return AUID, or null if invalid URN
      */
     public static AUID fromURN(String urn) {
-        
+
         if (urn == null) return null;
-        
+
         if (urn.startsWith("urn:smpte:ul:")) {
-            
+
             return new AUID(UL.fromURN(urn));
-            
+
         } else if (urn.startsWith("urn:uuid:")) {
-            
+
             return new AUID(UUID.fromURN(urn));
-            
+
         }
 
         return null;
- 
+
     }
 
-    private byte[] value;
-    
-    private AUID() { }
-    
+    /* bytes 0 to 7 and 8 to 15 of the AUID, in big-endian order */
+    private final long msb;
+    private final long lsb;
+
     /**
      * Instantiates a AUID from a 16-byte buffer
      * @param auid 16-bytes
      */
     public AUID(byte[] auid) {
-        this.value = java.util.Arrays.copyOf(auid, 16);
+        this(toLong(auid, 0), toLong(auid, 8));
+    }
+
+    /**
+     * Instantiates a AUID from its 16 bytes, read as two big-endian longs
+     * @param msb Bytes 0 to 7 of the AUID
+     * @param lsb Bytes 8 to 15 of the AUID
+     */
+    public AUID(long msb, long lsb) {
+        this.msb = msb;
+        this.lsb = lsb;
     }
 
-    
     /**
      * Instantiates a AUID from a UL
      * @param ul UL from which to create the AUID
      */
     public AUID(UL ul) {
-        this.value = ul.getValue();
+        this(ul.getMostSignificantBits(), ul.getLeastSignificantBits());
     }
 
     /**
@@ -81,11 +88,9 @@ public class AUID {
      * @param uuid UUID from which to create the AUID
      */
     public AUID(UUID uuid) {
-        
-        value = new byte[16];
-        
-        System.arraycopy(uuid.getValue(), 8, value, 0, 8);
-        System.arraycopy(uuid.getValue(), 0, value, 8, 8);
+
+        /* the two halves of the UUID are swapped */
+        this(uuid.getLeastSignificantBits(), uuid.getMostSignificantBits());
     }
 
     @Override
@@ -93,24 +98,24 @@ public class AUID {
         if (!(auid instanceof AUID)) {
             return false;
         }
-        return Arrays.equals(((AUID) auid).value, this.value);
+        return ((AUID) auid).msb == this.msb && ((AUID) auid).lsb == this.lsb;
     }
 
     public boolean equals(UL ul) {
-        return Arrays.equals(ul.getValue(), this.value);
+        return ul.getMostSignificantBits() == this.msb && ul.getLeastSignificantBits() == this.lsb;
     }
 
-    
+
     @Override
     public int hashCode() {
-        return Arrays.hashCode(value);
+        return hashCode(msb, lsb);
     }
 
     @Override
     public String toString() {
         if (isUL()) {
             return asUL().toString();
-        } else {           
+        } else {
             return asUUID().toString();
         }
     }
@@ -120,9 +125,9 @@ public class AUID {
      * @return true if the AUID is a UL
      */
     public boolean isUL() {
-        return (value[0] & 0x80) == 0;
+        return msb >= 0;
     }
-    
+
     /**
      * Is the AUID a UUID?
      * @return true if the AUID is a UUID
@@ -130,21 +135,71 @@ public class AUID {
     public boolean isUUID() {
         return ! isUL();
     }
-    
+
     /**
      * Returns the underlying UUID if available
      * @return Underlying UUID, or null if not a UUID
      */
     public UUID asUUID() {
-        
+
         if (isUL()) return null;
-        
-        byte[] uuid = new byte[16];
-        
-        System.arraycopy(this.value, 8, uuid, 0, 8);
-        System.arraycopy(this.value, 0, uuid, 8, 8);
-        
-        return new UUID(uuid);
+
+        return new UUID(lsb, msb);
+    }
+
+    /**
+     * Returns the sequence of bytes that make up the AUID
+     * @return Newly-allocated sequence of 16 bytes
+     */
+    public byte[] getValue() {
+        byte[] value = new byte[16];
+
+        toBytes(msb, value, 0);
+        toBytes(lsb, value, 8);
+
+        return value;
+    }
+
+    /**
+     * Returns the first 8 bytes of the AUID as a big-endian long, without
+     * allocating
+     * @return Most significant 64 bits of the AUID
+     */
+    public long getMostSignificantBits() {
+        return msb;
+    }
+
+    /**
+     * Returns the last 8 bytes of the AUID as a big-endian long, without
+     * allocating
+     * @return Least significant 64 bits of the AUID
+     */
+    public long getLeastSignificantBits() {
+        return lsb;
+    }
+
+    /* bytes past the end of the array are read as 0 */
+    static long toLong(byte[] bytes, int offset) {
+        long l = 0;
+
+        for (int i = offset; i < offset + 8; i++) {
+            l = (l << 8) | (i < bytes.length ? bytes[i] & 0xFF : 0);
+        }
+
+        return l;
+    }
+
+    static void toBytes(long l, byte[] bytes, int offset) {
+        for (int i = offset + 7; i >= offset; i--) {
+            bytes[i] = (byte) l;
+            l >>>= 8;
+        }
+    }
+
+    static int hashCode(long msb, long lsb) {
+        long h = msb * 31 + lsb;
+
+        return (int) (h ^ (h >>> 32));
     }
 
     /**
@@ -152,7 +207,7 @@ public class AUID {
      * @return Underlying UL, or null if not a UL
      */
     public UL asUL() {
-        return isUL() ? new UL(value) : null;
+        return isUL() ? new UL(msb, lsb) : null;
     }
 
 }
@@ -0,0 +1,156 @@
+/*
+ * Copyright (c) 2016, Pierre-Anthony Lemieux (pal@sandflow.com)
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ *
+ * * Redistributions of source code must retain the above copyright notice, this
+ *   list of conditions and the following disclaimer.
+ * * Redistributions in binary form must reproduce the above copyright notice,
+ *   this list of conditions and the following disclaimer in the documentation
+ *   and/or other materials provided with the distribution.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ */
+package com.sandflow.smpte.util;
+
+import java.nio.ByteBuffer;
+
+/**
+ * Reads the remaining bytes of a ByteBuffer, or a region of it, as an
+ * InputStream. The ByteBuffer provided at construction is read using
+ * absolute positions and is neither copied nor modified, so that many streams
+ * can share the same buffer.
+ */
+public class ByteBufferInputStream extends ByteSource {
+
+    private final ByteBuffer buffer;
+    private final int start;
+    private final int end;
+    private int position;
+    private int markPosition;
+
+    /* used for bulk reads from buffers that are not backed by an array */
+    private ByteBuffer view;
+
+    /**
+     * Instantiates a ByteBufferInputStream
+     * @param buffer Buffer from which data will be read, starting at its current position
+     */
+    public ByteBufferInputStream(ByteBuffer buffer) {
+        this(buffer, buffer.position(), buffer.remaining());
+    }
+
+    /**
+     * Instantiates a ByteBufferInputStream that reads a region of a buffer,
+     * regardless of the position and limit of the buffer
+     * @param buffer Buffer from which data will be read. Must not be modified
+     * while the stream is in use.
+     * @param offset Absolute index of the first byte of the region
+     * @param length Length of the region in bytes
+     */
+    public ByteBufferInputStream(ByteBuffer buffer, int offset, int length) {
+        if (offset < 0 || length < 0 || offset > buffer.capacity() - length) {
+            throw new IndexOutOfBoundsException();
+        }
+
+        this.buffer = buffer;
+        this.start = offset;
+        this.end = offset + length;
+        this.position = offset;
+        this.markPosition = offset;
+    }
+
+    /**
+     * Returns the position of the next byte to be read
+     *
+     * @return Offset in bytes from the first byte of the stream
+     */
+    @Override
+    public long position() {
+        return position - start;
+    }
+
+    @Override
+    public int read() {
+        return position < end ? buffer.get(position++) & 0xFF : -1;
+    }
+
+    @Override
+    public int read(byte[] bytes, int off, int len) {
+        if (len == 0) {
+            return 0;
+        }
+
+        if (position >= end) {
+            return -1;
+        }
+
+        int sz = Math.min(len, end - position);
+
+        if (buffer.hasArray()) {
+
+            System.arraycopy(buffer.array(), buffer.arrayOffset() + position, bytes, off, sz);
+
+        } else {
+
+            if (view == null) {
+                view = buffer.duplicate();
+            }
+
+            view.limit(position + sz).position(position);
+
+            view.get(bytes, off, sz);
+
+        }
+
+        position += sz;
+
+        return sz;
+    }
+
+    @Override
+    public long skip(long n) {
+        if (n <= 0) {
+            return 0;
+        }
+
+        int sz = (int) Math.min(n, end - position);
+
+        position += sz;
+
+        return sz;
+    }
+
+    @Override
+    public int available() {
+        return end - position;
+    }
+
+    @Override
+    public boolean markSupported() {
+        return true;
+    }
+
+    @Override
+    public synchronized void mark(int readlimit) {
+        markPosition = position;
+    }
+
+    @Override
+    public synchronized void reset() {
+        position = markPosition;
+    }
+
+}
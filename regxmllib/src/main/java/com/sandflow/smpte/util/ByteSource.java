@@ -0,0 +1,53 @@
+/*
+ * Copyright (c) 2016, Pierre-Anthony Lemieux (pal@sandflow.com)
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ *
+ * * Redistributions of source code must retain the above copyright notice, this
+ *   list of conditions and the following disclaimer.
+ * * Redistributions in binary form must reproduce the above copyright notice,
+ *   this list of conditions and the following disclaimer in the documentation
+ *   and/or other materials provided with the distribution.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ */
+package com.sandflow.smpte.util;
+
+import java.io.IOException;
+import java.io.InputStream;
+
+/**
+ * InputStream that knows the position of the next byte to be read.
+ * {@link com.sandflow.smpte.klv.KLVInputStream} and its subclasses use it to
+ * report how many bytes have been consumed without an intervening
+ * {@link CountingInputStream}.
+ * <p>
+ * Implementations include {@link ChannelByteSource}, which reads ahead from a
+ * SeekableByteChannel, and {@link ByteBufferInputStream}, which reads from a
+ * ByteBuffer, e.g. a memory-mapped file or a wrapped byte array.
+ */
+public abstract class ByteSource extends InputStream {
+
+    /**
+     * Returns the position of the next byte to be read. The origin depends on
+     * the implementation, and only differences between positions are
+     * meaningful in general.
+     *
+     * @return Position in bytes
+     * @throws IOException
+     */
+    public abstract long position() throws IOException;
+
+}
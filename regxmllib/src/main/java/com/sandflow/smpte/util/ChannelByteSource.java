@@ -0,0 +1,261 @@
+/*
+ * Copyright (c) 2016, Pierre-Anthony Lemieux (pal@sandflow.com)
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ *
+ * * Redistributions of source code must retain the above copyright notice, this
+ *   list of conditions and the following disclaimer.
+ * * Redistributions in binary form must reproduce the above copyright notice,
+ *   this list of conditions and the following disclaimer in the documentation
+ *   and/or other materials provided with the distribution.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ */
+package com.sandflow.smpte.util;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.channels.SeekableByteChannel;
+
+/**
+ * Reads a SeekableByteChannel through a read-ahead buffer, so that reading a
+ * Key, a Length or a small Value does not result in a separate read from the
+ * channel. Skipping past the end of the buffer moves the position without
+ * reading the intervening bytes.
+ * <p>
+ * A FileChannel is read using absolute reads, and its position is therefore
+ * never modified. The position of any other channel is set before each read
+ * and should not otherwise be relied upon while the ChannelByteSource is in use.
+ * <p>
+ * This class is not thread-safe.
+ */
+public class ChannelByteSource extends ByteSource {
+
+    /**
+     * Default size of the read-ahead buffer, in bytes
+     */
+    public static final int DEFAULT_READ_AHEAD = 64 * 1024;
+
+    private final SeekableByteChannel channel;
+    private final ByteBuffer buffer;
+
+    /* position within the channel of the first byte of the buffer */
+    private long bufferPosition;
+
+    /**
+     * Creates a ChannelByteSource with a heap read-ahead buffer of
+     * {@link #DEFAULT_READ_AHEAD} bytes
+     *
+     * @param channel Channel to read from, starting at its current position
+     * @throws IOException
+     */
+    public ChannelByteSource(SeekableByteChannel channel) throws IOException {
+        this(channel, DEFAULT_READ_AHEAD, false);
+    }
+
+    /**
+     * Creates a ChannelByteSource
+     *
+     * @param channel Channel to read from, starting at its current position
+     * @param readahead Size of the read-ahead buffer, in bytes
+     * @param direct Allocates a direct buffer if true, which avoids an extra
+     * copy when reading from the channel but makes reading individual bytes
+     * from the buffer slower. Heap buffers are typically preferable when
+     * parsing small structures, e.g. Header Metadata.
+     * @throws IOException
+     */
+    public ChannelByteSource(SeekableByteChannel channel, int readahead, boolean direct) throws IOException {
+
+        if (channel == null) throw new NullPointerException();
+
+        if (readahead <= 0) throw new IllegalArgumentException("Read-ahead size must be positive.");
+
+        this.channel = channel;
+        this.buffer = direct ? ByteBuffer.allocateDirect(readahead) : ByteBuffer.allocate(readahead);
+        this.buffer.limit(0);
+        this.bufferPosition = channel.position();
+    }
+
+    /**
+     * Returns the position of the next byte to be read
+     *
+     * @return Offset in bytes from the start of the channel
+     */
+    @Override
+    public long position() {
+        return bufferPosition + buffer.position();
+    }
+
+    /**
+     * Sets the position of the next byte to be read. The read-ahead buffer is
+     * retained if the position falls within it.
+     *
+     * @param position Offset in bytes from the start of the channel
+     */
+    public void position(long position) {
+
+        if (position < 0) throw new IllegalArgumentException();
+
+        if (position >= bufferPosition && position <= bufferPosition + buffer.limit()) {
+
+            buffer.position((int) (position - bufferPosition));
+
+        } else {
+
+            bufferPosition = position;
+            buffer.limit(0);
+
+        }
+    }
+
+    /**
+     * Returns the size of the underlying channel
+     *
+     * @return Size in bytes
+     * @throws IOException
+     */
+    public long size() throws IOException {
+        return channel.size();
+    }
+
+    /* refills the buffer starting at the current position */
+    private int fill() throws IOException {
+
+        bufferPosition += buffer.position();
+
+        buffer.clear();
+
+        int r = readChannel(buffer, bufferPosition);
+
+        buffer.flip();
+
+        return r;
+    }
+
+    private int readChannel(ByteBuffer dst, long position) throws IOException {
+
+        if (channel instanceof FileChannel) {
+            return ((FileChannel) channel).read(dst, position);
+        }
+
+        channel.position(position);
+
+        return channel.read(dst);
+    }
+
+    @Override
+    public int read() throws IOException {
+
+        if (!buffer.hasRemaining() && fill() <= 0) {
+            return -1;
+        }
+
+        return buffer.get() & 0xFF;
+    }
+
+    /**
+     * Reads up to len bytes, blocking until len bytes are read or the end of
+     * the channel is reached
+     */
+    @Override
+    public int read(byte[] bytes, int off, int len) throws IOException {
+
+        if (len == 0) {
+            return 0;
+        }
+
+        int count = 0;
+
+        while (count < len) {
+
+            if (!buffer.hasRemaining()) {
+
+                if (len - count >= buffer.capacity()) {
+
+                    /* bypass the buffer for large reads */
+                    long pos = position();
+
+                    int r = readChannel(ByteBuffer.wrap(bytes, off + count, len - count), pos);
+
+                    if (r <= 0) {
+                        break;
+                    }
+
+                    bufferPosition = pos + r;
+                    buffer.limit(0);
+
+                    count += r;
+
+                    continue;
+                }
+
+                if (fill() <= 0) {
+                    break;
+                }
+            }
+
+            int sz = Math.min(len - count, buffer.remaining());
+
+            buffer.get(bytes, off + count, sz);
+
+            count += sz;
+        }
+
+        return count == 0 ? -1 : count;
+    }
+
+    /**
+     * Moves the position forward without reading the skipped bytes, unless
+     * they are already buffered. Does not skip past the end of the channel.
+     */
+    @Override
+    public long skip(long n) throws IOException {
+
+        if (n <= 0) {
+            return 0;
+        }
+
+        if (n <= buffer.remaining()) {
+
+            buffer.position(buffer.position() + (int) n);
+
+            return n;
+        }
+
+        long pos = position();
+
+        long sz = Math.min(n, channel.size() - pos);
+
+        if (sz <= 0) {
+            return 0;
+        }
+
+        position(pos + sz);
+
+        return sz;
+    }
+
+    @Override
+    public int available() throws IOException {
+        return (int) Math.min(Integer.MAX_VALUE, Math.max(0, channel.size() - position()));
+    }
+
+    @Override
+    public void close() throws IOException {
+        channel.close();
+    }
+
+}
@@ -31,10 +31,12 @@ import java.io.InputStream;
 /**
  * Counts the number of bytes read from an InputStream
  */
-public class CountingInputStream extends InputStream {
+public class CountingInputStream extends ByteSource {
     
     long count = 0;
     long markCount = 0;
+    long position = 0;
+    long markPosition = 0;
     InputStream is;
     
     /**
@@ -48,34 +50,47 @@ public class CountingInputStream extends InputStream {
     @Override
     public synchronized void mark(int i) {
         markCount = count;
+        markPosition = position;
         is.mark(i);
     }
 
     @Override
     public long skip(long l) throws IOException {
         long sb = is.skip(l);
-        if (sb >= 0) count += sb;
+        if (sb >= 0) {
+            count += sb;
+            position += sb;
+        }
         return sb;
     }
 
     @Override
     public int read(byte[] bytes, int i, int i1) throws IOException {
         int sb = is.read(bytes, i, i1);
-        if (sb >= 0) count += sb;
+        if (sb >= 0) {
+            count += sb;
+            position += sb;
+        }
         return sb;
     }
 
     @Override
     public int read(byte[] bytes) throws IOException {
         int sb = is.read(bytes);
-        if (sb >= 0) count += sb;
+        if (sb >= 0) {
+            count += sb;
+            position += sb;
+        }
         return sb;
     }
 
     @Override
     public int read() throws IOException {
         int sb = is.read();
-        if (sb >= 0) count += 1;
+        if (sb >= 0) {
+            count += 1;
+            position += 1;
+        }
         return sb;
     }
 
@@ -87,6 +102,7 @@ public class CountingInputStream extends InputStream {
     @Override
     public synchronized void reset() throws IOException {
         count = markCount;
+        position = markPosition;
         is.reset();
     }
 
@@ -108,6 +124,15 @@ public class CountingInputStream extends InputStream {
         return count;
     }
     
+    /**
+     * @return Returns the number of bytes read since the object was created,
+     * regardless of calls to resetCount
+     */
+    @Override
+    public long position() {
+        return position;
+    }
+    
     /**
      * Resets the number of bytes read to zero.
      */
@@ -25,8 +25,6 @@
  */
 package com.sandflow.smpte.util;
 
-import java.util.Arrays;
-
 /**
  * IDAU as specified in SMPTE ST 377-1
  */
@@ -55,28 +53,36 @@ public class IDAU {
  
     }
 
-    private byte[] value;
-    
-    private IDAU() { }
+    /* bytes 0 to 7 and 8 to 15 of the IDAU, in big-endian order */
+    private final long msb;
+    private final long lsb;
     
     /**
      * Instantiates a IDAU from a 16-byte buffer
      * @param idau 16-bytes
      */
     public IDAU(byte[] idau) {
-        this.value = java.util.Arrays.copyOf(idau, 16);
+        this(AUID.toLong(idau, 0), AUID.toLong(idau, 8));
     }
 
+    /**
+     * Instantiates a IDAU from its 16 bytes, read as two big-endian longs
+     * @param msb Bytes 0 to 7 of the IDAU
+     * @param lsb Bytes 8 to 15 of the IDAU
+     */
+    public IDAU(long msb, long lsb) {
+        this.msb = msb;
+        this.lsb = lsb;
+    }
     
     /**
      * Instantiates a IDAU from a UL
      * @param ul UL from which to create the IDAU
      */
     public IDAU(UL ul) {
-        this.value = new byte[16];
         
-        System.arraycopy(ul.getValue(), 8, this.value, 0, 8);
-        System.arraycopy(ul.getValue(), 0, this.value, 8, 8);
+        /* the two halves of the UL are swapped */
+        this(ul.getLeastSignificantBits(), ul.getMostSignificantBits());
     }
 
     /**
@@ -85,7 +91,7 @@ public class IDAU {
      */
     public IDAU(UUID uuid) {
         
-        this.value = java.util.Arrays.copyOf(uuid.getValue(), 16);
+        this(uuid.getMostSignificantBits(), uuid.getLeastSignificantBits());
         
     }
 
@@ -94,13 +100,13 @@ public class IDAU {
         if (!(idau instanceof IDAU)) {
             return false;
         }
-        return Arrays.equals(((IDAU) idau).value, this.value);
+        return ((IDAU) idau).msb == this.msb && ((IDAU) idau).lsb == this.lsb;
     }
 
     
     @Override
     public int hashCode() {
-        return Arrays.hashCode(value);
+        return AUID.hashCode(msb, lsb);
     }
 
     @Override
@@ -117,7 +123,8 @@ public class IDAU {
      * @return true if the IDAU is a UL
      */
     public boolean isUL() {
-        return (value[9] & 0x80) == 0;
+        /* tests the MSB of byte 9 */
+        return (lsb & 0x0080000000000000L) == 0;
     }
     
     /**
@@ -136,7 +143,7 @@ public class IDAU {
         
         if (isUL()) return null;
         
-        return new UUID(this.value);
+        return new UUID(msb, lsb);
     }
     
     /**
@@ -145,12 +152,7 @@ public class IDAU {
      */
     public AUID asAUID() {
         
-        byte[] auid = new byte[16];
-        
-        System.arraycopy(this.value, 8, auid, 0, 8);
-        System.arraycopy(this.value, 0, auid, 8, 8);
-        
-        return new AUID(auid);
+        return new AUID(lsb, msb);
     }
     
 
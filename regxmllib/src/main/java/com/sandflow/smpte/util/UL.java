@@ -38,6 +38,20 @@ public class UL {
     private final static int CATEGORY_DESIGNATOR_BYTE = 4;
     private final static int REGISTRY_DESIGNATOR_BYTE = 5;
 
+    /* BYTEMASKS[bits] expands each bit of an 8-bit mask into a byte of a
+       64-bit mask, with the MSB of the 8-bit mask mapped to the MSB byte */
+    private final static long[] BYTEMASKS = new long[256];
+
+    static {
+        for (int bits = 0; bits < 256; bits++) {
+            for (int i = 0; i < 8; i++) {
+                if ((bits & (0x80 >>> i)) != 0) {
+                    BYTEMASKS[bits] |= 0xFFL << (8 * (7 - i));
+                }
+            }
+        }
+    }
+
     /**
      * Creates a UL from a URN
      * (urn:smpte:ul:xxxxxxxx.xxxxxxxx.xxxxxxxx.xxxxxxxx)
@@ -47,16 +61,12 @@ public class UL {
      */
     public static UL fromURN(String urn) {
 
-        byte[] ul = new byte[16];
-
         if (URN_PATTERN.matcher(urn).matches()) {
-            for (int i = 0; i < 4; i++) {
-                for (int j = 0; j < 4; j++) {
-                    ul[4 * i + j] = (byte) Integer.parseInt(urn.substring(13 + i * 9 + 2 * j, 13 + i * 9 + 2 * j + 2), 16);
-                }
-            }
 
-            return new UL(ul);
+            long msb = (Long.parseLong(urn.substring(13, 21), 16) << 32) | Long.parseLong(urn.substring(22, 30), 16);
+            long lsb = (Long.parseLong(urn.substring(31, 39), 16) << 32) | Long.parseLong(urn.substring(40, 48), 16);
+
+            return new UL(msb, lsb);
 
         } else {
 
@@ -92,7 +102,9 @@ public class UL {
 
     }
 
-    private final byte[] value;
+    /* bytes 0 to 7 and 8 to 15 of the UL, in big-endian order */
+    private final long msb;
+    private final long lsb;
 
     /**
      * @return true if the UL is a Key for a KLV Group (see SMPTE ST 336)
@@ -115,17 +127,24 @@ public class UL {
         return getValueOctet(REGISTRY_DESIGNATOR_BYTE);
     }
 
-    private UL() {
-        this.value = new byte[16];
-    }
-
     /**
      * Instantiates a UL from a sequence of 16 bytes
      *
      * @param ul Sequence of 16 bytes
      */
     public UL(byte[] ul) {
-        this.value = java.util.Arrays.copyOf(ul, 16);
+        this(AUID.toLong(ul, 0), AUID.toLong(ul, 8));
+    }
+
+    /**
+     * Instantiates a UL from its 16 bytes, read as two big-endian longs
+     *
+     * @param msb Bytes 0 to 7 of the UL
+     * @param lsb Bytes 8 to 15 of the UL
+     */
+    public UL(long msb, long lsb) {
+        this.msb = msb;
+        this.lsb = lsb;
     }
 
     /**
@@ -135,19 +154,7 @@ public class UL {
      * @return true if the ULs are equal
      */
     public boolean equalsIgnoreVersion(UL ul) {
-        for (int i = 0; i < 7; i++) {
-            if (this.value[i] != ul.value[i]) {
-                return false;
-            }
-        }
-
-        for (int i = 8; i < 16; i++) {
-            if (this.value[i] != ul.value[i]) {
-                return false;
-            }
-        }
-
-        return true;
+        return ((this.msb ^ ul.msb) & ~0xFFL) == 0 && this.lsb == ul.lsb;
     }
 
     /**
@@ -158,24 +165,17 @@ public class UL {
     }
 
     /**
-     * Compares this UL to another UL, ignoring specific bytes based on a mask
+     * Compares this UL to another UL, ignoring specific bytes based on a mask.
+     * The last byte of the ULs is never compared.
      *
      * @param ul Other UL to compare
-     * @param bytemask 16-bit mask, where byte[n] is ignored if bit[n] is 0,
-     * with n = 0 is the LSB
+     * @param bytemask 16-bit mask, where byte[n] is ignored if bit[15 - n] is 0,
+     * with bit[0] the LSB
      * @return true if the ULs are equal
      */
     public boolean equalsWithMask(UL ul, int bytemask) {
-
-        for (int i = 0; i < 15; i++) {
-            if ((bytemask & 0x8000) != 0 && this.value[i] != ul.value[i]) {
-                return false;
-            }
-
-            bytemask = bytemask << 1;
-        }
-
-        return true;
+        return ((this.msb ^ ul.msb) & BYTEMASKS[(bytemask >>> 8) & 0xFF]) == 0
+            && ((this.lsb ^ ul.lsb) & BYTEMASKS[bytemask & 0xFE]) == 0;
     }
 
     /**
@@ -185,18 +185,43 @@ public class UL {
      * @return true if the ULs are equal
      */
     public boolean equals(UL ul) {
-        return Arrays.equals(ul.value, this.value);
+        return this.msb == ul.msb && this.lsb == ul.lsb;
     }
-    
+
     /**
      * Returns the sequence of bytes that make up the UL (in the order specified by ST 298 4122)
-     * 
-     * @return Sequence of 16 bytes
+     *
+     * @return Newly-allocated sequence of 16 bytes
      */
     public byte[] getValue() {
+        byte[] value = new byte[16];
+
+        AUID.toBytes(msb, value, 0);
+        AUID.toBytes(lsb, value, 8);
+
         return value;
     }
 
+    /**
+     * Returns the first 8 bytes of the UL as a big-endian long, without
+     * allocating
+     *
+     * @return Most significant 64 bits of the UL
+     */
+    public long getMostSignificantBits() {
+        return msb;
+    }
+
+    /**
+     * Returns the last 8 bytes of the UL as a big-endian long, without
+     * allocating
+     *
+     * @return Least significant 64 bits of the UL
+     */
+    public long getLeastSignificantBits() {
+        return lsb;
+    }
+
     /**
      * Returns the nth octet of the UL, indexed at 0
      *
@@ -204,12 +229,16 @@ public class UL {
      * @return Value of the byte
      */
     public byte getValueOctet(int i) {
-        return value[i];
+        if (i < 0 || i > 15) {
+            throw new IndexOutOfBoundsException();
+        }
+
+        return (byte) ((i < 8 ? msb : lsb) >>> (8 * (7 - (i & 7))));
     }
 
     @Override
     public int hashCode() {
-        return Arrays.hashCode(value);
+        return AUID.hashCode(msb, lsb);
     }
 
     @Override
@@ -221,35 +250,37 @@ public class UL {
             return false;
         }
         final UL other = (UL) obj;
-        if (!Arrays.equals(this.value, other.value)) {
-            return false;
-        }
-        return true;
+        return this.msb == other.msb && this.lsb == other.lsb;
     }
 
+    final static char[] HEXMAP = "0123456789abcdef".toCharArray();
+    final static char[] URNTEMPLATE = "urn:smpte:ul:060e2b34.01010101.01011502.00000000".toCharArray();
+
     @Override
     public String toString() {
 
-        return String.format("urn:smpte:ul:%02x%02x%02x%02x.%02x%02x%02x%02x.%02x%02x%02x%02x.%02x%02x%02x%02x",
-                value[0],
-                value[1],
-                value[2],
-                value[3],
-                value[4],
-                value[5],
-                value[6],
-                value[7],
-                value[8],
-                value[9],
-                value[10],
-                value[11],
-                value[12],
-                value[13],
-                value[14],
-                value[15]
-        );
+        char[] out = Arrays.copyOf(URNTEMPLATE, URNTEMPLATE.length);
+
+        int outoff = 13;
+
+        for (int i = 0; i < 4; i++) {
+
+            long word = i < 2 ? msb : lsb;
+
+            for (int j = 0; j < 4; j++) {
+
+                int v = (int) (word >>> (8 * (7 - 4 * (i & 1) - j))) & 0xFF;
+                out[outoff++] = HEXMAP[v >>> 4];
+                out[outoff++] = HEXMAP[v & 0x0F];
+
+            }
+
+            outoff++;
+        }
+
+        return new String(out);
     }
-    
+
     /**
      * @return true if the UL is a class 14 UL
      */
@@ -49,7 +49,7 @@ public class UMID {
         if (URN_PATTERN.matcher(urn).matches()) {
             for (int i = 0; i < 8; i++) {
                 for (int j = 0; j < 4; j++) {
-                    umid[4 * i + j] = (byte) Integer.parseInt(urn.substring(13 + i * 9 + 2 * j, 13 + i * 9 + 2 * j + 2), 16);
+                    umid[4 * i + j] = (byte) Integer.parseInt(urn.substring(15 + i * 9 + 2 * j, 15 + i * 9 + 2 * j + 2), 16);
                 }
             }
 
@@ -63,11 +63,11 @@ public class UMID {
 
     }
 
-    private byte[] value;
-
-    private UMID() {
-        this.value = new byte[32];
-    }
+    /* bytes 0-7, 8-15, 16-23 and 24-31 of the UMID, in big-endian order */
+    private final long w0;
+    private final long w1;
+    private final long w2;
+    private final long w3;
 
     /**
      * Instantiates a UMID from a sequence of 32 bytes
@@ -75,21 +75,43 @@ public class UMID {
      * @param umid Sequence of 32 bytes
      */
     public UMID(byte[] umid) {
-        this.value = java.util.Arrays.copyOf(umid, 32);
+        this(AUID.toLong(umid, 0), AUID.toLong(umid, 8), AUID.toLong(umid, 16), AUID.toLong(umid, 24));
+    }
+
+    /**
+     * Instantiates a UMID from its 32 bytes, read as four big-endian longs
+     *
+     * @param w0 Bytes 0 to 7 of the UMID
+     * @param w1 Bytes 8 to 15 of the UMID
+     * @param w2 Bytes 16 to 23 of the UMID
+     * @param w3 Bytes 24 to 31 of the UMID
+     */
+    public UMID(long w0, long w1, long w2, long w3) {
+        this.w0 = w0;
+        this.w1 = w1;
+        this.w2 = w2;
+        this.w3 = w3;
     }
 
     /**
      * Returns the sequence of bytes that make up the UMID (as specified in SMPTE ST 330)
      * 
-     * @return sequence of 32 bytes
+     * @return Newly-allocated sequence of 32 bytes
      */
     public byte[] getValue() {
+        byte[] value = new byte[32];
+
+        AUID.toBytes(w0, value, 0);
+        AUID.toBytes(w1, value, 8);
+        AUID.toBytes(w2, value, 16);
+        AUID.toBytes(w3, value, 24);
+
         return value;
     }
 
     @Override
     public int hashCode() {
-        return Arrays.hashCode(value);
+        return 31 * AUID.hashCode(w0, w1) + AUID.hashCode(w2, w3);
     }
 
     @Override
@@ -101,10 +123,8 @@ public class UMID {
             return false;
         }
         final UMID other = (UMID) obj;
-        if (!Arrays.equals(this.value, other.value)) {
-            return false;
-        }
-        return true;
+        return this.w0 == other.w0 && this.w1 == other.w1
+            && this.w2 == other.w2 && this.w3 == other.w3;
     }
 
     final static char[] HEXMAP = "0123456789abcdef".toCharArray();
@@ -115,6 +135,8 @@ public class UMID {
 
         char[] out = Arrays.copyOf(URNTEMPLATE, URNTEMPLATE.length);
 
+        byte[] value = getValue();
+
         for (int i = 0; i < 8; i++) {
             for (int j = 0; j < 4; j++) {
 
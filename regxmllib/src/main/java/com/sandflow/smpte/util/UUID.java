@@ -38,10 +38,9 @@ import java.util.regex.Pattern;
  */
 public class UUID {
 
-    private byte[] value;
-
-    private UUID() {
-    }
+    /* bytes 0 to 7 and 8 to 15 of the UUID, in big-endian order */
+    private final long msb;
+    private final long lsb;
 
     /**
      * Instantiates a UUID from a sequence of 16 bytes
@@ -49,23 +48,58 @@ public class UUID {
      * @param uuid Sequence of 16 bytes
      */
     public UUID(byte[] uuid) {
-        this.value = java.util.Arrays.copyOf(uuid, 16);
+        this(AUID.toLong(uuid, 0), AUID.toLong(uuid, 8));
+    }
+
+    /**
+     * Instantiates a UUID from its 16 bytes (in the order specified by RFC
+     * 4122), read as two big-endian longs
+     *
+     * @param msb Bytes 0 to 7 of the UUID
+     * @param lsb Bytes 8 to 15 of the UUID
+     */
+    public UUID(long msb, long lsb) {
+        this.msb = msb;
+        this.lsb = lsb;
     }
 
     /**
      * Returns the sequence of bytes that make up the UUID (in the order specified by RFC 4122)
      * 
-     * @return Sequence of 16 bytes
+     * @return Newly-allocated sequence of 16 bytes
      */
     public byte[] getValue() {
-        return this.value;
+        byte[] value = new byte[16];
+
+        AUID.toBytes(msb, value, 0);
+        AUID.toBytes(lsb, value, 8);
+
+        return value;
+    }
+
+    /**
+     * Returns the first 8 bytes of the UUID as a big-endian long, without
+     * allocating
+     *
+     * @return Most significant 64 bits of the UUID
+     */
+    public long getMostSignificantBits() {
+        return msb;
+    }
+
+    /**
+     * Returns the last 8 bytes of the UUID as a big-endian long, without
+     * allocating
+     *
+     * @return Least significant 64 bits of the UUID
+     */
+    public long getLeastSignificantBits() {
+        return lsb;
     }
 
     @Override
     public int hashCode() {
-        int hash = 7;
-        hash = 37 * hash + Arrays.hashCode(this.value);
-        return hash;
+        return AUID.hashCode(msb, lsb);
     }
 
     @Override
@@ -77,10 +111,7 @@ public class UUID {
             return false;
         }
         final UUID other = (UUID) obj;
-        if (!Arrays.equals(this.value, other.value)) {
-            return false;
-        }
-        return true;
+        return this.msb == other.msb && this.lsb == other.lsb;
     }
 
     private final static Pattern URN_PATTERN = Pattern.compile("urn:uuid:[a-fA-F0-9]{8}-(?:[a-fA-F0-9]{4}-){3}[a-fA-F0-9]{12}");
@@ -187,6 +218,8 @@ public class UUID {
 
         char[] out = Arrays.copyOf(URNTEMPLATE, URNTEMPLATE.length);
 
+        byte[] value = getValue();
+
         int inoff = 0;
         int outoff = 9;
 
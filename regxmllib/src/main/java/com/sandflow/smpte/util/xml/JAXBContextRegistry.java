@@ -0,0 +1,135 @@
+/*
+ * Copyright (c) 2016, Pierre-Anthony Lemieux (pal@sandflow.com)
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ *
+ * * Redistributions of source code must retain the above copyright notice, this
+ *   list of conditions and the following disclaimer.
+ * * Redistributions in binary form must reproduce the above copyright notice,
+ *   this list of conditions and the following disclaimer in the documentation
+ *   and/or other materials provided with the distribution.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ */
+package com.sandflow.smpte.util.xml;
+
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.ConcurrentHashMap;
+import javax.xml.bind.JAXBContext;
+import javax.xml.bind.JAXBException;
+import javax.xml.bind.Marshaller;
+import javax.xml.bind.Unmarshaller;
+
+/**
+ * Shares JAXBContext instances across the application. Creating a JAXBContext
+ * is expensive since it requires reflecting over the bound classes, whereas a
+ * JAXBContext is thread-safe once created.
+ * <p>
+ * Unmarshallers are not thread-safe and are therefore cached per thread.
+ * Marshallers are inexpensive to create from an existing JAXBContext and are
+ * typically configured by the caller, so a new one is returned on every call.
+ * <p>
+ * This class is thread-safe.
+ */
+public final class JAXBContextRegistry {
+
+    private static final ConcurrentHashMap<List<Class<?>>, Entry> ENTRIES = new ConcurrentHashMap<>();
+
+    private JAXBContextRegistry() {
+    }
+
+    private static Entry getEntry(Class<?>... classes) throws JAXBException {
+
+        List<Class<?>> key = Arrays.asList(classes.clone());
+
+        Entry e = ENTRIES.get(key);
+
+        if (e == null) {
+
+            /* concurrent first calls may create redundant contexts, only one of which is kept */
+            
+            Entry ne = new Entry(JAXBContext.newInstance(classes));
+
+            e = ENTRIES.putIfAbsent(key, ne);
+
+            if (e == null) {
+                e = ne;
+            }
+        }
+
+        return e;
+    }
+
+    /**
+     * Returns the JAXBContext bound to a list of classes, creating it on the
+     * first call. The same JAXBContext is returned for the same list of
+     * classes, in the same order.
+     *
+     * @param classes Classes to be recognized by the JAXBContext
+     * @return Shared JAXBContext
+     * @throws JAXBException
+     */
+    public static JAXBContext getContext(Class<?>... classes) throws JAXBException {
+        return getEntry(classes).context;
+    }
+
+    /**
+     * Returns an Unmarshaller created from the JAXBContext returned by
+     * {@link #getContext(java.lang.Class...)}. The Unmarshaller is reused by
+     * subsequent calls from the same thread and must therefore neither be
+     * shared with other threads nor reconfigured by the caller.
+     *
+     * @param classes Classes to be recognized by the Unmarshaller
+     * @return Unmarshaller owned by the calling thread
+     * @throws JAXBException
+     */
+    public static Unmarshaller getUnmarshaller(Class<?>... classes) throws JAXBException {
+        Entry e = getEntry(classes);
+
+        Unmarshaller u = e.unmarshallers.get();
+
+        if (u == null) {
+            u = e.context.createUnmarshaller();
+
+            e.unmarshallers.set(u);
+        }
+
+        return u;
+    }
+
+    /**
+     * Returns a new Marshaller created from the JAXBContext returned by
+     * {@link #getContext(java.lang.Class...)}
+     *
+     * @param classes Classes to be recognized by the Marshaller
+     * @return New Marshaller
+     * @throws JAXBException
+     */
+    public static Marshaller createMarshaller(Class<?>... classes) throws JAXBException {
+        return getEntry(classes).context.createMarshaller();
+    }
+
+    private static class Entry {
+
+        final JAXBContext context;
+        final ThreadLocal<Unmarshaller> unmarshallers = new ThreadLocal<>();
+
+        Entry(JAXBContext context) {
+            this.context = context;
+        }
+    }
+
+}
@@ -0,0 +1,149 @@
+/*
+ * Copyright (c) 2016, pal
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ *
+ * * Redistributions of source code must retain the above copyright notice, this
+ *   list of conditions and the following disclaimer.
+ * * Redistributions in binary form must reproduce the above copyright notice,
+ *   this list of conditions and the following disclaimer in the documentation
+ *   and/or other materials provided with the distribution.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ */
+package com.sandflow.util.events;
+
+import java.io.Closeable;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * Logs events on a background thread, so that formatting and writing the
+ * messages do not slow down the thread that raises them. Events are queued
+ * and, if the queue is full, dropped and counted; the number of dropped
+ * events is logged when the handler is closed. The handler asks the caller to
+ * continue processing.
+ *
+ * Instances can be shared across threads and must be closed to flush the
+ * queued events.
+ *
+ * @author pal
+ */
+public class AsyncLoggingEventHandler extends LoggingEventHandler implements Closeable {
+
+    private static final int DEFAULT_CAPACITY = 4096;
+
+    private static final Event CLOSE = new BasicEvent(Event.Severity.INFO, null, (String) null);
+
+    private final BlockingQueue<Event> queue;
+    private final AtomicLong droppedcount = new AtomicLong();
+    private final Thread writer;
+    private volatile boolean closed = false;
+
+    /**
+     * Creates a handler with a queue of 4096 events
+     *
+     * @param logger Logger to which events are written. Must not be null.
+     */
+    public AsyncLoggingEventHandler(Logger logger) {
+        this(logger, DEFAULT_CAPACITY);
+    }
+
+    /**
+     * @param logger Logger to which events are written. Must not be null.
+     * @param capacity Maximum number of events waiting to be logged
+     */
+    public AsyncLoggingEventHandler(Logger logger, int capacity) {
+        super(logger);
+
+        this.queue = new ArrayBlockingQueue<>(capacity);
+
+        this.writer = new Thread(new Runnable() {
+
+            @Override
+            public void run() {
+                try {
+                    for (Event evt; (evt = queue.take()) != CLOSE;) {
+                        log(evt);
+                    }
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                }
+            }
+        }, "AsyncLoggingEventHandler");
+
+        this.writer.setDaemon(true);
+        this.writer.start();
+    }
+
+    @Override
+    public boolean handle(Event evt) {
+
+        if (closed || !getLogger().isLoggable(toLevel(evt.getSeverity()))) {
+            return true;
+        }
+
+        if (!queue.offer(evt)) {
+            droppedcount.incrementAndGet();
+        }
+
+        return true;
+    }
+
+    /**
+     * Returns the number of events that were not logged because the queue was
+     * full
+     *
+     * @return Number of events
+     */
+    public long getDroppedCount() {
+        return droppedcount.get();
+    }
+
+    /**
+     * Logs the queued events and stops the background thread. Events handled
+     * afterwards are ignored.
+     */
+    @Override
+    public void close() {
+
+        if (closed) {
+            return;
+        }
+
+        closed = true;
+
+        try {
+
+            queue.put(CLOSE);
+
+            writer.join(TimeUnit.SECONDS.toMillis(10));
+
+        } catch (InterruptedException e) {
+
+            Thread.currentThread().interrupt();
+
+        }
+
+        if (droppedcount.get() > 0) {
+            getLogger().log(Level.WARNING, "{0} events were not logged", droppedcount.get());
+        }
+    }
+
+}
@@ -33,6 +33,7 @@ package com.sandflow.util.events;
  */
 public class BasicEvent implements Event {
     String message;
+    LazyMessage lazymessage;
     Severity severity;
     Enum code;
 
@@ -49,8 +50,26 @@ public class BasicEvent implements Event {
         this.code = code;
     }
 
+    /**
+     * Creates an immutable BasicEvent instance whose message is only built
+     * if requested
+     * 
+     * @param severity Severity of the event
+     * @param code Uniquely identifies the event
+     * @param message Describes the event
+     */
+    public BasicEvent(Severity severity, Enum code, LazyMessage message) {
+        this.lazymessage = message;
+        this.severity = severity;
+        this.code = code;
+    }
+
     @Override
     public String getMessage() {
+        if (this.message == null && this.lazymessage != null) {
+            this.message = this.lazymessage.toString();
+        }
+
         return this.message;
     }
 
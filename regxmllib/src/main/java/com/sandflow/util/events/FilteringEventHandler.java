@@ -0,0 +1,218 @@
+/*
+ * Copyright (c) 2016, pal
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ *
+ * * Redistributions of source code must retain the above copyright notice, this
+ *   list of conditions and the following disclaimer.
+ * * Redistributions in binary form must reproduce the above copyright notice,
+ *   this list of conditions and the following disclaimer in the documentation
+ *   and/or other materials provided with the distribution.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ */
+package com.sandflow.util.events;
+
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Counts events by code and forwards them to another handler, unless they are
+ * below a severity threshold, their code is suppressed or more than a given
+ * number of events with the same code have already been forwarded. Dropped
+ * events are counted but their message is never built. FATAL events are always
+ * forwarded.
+ *
+ * Instances can be shared across threads.
+ *
+ * @author pal
+ */
+public class FilteringEventHandler implements EventHandler {
+
+    private final EventHandler handler;
+    private volatile Event.Severity threshold = Event.Severity.INFO;
+    private volatile long ratelimit = Long.MAX_VALUE;
+    private final ConcurrentHashMap<Enum, Event.Severity> codethresholds = new ConcurrentHashMap<>();
+    private final ConcurrentHashMap<Enum, AtomicLong> counts = new ConcurrentHashMap<>();
+    private final ConcurrentHashMap<Enum, AtomicLong> dropped = new ConcurrentHashMap<>();
+
+    /**
+     * Creates a handler that forwards all events until configured otherwise
+     *
+     * @param handler Handler to which events are forwarded. Must not be null.
+     */
+    public FilteringEventHandler(EventHandler handler) {
+        if (handler == null) {
+            throw new IllegalArgumentException("Handler must not be null");
+        }
+
+        this.handler = handler;
+    }
+
+    /**
+     * Drops events less severe than a threshold, unless a threshold is set
+     * for their code
+     *
+     * @param threshold Least severe events that are forwarded
+     */
+    public void setThreshold(Event.Severity threshold) {
+        if (threshold == null) {
+            throw new IllegalArgumentException("Threshold must not be null");
+        }
+
+        this.threshold = threshold;
+    }
+
+    /**
+     * Drops events with a given code that are less severe than a threshold
+     *
+     * @param code Event code
+     * @param threshold Least severe events that are forwarded, or null to
+     * revert to the threshold common to all codes
+     */
+    public void setThreshold(Enum code, Event.Severity threshold) {
+        if (threshold == null) {
+            codethresholds.remove(code);
+        } else {
+            codethresholds.put(code, threshold);
+        }
+    }
+
+    /**
+     * Drops all events with a given code, except FATAL events
+     *
+     * @param code Event code
+     */
+    public void suppress(Enum code) {
+        setThreshold(code, Event.Severity.FATAL);
+    }
+
+    /**
+     * Limits the number of events with the same code that are forwarded.
+     * Further events with that code are only counted.
+     *
+     * @param ratelimit Maximum number of events forwarded per code
+     */
+    public void setRateLimit(long ratelimit) {
+        if (ratelimit < 0) {
+            throw new IllegalArgumentException("Rate limit must not be negative");
+        }
+
+        this.ratelimit = ratelimit;
+    }
+
+    @Override
+    public boolean handle(Event evt) {
+
+        long count = increment(counts, evt.getCode());
+
+        if (evt.getSeverity() != Event.Severity.FATAL) {
+
+            Event.Severity t = codethresholds.get(evt.getCode());
+
+            if (evt.getSeverity().compareTo(t == null ? threshold : t) < 0
+                || count - getDroppedCount(evt.getCode()) > ratelimit) {
+
+                increment(dropped, evt.getCode());
+
+                return true;
+            }
+
+        }
+
+        return handler.handle(evt);
+    }
+
+    /**
+     * Returns the number of events with a given code that were handled,
+     * whether forwarded or not
+     *
+     * @param code Event code
+     * @return Number of events
+     */
+    public long getCount(Enum code) {
+        AtomicLong c = counts.get(code);
+
+        return c == null ? 0 : c.get();
+    }
+
+    /**
+     * Returns the number of events with a given code that were dropped
+     *
+     * @param code Event code
+     * @return Number of events
+     */
+    public long getDroppedCount(Enum code) {
+        AtomicLong c = dropped.get(code);
+
+        return c == null ? 0 : c.get();
+    }
+
+    /**
+     * Returns the number of events handled for each code
+     *
+     * @return Snapshot of the event counts
+     */
+    public Map<Enum, Long> getCounts() {
+        return snapshot(counts);
+    }
+
+    /**
+     * Returns the number of events dropped for each code
+     *
+     * @return Snapshot of the counts of dropped events
+     */
+    public Map<Enum, Long> getDroppedCounts() {
+        return snapshot(dropped);
+    }
+
+    /**
+     * Resets all counts, including those used to enforce the rate limit
+     */
+    public void reset() {
+        counts.clear();
+        dropped.clear();
+    }
+
+    private static long increment(ConcurrentHashMap<Enum, AtomicLong> map, Enum code) {
+        AtomicLong c = map.get(code);
+
+        if (c == null) {
+            AtomicLong n = new AtomicLong();
+
+            c = map.putIfAbsent(code, n);
+
+            if (c == null) {
+                c = n;
+            }
+        }
+
+        return c.incrementAndGet();
+    }
+
+    private static Map<Enum, Long> snapshot(ConcurrentHashMap<Enum, AtomicLong> map) {
+        HashMap<Enum, Long> m = new HashMap<>();
+
+        for (Map.Entry<Enum, AtomicLong> e : map.entrySet()) {
+            m.put(e.getKey(), e.getValue().get());
+        }
+
+        return Collections.unmodifiableMap(m);
+    }
+
+}
@@ -0,0 +1,117 @@
+/*
+ * Copyright (c) 2016, pal
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ *
+ * * Redistributions of source code must retain the above copyright notice, this
+ *   list of conditions and the following disclaimer.
+ * * Redistributions in binary form must reproduce the above copyright notice,
+ *   this list of conditions and the following disclaimer in the documentation
+ *   and/or other materials provided with the distribution.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ */
+package com.sandflow.util.events;
+
+/**
+ * Message that is only built when it is first needed, e.g. if the
+ * {@link com.sandflow.util.events.Event} that carries it is logged, so that
+ * events dropped by a handler cost little more than their allocation.
+ * Arguments should therefore be passed as-is and not converted to strings
+ * beforehand.
+ *
+ * @author pal
+ */
+public abstract class LazyMessage {
+
+    private volatile String message;
+
+    /**
+     * Creates a message that is formatted as if by {@link String#format(java.lang.String, java.lang.Object...)}
+     * when first needed
+     *
+     * @param format Format string
+     * @param args Arguments referenced by the format string
+     * @return Lazy message
+     */
+    public static LazyMessage format(final String format, final Object... args) {
+        return new LazyMessage() {
+
+            @Override
+            protected String build() {
+                return String.format(format, args);
+            }
+        };
+    }
+
+    /**
+     * Wraps a message that has already been built
+     *
+     * @param message Message
+     * @return Lazy message, or null if message is null
+     */
+    public static LazyMessage of(String message) {
+        if (message == null) {
+            return null;
+        }
+
+        LazyMessage lm = new LazyMessage() {
+
+            @Override
+            protected String build() {
+                throw new IllegalStateException();
+            }
+        };
+
+        lm.message = message;
+
+        return lm;
+    }
+
+    /**
+     * Builds the message. Not called if the message is never needed, and
+     * usually called once otherwise, although concurrent first requests may
+     * each build the message.
+     *
+     * @return Message
+     */
+    protected abstract String build();
+
+    /**
+     * Tests whether the message has already been built
+     *
+     * @return true if the message has been built
+     */
+    public boolean isBuilt() {
+        return message != null;
+    }
+
+    /**
+     * Returns the message, building it if necessary
+     *
+     * @return Message
+     */
+    @Override
+    public String toString() {
+        String m = message;
+
+        if (m == null) {
+            message = m = build();
+        }
+
+        return m;
+    }
+
+}
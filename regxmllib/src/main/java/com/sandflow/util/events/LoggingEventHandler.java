@@ -0,0 +1,109 @@
+/*
+ * Copyright (c) 2016, pal
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ *
+ * * Redistributions of source code must retain the above copyright notice, this
+ *   list of conditions and the following disclaimer.
+ * * Redistributions in binary form must reproduce the above copyright notice,
+ *   this list of conditions and the following disclaimer in the documentation
+ *   and/or other materials provided with the distribution.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ */
+package com.sandflow.util.events;
+
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * Logs events using java.util.logging and asks the caller to continue
+ * processing. The message of an event is only built if the logger accepts the
+ * level that corresponds to its severity.
+ *
+ * @author pal
+ */
+public class LoggingEventHandler implements EventHandler {
+
+    private final Logger logger;
+
+    /**
+     * @param logger Logger to which events are written. Must not be null.
+     */
+    public LoggingEventHandler(Logger logger) {
+        if (logger == null) {
+            throw new IllegalArgumentException("Logger must not be null");
+        }
+
+        this.logger = logger;
+    }
+
+    /**
+     * Returns the logging level that corresponds to the severity of an event
+     *
+     * @param severity Severity of the event
+     * @return Logging level
+     */
+    public static Level toLevel(Event.Severity severity) {
+        switch (severity) {
+            case ERROR:
+            case FATAL:
+                return Level.SEVERE;
+            case WARN:
+                return Level.WARNING;
+            default:
+                return Level.INFO;
+        }
+    }
+
+    /**
+     * Returns the text logged for an event. Defaults to the message of the
+     * event.
+     *
+     * @param evt Event
+     * @return Text logged
+     */
+    protected String format(Event evt) {
+        return evt.getMessage();
+    }
+
+    /**
+     * Writes an event to the logger, if the logger accepts its level
+     *
+     * @param evt Event
+     */
+    protected void log(Event evt) {
+        Level level = toLevel(evt.getSeverity());
+
+        if (logger.isLoggable(level)) {
+            logger.logp(level, logger.getName(), null, format(evt));
+        }
+    }
+
+    /**
+     * @return Logger to which events are written
+     */
+    protected Logger getLogger() {
+        return logger;
+    }
+
+    @Override
+    public boolean handle(Event evt) {
+        log(evt);
+
+        return true;
+    }
+
+}
@@ -0,0 +1,202 @@
+/*
+ * Copyright (c) 2016, Pierre-Anthony Lemieux (pal@sandflow.com)
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ *
+ * * Redistributions of source code must retain the above copyright notice, this
+ *   list of conditions and the following disclaimer.
+ * * Redistributions in binary form must reproduce the above copyright notice,
+ *   this list of conditions and the following disclaimer in the documentation
+ *   and/or other materials provided with the distribution.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ */
+package com.sandflow.smpte.bench;
+
+import java.io.IOException;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+import java.net.URISyntaxException;
+import java.net.URL;
+import java.net.URLClassLoader;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.Arrays;
+
+/**
+ * Minimal timing harness shared by the benchmarks of this package. The build
+ * does not include JMH, so each benchmark is a plain main that is compiled with
+ * the tests but not run by them, e.g.
+ *
+ * <pre>
+ * mvn test-compile
+ * java -cp target/classes:target/test-classes com.sandflow.smpte.bench.MappedKLVReaderBenchmark
+ * </pre>
+ *
+ * Benchmarks whose baseline code path no longer exists in this tree load it
+ * from a build of the baseline revision, given by the {@value #BASELINE_PROPERTY}
+ * system property, e.g. <code>-Dbench.baseline=../baseline/target/classes</code>.
+ *
+ * @author Pierre-Anthony Lemieux (pal@sandflow.com)
+ */
+final class Bench {
+
+    /**
+     * System property holding the classes directory or jar of the baseline build
+     */
+    static final String BASELINE_PROPERTY = "bench.baseline";
+
+    /**
+     * Unit of work being timed
+     */
+    interface Task {
+
+        void run() throws Exception;
+    }
+
+    private Bench() {
+    }
+
+    /**
+     * Runs a task a number of times to warm up the JVM, then times it.
+     *
+     * @param task Task to time
+     * @param warmup Number of untimed runs
+     * @param rounds Number of timed runs
+     * @return Median duration of the timed runs, in nanoseconds
+     * @throws Exception
+     */
+    static long time(Task task, int warmup, int rounds) throws Exception {
+
+        for (int i = 0; i < warmup; i++) {
+            task.run();
+        }
+
+        long[] durations = new long[rounds];
+
+        for (int i = 0; i < rounds; i++) {
+            long start = System.nanoTime();
+
+            task.run();
+
+            durations[i] = System.nanoTime() - start;
+        }
+
+        Arrays.sort(durations);
+
+        return durations[rounds / 2];
+    }
+
+    /**
+     * Prints a baseline and a current measurement side by side.
+     *
+     * @param what Description of the measurement
+     * @param unit Unit of the measurement
+     * @param baseline Baseline measurement
+     * @param current Current measurement
+     */
+    static void report(String what, String unit, double baseline, double current) {
+        System.out.println(String.format("%-50s baseline %,12.1f %s   current %,12.1f %s   ratio %6.2f",
+            what, baseline, unit, current, unit, baseline / current));
+    }
+
+    /**
+     * Returns the path of a test resource, e.g. "resources/sample-files/audio1.mxf"
+     *
+     * @param name Name of the resource
+     * @return Path of the resource
+     * @throws URISyntaxException
+     */
+    static Path resource(String name) throws URISyntaxException {
+        URL url = ClassLoader.getSystemResource(name);
+
+        if (url == null) {
+            throw new IllegalArgumentException("Resource not found: " + name);
+        }
+
+        return Paths.get(url.toURI());
+    }
+
+    /**
+     * Returns a class loader over the baseline build, isolated from the
+     * classes of this tree.
+     *
+     * @return Class loader, or null if {@value #BASELINE_PROPERTY} is not set
+     * @throws IOException
+     */
+    static ClassLoader baseline() throws IOException {
+        String path = System.getProperty(BASELINE_PROPERTY);
+
+        if (path == null) {
+            System.out.println("Skipping the baseline: set -D" + BASELINE_PROPERTY
+                + " to the classes directory of a build of the baseline revision");
+            return null;
+        }
+
+        return new URLClassLoader(
+            new URL[]{Paths.get(path).toUri().toURL()},
+            ClassLoader.getSystemClassLoader().getParent()
+        );
+    }
+
+    /**
+     * Invokes a public method by name, choosing the overload whose parameters
+     * accept the arguments. Used to call into the baseline build.
+     *
+     * @param cls Class declaring the method
+     * @param target Target object, or null for static methods
+     * @param name Name of the method
+     * @param args Arguments, none of which may be null
+     * @return Value returned by the method
+     * @throws Exception
+     */
+    static Object invoke(Class<?> cls, Object target, String name, Object... args) throws Exception {
+        for (Method m : cls.getMethods()) {
+
+            if (!m.getName().equals(name) || m.getParameterTypes().length != args.length) {
+                continue;
+            }
+
+            boolean match = true;
+
+            for (int i = 0; i < args.length && match; i++) {
+                match = m.getParameterTypes()[i].isInstance(args[i]);
+            }
+
+            if (match) {
+                try {
+                    return m.invoke(target, args);
+                } catch (InvocationTargetException e) {
+                    throw e.getCause() instanceof Exception ? (Exception) e.getCause() : e;
+                }
+            }
+        }
+
+        throw new NoSuchMethodException(cls.getName() + "." + name);
+    }
+
+    /**
+     * Fails the benchmark if the baseline and current code paths disagree.
+     *
+     * @param what Description of the compared results
+     * @param baseline Result of the baseline code path
+     * @param current Result of the current code path
+     */
+    static void check(String what, Object baseline, Object current) {
+        if (baseline == null ? current != null : !baseline.equals(current)) {
+            throw new IllegalStateException(what + " differ: baseline " + baseline + ", current " + current);
+        }
+    }
+}
@@ -0,0 +1,214 @@
+/*
+ * Copyright (c) 2016, Pierre-Anthony Lemieux (pal@sandflow.com)
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ *
+ * * Redistributions of source code must retain the above copyright notice, this
+ *   list of conditions and the following disclaimer.
+ * * Redistributions in binary form must reproduce the above copyright notice,
+ *   this list of conditions and the following disclaimer in the documentation
+ *   and/or other materials provided with the distribution.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ */
+package com.sandflow.smpte.bench;
+
+import com.sandflow.smpte.klv.Group;
+import com.sandflow.smpte.klv.SeekableKLVInputStream;
+import com.sandflow.smpte.mxf.HeaderMetadataReader;
+import com.sandflow.smpte.util.ChannelByteSource;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.channels.SeekableByteChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Reads the header metadata of the sample files through an unbuffered
+ * SeekableKLVInputStream (baseline) and through a ChannelByteSource with a
+ * heap or a direct read-ahead buffer (current). Reports the number of channel
+ * reads per file and the header metadata throughput.
+ *
+ * @author Pierre-Anthony Lemieux (pal@sandflow.com)
+ */
+public class ByteSourceBenchmark {
+
+    private static final String[] FILES = {
+        "audio1.mxf",
+        "audio2.mxf",
+        "indirect.mxf",
+        "open-incomplete-header.mxf",
+        "utf8_embedded_text.mxf",
+        "video1.mxf",
+        "video2.mxf"
+    };
+
+    /**
+     * Counts the reads made on a channel
+     */
+    private static class CountingChannel implements SeekableByteChannel {
+
+        private final SeekableByteChannel channel;
+        int reads = 0;
+
+        CountingChannel(SeekableByteChannel channel) {
+            this.channel = channel;
+        }
+
+        @Override
+        public int read(ByteBuffer dst) throws IOException {
+            reads++;
+            return channel.read(dst);
+        }
+
+        @Override
+        public int write(ByteBuffer src) throws IOException {
+            return channel.write(src);
+        }
+
+        @Override
+        public long position() throws IOException {
+            return channel.position();
+        }
+
+        @Override
+        public SeekableByteChannel position(long newPosition) throws IOException {
+            channel.position(newPosition);
+            return this;
+        }
+
+        @Override
+        public long size() throws IOException {
+            return channel.size();
+        }
+
+        @Override
+        public SeekableByteChannel truncate(long size) throws IOException {
+            channel.truncate(size);
+            return this;
+        }
+
+        @Override
+        public boolean isOpen() {
+            return channel.isOpen();
+        }
+
+        @Override
+        public void close() throws IOException {
+            channel.close();
+        }
+    }
+
+    private enum Source {
+
+        SEEKABLE_STREAM("unbuffered SeekableKLVInputStream"),
+        HEAP_BUFFER("ChannelByteSource, heap buffer"),
+        DIRECT_BUFFER("ChannelByteSource, direct buffer");
+
+        final String description;
+
+        Source(String description) {
+            this.description = description;
+        }
+
+        InputStream open(SeekableByteChannel channel) throws IOException {
+            switch (this) {
+                case SEEKABLE_STREAM:
+                    return new SeekableKLVInputStream(channel);
+                case HEAP_BUFFER:
+                    return new ChannelByteSource(channel, ChannelByteSource.DEFAULT_READ_AHEAD, false);
+                default:
+                    return new ChannelByteSource(channel, ChannelByteSource.DEFAULT_READ_AHEAD, true);
+            }
+        }
+    }
+
+    /* reads the header metadata and returns the keys of its sets, followed by the header byte count */
+    private static List<Object> read(Source source, SeekableByteChannel channel) throws Exception {
+        HeaderMetadataReader reader = new HeaderMetadataReader(source.open(channel));
+
+        ArrayList<Object> keys = new ArrayList<>();
+
+        for (Group g; (g = reader.next()) != null;) {
+            keys.add(g.getKey());
+        }
+
+        keys.add(reader.getPartitionPack().getHeaderByteCount());
+
+        return keys;
+    }
+
+    public static void main(String[] args) throws Exception {
+        final Path[] paths = new Path[FILES.length];
+
+        long bytes = 0;
+
+        for (int i = 0; i < FILES.length; i++) {
+            paths[i] = Bench.resource("resources/sample-files/" + FILES[i]);
+
+            for (Source source : Source.values()) {
+                try (CountingChannel channel = new CountingChannel(FileChannel.open(paths[i], StandardOpenOption.READ))) {
+
+                    List<Object> keys = read(source, channel);
+
+                    if (source == Source.SEEKABLE_STREAM) {
+                        bytes += (Long) keys.get(keys.size() - 1);
+                    } else {
+                        try (SeekableByteChannel ref = FileChannel.open(paths[i], StandardOpenOption.READ)) {
+                            Bench.check(FILES[i] + " header metadata", read(Source.SEEKABLE_STREAM, ref), keys);
+                        }
+                    }
+
+                    System.out.println(String.format("%-30s %-40s %5d channel reads", FILES[i], source.description, channel.reads));
+                }
+            }
+        }
+
+        long[] times = new long[Source.values().length];
+
+        for (final Source source : Source.values()) {
+
+            long time = Bench.time(new Bench.Task() {
+
+                @Override
+                public void run() throws Exception {
+                    for (Path path : paths) {
+                        try (FileChannel channel = FileChannel.open(path, StandardOpenOption.READ)) {
+                            read(source, channel);
+                        }
+                    }
+                }
+            }, 200, 200);
+
+            times[source.ordinal()] = time;
+
+            System.out.println(String.format("%-40s %8.1f MB/s of header metadata", source.description, bytes / (time / 1e9) / 1e6));
+        }
+
+        for (Source source : new Source[]{Source.HEAP_BUFFER, Source.DIRECT_BUFFER}) {
+            Bench.report(
+                "Header metadata, " + source.description,
+                "us",
+                times[Source.SEEKABLE_STREAM.ordinal()] / 1000.0,
+                times[source.ordinal()] / 1000.0
+            );
+        }
+    }
+
+}
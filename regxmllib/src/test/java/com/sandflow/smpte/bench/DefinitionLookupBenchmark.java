@@ -0,0 +1,195 @@
+/*
+ * Copyright (c) 2016, Pierre-Anthony Lemieux (pal@sandflow.com)
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ *
+ * * Redistributions of source code must retain the above copyright notice, this
+ *   list of conditions and the following disclaimer.
+ * * Redistributions in binary form must reproduce the above copyright notice,
+ *   this list of conditions and the following disclaimer in the documentation
+ *   and/or other materials provided with the distribution.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ */
+package com.sandflow.smpte.bench;
+
+import com.sandflow.smpte.register.ElementsRegister;
+import com.sandflow.smpte.register.GroupsRegister;
+import com.sandflow.smpte.register.TypesRegister;
+import com.sandflow.smpte.regxml.dict.MetaDictionary;
+import com.sandflow.smpte.regxml.dict.MetaDictionaryCollection;
+import com.sandflow.smpte.regxml.dict.definitions.Definition;
+import com.sandflow.smpte.regxml.dict.importers.RegisterImporter;
+import com.sandflow.smpte.util.AUID;
+import java.io.InputStreamReader;
+import java.io.Reader;
+import java.lang.reflect.Constructor;
+import java.lang.reflect.Method;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * Looks up every definition identification of the catsup and brown_sauce
+ * registers through MetaDictionaryCollection, along with a version-altered and
+ * an absent variant of each, in the baseline build and in this tree.
+ *
+ * The baseline collection is called through reflection, which adds a few
+ * nanoseconds per lookup to the baseline figures.
+ *
+ * @author Pierre-Anthony Lemieux (pal@sandflow.com)
+ */
+public class DefinitionLookupBenchmark {
+
+    private static final String[] REGISTERS = {"catsup", "brown_sauce"};
+
+    private static Reader register(String register, String name) throws Exception {
+        return new InputStreamReader(
+            Files.newInputStream(Bench.resource("resources/registers/" + register + "/" + name + ".xml")),
+            StandardCharsets.UTF_8
+        );
+    }
+
+    private static MetaDictionaryCollection currentCollection(String register) throws Exception {
+        return RegisterImporter.fromRegister(
+            TypesRegister.fromXML(register(register, "Types")),
+            GroupsRegister.fromXML(register(register, "Groups")),
+            ElementsRegister.fromXML(register(register, "Elements"))
+        );
+    }
+
+    private static Object baselineCollection(ClassLoader cl, String register) throws Exception {
+        String pkg = "com.sandflow.smpte.register.";
+
+        return Bench.invoke(
+            cl.loadClass("com.sandflow.smpte.regxml.dict.importers.RegisterImporter"),
+            null,
+            "fromRegister",
+            Bench.invoke(cl.loadClass(pkg + "TypesRegister"), null, "fromXML", register(register, "Types")),
+            Bench.invoke(cl.loadClass(pkg + "GroupsRegister"), null, "fromXML", register(register, "Groups")),
+            Bench.invoke(cl.loadClass(pkg + "ElementsRegister"), null, "fromXML", register(register, "Elements"))
+        );
+    }
+
+    /* identifications of all definitions, each followed by a version-altered and an absent variant */
+    private static List<byte[]> keys(MetaDictionaryCollection mds) {
+        ArrayList<byte[]> keys = new ArrayList<>();
+
+        for (MetaDictionary md : mds.getDictionaries()) {
+            for (Definition def : md.getDefinitions()) {
+
+                byte[] id = def.getIdentification().getValue();
+
+                keys.add(id);
+
+                if (def.getIdentification().isUL()) {
+                    byte[] version = id.clone();
+                    version[7] = (byte) (version[7] + 1);
+                    keys.add(version);
+
+                    byte[] absent = id.clone();
+                    absent[15] = (byte) ~absent[15];
+                    absent[14] = (byte) ~absent[14];
+                    keys.add(absent);
+                }
+            }
+        }
+
+        return keys;
+    }
+
+    private static String result(Object def) throws Exception {
+        if (def == null) {
+            return null;
+        }
+
+        return Bench.invoke(def.getClass(), def, "getIdentification").toString();
+    }
+
+    public static void main(String[] args) throws Exception {
+        Logger.getLogger("").setLevel(Level.SEVERE);
+
+        ClassLoader cl = Bench.baseline();
+
+        for (String register : REGISTERS) {
+
+            final MetaDictionaryCollection current = currentCollection(register);
+
+            List<byte[]> ids = keys(current);
+
+            final AUID[] currentKeys = new AUID[ids.size()];
+
+            for (int i = 0; i < currentKeys.length; i++) {
+                currentKeys[i] = new AUID(ids.get(i));
+            }
+
+            long currentTime = Bench.time(new Bench.Task() {
+
+                @Override
+                public void run() throws Exception {
+                    for (AUID key : currentKeys) {
+                        current.getDefinition(key);
+                    }
+                }
+            }, 200, 200);
+
+            if (cl == null) {
+                System.out.println(String.format("%s: current %.1f ns per lookup", register, (double) currentTime / currentKeys.length));
+                continue;
+            }
+
+            final Object baseline = baselineCollection(cl, register);
+
+            Class<?> auid = cl.loadClass("com.sandflow.smpte.util.AUID");
+
+            Constructor<?> ctor = auid.getConstructor(byte[].class);
+
+            final Method getDefinition = baseline.getClass().getMethod("getDefinition", auid);
+
+            final Object[] baselineKeys = new Object[ids.size()];
+
+            for (int i = 0; i < baselineKeys.length; i++) {
+                baselineKeys[i] = ctor.newInstance((Object) ids.get(i));
+
+                Bench.check(
+                    "Definitions of " + currentKeys[i],
+                    result(getDefinition.invoke(baseline, baselineKeys[i])),
+                    result(current.getDefinition(currentKeys[i]))
+                );
+            }
+
+            long baselineTime = Bench.time(new Bench.Task() {
+
+                @Override
+                public void run() throws Exception {
+                    for (Object key : baselineKeys) {
+                        getDefinition.invoke(baseline, key);
+                    }
+                }
+            }, 200, 200);
+
+            Bench.report(
+                "Lookups in the " + register + " dictionaries",
+                "ns",
+                (double) baselineTime / baselineKeys.length,
+                (double) currentTime / currentKeys.length
+            );
+        }
+    }
+
+}
@@ -0,0 +1,179 @@
+/*
+ * Copyright (c) 2016, Pierre-Anthony Lemieux (pal@sandflow.com)
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ *
+ * * Redistributions of source code must retain the above copyright notice, this
+ *   list of conditions and the following disclaimer.
+ * * Redistributions in binary form must reproduce the above copyright notice,
+ *   this list of conditions and the following disclaimer in the documentation
+ *   and/or other materials provided with the distribution.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ */
+package com.sandflow.smpte.bench;
+
+import com.sandflow.smpte.register.ElementsRegister;
+import com.sandflow.smpte.register.GroupsRegister;
+import com.sandflow.smpte.register.TypesRegister;
+import com.sandflow.smpte.regxml.dict.MetaDictionary;
+import com.sandflow.smpte.regxml.dict.MetaDictionaryCollection;
+import com.sandflow.smpte.regxml.dict.importers.RegisterImporter;
+import java.io.StringReader;
+import java.io.StringWriter;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+import javax.xml.transform.Transformer;
+import javax.xml.transform.TransformerFactory;
+import javax.xml.transform.dom.DOMSource;
+import javax.xml.transform.stream.StreamResult;
+
+/**
+ * Loads dictionaries and registers from XML in the baseline build, which
+ * creates a JAXBContext on every load, and in this tree, which shares them
+ * through JAXBContextRegistry.
+ *
+ * @author Pierre-Anthony Lemieux (pal@sandflow.com)
+ */
+public class JAXBContextBenchmark {
+
+    private static final String DICTIONARY = "com.sandflow.smpte.regxml.dict.MetaDictionary";
+
+    private static final String[] REGISTERS = {"Elements", "Groups", "Labels", "Types"};
+
+    /**
+     * Documents loaded by a scenario, as pairs of class name and XML document
+     */
+    private static class Scenario {
+
+        final String name;
+        final List<String[]> documents = new ArrayList<>();
+
+        Scenario(String name) {
+            this.name = name;
+        }
+    }
+
+    private static String toString(MetaDictionary md) throws Exception {
+        Transformer tr = TransformerFactory.newInstance().newTransformer();
+
+        StringWriter sw = new StringWriter();
+
+        tr.transform(new DOMSource(md.toXML()), new StreamResult(sw));
+
+        return sw.toString();
+    }
+
+    private static String register(String register, String name) throws Exception {
+        return new String(
+            Files.readAllBytes(Bench.resource("resources/registers/" + register + "/" + name + ".xml")),
+            StandardCharsets.UTF_8
+        );
+    }
+
+    /* loads the documents of a scenario and returns the total number of definitions or entries */
+    private static int load(ClassLoader cl, Scenario scenario) throws Exception {
+        int count = 0;
+
+        for (String[] doc : scenario.documents) {
+            Class<?> cls = cl.loadClass(doc[0]);
+
+            Object o = Bench.invoke(cls, null, "fromXML", new StringReader(doc[1]));
+
+            count += ((Collection<?>) Bench.invoke(cls, o, doc[0].equals(DICTIONARY) ? "getDefinitions" : "getEntries")).size();
+        }
+
+        return count;
+    }
+
+    public static void main(String[] args) throws Exception {
+        Logger.getLogger("").setLevel(Level.SEVERE);
+
+        MetaDictionaryCollection mds = RegisterImporter.fromRegister(
+            TypesRegister.fromXML(new StringReader(register("catsup", "Types"))),
+            GroupsRegister.fromXML(new StringReader(register("catsup", "Groups"))),
+            ElementsRegister.fromXML(new StringReader(register("catsup", "Elements")))
+        );
+
+        Scenario small = new Scenario("50 loads of a small dictionary");
+        Scenario dictionaries = new Scenario("The " + mds.getDictionaries().size() + " catsup dictionaries");
+        Scenario registers = new Scenario("The catsup and brown_sauce registers, 3 times");
+
+        String smallest = null;
+
+        for (MetaDictionary md : mds.getDictionaries()) {
+            String xml = toString(md);
+
+            dictionaries.documents.add(new String[]{DICTIONARY, xml});
+
+            if (smallest == null || xml.length() < smallest.length()) {
+                smallest = xml;
+            }
+        }
+
+        for (int i = 0; i < 50; i++) {
+            small.documents.add(new String[]{DICTIONARY, smallest});
+        }
+
+        for (int i = 0; i < 3; i++) {
+            for (String register : new String[]{"catsup", "brown_sauce"}) {
+                for (String name : REGISTERS) {
+                    registers.documents.add(new String[]{
+                        "com.sandflow.smpte.register." + name + "Register",
+                        register(register, name)
+                    });
+                }
+            }
+        }
+
+        final ClassLoader current = JAXBContextBenchmark.class.getClassLoader();
+
+        final ClassLoader baseline = Bench.baseline();
+
+        for (final Scenario scenario : new Scenario[]{small, dictionaries, registers}) {
+
+            long currentTime = Bench.time(new Bench.Task() {
+
+                @Override
+                public void run() throws Exception {
+                    load(current, scenario);
+                }
+            }, 3, 5);
+
+            if (baseline == null) {
+                System.out.println(String.format("%s: current %.1f ms", scenario.name, currentTime / 1e6));
+                continue;
+            }
+
+            Bench.check(scenario.name + " counts", load(baseline, scenario), load(current, scenario));
+
+            long baselineTime = Bench.time(new Bench.Task() {
+
+                @Override
+                public void run() throws Exception {
+                    load(baseline, scenario);
+                }
+            }, 3, 5);
+
+            Bench.report(scenario.name, "ms", baselineTime / 1e6, currentTime / 1e6);
+        }
+    }
+
+}
@@ -0,0 +1,118 @@
+/*
+ * Copyright (c) 2016, Pierre-Anthony Lemieux (pal@sandflow.com)
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ *
+ * * Redistributions of source code must retain the above copyright notice, this
+ *   list of conditions and the following disclaimer.
+ * * Redistributions in binary form must reproduce the above copyright notice,
+ *   this list of conditions and the following disclaimer in the documentation
+ *   and/or other materials provided with the distribution.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ */
+package com.sandflow.smpte.bench;
+
+import com.sandflow.smpte.mxf.MXFFiles;
+import com.sandflow.smpte.mxf.PartitionPack;
+import com.sandflow.smpte.util.UL;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.channels.SeekableByteChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.Random;
+
+/**
+ * Seeks the header partition of audio1.mxf behind a 65,000-byte random run-in,
+ * with a byte-by-byte search (baseline) and with MXFFiles.seekHeaderPartition,
+ * which uses KeyScanner (current).
+ *
+ * The baseline search is the loop seekHeaderPartition used before KeyScanner,
+ * with its buffer cleared between reads: as written, it only found a partition
+ * pack located at the starting position.
+ *
+ * @author Pierre-Anthony Lemieux (pal@sandflow.com)
+ */
+public class KeyScannerBenchmark {
+
+    private static final int RUN_IN_SIZE = 65000;
+
+    private static long seekByteByByte(SeekableByteChannel mxffile) throws IOException {
+        ByteBuffer ulbytes = ByteBuffer.allocate(16);
+        long offset = mxffile.position();
+        while (mxffile.read(ulbytes) == ulbytes.limit() && offset <= 65536) {
+            UL ul = new UL(ulbytes.array());
+            if (ul.equalsWithMask(PartitionPack.getKey(), 65248 /* first eleven bytes minus the version byte */)) {
+                mxffile.position(offset);
+                return offset;
+            }
+            mxffile.position(++offset);
+            ulbytes.clear();
+        }
+        return -1;
+    }
+
+    public static void main(String[] args) throws Exception {
+        byte[] runin = new byte[RUN_IN_SIZE];
+
+        new Random(0).nextBytes(runin);
+
+        Path path = Files.createTempFile("regxmlbench", ".mxf");
+
+        try (OutputStream os = Files.newOutputStream(path)) {
+            os.write(runin);
+            os.write(Files.readAllBytes(Bench.resource("resources/sample-files/audio1.mxf")));
+        }
+
+        try (final FileChannel fc = FileChannel.open(path, StandardOpenOption.READ)) {
+
+            fc.position(0);
+            long baselineOffset = seekByteByByte(fc);
+
+            fc.position(0);
+            long currentOffset = MXFFiles.seekHeaderPartition(fc);
+
+            Bench.check("Header partition offsets", baselineOffset, currentOffset);
+            Bench.check("Header partition offsets", (long) RUN_IN_SIZE, currentOffset);
+
+            long baseline = Bench.time(new Bench.Task() {
+
+                @Override
+                public void run() throws Exception {
+                    fc.position(0);
+                    seekByteByByte(fc);
+                }
+            }, 20, 30);
+
+            long current = Bench.time(new Bench.Task() {
+
+                @Override
+                public void run() throws Exception {
+                    fc.position(0);
+                    MXFFiles.seekHeaderPartition(fc);
+                }
+            }, 1000, 1000);
+
+            Bench.report("Header partition behind a " + RUN_IN_SIZE + "-byte run-in", "us", baseline / 1000.0, current / 1000.0);
+        }
+
+        Files.delete(path);
+    }
+
+}
@@ -0,0 +1,120 @@
+/*
+ * Copyright (c) 2016, Pierre-Anthony Lemieux (pal@sandflow.com)
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ *
+ * * Redistributions of source code must retain the above copyright notice, this
+ *   list of conditions and the following disclaimer.
+ * * Redistributions in binary form must reproduce the above copyright notice,
+ *   this list of conditions and the following disclaimer in the documentation
+ *   and/or other materials provided with the distribution.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ */
+package com.sandflow.smpte.bench;
+
+import com.sandflow.smpte.klv.KLVInputStream;
+import com.sandflow.smpte.klv.MappedKLVReader;
+import com.sandflow.smpte.klv.Triplet;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+
+/**
+ * Scans all the triplets of the sample files, with KLVInputStream over a
+ * channel stream (baseline) and with MappedKLVReader (current).
+ *
+ * @author Pierre-Anthony Lemieux (pal@sandflow.com)
+ */
+public class MappedKLVReaderBenchmark {
+
+    private static final String[] FILES = {
+        "audio1.mxf",
+        "audio2.mxf",
+        "indirect.mxf",
+        "open-incomplete-header.mxf",
+        "utf8_embedded_text.mxf",
+        "video1.mxf",
+        "video2.mxf"
+    };
+
+    private static long scanWithStream(Path[] paths) throws Exception {
+        long sum = 0;
+
+        for (Path path : paths) {
+            try (FileChannel fc = FileChannel.open(path, StandardOpenOption.READ)) {
+
+                KLVInputStream kis = new KLVInputStream(Channels.newInputStream(fc));
+
+                for (long size = fc.size(); fc.position() < size;) {
+                    Triplet t = kis.readTriplet();
+
+                    sum += t.getKey().hashCode() + t.getLength();
+                }
+            }
+        }
+
+        return sum;
+    }
+
+    private static long scanWithMappedReader(Path[] paths) throws Exception {
+        long sum = 0;
+
+        for (Path path : paths) {
+            try (FileChannel fc = FileChannel.open(path, StandardOpenOption.READ)) {
+
+                MappedKLVReader mkr = new MappedKLVReader(fc);
+
+                for (long size = mkr.size(); mkr.position() < size;) {
+                    Triplet t = mkr.readTriplet();
+
+                    sum += t.getKey().hashCode() + t.getLength();
+                }
+            }
+        }
+
+        return sum;
+    }
+
+    public static void main(String[] args) throws Exception {
+        final Path[] paths = new Path[FILES.length];
+
+        for (int i = 0; i < FILES.length; i++) {
+            paths[i] = Bench.resource("resources/sample-files/" + FILES[i]);
+        }
+
+        Bench.check("Triplet checksums", scanWithStream(paths), scanWithMappedReader(paths));
+
+        long baseline = Bench.time(new Bench.Task() {
+
+            @Override
+            public void run() throws Exception {
+                scanWithStream(paths);
+            }
+        }, 100, 300);
+
+        long current = Bench.time(new Bench.Task() {
+
+            @Override
+            public void run() throws Exception {
+                scanWithMappedReader(paths);
+            }
+        }, 100, 300);
+
+        Bench.report("Scan of all sample file triplets", "us", baseline / 1000.0, current / 1000.0);
+    }
+
+}
@@ -0,0 +1,179 @@
+/*
+ * Copyright (c) 2016, Pierre-Anthony Lemieux (pal@sandflow.com)
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ *
+ * * Redistributions of source code must retain the above copyright notice, this
+ *   list of conditions and the following disclaimer.
+ * * Redistributions in binary form must reproduce the above copyright notice,
+ *   this list of conditions and the following disclaimer in the documentation
+ *   and/or other materials provided with the distribution.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ */
+package com.sandflow.smpte.bench;
+
+import com.sandflow.smpte.register.ElementsRegister;
+import com.sandflow.smpte.register.GroupsRegister;
+import com.sandflow.smpte.register.TypesRegister;
+import com.sandflow.smpte.regxml.dict.MetaDictionary;
+import com.sandflow.smpte.regxml.dict.MetaDictionaryCollection;
+import com.sandflow.smpte.regxml.dict.MetaDictionarySnapshot;
+import com.sandflow.smpte.regxml.dict.importers.RegisterImporter;
+import com.sandflow.smpte.tools.RegXMLDump;
+import java.io.File;
+import java.io.InputStreamReader;
+import java.io.OutputStream;
+import java.io.Reader;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+import javax.xml.transform.OutputKeys;
+import javax.xml.transform.Transformer;
+import javax.xml.transform.TransformerFactory;
+import javax.xml.transform.dom.DOMSource;
+import javax.xml.transform.stream.StreamResult;
+
+/**
+ * Times RegXMLDump on video1.mxf in a new JVM, with the catsup dictionaries
+ * given as RegXML dictionaries (baseline) and as a snapshot (current).
+ *
+ * @author Pierre-Anthony Lemieux (pal@sandflow.com)
+ */
+public class SnapshotStartupBenchmark {
+
+    private static Reader register(String name) throws Exception {
+        return new InputStreamReader(
+            Files.newInputStream(Bench.resource("resources/registers/catsup/" + name + ".xml")),
+            StandardCharsets.UTF_8
+        );
+    }
+
+    private static long size(List<String> paths) {
+        long size = 0;
+
+        for (String path : paths) {
+            size += new File(path).length();
+        }
+
+        return size;
+    }
+
+    /* runs RegXMLDump in a new JVM and returns its output, without the creation date */
+    private static String dump(List<String> dictionaries, Path output) throws Exception {
+        ArrayList<String> cmd = new ArrayList<>();
+
+        cmd.add(new File(System.getProperty("java.home"), "bin/java").getPath());
+        cmd.add("-cp");
+        cmd.add(System.getProperty("java.class.path"));
+        cmd.add(RegXMLDump.class.getName());
+        cmd.add("-d");
+        cmd.addAll(dictionaries);
+        cmd.add("-i");
+        cmd.add(Bench.resource("resources/sample-files/video1.mxf").toString());
+
+        Process p = new ProcessBuilder(cmd)
+            .redirectOutput(output.toFile())
+            .redirectError(ProcessBuilder.Redirect.INHERIT)
+            .start();
+
+        if (p.waitFor() != 0) {
+            throw new IllegalStateException("RegXMLDump failed: " + cmd);
+        }
+
+        StringBuilder sb = new StringBuilder();
+
+        for (String line : Files.readAllLines(output, StandardCharsets.UTF_8)) {
+            if (!line.contains("Created:")) {
+                sb.append(line).append('\n');
+            }
+        }
+
+        return sb.toString();
+    }
+
+    public static void main(String[] args) throws Exception {
+        Logger.getLogger("").setLevel(Level.SEVERE);
+
+        MetaDictionaryCollection mds = RegisterImporter.fromRegister(
+            TypesRegister.fromXML(register("Types")),
+            GroupsRegister.fromXML(register("Groups")),
+            ElementsRegister.fromXML(register("Elements"))
+        );
+
+        Path dir = Files.createTempDirectory("regxmlbench");
+
+        final List<String> xml = new ArrayList<>();
+
+        Transformer tr = TransformerFactory.newInstance().newTransformer();
+
+        tr.setOutputProperty(OutputKeys.INDENT, "yes");
+
+        for (MetaDictionary md : mds.getDictionaries()) {
+            File f = new File(dir.toFile(), "dict" + xml.size() + ".xml");
+
+            tr.transform(new DOMSource(md.toXML()), new StreamResult(f));
+
+            xml.add(f.getPath());
+        }
+
+        final List<String> snapshot = new ArrayList<>();
+
+        snapshot.add(dir.resolve("dict.snap").toString());
+
+        try (OutputStream os = Files.newOutputStream(dir.resolve("dict.snap"))) {
+            MetaDictionarySnapshot.write(mds.getDictionaries(), os);
+        }
+
+        final Path output = dir.resolve("video1.xml");
+
+        Bench.check("RegXMLDump outputs", dump(xml, output), dump(snapshot, output));
+
+        System.out.println(String.format("%d dictionaries: %,d bytes of XML, %,d bytes of snapshot",
+            xml.size(), size(xml), size(snapshot)));
+
+        long baseline = Bench.time(new Bench.Task() {
+
+            @Override
+            public void run() throws Exception {
+                dump(xml, output);
+            }
+        }, 1, 5);
+
+        long current = Bench.time(new Bench.Task() {
+
+            @Override
+            public void run() throws Exception {
+                dump(snapshot, output);
+            }
+        }, 1, 5);
+
+        Bench.report("RegXMLDump of video1.mxf", "ms", baseline / 1e6, current / 1e6);
+
+        try (DirectoryStream<Path> files = Files.newDirectoryStream(dir)) {
+            for (Path file : files) {
+                Files.delete(file);
+            }
+        }
+
+        Files.delete(dir);
+    }
+
+}
@@ -0,0 +1,281 @@
+/*
+ * Copyright (c) 2016, Pierre-Anthony Lemieux (pal@sandflow.com)
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ *
+ * * Redistributions of source code must retain the above copyright notice, this
+ *   list of conditions and the following disclaimer.
+ * * Redistributions in binary form must reproduce the above copyright notice,
+ *   this list of conditions and the following disclaimer in the documentation
+ *   and/or other materials provided with the distribution.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ */
+package com.sandflow.smpte.bench;
+
+import com.sandflow.smpte.register.ElementsRegister;
+import com.sandflow.smpte.register.GroupsRegister;
+import com.sandflow.smpte.register.TypesRegister;
+import com.sandflow.smpte.regxml.FragmentSink;
+import com.sandflow.smpte.regxml.MXFFragmentBuilder;
+import com.sandflow.smpte.regxml.dict.MetaDictionaryCollection;
+import com.sandflow.smpte.regxml.dict.importers.RegisterImporter;
+import com.sandflow.smpte.util.UL;
+import com.sandflow.util.events.LazyMessage;
+import com.sandflow.util.events.LoggingEventHandler;
+import java.io.ByteArrayInputStream;
+import java.io.InputStreamReader;
+import java.io.Reader;
+import java.lang.management.ManagementFactory;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+import javax.xml.parsers.DocumentBuilder;
+import javax.xml.parsers.DocumentBuilderFactory;
+import org.w3c.dom.DocumentFragment;
+import org.w3c.dom.Element;
+import org.w3c.dom.Node;
+
+/**
+ * Measures the bytes allocated per element when rendering the sample files
+ * with the catsup dictionaries: to a DOM in the baseline build and in this
+ * tree, and to a sink that discards its input in this tree. Allocation is
+ * counted by the thread allocation counter of the JVM, which must support it.
+ *
+ * @author Pierre-Anthony Lemieux (pal@sandflow.com)
+ */
+public class ValueDecodingBenchmark {
+
+    private final static Logger LOG = Logger.getLogger(ValueDecodingBenchmark.class.getName());
+
+    private static final String PREFACE = "urn:smpte:ul:060e2b34.027f0101.0d010101.01012f00";
+
+    private static final String[] FILES = {
+        "audio1.mxf",
+        "audio2.mxf",
+        "video1.mxf",
+        "video2.mxf",
+        "indirect.mxf",
+        "utf8_embedded_text.mxf"
+    };
+
+    private static final int PASSES = 20;
+
+    /**
+     * Renders all the sample files once
+     */
+    private interface Renderer {
+
+        /**
+         * @return Number of elements rendered
+         */
+        long render() throws Exception;
+    }
+
+    private static byte[][] files;
+
+    private static Reader register(String name) throws Exception {
+        return new InputStreamReader(
+            Files.newInputStream(Bench.resource("resources/registers/catsup/" + name + ".xml")),
+            StandardCharsets.UTF_8
+        );
+    }
+
+    private static long elements(DocumentFragment df) {
+        long count = 0;
+
+        for (Node n = df.getFirstChild(); n != null; n = n.getNextSibling()) {
+            if (n instanceof Element) {
+                count += 1 + ((Element) n).getElementsByTagName("*").getLength();
+            }
+        }
+
+        return count;
+    }
+
+    private static Renderer currentDOM(final MetaDictionaryCollection mds, final DocumentBuilder db) {
+        return new Renderer() {
+
+            @Override
+            public long render() throws Exception {
+                long count = 0;
+
+                for (byte[] file : files) {
+                    count += elements(MXFFragmentBuilder.fromInputStream(
+                        new ByteArrayInputStream(file),
+                        mds,
+                        UL.fromURN(PREFACE),
+                        db.newDocument()
+                    ));
+                }
+
+                return count;
+            }
+        };
+    }
+
+    private static Renderer currentNullSink(final MetaDictionaryCollection mds) {
+        return new Renderer() {
+
+            @Override
+            public long render() throws Exception {
+                final long[] count = new long[1];
+
+                FragmentSink sink = new FragmentSink() {
+
+                    @Override
+                    public void startElement(String namespace, String prefix, String localName) {
+                        count[0]++;
+                    }
+
+                    @Override
+                    public void attribute(String namespace, String prefix, String localName, String value) {
+                    }
+
+                    @Override
+                    public void text(String text) {
+                    }
+
+                    @Override
+                    public void comment(LazyMessage comment) {
+                    }
+
+                    @Override
+                    public void endElement() {
+                    }
+                };
+
+                for (byte[] file : files) {
+                    MXFFragmentBuilder.fromInputStream(
+                        new ByteArrayInputStream(file),
+                        mds,
+                        null,
+                        new LoggingEventHandler(LOG),
+                        UL.fromURN(PREFACE),
+                        sink
+                    );
+                }
+
+                return count[0];
+            }
+        };
+    }
+
+    private static Renderer baselineDOM(ClassLoader cl, final DocumentBuilder db) throws Exception {
+        String pkg = "com.sandflow.smpte.register.";
+
+        final Object mds = Bench.invoke(
+            cl.loadClass("com.sandflow.smpte.regxml.dict.importers.RegisterImporter"),
+            null,
+            "fromRegister",
+            Bench.invoke(cl.loadClass(pkg + "TypesRegister"), null, "fromXML", register("Types")),
+            Bench.invoke(cl.loadClass(pkg + "GroupsRegister"), null, "fromXML", register("Groups")),
+            Bench.invoke(cl.loadClass(pkg + "ElementsRegister"), null, "fromXML", register("Elements"))
+        );
+
+        final Class<?> builder = cl.loadClass("com.sandflow.smpte.regxml.MXFFragmentBuilder");
+
+        final Class<?> ul = cl.loadClass("com.sandflow.smpte.util.UL");
+
+        return new Renderer() {
+
+            @Override
+            public long render() throws Exception {
+                long count = 0;
+
+                for (byte[] file : files) {
+                    count += elements((DocumentFragment) Bench.invoke(
+                        builder,
+                        null,
+                        "fromInputStream",
+                        new ByteArrayInputStream(file),
+                        mds,
+                        Bench.invoke(ul, null, "fromURN", PREFACE),
+                        db.newDocument()
+                    ));
+                }
+
+                return count;
+            }
+        };
+    }
+
+    /* returns the bytes allocated per element rendered */
+    private static double allocation(Renderer renderer) throws Exception {
+        com.sun.management.ThreadMXBean mx = (com.sun.management.ThreadMXBean) ManagementFactory.getThreadMXBean();
+
+        long id = Thread.currentThread().getId();
+
+        for (int i = 0; i < PASSES; i++) {
+            renderer.render();
+        }
+
+        long elements = 0;
+
+        long start = mx.getThreadAllocatedBytes(id);
+
+        for (int i = 0; i < PASSES; i++) {
+            elements += renderer.render();
+        }
+
+        return (double) (mx.getThreadAllocatedBytes(id) - start) / elements;
+    }
+
+    public static void main(String[] args) throws Exception {
+        Logger.getLogger("").setLevel(Level.OFF);
+
+        files = new byte[FILES.length][];
+
+        for (int i = 0; i < FILES.length; i++) {
+            files[i] = Files.readAllBytes(Bench.resource("resources/sample-files/" + FILES[i]));
+        }
+
+        MetaDictionaryCollection mds = RegisterImporter.fromRegister(
+            TypesRegister.fromXML(register("Types")),
+            GroupsRegister.fromXML(register("Groups")),
+            ElementsRegister.fromXML(register("Elements"))
+        );
+
+        DocumentBuilderFactory dbf = DocumentBuilderFactory.newInstance();
+
+        dbf.setNamespaceAware(true);
+
+        DocumentBuilder db = dbf.newDocumentBuilder();
+
+        Renderer dom = currentDOM(mds, db);
+
+        Renderer sink = currentNullSink(mds);
+
+        Bench.check("Element counts", dom.render(), sink.render());
+
+        double current = allocation(dom);
+
+        ClassLoader cl = Bench.baseline();
+
+        if (cl != null) {
+            Renderer baseline = baselineDOM(cl, db);
+
+            Bench.check("Element counts", baseline.render(), dom.render());
+
+            Bench.report("Allocation per element, DOM", "B", allocation(baseline), current);
+        } else {
+            System.out.println(String.format("Allocation per element, DOM: current %.1f B", current));
+        }
+
+        System.out.println(String.format("Allocation per element, null sink: current %.1f B", allocation(sink)));
+    }
+
+}
@@ -0,0 +1,68 @@
+/*
+ * Copyright (c) 2016, Pierre-Anthony Lemieux (pal@sandflow.com)
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ *
+ * * Redistributions of source code must retain the above copyright notice, this
+ *   list of conditions and the following disclaimer.
+ * * Redistributions in binary form must reproduce the above copyright notice,
+ *   this list of conditions and the following disclaimer in the documentation
+ *   and/or other materials provided with the distribution.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ */
+package com.sandflow.smpte.klv;
+
+import java.io.ByteArrayInputStream;
+import java.io.EOFException;
+import junit.framework.TestCase;
+
+/**
+ *
+ * @author Pierre-Anthony Lemieux (pal@sandflow.com)
+ */
+public class KLVInputStreamTest extends TestCase {
+
+    public KLVInputStreamTest(String testName) {
+        super(testName);
+    }
+
+    public void testIntegerByteOrder() throws Exception {
+        byte[] data = new byte[]{(byte) 0xF1, 0x02, (byte) 0x83, 0x04,
+            0x05, 0x06, 0x07, (byte) 0x88};
+
+        KLVInputStream be = new KLVInputStream(new ByteArrayInputStream(data));
+
+        assertEquals(0xF1028304L, be.readUnsignedInt());
+        assertEquals(0x05060788L, be.readUnsignedInt());
+
+        KLVInputStream le = new KLVInputStream(new ByteArrayInputStream(data), KLVInputStream.ByteOrder.LITTLE_ENDIAN);
+
+        assertEquals(0x02F1, le.readUnsignedShort());
+        assertEquals(0x0483, le.readUnsignedShort());
+        assertEquals(0x88070605L, le.readUnsignedInt());
+
+        le = new KLVInputStream(new ByteArrayInputStream(data), KLVInputStream.ByteOrder.LITTLE_ENDIAN);
+
+        assertEquals(0x88070605048302F1L, le.readLong());
+
+        try {
+            le.readUnsignedByte();
+            fail("EOF not reached");
+        } catch (EOFException e) {
+        }
+    }
+
+}
@@ -0,0 +1,144 @@
+/*
+ * Copyright (c) 2016, Pierre-Anthony Lemieux (pal@sandflow.com)
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ *
+ * * Redistributions of source code must retain the above copyright notice, this
+ *   list of conditions and the following disclaimer.
+ * * Redistributions in binary form must reproduce the above copyright notice,
+ *   this list of conditions and the following disclaimer in the documentation
+ *   and/or other materials provided with the distribution.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ */
+package com.sandflow.smpte.klv;
+
+import com.sandflow.smpte.util.UL;
+import java.nio.ByteBuffer;
+import java.nio.channels.SeekableByteChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Arrays;
+import java.util.Random;
+import junit.framework.TestCase;
+
+/**
+ *
+ * @author Pierre-Anthony Lemieux (pal@sandflow.com)
+ */
+public class KeyScannerTest extends TestCase {
+
+    /* Header Partition Pack Key, matched ignoring the version, kind and status */
+    private static final UL PARTITION_PACK_KEY = UL.fromURN("urn:smpte:ul:060e2b34.02050101.0d010201.01020400");
+    private static final int PARTITION_PACK_MASK = 0xfee0;
+
+    /* partial partition pack keys, which must not match */
+    private static final byte[] NEARMISS = {0x06, 0x0e, 0x2b, 0x34, 0x02, 0x05, 0x01, 0x01, 0x0d, 0x01, 0x03};
+
+    public KeyScannerTest(String testName) {
+        super(testName);
+    }
+
+    /* random bytes sprinkled with near misses and matching Keys */
+    private static byte[] createBytes(Random rnd, int length, int matches) {
+
+        byte[] bytes = new byte[length];
+
+        rnd.nextBytes(bytes);
+
+        for (int i = 0; i < length / 100; i++) {
+            System.arraycopy(NEARMISS, 0, bytes, rnd.nextInt(bytes.length - 16), NEARMISS.length);
+        }
+
+        for (int i = 0; i < matches; i++) {
+            System.arraycopy(PARTITION_PACK_KEY.getValue(), 0, bytes, rnd.nextInt(bytes.length - 16), 16);
+        }
+
+        return bytes;
+    }
+
+    /* reference byte-by-byte search */
+    private static int indexOf(byte[] bytes, int from, int to) {
+
+        for (int i = from; i < to && i + 16 <= bytes.length; i++) {
+            if (new UL(Arrays.copyOfRange(bytes, i, i + 16)).equalsWithMask(PARTITION_PACK_KEY, PARTITION_PACK_MASK)) {
+                return i;
+            }
+        }
+
+        return -1;
+    }
+
+    public void testIndexOf() throws Exception {
+
+        KeyScanner scanner = new KeyScanner(PARTITION_PACK_KEY, PARTITION_PACK_MASK);
+
+        byte[] bytes = createBytes(new Random(7), 4096, 5);
+
+        ByteBuffer bb = ByteBuffer.wrap(bytes);
+
+        for (int from = 0; from < bytes.length; from += 13) {
+            assertEquals(indexOf(bytes, from, bytes.length), scanner.indexOf(bb, from, bytes.length));
+        }
+
+        /* the Key may extend past the end of the range */
+        int first = indexOf(bytes, 0, bytes.length);
+
+        assertEquals(first, scanner.indexOf(bb, first, first + 1));
+        assertEquals(-1, scanner.indexOf(bb, first, first));
+    }
+
+    public void testSeek() throws Exception {
+
+        Random rnd = new Random(11);
+
+        /* a small window exercises Keys that straddle windows */
+        KeyScanner scanner = new KeyScanner(PARTITION_PACK_KEY, PARTITION_PACK_MASK, 64);
+
+        byte[] bytes = createBytes(rnd, 2000, 3);
+
+        Path p = Files.createTempFile("scan", ".bin");
+
+        try {
+
+            Files.write(p, bytes);
+
+            try (SeekableByteChannel channel = Files.newByteChannel(p)) {
+
+                for (int from = 0; from < bytes.length; from += 37) {
+
+                    int expected = indexOf(bytes, from, bytes.length);
+
+                    channel.position(from);
+
+                    assertEquals(expected, scanner.seek(channel, bytes.length));
+
+                    if (expected >= 0) {
+                        assertEquals(expected, channel.position());
+
+                        /* no match is reported beyond the limit */
+                        channel.position(from);
+
+                        assertEquals(-1, scanner.seek(channel, expected - 1));
+                    }
+                }
+            }
+
+        } finally {
+            Files.delete(p);
+        }
+    }
+
+}
@@ -0,0 +1,139 @@
+/*
+ * Copyright (c) 2016, Pierre-Anthony Lemieux (pal@sandflow.com)
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ *
+ * * Redistributions of source code must retain the above copyright notice, this
+ *   list of conditions and the following disclaimer.
+ * * Redistributions in binary form must reproduce the above copyright notice,
+ *   this list of conditions and the following disclaimer in the documentation
+ *   and/or other materials provided with the distribution.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ */
+package com.sandflow.smpte.klv;
+
+import com.sandflow.smpte.klv.exceptions.KLVException;
+import com.sandflow.smpte.util.UL;
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.Arrays;
+import junit.framework.TestCase;
+
+/**
+ *
+ * @author Pierre-Anthony Lemieux (pal@sandflow.com)
+ */
+public class LocalSetTest extends TestCase {
+
+    private static final UL ITEM1 = UL.fromURN("urn:smpte:ul:060e2b34.01010101.01011502.00000000");
+    private static final UL ITEM2 = UL.fromURN("urn:smpte:ul:060e2b34.01010102.06010104.02010000");
+
+    /* Local Set with 2-byte local tags and lengths */
+    private static final UL KEY = UL.fromURN("urn:smpte:ul:060e2b34.02530101.0d010101.01012f00");
+
+    private static final byte[] VALUE = new byte[]{0x3c, 0x0a, 0x00, 0x02, 0x01, 0x02, (byte) 0xff, (byte) 0xff, 0x00, 0x00};
+
+    private LocalTagRegister reg;
+
+    public LocalSetTest(String testName) {
+        super(testName);
+    }
+
+    @Override
+    protected void setUp() throws Exception {
+        super.setUp();
+
+        reg = new LocalTagRegister();
+
+        reg.add(0x3c0a, ITEM1);
+        reg.add(0xffff, ITEM1);
+        reg.add(0x12345678L, ITEM2);
+    }
+
+    public void testShortTags() throws Exception {
+
+        for (Triplet t : new Triplet[]{new MemoryTriplet(KEY, VALUE), new ByteBufferTriplet(KEY, ByteBuffer.wrap(VALUE))}) {
+
+            ArrayList<Triplet> items = new ArrayList<>(LocalSet.fromTriplet(t, reg).getItems());
+
+            assertEquals(2, items.size());
+            assertEquals(ITEM1, items.get(0).getKey());
+            assertTrue(Arrays.equals(new byte[]{0x01, 0x02}, items.get(0).getValue()));
+            assertEquals(0, items.get(1).getLength());
+
+        }
+    }
+
+    public void testSharedBuffer() throws Exception {
+
+        /* items are views of a shared buffer that extends beyond the local set */
+        ByteBuffer shared = ByteBuffer.allocate(VALUE.length + 8);
+
+        shared.position(4);
+        shared.put(VALUE);
+        shared.putInt(0x3c0a0009);
+
+        Group g = LocalSet.fromTriplet(new ByteBufferTriplet(KEY, shared, 4, VALUE.length), reg);
+
+        Triplet view = g.getItems().iterator().next();
+
+        assertEquals(2, view.getLength());
+
+        InputStream is = view.getValueAsStream();
+
+        assertEquals(0x01, is.read());
+        assertEquals(0x02, is.read());
+        assertEquals(-1, is.read());
+
+        try {
+            LocalSet.fromTriplet(new ByteBufferTriplet(KEY, shared, 4, 5), reg);
+            fail("Local Set read beyond its length");
+        } catch (KLVException e) {
+        }
+    }
+
+    public void testLongTags() throws Exception {
+
+        /* 4-byte local tags and BER lengths */
+        UL berkey = UL.fromURN("urn:smpte:ul:060e2b34.021b0101.0d010101.01012f00");
+
+        byte[] bervalue = new byte[]{0x12, 0x34, 0x56, 0x78, (byte) 0x81, 0x01, 0x07};
+
+        Triplet item = LocalSet.fromTriplet(new MemoryTriplet(berkey, bervalue), reg).getItems().iterator().next();
+
+        assertEquals(ITEM2, item.getKey());
+        assertTrue(Arrays.equals(new byte[]{0x07}, item.getValue()));
+    }
+
+    public void testMalformed() throws Exception {
+
+        /* truncated value */
+        try {
+            LocalSet.fromTriplet(new MemoryTriplet(KEY, Arrays.copyOf(VALUE, 5)), reg);
+            fail("Truncated Local Set not detected");
+        } catch (KLVException e) {
+        }
+
+        /* unknown local tag */
+        try {
+            LocalSet.fromTriplet(new MemoryTriplet(KEY, new byte[]{0x3c, 0x0b, 0x00, 0x00}), reg);
+            fail("Unknown local tag not detected");
+        } catch (KLVException e) {
+        }
+    }
+
+}
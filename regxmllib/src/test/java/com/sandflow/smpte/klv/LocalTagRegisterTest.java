@@ -0,0 +1,106 @@
+/*
+ * Copyright (c) 2016, Pierre-Anthony Lemieux (pal@sandflow.com)
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ *
+ * * Redistributions of source code must retain the above copyright notice, this
+ *   list of conditions and the following disclaimer.
+ * * Redistributions in binary form must reproduce the above copyright notice,
+ *   this list of conditions and the following disclaimer in the documentation
+ *   and/or other materials provided with the distribution.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ */
+package com.sandflow.smpte.klv;
+
+import com.sandflow.smpte.util.UL;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Random;
+import junit.framework.TestCase;
+
+/**
+ *
+ * @author Pierre-Anthony Lemieux (pal@sandflow.com)
+ */
+public class LocalTagRegisterTest extends TestCase {
+
+    private static final UL ITEM1 = UL.fromURN("urn:smpte:ul:060e2b34.01010101.01011502.00000000");
+    private static final UL ITEM2 = UL.fromURN("urn:smpte:ul:060e2b34.01010102.06010104.02010000");
+
+    public LocalTagRegisterTest(String testName) {
+        super(testName);
+    }
+
+    public void testAddAndGet() throws Exception {
+
+        LocalTagRegister reg = new LocalTagRegister();
+
+        assertNull(reg.add(0x3c0a, ITEM1));
+        assertNull(reg.add(0xffff, ITEM2));
+        assertNull(reg.add(0x12345678L, ITEM2));
+        assertEquals(ITEM2, reg.add(0xffff, ITEM1));
+        assertEquals(ITEM2, reg.add(0x12345678L, ITEM2));
+
+        assertEquals(ITEM1, reg.get(0x3c0a));
+        assertEquals(ITEM1, reg.get(0xffff));
+        assertEquals(ITEM2, reg.get(0x12345678L));
+        assertNull(reg.get(0x3c0b));
+        assertNull(reg.get(0x12345679L));
+
+        /* boundaries of the 2-byte local tags */
+        assertNull(reg.get(0));
+        assertNull(reg.add(0, ITEM1));
+        assertEquals(ITEM1, reg.get(0));
+        assertNull(reg.get(0x10000));
+        assertNull(reg.get(-1));
+    }
+
+    public void testLongTags() throws Exception {
+
+        HashMap<Long, UL> expected = new HashMap<>();
+
+        Random rnd = new Random(1);
+
+        /* enough tags for the table of long tags to grow several times */
+        while (expected.size() < 1000) {
+
+            long tag = 0x10000L + (rnd.nextLong() & 0x7FFFFFFFFFFFL);
+
+            UL key = rnd.nextBoolean() ? ITEM1 : ITEM2;
+
+            expected.put(tag, key);
+        }
+
+        expected.put(-1L, ITEM1);
+        expected.put(0x3c0aL, ITEM2);
+
+        LocalTagRegister reg = new LocalTagRegister(expected);
+
+        for (Map.Entry<Long, UL> e : expected.entrySet()) {
+            assertEquals(e.getValue(), reg.get(e.getKey()));
+        }
+
+        for (int i = 0; i < 1000; i++) {
+
+            long tag = 0x10000L + (rnd.nextLong() & 0x7FFFFFFFFFFFL);
+
+            if (!expected.containsKey(tag)) {
+                assertNull(reg.get(tag));
+            }
+        }
+    }
+
+}
@@ -0,0 +1,98 @@
+/*
+ * Copyright (c) 2016, Pierre-Anthony Lemieux (pal@sandflow.com)
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ *
+ * * Redistributions of source code must retain the above copyright notice, this
+ *   list of conditions and the following disclaimer.
+ * * Redistributions in binary form must reproduce the above copyright notice,
+ *   this list of conditions and the following disclaimer in the documentation
+ *   and/or other materials provided with the distribution.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ */
+package com.sandflow.smpte.klv;
+
+import java.io.EOFException;
+import java.io.InputStream;
+import java.net.URI;
+import java.nio.channels.FileChannel;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+import java.util.Arrays;
+import junit.framework.TestCase;
+
+/**
+ * Compares MappedKLVReader with KLVInputStream
+ */
+public class MappedKLVReaderTest extends TestCase {
+
+    public MappedKLVReaderTest(String testName) {
+        super(testName);
+    }
+
+    private void compareWithKLVInputStream(String path, int windowsize) throws Exception {
+        URI uri = ClassLoader.getSystemResource(path).toURI();
+
+        assertNotNull(uri);
+
+        InputStream is = ClassLoader.getSystemResourceAsStream(path);
+
+        assertNotNull(is);
+
+        KLVInputStream kis = new KLVInputStream(is);
+
+        FileChannel fc = FileChannel.open(Paths.get(uri), StandardOpenOption.READ);
+
+        MappedKLVReader mkr = new MappedKLVReader(fc, windowsize);
+
+        int count = 0;
+
+        while (mkr.position() < mkr.size()) {
+
+            Triplet mt = mkr.readTriplet();
+            Triplet t = kis.readTriplet();
+
+            assertEquals(t.getKey(), mt.getKey());
+            assertEquals(t.getLength(), mt.getLength());
+            assertTrue(Arrays.equals(t.getValue(), mt.getValue()));
+
+            count++;
+        }
+
+        assertTrue(count > 0);
+
+        try {
+            mkr.readTriplet();
+            fail("EOF not reached");
+        } catch (EOFException e) {
+        }
+
+        fc.close();
+    }
+
+    public void testAudio1() throws Exception {
+        compareWithKLVInputStream("resources/sample-files/audio1.mxf", MappedKLVReader.DEFAULT_WINDOW_SIZE);
+    }
+
+    public void testAudio1SmallWindow() throws Exception {
+        compareWithKLVInputStream("resources/sample-files/audio1.mxf", 1024);
+    }
+
+    public void testIndirectSmallWindow() throws Exception {
+        compareWithKLVInputStream("resources/sample-files/indirect.mxf", 4096);
+    }
+
+}
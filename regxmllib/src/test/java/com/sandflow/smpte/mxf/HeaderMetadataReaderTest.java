@@ -0,0 +1,134 @@
+/*
+ * Copyright (c) 2016, Pierre-Anthony Lemieux (pal@sandflow.com)
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ *
+ * * Redistributions of source code must retain the above copyright notice, this
+ *   list of conditions and the following disclaimer.
+ * * Redistributions in binary form must reproduce the above copyright notice,
+ *   this list of conditions and the following disclaimer in the documentation
+ *   and/or other materials provided with the distribution.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ */
+package com.sandflow.smpte.mxf;
+
+import com.sandflow.smpte.klv.ByteBufferTriplet;
+import com.sandflow.smpte.klv.Group;
+import com.sandflow.smpte.klv.Triplet;
+import com.sandflow.smpte.util.ChannelByteSource;
+import com.sandflow.smpte.util.UL;
+import java.io.InputStream;
+import java.net.URI;
+import java.nio.channels.SeekableByteChannel;
+import java.nio.file.Files;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import junit.framework.TestCase;
+
+/**
+ *
+ * @author Pierre-Anthony Lemieux (pal@sandflow.com)
+ */
+public class HeaderMetadataReaderTest extends TestCase {
+
+    public HeaderMetadataReaderTest(String testName) {
+        super(testName);
+    }
+
+    public void testHeaderMetadataReader() throws Exception {
+        UL prefaceKey = UL.fromURN("urn:smpte:ul:060e2b34.027f0101.0d010101.01012f00");
+
+        InputStream is = ClassLoader.getSystemResourceAsStream("resources/sample-files/audio1.mxf");
+
+        assertNotNull(is);
+
+        HeaderMetadataReader reader = new HeaderMetadataReader(is);
+
+        assertEquals(PartitionPack.Kind.HEADER, reader.getPartitionPack().getKind());
+
+        /* the Essence Containers batch follows a 4-byte BodySID */
+        assertEquals(0, reader.getPartitionPack().getBodySID());
+        assertEquals(UL.fromURN("urn:smpte:ul:060e2b34.04010101.0d010201.01010100"), reader.getPartitionPack().getOperationalPattern());
+        assertEquals(1, reader.getPartitionPack().getEssenceContainers().size());
+        assertEquals(
+            UL.fromURN("urn:smpte:ul:060e2b34.04010101.0d010301.02060200"),
+            reader.getPartitionPack().getEssenceContainers().iterator().next()
+        );
+
+        assertNotNull(reader.getLocalTagRegister());
+
+        int prefaceCount = 0;
+        int groupCount = 0;
+
+        for (Group g; (g = reader.next()) != null; groupCount++) {
+            assertTrue(g.getKey().isLocalSet());
+
+            if (g.getKey().equalsWithMask(prefaceKey, 0b1111101011111111 /* ignore version and Group coding */)) {
+                prefaceCount++;
+            }
+
+            /* items refer to the buffer the Local Set was read into */
+            for (Triplet t : g.getItems()) {
+                assertTrue(t instanceof ByteBufferTriplet);
+            }
+        }
+
+        assertEquals(1, prefaceCount);
+
+        assertTrue(groupCount > 1);
+
+        assertFalse(reader.isIndexTableReached());
+
+        assertNull(reader.next());
+    }
+
+    public void testHeaderMetadataReaderOverChannel() throws Exception {
+        URI uri = ClassLoader.getSystemResource("resources/sample-files/video1.mxf").toURI();
+
+        assertNotNull(uri);
+
+        HeaderMetadataReader ref = new HeaderMetadataReader(ClassLoader.getSystemResourceAsStream("resources/sample-files/video1.mxf"));
+
+        ArrayList<UL> keys = new ArrayList<>();
+
+        for (Group g; (g = ref.next()) != null;) {
+            keys.add(g.getKey());
+        }
+
+        /* a small read-ahead buffer exercises reads that straddle buffer boundaries */
+        for (int readahead : new int[]{7, 4096, ChannelByteSource.DEFAULT_READ_AHEAD}) {
+
+            SeekableByteChannel faf = Files.newByteChannel(Paths.get(uri));
+
+            ChannelByteSource source = new ChannelByteSource(faf, readahead, readahead == 4096);
+
+            HeaderMetadataReader reader = new HeaderMetadataReader(source);
+
+            ArrayList<UL> actual = new ArrayList<>();
+
+            for (Group g; (g = reader.next()) != null;) {
+                actual.add(g.getKey());
+            }
+
+            assertEquals(keys, actual);
+
+            assertEquals(ref.getPartitionPack().getHeaderByteCount(), reader.getPartitionPack().getHeaderByteCount());
+
+            faf.close();
+        }
+    }
+
+}
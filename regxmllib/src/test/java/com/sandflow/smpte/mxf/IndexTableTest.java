@@ -0,0 +1,106 @@
+/*
+ * Copyright (c) 2016, Pierre-Anthony Lemieux (pal@sandflow.com)
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ *
+ * * Redistributions of source code must retain the above copyright notice, this
+ *   list of conditions and the following disclaimer.
+ * * Redistributions in binary form must reproduce the above copyright notice,
+ *   this list of conditions and the following disclaimer in the documentation
+ *   and/or other materials provided with the distribution.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ */
+package com.sandflow.smpte.mxf;
+
+import com.sandflow.smpte.klv.MemoryTriplet;
+import com.sandflow.smpte.util.UL;
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.Arrays;
+import junit.framework.TestCase;
+
+/**
+ *
+ * @author Pierre-Anthony Lemieux (pal@sandflow.com)
+ */
+public class IndexTableTest extends TestCase {
+
+    public IndexTableTest(String testName) {
+        super(testName);
+    }
+
+    public void testMergeSegments() throws Exception {
+        /* segments spread across partitions, repeated and out of order */
+        ArrayList<IndexTableSegment> segs = new ArrayList<>();
+
+        segs.add(createVBESegment(3, new long[]{300, 310, 330}));
+        segs.add(createVBESegment(0, new long[]{0, 100, 200}));
+        segs.add(createVBESegment(3, new long[]{300, 310, 330}));
+        segs.add(createVBESegment(0, new long[]{0, 100}));
+
+        IndexTable it = new IndexTable(segs);
+
+        assertEquals(2, it.getSegments().size());
+        assertEquals(-1, it.getStreamOffset(-1));
+        assertEquals(0, it.getStreamOffset(0));
+        assertEquals(200, it.getStreamOffset(2));
+        assertEquals(300, it.getStreamOffset(3));
+        assertEquals(330, it.getStreamOffset(5));
+        assertEquals(-1, it.getStreamOffset(6));
+        assertEquals(310 + 4 + 16, it.getElementStreamOffset(4, 1));
+
+        IndexTableSegment s = it.getSegments().get(1);
+
+        assertEquals(1, s.getSliceCount());
+        assertEquals(4, s.getSliceOffset(1, 1));
+        assertEquals(0x80, s.getFlags(0));
+        assertEquals(-1, s.getTemporalOffset(1));
+    }
+
+    /*
+     * Encodes a VBE Index Table Segment with one slice and two elements, the
+     * second of which starts 16 bytes into the second slice
+     */
+    private static IndexTableSegment createVBESegment(long start, long[] offsets) throws Exception {
+        ByteBuffer bb = ByteBuffer.allocate(256);
+
+        bb.putShort((short) 0x3f06).putShort((short) 4).putInt(2);
+        bb.putShort((short) 0x3f0c).putShort((short) 8).putLong(start);
+        bb.putShort((short) 0x3f0d).putShort((short) 8).putLong(offsets.length);
+        bb.putShort((short) 0x3f05).putShort((short) 4).putInt(0);
+
+        /* the arrays precede the Slice Count */
+        bb.putShort((short) 0x3f09).putShort((short) (8 + 2 * 6)).putInt(2).putInt(6);
+        bb.put((byte) 0).put((byte) 0).putInt(0);
+        bb.put((byte) 0).put((byte) 1).putInt(16);
+
+        bb.putShort((short) 0x3f0a).putShort((short) (8 + offsets.length * 15)).putInt(offsets.length).putInt(15);
+
+        for (long offset : offsets) {
+            bb.put((byte) -1).put((byte) 0).put((byte) 0x80).putLong(offset).putInt(4);
+        }
+
+        bb.putShort((short) 0x3f08).putShort((short) 1).put((byte) 1);
+
+        return IndexTableSegment.fromTriplet(
+            new MemoryTriplet(
+                UL.fromURN("urn:smpte:ul:060e2b34.02530101.0d010201.01100100"),
+                Arrays.copyOf(bb.array(), bb.position())
+            )
+        );
+    }
+
+}
@@ -0,0 +1,105 @@
+/*
+ * Copyright (c) 2016, Pierre-Anthony Lemieux (pal@sandflow.com)
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ *
+ * * Redistributions of source code must retain the above copyright notice, this
+ *   list of conditions and the following disclaimer.
+ * * Redistributions in binary form must reproduce the above copyright notice,
+ *   this list of conditions and the following disclaimer in the documentation
+ *   and/or other materials provided with the distribution.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ */
+package com.sandflow.smpte.mxf;
+
+import com.sandflow.smpte.klv.KLVInputStream;
+import com.sandflow.smpte.util.UL;
+import java.io.EOFException;
+import junit.framework.TestCase;
+
+/**
+ *
+ * @author Pierre-Anthony Lemieux (pal@sandflow.com)
+ */
+public class KeyClassifierTest extends TestCase {
+
+    public KeyClassifierTest(String testName) {
+        super(testName);
+    }
+
+    public void testKeyClassifier() throws Exception {
+        KeyClassifier<KeyClassifier.MXFKey> keys = KeyClassifier.createMXFClassifier();
+
+        UL ppkey = PartitionPack.getKey();
+        UL prefacekey = UL.fromURN("urn:smpte:ul:060e2b34.027f0101.0d010101.01012f00");
+
+        int partitions = 0;
+
+        for (String name : new String[]{"audio1.mxf", "video2.mxf", "indirect.mxf"}) {
+
+            KLVInputStream kis = new KLVInputStream(ClassLoader.getSystemResourceAsStream("resources/sample-files/" + name));
+
+            try {
+
+                while (true) {
+                    UL key = kis.readUL();
+
+                    KeyClassifier.MXFKey kind = keys.classify(key);
+
+                    assertEquals(PartitionPack.isPartitionPackKey(key), kind == KeyClassifier.MXFKey.PARTITION_PACK);
+                    assertEquals(key.equalsIgnoreVersion(FillItem.getKey()), kind == KeyClassifier.MXFKey.FILL_ITEM);
+                    assertEquals(key.equalsIgnoreVersion(PrimerPack.getKey()), kind == KeyClassifier.MXFKey.PRIMER_PACK);
+                    assertEquals(key.equalsWithMask(prefacekey, 0b1111101011111111), kind == KeyClassifier.MXFKey.PREFACE);
+
+                    if (kind == KeyClassifier.MXFKey.PARTITION_PACK) {
+                        partitions++;
+                    }
+
+                    kis.skipFully(kis.readBERLength());
+                }
+
+            } catch (EOFException e) {
+            }
+
+        }
+
+        assertTrue(partitions > 3);
+
+        /* the most specific pattern wins */
+        KeyClassifier<String> c = new KeyClassifier<>();
+
+        c.add(ppkey, 0xffe0, "prefix");
+        c.add(ppkey, 0xffff, "exact");
+
+        assertEquals("exact", c.classify(ppkey));
+        assertEquals("prefix", c.classify(PrimerPack.getKey()));
+        assertNull(c.classify(FillItem.getKey()));
+
+        /* application patterns can be combined with the MXF patterns */
+        KeyClassifier<Object> app = new KeyClassifier<>();
+
+        KeyClassifier.addMXFPatterns(app);
+
+        UL picturekey = UL.fromURN("urn:smpte:ul:060e2b34.01020101.0d010301.15010500");
+
+        app.add(picturekey, 0xfff8, "picture");
+
+        assertEquals("picture", app.classify(picturekey));
+        assertEquals(KeyClassifier.MXFKey.ESSENCE_ELEMENT, app.classify(UL.fromURN("urn:smpte:ul:060e2b34.01020101.0d010301.16010101")));
+        assertEquals(KeyClassifier.MXFKey.PREFACE, app.classify(UL.fromURN("urn:smpte:ul:060e2b34.02530101.0d010101.01012f00")));
+    }
+
+}
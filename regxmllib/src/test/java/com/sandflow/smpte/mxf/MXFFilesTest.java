@@ -25,9 +25,15 @@
  */
 package com.sandflow.smpte.mxf;
 
+import com.sandflow.smpte.klv.KLVInputStream;
+import com.sandflow.smpte.klv.SeekableKLVInputStream;
+import com.sandflow.smpte.util.UL;
 import java.net.URI;
+import java.nio.channels.Channels;
 import java.nio.channels.SeekableByteChannel;
+import java.util.Random;
 import java.nio.file.Files;
+import java.nio.file.Path;
 import java.nio.file.Paths;
 import static junit.framework.Assert.assertEquals;
 import static junit.framework.Assert.assertNotNull;
@@ -76,4 +82,169 @@ public class MXFFilesTest extends TestCase {
         assertEquals(0, MXFFiles.seekHeaderPartition(faf));
     }
 
+    public void testSeekHeaderPartitionRunIn() throws Exception {
+        URI uri = ClassLoader.getSystemResource("resources/sample-files/audio1.mxf").toURI();
+
+        byte[] mxf = Files.readAllBytes(Paths.get(uri));
+
+        /* partial partition pack keys, which must not match */
+        byte[] nearmiss = {0x06, 0x0e, 0x2b, 0x34, 0x02, 0x05, 0x01, 0x01, 0x0d, 0x01, 0x03};
+
+        Random rnd = new Random(7);
+
+        for (int runin : new int[]{0, 1, 7, 8, 9, 4096, 65535, 65536, 65537}) {
+
+            byte[] bytes = new byte[runin + mxf.length];
+
+            rnd.nextBytes(bytes);
+
+            for (int i = 0; i + nearmiss.length <= runin; i += 97) {
+                System.arraycopy(nearmiss, 0, bytes, i, nearmiss.length);
+            }
+
+            System.arraycopy(mxf, 0, bytes, runin, mxf.length);
+
+            Path p = Files.createTempFile("runin", ".mxf");
+
+            try {
+
+                Files.write(p, bytes);
+
+                try (SeekableByteChannel faf = Files.newByteChannel(p)) {
+
+                    /* the run-in is less than 64 KiB */
+                    long expected = runin <= 65536 ? runin : -1;
+
+                    assertEquals(expected, MXFFiles.seekHeaderPartition(faf));
+
+                    if (expected >= 0) {
+                        assertEquals(expected, faf.position());
+                        assertNotNull(PartitionPack.fromTriplet(new KLVInputStream(Channels.newInputStream(faf)).readTriplet()));
+                    }
+                }
+
+            } finally {
+                Files.delete(p);
+            }
+        }
+    }
+
+    public void testSeekNextKey() throws Exception {
+        URI uri = ClassLoader.getSystemResource("resources/sample-files/audio1.mxf").toURI();
+
+        byte[] mxf = Files.readAllBytes(Paths.get(uri));
+
+        /* corrupted region containing a UL with an undefined category and a
+         UL whose length extends past the end of the file */
+        byte[] corrupted = new byte[200];
+
+        new Random(3).nextBytes(corrupted);
+
+        byte[] badcategory = {0x06, 0x0e, 0x2b, 0x34, 0x07, 0x05, 0x01, 0x01, 0x0d, 0x01, 0x02, 0x01, 0x01, 0x02, 0x04, 0x00, 0x10};
+        byte[] badlength = {0x06, 0x0e, 0x2b, 0x34, 0x02, 0x05, 0x01, 0x01, 0x0d, 0x01, 0x02, 0x01, 0x01, 0x02, 0x04, 0x00, (byte) 0x84, 0x7f, 0x00, 0x00, 0x00};
+
+        System.arraycopy(badcategory, 0, corrupted, 20, badcategory.length);
+        System.arraycopy(badlength, 0, corrupted, 100, badlength.length);
+
+        /* the corrupted region replaces the start of the file */
+        byte[] bytes = new byte[corrupted.length + mxf.length];
+
+        System.arraycopy(corrupted, 0, bytes, 0, corrupted.length);
+        System.arraycopy(mxf, 0, bytes, corrupted.length, mxf.length);
+
+        Path p = Files.createTempFile("resync", ".mxf");
+
+        try {
+
+            Files.write(p, bytes);
+
+            try (SeekableByteChannel faf = Files.newByteChannel(p)) {
+
+                assertEquals(corrupted.length, MXFFiles.seekNextKey(faf));
+                assertEquals(corrupted.length, faf.position());
+
+                /* resume within the partition pack */
+                faf.position(corrupted.length + 1);
+
+                long offset = MXFFiles.seekNextKey(faf);
+
+                assertTrue(offset > corrupted.length);
+
+                SeekableKLVInputStream kis = new SeekableKLVInputStream(faf);
+
+                assertEquals(0x060e2b34, kis.readInt());
+            }
+
+        } finally {
+            Files.delete(p);
+        }
+    }
+
+    public void testSeekNextPartition() throws Exception {
+        /* get the sample files */
+        URI uri = ClassLoader.getSystemResource("resources/sample-files/audio1.mxf").toURI();
+
+        assertNotNull(uri);
+
+        SeekableByteChannel faf = Files.newByteChannel(Paths.get(uri));
+
+        SeekableKLVInputStream kis = new SeekableKLVInputStream(faf);
+
+        long[] offsets = {0, 0x31df, 0x615f, 0x6258};
+
+        for (long offset : offsets) {
+            assertEquals(offset, MXFFiles.seekNextPartition(faf));
+
+            assertNotNull(PartitionPack.fromTriplet(kis.readTriplet()));
+        }
+
+        assertEquals(-1, MXFFiles.seekNextPartition(faf));
+    }
+
+    public void testIndexTable() throws Exception {
+        /* CBE */
+        URI uri = ClassLoader.getSystemResource("resources/sample-files/audio1.mxf").toURI();
+
+        IndexTable it = MXFFiles.readIndexTable(Files.newByteChannel(Paths.get(uri)), 2);
+
+        assertNotNull(it);
+        assertTrue(it.isCBE());
+        assertEquals(1, it.getSegments().size());
+        assertEquals(6, it.getSegments().get(0).getEditUnitByteCount());
+        assertEquals(60, it.getStreamOffset(10));
+
+        assertNull(MXFFiles.readIndexTable(Files.newByteChannel(Paths.get(uri)), 1));
+
+        /* VBE, found by walking back from the footer partition */
+        uri = ClassLoader.getSystemResource("resources/sample-files/indirect.mxf").toURI();
+
+        it = MXFFiles.readIndexTable(Files.newByteChannel(Paths.get(uri)), 2);
+
+        assertNotNull(it);
+        assertFalse(it.isCBE());
+        assertEquals(2, it.getSegments().get(0).getIndexEntryCount());
+        assertEquals(0xb7000, it.getSegments().get(0).getStreamOffset(1));
+        assertEquals(0, it.getStreamOffset(0));
+        assertEquals(-1, it.getStreamOffset(1));
+
+        /* VBE with a Delta Entry Array */
+        uri = ClassLoader.getSystemResource("resources/sample-files/video1.mxf").toURI();
+
+        it = MXFFiles.readIndexTable(Files.newByteChannel(Paths.get(uri)), 2);
+
+        assertNotNull(it);
+        assertEquals(1, it.getSegments().get(0).getDeltaEntryCount());
+        assertEquals(0, it.getElementStreamOffset(0, 0));
+
+        /* CBE with a duration, found by walking forward from an open header partition */
+        uri = ClassLoader.getSystemResource("resources/sample-files/open-incomplete-header.mxf").toURI();
+
+        it = MXFFiles.readIndexTable(Files.newByteChannel(Paths.get(uri)), 1);
+
+        assertNotNull(it);
+        assertEquals(0x8ae14, it.getSegments().get(0).getEditUnitByteCount());
+        assertEquals(0, it.getStreamOffset(0));
+        assertEquals(-1, it.getStreamOffset(1));
+    }
+
 }
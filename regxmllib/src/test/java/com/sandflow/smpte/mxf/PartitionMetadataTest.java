@@ -0,0 +1,213 @@
+/*
+ * Copyright (c) 2016, Pierre-Anthony Lemieux (pal@sandflow.com)
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ *
+ * * Redistributions of source code must retain the above copyright notice, this
+ *   list of conditions and the following disclaimer.
+ * * Redistributions in binary form must reproduce the above copyright notice,
+ *   this list of conditions and the following disclaimer in the documentation
+ *   and/or other materials provided with the distribution.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ */
+package com.sandflow.smpte.mxf;
+
+import com.sandflow.smpte.klv.Group;
+import com.sandflow.smpte.klv.exceptions.KLVException;
+import com.sandflow.smpte.util.ChannelByteSource;
+import com.sandflow.util.events.Event;
+import com.sandflow.util.events.EventHandler;
+import java.net.URI;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import junit.framework.TestCase;
+
+/**
+ *
+ * @author Pierre-Anthony Lemieux (pal@sandflow.com)
+ */
+public class PartitionMetadataTest extends TestCase {
+
+    public PartitionMetadataTest(String testName) {
+        super(testName);
+    }
+
+    public void testReadAllPartitionsReportsCorruptGroups() throws Exception {
+        byte[] mxf = Files.readAllBytes(Paths.get(ClassLoader.getSystemResource("resources/sample-files/audio1.mxf").toURI()));
+
+        FileChannel fc = FileChannel.open(Paths.get(ClassLoader.getSystemResource("resources/sample-files/audio1.mxf").toURI()));
+
+        long footer = MXFFiles.seekFooterPartition(fc);
+
+        fc.close();
+
+        /* skip the Partition Pack, the Primer Pack and any Fill Item */
+        int offset = nextTriplet(mxf, (int) footer);
+
+        while (isFillItem(mxf, offset)) {
+            offset = nextTriplet(mxf, offset);
+        }
+
+        offset = nextTriplet(mxf, offset);
+
+        while (isFillItem(mxf, offset)) {
+            offset = nextTriplet(mxf, offset);
+        }
+
+        /* the length of the first item of the first Set exceeds the length of the Set */
+        int value = offset + 17 + ((mxf[offset + 16] & 0x80) == 0 ? 0 : (mxf[offset + 16] & 0x7F));
+
+        mxf[value + 2] = (byte) 0xFF;
+        mxf[value + 3] = (byte) 0xFF;
+
+        Path corrupt = Paths.get("target", "test-partitions", "corrupt-footer.mxf");
+
+        Files.createDirectories(corrupt.getParent());
+        Files.write(corrupt, mxf);
+
+        ExecutorService executor = Executors.newFixedThreadPool(2);
+
+        try (FileChannel cfc = FileChannel.open(corrupt)) {
+
+            final ArrayList<Event> events = new ArrayList<>();
+
+            List<PartitionMetadata> partitions = PartitionMetadata.readAll(cfc, executor, new EventHandler() {
+
+                @Override
+                public boolean handle(Event evt) {
+                    events.add(evt);
+                    return true;
+                }
+            });
+
+            assertEquals(1, events.size());
+            assertEquals(PartitionMetadata.EventCodes.GROUP_READ_FAILED, events.get(0).getCode());
+            assertEquals(footer, ((PartitionMetadata.PartitionEvent) events.get(0)).getOffset());
+
+            /* the other Groups of the footer are still read */
+            assertEquals(
+                partitions.get(0).getHeaderMetadata().size() - 1,
+                partitions.get(partitions.size() - 1).getHeaderMetadata().size()
+            );
+
+            /* without an event handler, reading stops at the corrupt Group */
+            cfc.position(0);
+
+            try {
+                PartitionMetadata.readAll(cfc, executor, null);
+                fail("Corrupt Group was not reported");
+            } catch (KLVException e) {
+            }
+
+        } finally {
+            executor.shutdown();
+        }
+    }
+
+    /* returns the offset of the triplet that follows the triplet at the offset */
+    private static int nextTriplet(byte[] mxf, int offset) {
+
+        int b = mxf[offset + 16] & 0xFF;
+
+        if ((b & 0x80) == 0) {
+            return offset + 17 + b;
+        }
+
+        long len = 0;
+
+        for (int i = 1; i <= (b & 0x7F); i++) {
+            len = (len << 8) | (mxf[offset + 16 + i] & 0xFF);
+        }
+
+        return (int) (offset + 17 + (b & 0x7F) + len);
+    }
+
+    private static boolean isFillItem(byte[] mxf, int offset) {
+        return mxf[offset + 8] == 0x03 && mxf[offset + 9] == 0x01 && mxf[offset + 10] == 0x02 && mxf[offset + 11] == 0x10;
+    }
+
+    public void testReadAllPartitions() throws Exception {
+        URI uri = ClassLoader.getSystemResource("resources/sample-files/audio1.mxf").toURI();
+
+        FileChannel fc = FileChannel.open(Paths.get(uri));
+
+        RandomIndexPack rip = MXFFiles.readRandomIndexPack(fc);
+
+        assertNotNull(rip);
+        assertEquals(4, rip.getOffsets().size());
+
+        ExecutorService executor = Executors.newFixedThreadPool(4);
+
+        try {
+
+            fc.position(0);
+
+            List<PartitionMetadata> partitions = PartitionMetadata.readAll(fc, executor, null);
+
+            assertEquals(4, partitions.size());
+
+            for (int i = 0; i < partitions.size(); i++) {
+                assertNull(partitions.get(i).getError());
+                assertEquals(rip.getOffsets().get(i).getOffset(), partitions.get(i).getOffset());
+                assertEquals(rip.getOffsets().get(i).getOffset(), partitions.get(i).getPartitionPack().getThisPartition());
+            }
+
+            assertTrue(partitions.get(0).hasHeaderMetadata());
+            assertFalse(partitions.get(1).hasHeaderMetadata());
+            assertFalse(partitions.get(2).hasHeaderMetadata());
+            assertTrue(partitions.get(3).hasHeaderMetadata());
+
+            /* the footer is preferred over the header when both are closed and complete */
+            assertSame(partitions.get(3), PartitionMetadata.selectBest(partitions));
+
+            /* the closed and complete footer is preferred over the open and incomplete header */
+            uri = ClassLoader.getSystemResource("resources/sample-files/open-incomplete-header.mxf").toURI();
+
+            fc = FileChannel.open(Paths.get(uri));
+
+            partitions = PartitionMetadata.readAll(fc, executor, null);
+
+            PartitionMetadata best = PartitionMetadata.selectBest(partitions);
+
+            assertEquals(PartitionPack.Kind.FOOTER, best.getPartitionPack().getKind());
+            assertEquals(PartitionPack.Status.OPEN_INCOMPLETE, partitions.get(0).getPartitionPack().getStatus());
+            assertTrue(partitions.get(0).hasHeaderMetadata());
+
+            /* the Header Metadata of the partition can be read again from its offset */
+            fc.position(best.getOffset());
+
+            HeaderMetadataReader reader = new HeaderMetadataReader(new ChannelByteSource(fc));
+
+            int count = 0;
+
+            while (reader.next() != null) {
+                count++;
+            }
+
+            assertEquals(count, best.getHeaderMetadata().size());
+
+        } finally {
+            executor.shutdown();
+        }
+    }
+
+}
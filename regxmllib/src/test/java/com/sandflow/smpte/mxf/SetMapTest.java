@@ -0,0 +1,142 @@
+/*
+ * Copyright (c) 2015, Pierre-Anthony Lemieux (pal@sandflow.com)
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ *
+ * * Redistributions of source code must retain the above copyright notice, this
+ *   list of conditions and the following disclaimer.
+ * * Redistributions in binary form must reproduce the above copyright notice,
+ *   this list of conditions and the following disclaimer in the documentation
+ *   and/or other materials provided with the distribution.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ */
+package com.sandflow.smpte.mxf;
+
+import com.sandflow.smpte.klv.Group;
+import com.sandflow.smpte.util.UUID;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import junit.framework.TestCase;
+
+/**
+ *
+ * @author Pierre-Anthony Lemieux (pal@sandflow.com)
+ */
+public class SetMapTest extends TestCase {
+
+    private List<Set> sets;
+
+    public SetMapTest(String testName) {
+        super(testName);
+    }
+
+    @Override
+    protected void setUp() throws Exception {
+        super.setUp();
+
+        HeaderMetadataReader reader = new HeaderMetadataReader(ClassLoader.getSystemResourceAsStream("resources/sample-files/video2.mxf"));
+
+        sets = new ArrayList<>();
+
+        for (Group g; (g = reader.next()) != null;) {
+            sets.add(Set.fromGroup(g));
+        }
+
+        assertTrue(sets.size() > 1);
+    }
+
+    public void testSetMap() throws Exception {
+
+        HashMap<UUID, Set> expected = new HashMap<>();
+
+        /* the map grows as Sets are added */
+        SetMap setmap = new SetMap(1);
+
+        for (Set set : sets) {
+            expected.put(set.getInstanceID(), set);
+            assertNull(setmap.add(set));
+        }
+
+        assertEquals(sets.size(), setmap.size());
+        assertEquals(expected, setmap);
+
+        for (int i = 0; i < sets.size(); i++) {
+
+            Set set = sets.get(i);
+            UUID id = set.getInstanceID();
+
+            /* Sets are numbered in the order in which they are added */
+            assertEquals(i, setmap.indexOf(id));
+            assertSame(set, setmap.getSet(i));
+
+            assertSame(set, setmap.get(new UUID(id.getValue())));
+            assertSame(set, setmap.get(id.getMostSignificantBits(), id.getLeastSignificantBits()));
+            assertTrue(setmap.containsKey(id));
+            assertTrue(setmap.getByClass(set.getKey()).contains(set));
+        }
+
+        /* Sets are iterated over in the order in which they are added */
+        int i = 0;
+
+        for (Map.Entry<UUID, Set> e : setmap.entrySet()) {
+            assertSame(sets.get(i++), e.getValue());
+        }
+
+        assertNull(setmap.get(UUID.fromRandom()));
+        assertNull(setmap.get("not a UUID"));
+        assertEquals(-1, setmap.indexOf(UUID.fromRandom()));
+
+        try {
+            setmap.getSet(sets.size());
+            fail("Set out of range was returned");
+        } catch (IndexOutOfBoundsException e) {
+        }
+
+        setmap.clear();
+
+        assertEquals(0, setmap.size());
+        assertTrue(setmap.getClasses().isEmpty());
+        assertNull(setmap.get(sets.get(0).getInstanceID()));
+    }
+
+    public void testReplace() throws Exception {
+
+        SetMap setmap = new SetMap();
+
+        Set first = sets.get(0);
+        Set second = sets.get(1);
+
+        /* a different Set takes the place of the first one */
+        assertNull(setmap.put(first.getInstanceID(), first));
+        assertSame(first, setmap.put(first.getInstanceID(), second));
+
+        assertEquals(1, setmap.size());
+        assertSame(second, setmap.get(first.getInstanceID()));
+        assertSame(second, setmap.getSet(0));
+
+        assertFalse(setmap.getByClass(first.getKey()).contains(first));
+        assertTrue(setmap.getByClass(second.getKey()).contains(second));
+
+        try {
+            setmap.put(null, first);
+            fail("Null Instance ID was accepted");
+        } catch (NullPointerException e) {
+        }
+    }
+
+}
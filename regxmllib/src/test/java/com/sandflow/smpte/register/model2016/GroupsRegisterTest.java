@@ -111,5 +111,20 @@ public class GroupsRegisterTest extends TestCase {
         
         assertTrue(found);
     }
+
+    /**
+     * Tests that a register can be reloaded, reusing the shared JAXB context
+     */
+    public void testReload() throws Exception {
+        Reader fg = new InputStreamReader(ClassLoader.getSystemResourceAsStream("resources/registers/brown_sauce/Groups.xml"));
+
+        GroupsRegister reloaded = GroupsRegister.fromXML(fg);
+
+        assertNotSame(groups, reloaded);
+
+        assertEquals(groups.getEntries().size(), reloaded.getEntries().size());
+        
+        assertNotNull(reloaded.getEntryByUL(UL.fromURN("urn:smpte:ul:060e2b34.027f0101.0d010101.01011000")));
+    }
     
 }
@@ -0,0 +1,161 @@
+/*
+ * Copyright (c) 2015, Pierre-Anthony Lemieux (pal@sandflow.com)
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ *
+ * * Redistributions of source code must retain the above copyright notice, this
+ *   list of conditions and the following disclaimer.
+ * * Redistributions in binary form must reproduce the above copyright notice,
+ *   this list of conditions and the following disclaimer in the documentation
+ *   and/or other materials provided with the distribution.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ */
+package com.sandflow.smpte.regxml;
+
+import com.sandflow.smpte.klv.Group;
+import com.sandflow.smpte.mxf.HeaderMetadataReader;
+import com.sandflow.smpte.mxf.Set;
+import com.sandflow.smpte.mxf.TypedSet;
+import com.sandflow.smpte.register.ElementsRegister;
+import com.sandflow.smpte.register.GroupsRegister;
+import com.sandflow.smpte.register.TypesRegister;
+import com.sandflow.smpte.regxml.dict.ClassLattice;
+import com.sandflow.smpte.regxml.dict.MetaDictionaryCollection;
+import static com.sandflow.smpte.regxml.dict.importers.RegisterImporter.fromRegister;
+import java.io.InputStreamReader;
+import java.lang.reflect.Method;
+import java.net.URL;
+import java.net.URLClassLoader;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.Map;
+import java.util.Map.Entry;
+import javax.tools.JavaCompiler;
+import javax.tools.ToolProvider;
+import junit.framework.TestCase;
+
+/**
+ *
+ * @author Pierre-Anthony Lemieux (pal@sandflow.com)
+ */
+public class AccessorBuilderTest extends TestCase {
+
+    private MetaDictionaryCollection mds;
+
+    public AccessorBuilderTest(String testName) {
+        super(testName);
+    }
+
+    @Override
+    protected void setUp() throws Exception {
+        super.setUp();
+
+        ElementsRegister ereg = ElementsRegister.fromXML(new InputStreamReader(
+            ClassLoader.getSystemResourceAsStream("resources/registers/catsup/Elements.xml")));
+        GroupsRegister greg = GroupsRegister.fromXML(new InputStreamReader(
+            ClassLoader.getSystemResourceAsStream("resources/registers/catsup/Groups.xml")));
+        TypesRegister treg = TypesRegister.fromXML(new InputStreamReader(
+            ClassLoader.getSystemResourceAsStream("resources/registers/catsup/Types.xml")));
+
+        mds = fromRegister(treg, greg, ereg, null);
+
+        assertNotNull(mds);
+    }
+
+    public void testAccessorBuilder() throws Exception {
+
+        AccessorBuilder ab = new AccessorBuilder(mds, ClassLattice.fromDictionaries(mds), null);
+
+        Map<String, String> sources = ab.generate("regxml.accessors");
+
+        assertTrue(sources.containsKey(AccessorBuilder.DECODERS_CLASS));
+        assertTrue(sources.containsKey(AccessorBuilder.ACCESSORS_CLASS));
+        assertTrue(sources.get("PictureDescriptor").contains("public Long getStoredWidth() throws IOException"));
+        assertTrue(sources.get("CDCIDescriptor").contains("public class CDCIDescriptor extends PictureDescriptor"));
+
+        /* compile the accessors if a compiler is available */
+        JavaCompiler javac = ToolProvider.getSystemJavaCompiler();
+
+        if (javac == null) {
+            return;
+        }
+
+        Path dir = Paths.get("target", "test-accessors", "regxml", "accessors");
+
+        Files.createDirectories(dir);
+
+        ArrayList<String> args = new ArrayList<>();
+
+        args.add("-nowarn");
+        args.add("-d");
+        args.add(Paths.get("target", "test-accessors").toString());
+        args.add("-cp");
+        args.add(System.getProperty("java.class.path"));
+
+        for (Entry<String, String> source : sources.entrySet()) {
+
+            Path file = dir.resolve(source.getKey() + ".java");
+
+            Files.write(file, source.getValue().getBytes(StandardCharsets.UTF_8));
+
+            args.add(file.toString());
+        }
+
+        assertEquals(0, javac.run(null, null, null, args.toArray(new String[args.size()])));
+
+        ClassLoader cl = new URLClassLoader(
+            new URL[]{Paths.get("target", "test-accessors").toUri().toURL()},
+            getClass().getClassLoader()
+        );
+
+        Method wrap = cl.loadClass("regxml.accessors.Accessors").getMethod("wrap", Group.class);
+
+        Class<?> picture = cl.loadClass("regxml.accessors.PictureDescriptor");
+        Class<?> preface = cl.loadClass("regxml.accessors.Preface");
+
+        HeaderMetadataReader reader = new HeaderMetadataReader(ClassLoader.getSystemResourceAsStream("resources/sample-files/video1.mxf"));
+
+        int found = 0;
+
+        for (Group g; (g = reader.next()) != null;) {
+
+            TypedSet ts = (TypedSet) wrap.invoke(null, g);
+
+            assertNotNull(ts);
+            assertSame(g, ts.getGroup());
+
+            if (picture.isInstance(ts)) {
+
+                assertEquals(1920L, picture.getMethod("getStoredWidth").invoke(ts));
+
+                found++;
+
+            } else if (preface.isInstance(ts)) {
+
+                assertEquals(Set.fromGroup(g).getInstanceID(), preface.getMethod("getInstanceID").invoke(ts));
+                assertNotNull(preface.getMethod("getContentStorageObject").invoke(ts));
+
+                found++;
+            }
+        }
+
+        assertEquals(2, found);
+    }
+
+}
@@ -0,0 +1,167 @@
+/*
+ * Copyright (c) 2015, Pierre-Anthony Lemieux (pal@sandflow.com)
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ *
+ * * Redistributions of source code must retain the above copyright notice, this
+ *   list of conditions and the following disclaimer.
+ * * Redistributions in binary form must reproduce the above copyright notice,
+ *   this list of conditions and the following disclaimer in the documentation
+ *   and/or other materials provided with the distribution.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ */
+package com.sandflow.smpte.regxml;
+
+import com.sandflow.smpte.klv.Group;
+import com.sandflow.smpte.klv.Triplet;
+import com.sandflow.smpte.mxf.HeaderMetadataReader;
+import com.sandflow.smpte.register.ElementsRegister;
+import com.sandflow.smpte.register.GroupsRegister;
+import com.sandflow.smpte.register.TypesRegister;
+import com.sandflow.smpte.regxml.dict.DefinitionResolver;
+import com.sandflow.smpte.regxml.dict.MetaDictionaryCollection;
+import com.sandflow.smpte.regxml.dict.definitions.ClassDefinition;
+import com.sandflow.smpte.regxml.dict.definitions.Definition;
+import static com.sandflow.smpte.regxml.dict.importers.RegisterImporter.fromRegister;
+import com.sandflow.smpte.util.AUID;
+import com.sandflow.smpte.util.UL;
+import java.io.InputStreamReader;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import junit.framework.TestCase;
+
+/**
+ *
+ * @author Pierre-Anthony Lemieux (pal@sandflow.com)
+ */
+public class DecodePlanCacheTest extends TestCase {
+
+    private MetaDictionaryCollection mds;
+
+    public DecodePlanCacheTest(String testName) {
+        super(testName);
+    }
+
+    @Override
+    protected void setUp() throws Exception {
+        super.setUp();
+
+        ElementsRegister ereg = ElementsRegister.fromXML(new InputStreamReader(
+            ClassLoader.getSystemResourceAsStream("resources/registers/catsup/Elements.xml")));
+        GroupsRegister greg = GroupsRegister.fromXML(new InputStreamReader(
+            ClassLoader.getSystemResourceAsStream("resources/registers/catsup/Groups.xml")));
+        TypesRegister treg = TypesRegister.fromXML(new InputStreamReader(
+            ClassLoader.getSystemResourceAsStream("resources/registers/catsup/Types.xml")));
+
+        mds = fromRegister(treg, greg, ereg, null);
+
+        assertNotNull(mds);
+    }
+
+    public void testOf() throws Exception {
+        DecodePlanCache plans = new DecodePlanCache(mds);
+
+        assertSame(plans, DecodePlanCache.of(plans));
+        assertNotSame(plans, DecodePlanCache.of(mds));
+    }
+
+    public void testUnknownKeysAreNotRetained() throws Exception {
+
+        CountingResolver resolver = new CountingResolver(mds);
+        DecodePlanCache plans = new DecodePlanCache(resolver);
+
+        HeaderMetadataReader reader = new HeaderMetadataReader(
+            ClassLoader.getSystemResourceAsStream("resources/sample-files/video1.mxf"));
+
+        List<UL> keys = new ArrayList<>();
+
+        for (Group g; (g = reader.next()) != null;) {
+
+            keys.add(g.getKey());
+
+            for (Triplet t : g.getItems()) {
+                keys.add(t.getKey());
+            }
+        }
+
+        HashMap<UL, DecodePlanCache.ItemPlan> known = new HashMap<>();
+
+        for (UL key : keys) {
+
+            DecodePlanCache.ItemPlan plan = plans.getItemPlan(key);
+
+            if (plan.getDefinition() != null) {
+                known.put(key, plan);
+            }
+        }
+
+        assertFalse(known.isEmpty());
+
+        /* known Keys are resolved once and always map to the same plan */
+        for (Map.Entry<UL, DecodePlanCache.ItemPlan> e : known.entrySet()) {
+            assertSame(e.getValue(), plans.getItemPlan(e.getKey()));
+            assertEquals(1, resolver.getCount(new AUID(e.getKey())));
+        }
+
+        /* unknown Keys are resolved again each time they are encountered */
+        UL unknown = UL.fromURN("urn:smpte:ul:060e2b34.0101010e.7f7f7f7f.7f7f7f7f");
+
+        for (int i = 0; i < 3; i++) {
+            assertNull(plans.getItemPlan(unknown).getDefinition());
+            assertNull(plans.getDefinition(new AUID(unknown)));
+        }
+
+        assertEquals(6, resolver.getCount(new AUID(unknown)));
+    }
+
+    /* counts the lookups of each identification */
+    private static class CountingResolver implements DefinitionResolver {
+
+        private final DefinitionResolver resolver;
+        private final HashMap<AUID, Integer> counts = new HashMap<>();
+
+        CountingResolver(DefinitionResolver resolver) {
+            this.resolver = resolver;
+        }
+
+        int getCount(AUID identification) {
+            Integer count = counts.get(identification);
+
+            return count == null ? 0 : count;
+        }
+
+        @Override
+        public Definition getDefinition(AUID identification) {
+            counts.put(identification, getCount(identification) + 1);
+
+            return resolver.getDefinition(identification);
+        }
+
+        @Override
+        public Collection<AUID> getSubclassesOf(ClassDefinition definition) {
+            return resolver.getSubclassesOf(definition);
+        }
+
+        @Override
+        public Collection<AUID> getMembersOf(ClassDefinition definition) {
+            return resolver.getMembersOf(definition);
+        }
+    }
+
+}
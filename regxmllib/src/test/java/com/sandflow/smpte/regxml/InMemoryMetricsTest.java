@@ -0,0 +1,131 @@
+/*
+ * Copyright (c) 2015, Pierre-Anthony Lemieux (pal@sandflow.com)
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ *
+ * * Redistributions of source code must retain the above copyright notice, this
+ *   list of conditions and the following disclaimer.
+ * * Redistributions in binary form must reproduce the above copyright notice,
+ *   this list of conditions and the following disclaimer in the documentation
+ *   and/or other materials provided with the distribution.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ */
+package com.sandflow.smpte.regxml;
+
+import com.sandflow.smpte.register.ElementsRegister;
+import com.sandflow.smpte.register.GroupsRegister;
+import com.sandflow.smpte.register.TypesRegister;
+import com.sandflow.smpte.regxml.dict.MetaDictionaryCollection;
+import static com.sandflow.smpte.regxml.dict.importers.RegisterImporter.fromRegister;
+import com.sandflow.smpte.util.UL;
+import java.io.InputStreamReader;
+import java.util.Map.Entry;
+import javax.xml.parsers.DocumentBuilder;
+import javax.xml.parsers.DocumentBuilderFactory;
+import junit.framework.TestCase;
+import org.w3c.dom.DocumentFragment;
+
+/**
+ *
+ * @author Pierre-Anthony Lemieux (pal@sandflow.com)
+ */
+public class InMemoryMetricsTest extends TestCase {
+
+    private static final UL PREFACE_KEY
+        = UL.fromURN("urn:smpte:ul:060e2b34.027f0101.0d010101.01012f00");
+
+    private MetaDictionaryCollection mds;
+    private DocumentBuilder db;
+
+    public InMemoryMetricsTest(String testName) {
+        super(testName);
+    }
+
+    @Override
+    protected void setUp() throws Exception {
+        super.setUp();
+
+        ElementsRegister ereg = ElementsRegister.fromXML(new InputStreamReader(
+            ClassLoader.getSystemResourceAsStream("resources/registers/catsup/Elements.xml")));
+        GroupsRegister greg = GroupsRegister.fromXML(new InputStreamReader(
+            ClassLoader.getSystemResourceAsStream("resources/registers/catsup/Groups.xml")));
+        TypesRegister treg = TypesRegister.fromXML(new InputStreamReader(
+            ClassLoader.getSystemResourceAsStream("resources/registers/catsup/Types.xml")));
+
+        mds = fromRegister(treg, greg, ereg, null);
+
+        assertNotNull(mds);
+
+        db = DocumentBuilderFactory.newInstance().newDocumentBuilder();
+    }
+
+    public void testMetrics() throws Exception {
+
+        InMemoryMetrics aggregate = new InMemoryMetrics();
+
+        InMemoryMetrics run = new InMemoryMetrics(aggregate);
+
+        DocumentFragment df = MXFFragmentBuilder.fromInputStream(
+            ClassLoader.getSystemResourceAsStream("resources/sample-files/video2.mxf"),
+            mds,
+            null,
+            null,
+            PREFACE_KEY,
+            db.newDocument(),
+            run
+        );
+
+        assertNotNull(df);
+
+        assertEquals(1, run.getRuns());
+        assertTrue(run.getBytesRead() > 0);
+        assertTrue(run.getTripletsRead() > 0);
+        assertTrue(run.getSetsDecoded() > 0);
+        assertTrue(run.getSetsDecoded() <= run.getTripletsRead());
+        assertTrue(run.getPropertiesDecoded() > 0);
+        assertTrue(run.getDefinitionHits() > 0);
+        assertTrue(run.getReadTime() > 0);
+        assertTrue(run.getBuildTime() > 0);
+
+        /* a second run is only reflected in the aggregate */
+        MXFFragmentBuilder.fromInputStream(
+            ClassLoader.getSystemResourceAsStream("resources/sample-files/video2.mxf"),
+            mds,
+            null,
+            null,
+            PREFACE_KEY,
+            db.newDocument(),
+            new InMemoryMetrics(aggregate)
+        );
+
+        assertEquals(2, aggregate.getRuns());
+        assertEquals(2 * run.getBytesRead(), aggregate.getBytesRead());
+        assertEquals(2 * run.getPropertiesDecoded(), aggregate.getPropertiesDecoded());
+        assertEquals(2 * run.getDefinitionMisses(), aggregate.getDefinitionMisses());
+
+        for (Entry<String, Long> e : run.getEventCounts().entrySet()) {
+            assertEquals(2 * e.getValue(), (long) aggregate.getEventCounts().get(e.getKey()));
+        }
+
+        aggregate.reset();
+
+        assertEquals(0, aggregate.getRuns());
+        assertTrue(aggregate.getEventCounts().isEmpty());
+        assertEquals(1, run.getRuns());
+
+    }
+
+}
@@ -25,37 +25,66 @@
  */
 package com.sandflow.smpte.regxml;
 
-import com.sandflow.smpte.klv.exceptions.KLVException;
+import com.sandflow.smpte.mxf.PartitionMetadata;
+import com.sandflow.smpte.mxf.Set;
 import com.sandflow.smpte.register.ElementsRegister;
 import com.sandflow.smpte.register.GroupsRegister;
 import com.sandflow.smpte.register.TypesRegister;
 import com.sandflow.smpte.register.exceptions.DuplicateEntryException;
+import com.sandflow.smpte.regxml.dict.ClassLattice;
+import com.sandflow.smpte.regxml.dict.MetaDictionary;
 import com.sandflow.smpte.regxml.dict.MetaDictionaryCollection;
+import com.sandflow.smpte.regxml.dict.MetaDictionarySnapshot;
+import com.sandflow.smpte.regxml.dict.exceptions.IllegalDictionaryException;
+import com.sandflow.smpte.tools.RegXMLDump;
 import static com.sandflow.smpte.regxml.dict.importers.RegisterImporter.fromRegister;
+import com.sandflow.smpte.util.ChannelByteSource;
 import com.sandflow.smpte.util.UL;
+import com.sandflow.smpte.util.UUID;
 import com.sandflow.util.events.Event;
 import com.sandflow.util.events.EventHandler;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
 import java.io.IOException;
 import java.io.InputStream;
 import java.io.InputStreamReader;
+import java.io.OutputStream;
+import java.io.PrintStream;
 import java.io.Reader;
+import java.io.StringReader;
+import java.io.StringWriter;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
 import java.util.Map.Entry;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
 import java.util.logging.Logger;
 import javax.xml.bind.JAXBException;
 import javax.xml.parsers.DocumentBuilder;
 import javax.xml.parsers.DocumentBuilderFactory;
-import javax.xml.parsers.ParserConfigurationException;
+import javax.xml.stream.XMLOutputFactory;
+import javax.xml.stream.XMLStreamWriter;
+import javax.xml.transform.TransformerFactory;
+import javax.xml.transform.dom.DOMResult;
+import javax.xml.transform.sax.SAXTransformerFactory;
+import javax.xml.transform.sax.TransformerHandler;
 import junit.framework.TestCase;
 import org.w3c.dom.Document;
 import org.w3c.dom.DocumentFragment;
 import org.w3c.dom.Element;
 import org.w3c.dom.Node;
 import org.w3c.dom.NodeList;
-import org.xml.sax.SAXException;
+import org.xml.sax.InputSource;
 
 /**
  *
@@ -166,7 +195,7 @@ public class MXFFragmentBuilderTest extends TestCase {
         super.tearDown();
     }
 
-    private void compareGeneratedVsRef(MetaDictionaryCollection mds, String spath, String refpath) throws IOException, SAXException, KLVException, MXFFragmentBuilder.MXFException, ParserConfigurationException, FragmentBuilder.RuleException {
+    private void compareGeneratedVsRef(MetaDictionaryCollection mds, String spath, String refpath) throws Exception {
 
         /* get the sample files */
         InputStream sampleis = ClassLoader.getSystemResourceAsStream(spath);
@@ -216,6 +245,52 @@ public class MXFFragmentBuilderTest extends TestCase {
         /* compare the ref vs the generated */
         assertTrue(compareDOMElement(gendoc.getDocumentElement(), refdoc.getDocumentElement()));
 
+        /* write the regxml fragment to a XMLStreamWriter */
+        StringWriter sw = new StringWriter();
+
+        XMLStreamWriter xsw = XMLOutputFactory.newInstance().createXMLStreamWriter(sw);
+
+        xsw.writeStartDocument();
+
+        /* resolve definitions through a decode plan cache and class lattice */
+        MXFFragmentBuilder.fromInputStream(
+            ClassLoader.getSystemResourceAsStream(spath),
+            new DecodePlanCache(mds, ClassLattice.fromDictionaries(mds)),
+            null,
+            evthandler,
+            PREFACE_KEY,
+            new XMLStreamWriterFragmentSink(xsw)
+        );
+
+        xsw.writeEndDocument();
+        xsw.close();
+
+        Document staxdoc = db.parse(new InputSource(new StringReader(sw.toString())));
+
+        assertTrue(compareDOMElement(staxdoc.getDocumentElement(), refdoc.getDocumentElement()));
+
+        /* write the regxml fragment to a ContentHandler */
+        TransformerHandler th = ((SAXTransformerFactory) TransformerFactory.newInstance()).newTransformerHandler();
+
+        DOMResult saxresult = new DOMResult();
+
+        th.setResult(saxresult);
+
+        th.startDocument();
+
+        MXFFragmentBuilder.fromInputStream(
+            ClassLoader.getSystemResourceAsStream(spath),
+            mds,
+            null,
+            evthandler,
+            PREFACE_KEY,
+            new ContentHandlerFragmentSink(th, th)
+        );
+
+        th.endDocument();
+
+        assertTrue(compareDOMElement(((Document) saxresult.getNode()).getDocumentElement(), refdoc.getDocumentElement()));
+
     }
 
     public void testAudio1AgainstCatsup() throws Exception {
@@ -290,6 +365,301 @@ public class MXFFragmentBuilderTest extends TestCase {
 
     }
 
+    public void testVideo2AgainstCatsupSnapshot() throws Exception {
+
+        ByteArrayOutputStream os = new ByteArrayOutputStream();
+
+        MetaDictionarySnapshot.write(new ArrayList<>(mds_catsup.getDictionaries()), os);
+
+        byte[] snapshot = os.toByteArray();
+
+        MetaDictionaryCollection mds = new MetaDictionaryCollection();
+
+        for (MetaDictionary md : MetaDictionarySnapshot.read(ByteBuffer.wrap(snapshot))) {
+            mds.addDictionary(md);
+        }
+
+        assertEquals(mds_catsup.getDictionaries().size(), mds.getDictionaries().size());
+
+        compareGeneratedVsRef(mds, "resources/sample-files/video2.mxf", "resources/reference-files/video2.xml");
+
+        /* corrupt the snapshot */
+        snapshot[snapshot.length / 2] ^= 0x01;
+
+        try {
+            MetaDictionarySnapshot.read(ByteBuffer.wrap(snapshot));
+            fail("Corrupt snapshot was read");
+        } catch (IllegalDictionaryException e) {
+        }
+
+    }
+
+    public void testVideo1AgainstFrozenCatsup() throws Exception {
+
+        mds_catsup.freeze();
+
+        assertTrue(mds_catsup.isFrozen());
+
+        compareGeneratedVsRef(mds_catsup, "resources/sample-files/video1.mxf", "resources/reference-files/video1.xml");
+
+        try {
+            mds_catsup.addDictionary(mds_brown_sauce.getDictionaries().iterator().next());
+            fail("Frozen collection was modified");
+        } catch (IllegalStateException e) {
+        }
+
+    }
+
+    public void testBatchDump() throws Exception {
+
+        Path dir = Paths.get("target", "test-batch");
+
+        Path outdir = dir.resolve("out");
+
+        Files.createDirectories(dir.resolve("copy"));
+
+        Path snapshot = dir.resolve("catsup.snap");
+
+        try (OutputStream os = Files.newOutputStream(snapshot)) {
+            MetaDictionarySnapshot.write(new ArrayList<>(mds_catsup.getDictionaries()), os);
+        }
+
+        Path video1 = Paths.get(ClassLoader.getSystemResource("resources/sample-files/video1.mxf").toURI());
+        Path video2 = Paths.get(ClassLoader.getSystemResource("resources/sample-files/video2.mxf").toURI());
+
+        /* a file with the same name in another directory */
+        Path copy = Files.copy(video1, dir.resolve("copy").resolve("video1.mxf"), StandardCopyOption.REPLACE_EXISTING);
+
+        PrintStream stdout = System.out;
+
+        ByteArrayOutputStream console = new ByteArrayOutputStream();
+
+        try {
+
+            System.setOut(new PrintStream(console, true, "UTF-8"));
+
+            /* the same file is listed twice */
+            RegXMLDump.main(new String[]{
+                "-all", "-header", "-threads", "2",
+                "-d", snapshot.toString(),
+                "-o", outdir.toString(),
+                "-i", video1.toString(), copy.toString(), video2.toString(), video1.toString()
+            });
+
+        } finally {
+            System.setOut(stdout);
+        }
+
+        String summary = new String(console.toByteArray(), StandardCharsets.UTF_8);
+
+        assertTrue(summary.contains("video1.mxf: "));
+        assertTrue(summary.contains("video1.mxf.1: "));
+        assertTrue(summary.contains("video1.mxf.2: "));
+        assertTrue(summary.contains("video2.mxf: "));
+        assertFalse(summary.contains("FAILED"));
+
+        Element video1ref = db.parse(ClassLoader.getSystemResourceAsStream("resources/reference-files/video1.xml")).getDocumentElement();
+        Element video2ref = db.parse(ClassLoader.getSystemResourceAsStream("resources/reference-files/video2.xml")).getDocumentElement();
+
+        assertTrue(compareDOMElement(db.parse(outdir.resolve("video1.mxf.xml").toFile()).getDocumentElement(), video1ref));
+        assertTrue(compareDOMElement(db.parse(outdir.resolve("video1.mxf.1.xml").toFile()).getDocumentElement(), video1ref));
+        assertTrue(compareDOMElement(db.parse(outdir.resolve("video1.mxf.2.xml").toFile()).getDocumentElement(), video1ref));
+        assertTrue(compareDOMElement(db.parse(outdir.resolve("video2.mxf.xml").toFile()).getDocumentElement(), video2ref));
+
+        /* -threads requires -o or -auto */
+        console.reset();
+
+        try {
+
+            System.setOut(new PrintStream(console, true, "UTF-8"));
+
+            RegXMLDump.main(new String[]{
+                "-all", "-header", "-threads", "2",
+                "-d", snapshot.toString(),
+                "-i", video1.toString()
+            });
+
+        } finally {
+            System.setOut(stdout);
+        }
+
+        assertTrue(new String(console.toByteArray(), StandardCharsets.UTF_8).startsWith("Dump header metadata"));
+    }
+
+    public void testFromPartitionMetadata() throws Exception {
+
+        ExecutorService executor = Executors.newFixedThreadPool(2);
+
+        try (FileChannel fc = FileChannel.open(Paths.get(ClassLoader.getSystemResource("resources/sample-files/audio1.mxf").toURI()))) {
+
+            PartitionMetadata best = PartitionMetadata.selectBest(PartitionMetadata.readAll(fc, executor, null));
+
+            assertNotNull(best);
+
+            /* the Sets already read are rendered */
+            StringWriter sw = new StringWriter();
+
+            XMLStreamWriter xsw = XMLOutputFactory.newInstance().createXMLStreamWriter(sw);
+
+            xsw.writeStartDocument();
+
+            InMemoryMetrics metrics = new InMemoryMetrics();
+
+            MXFFragmentBuilder.fromPartitionMetadata(
+                best,
+                mds_catsup,
+                null,
+                null,
+                PREFACE_KEY,
+                new XMLStreamWriterFragmentSink(xsw),
+                metrics
+            );
+
+            xsw.writeEndDocument();
+            xsw.close();
+
+            assertEquals(best.getHeaderMetadata().size(), metrics.getTripletsRead());
+            assertEquals(0, metrics.getBytesRead());
+
+            /* the same partition read again from its offset */
+            fc.position(best.getOffset());
+
+            Document refdoc = db.newDocument();
+
+            refdoc.appendChild(
+                MXFFragmentBuilder.fromInputStream(
+                    new ChannelByteSource(fc),
+                    mds_catsup,
+                    null,
+                    null,
+                    PREFACE_KEY,
+                    refdoc
+                )
+            );
+
+            Document gendoc = db.parse(new InputSource(new StringReader(sw.toString())));
+
+            assertTrue(compareDOMElement(gendoc.getDocumentElement(), refdoc.getDocumentElement()));
+
+        } finally {
+            executor.shutdown();
+        }
+    }
+
+    public void testOrphanDanglingReference() throws Exception {
+
+        byte[] mxf = addOrphanSet(Files.readAllBytes(Paths.get(ClassLoader.getSystemResource("resources/sample-files/video2.mxf").toURI())));
+
+        /* Sets that are not rendered are not checked, and no event handler is needed */
+        Document gendoc = db.newDocument();
+
+        gendoc.appendChild(
+            MXFFragmentBuilder.fromInputStream(
+                new ByteArrayInputStream(mxf),
+                mds_catsup,
+                null,
+                null,
+                PREFACE_KEY,
+                gendoc
+            )
+        );
+
+        Document refdoc = db.parse(ClassLoader.getSystemResourceAsStream("resources/reference-files/video2.xml"));
+
+        assertTrue(compareDOMElement(gendoc.getDocumentElement(), refdoc.getDocumentElement()));
+    }
+
+    /* inserts, after the Content Storage Set, a copy of it with a new Instance
+     ID and whose first Package reference is dangling */
+    static byte[] addOrphanSet(byte[] mxf) {
+
+        ByteBuffer bb = ByteBuffer.wrap(mxf);
+
+        /* Partition Pack */
+        int ppvalue = skipKeyAndLength(bb);
+        long hbc = bb.getLong(ppvalue + 32);
+
+        bb.position(ppvalue + (int) readLength(bb, 16));
+
+        while (bb.hasRemaining()) {
+
+            int start = bb.position();
+            int value = skipKeyAndLength(bb);
+            int end = value + (int) readLength(bb, start + 16);
+
+            bb.position(end);
+
+            /* Local Sets with 2-byte tags and lengths */
+            if (mxf[start + 5] != 0x53) {
+                continue;
+            }
+
+            /* look for the Packages property */
+            int packages = -1;
+            int instanceid = -1;
+
+            for (int i = value; i + 4 <= end; i += 4 + (bb.getShort(i + 2) & 0xFFFF)) {
+
+                if (bb.getShort(i) == 0x1901) {
+                    packages = i + 4;
+                } else if (bb.getShort(i) == 0x3c0a) {
+                    instanceid = i + 4;
+                }
+
+            }
+
+            if (packages < 0 || instanceid < 0) {
+                continue;
+            }
+
+            byte[] orphan = Arrays.copyOfRange(mxf, start, end);
+
+            System.arraycopy(UUID.fromRandom().getValue(), 0, orphan, instanceid - start, 16);
+
+            /* skip the item count and length of the batch */
+            System.arraycopy(UUID.fromRandom().getValue(), 0, orphan, packages - start + 8, 16);
+
+            byte[] out = new byte[mxf.length + orphan.length];
+
+            System.arraycopy(mxf, 0, out, 0, end);
+            System.arraycopy(orphan, 0, out, end, orphan.length);
+            System.arraycopy(mxf, end, out, end + orphan.length, mxf.length - end);
+
+            ByteBuffer.wrap(out).putLong(ppvalue + 32, hbc + orphan.length);
+
+            return out;
+        }
+
+        throw new IllegalArgumentException("No Content Storage Set found");
+    }
+
+    /* returns the position of the value of the triplet at the current position */
+    static int skipKeyAndLength(ByteBuffer bb) {
+
+        int pos = bb.position() + 16;
+
+        int b = bb.get(pos) & 0xFF;
+
+        return pos + 1 + ((b & 0x80) == 0 ? 0 : (b & 0x7F));
+    }
+
+    static long readLength(ByteBuffer bb, int pos) {
+
+        int b = bb.get(pos) & 0xFF;
+
+        if ((b & 0x80) == 0) {
+            return b;
+        }
+
+        long len = 0;
+
+        for (int i = 1; i <= (b & 0x7F); i++) {
+            len = (len << 8) | (bb.get(pos + i) & 0xFF);
+        }
+
+        return len;
+    }
+
     static Map<String, String> getAttributes(Element e) {
 
         NodeList nl = e.getChildNodes();
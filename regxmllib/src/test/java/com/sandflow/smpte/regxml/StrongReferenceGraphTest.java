@@ -0,0 +1,252 @@
+/*
+ * Copyright (c) 2015, Pierre-Anthony Lemieux (pal@sandflow.com)
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ *
+ * * Redistributions of source code must retain the above copyright notice, this
+ *   list of conditions and the following disclaimer.
+ * * Redistributions in binary form must reproduce the above copyright notice,
+ *   this list of conditions and the following disclaimer in the documentation
+ *   and/or other materials provided with the distribution.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ */
+package com.sandflow.smpte.regxml;
+
+import com.sandflow.smpte.klv.Group;
+import com.sandflow.smpte.mxf.HeaderMetadataReader;
+import com.sandflow.smpte.mxf.Set;
+import com.sandflow.smpte.mxf.SetMap;
+import com.sandflow.smpte.register.ElementsRegister;
+import com.sandflow.smpte.register.GroupsRegister;
+import com.sandflow.smpte.register.TypesRegister;
+import com.sandflow.smpte.regxml.dict.MetaDictionaryCollection;
+import static com.sandflow.smpte.regxml.dict.importers.RegisterImporter.fromRegister;
+import com.sandflow.smpte.util.UL;
+import com.sandflow.smpte.util.UUID;
+import com.sandflow.util.events.Event;
+import com.sandflow.util.events.EventHandler;
+import com.sandflow.util.events.FilteringEventHandler;
+import java.io.ByteArrayInputStream;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.nio.file.Files;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.HashMap;
+import junit.framework.TestCase;
+
+/**
+ *
+ * @author Pierre-Anthony Lemieux (pal@sandflow.com)
+ */
+public class StrongReferenceGraphTest extends TestCase {
+
+    private static final UL PREFACE_KEY
+        = UL.fromURN("urn:smpte:ul:060e2b34.027f0101.0d010101.01012f00");
+
+    private MetaDictionaryCollection mds;
+
+    private HashMap<UUID, Set> sets;
+    private UUID preface;
+
+    private final ArrayList<Event> events = new ArrayList<>();
+
+    private final EventHandler evthandler = new EventHandler() {
+
+        @Override
+        public boolean handle(Event evt) {
+            events.add(evt);
+            return true;
+        }
+    };
+
+    public StrongReferenceGraphTest(String testName) {
+        super(testName);
+    }
+
+    @Override
+    protected void setUp() throws Exception {
+        super.setUp();
+
+        ElementsRegister ereg = ElementsRegister.fromXML(new InputStreamReader(
+            ClassLoader.getSystemResourceAsStream("resources/registers/catsup/Elements.xml")));
+        GroupsRegister greg = GroupsRegister.fromXML(new InputStreamReader(
+            ClassLoader.getSystemResourceAsStream("resources/registers/catsup/Groups.xml")));
+        TypesRegister treg = TypesRegister.fromXML(new InputStreamReader(
+            ClassLoader.getSystemResourceAsStream("resources/registers/catsup/Types.xml")));
+
+        mds = fromRegister(treg, greg, ereg, null);
+
+        assertNotNull(mds);
+    }
+
+    /* reads the Sets of a partition and locates its Preface */
+    private void readSets(InputStream is) throws Exception {
+
+        HeaderMetadataReader reader = new HeaderMetadataReader(is);
+
+        sets = new HashMap<>();
+        preface = null;
+
+        for (Group g; (g = reader.next()) != null;) {
+
+            Set set = Set.fromGroup(g);
+
+            sets.put(set.getInstanceID(), set);
+
+            if (g.getKey().equalsWithMask(PREFACE_KEY, 0b1111101011111111)) {
+                preface = set.getInstanceID();
+            }
+        }
+
+        assertNotNull(preface);
+    }
+
+    public void testValidate() throws Exception {
+
+        readSets(ClassLoader.getSystemResourceAsStream("resources/sample-files/video2.mxf"));
+
+        StrongReferenceGraph graph = new StrongReferenceGraph(sets, mds);
+
+        assertTrue(graph.validate(preface, evthandler));
+        assertTrue(events.isEmpty());
+
+        assertEquals(0, graph.getReferenceCount(preface));
+
+        UUID child = graph.getReferences(preface).get(0);
+
+        assertEquals(1, graph.getReferenceCount(child));
+
+        /* the same Sets indexed by Instance ID */
+        SetMap setmap = new SetMap();
+
+        setmap.putAll(sets);
+
+        graph = new StrongReferenceGraph(setmap, mds);
+
+        assertTrue(graph.validate(preface, evthandler));
+        assertTrue(events.isEmpty());
+        assertEquals(1, graph.getReferenceCount(child));
+    }
+
+    public void testDanglingReference() throws Exception {
+
+        readSets(ClassLoader.getSystemResourceAsStream("resources/sample-files/video2.mxf"));
+
+        UUID child = new StrongReferenceGraph(sets, mds).getReferences(preface).get(0);
+
+        HashMap<UUID, Set> dangling = new HashMap<>(sets);
+
+        dangling.remove(child);
+
+        StrongReferenceGraph graph = new StrongReferenceGraph(dangling, mds);
+
+        assertTrue(graph.validate(preface, evthandler));
+        assertEquals(FragmentBuilder.EventCodes.STRONG_REFERENCE_NOT_FOUND, events.get(0).getCode());
+
+        assertFalse(graph.validate(preface, null));
+
+        /* the whole header is only checked on request, and never stops */
+        events.clear();
+
+        assertTrue(graph.validateAll(preface, null));
+        assertTrue(graph.validateAll(preface, evthandler));
+        assertEquals(StrongReferenceGraph.EventCodes.STRONG_REFERENCE_NOT_FOUND, events.get(events.size() - 1).getCode());
+
+        for (Event evt : events) {
+            assertTrue(evt.getSeverity() != Event.Severity.ERROR);
+        }
+    }
+
+    public void testCircularReference() throws Exception {
+
+        readSets(ClassLoader.getSystemResourceAsStream("resources/sample-files/video2.mxf"));
+
+        UUID child = new StrongReferenceGraph(sets, mds).getReferences(preface).get(0);
+
+        /* the Preface references itself */
+        HashMap<UUID, Set> circular = new HashMap<>(sets);
+
+        circular.put(child, sets.get(preface));
+
+        StrongReferenceGraph graph = new StrongReferenceGraph(circular, mds);
+
+        assertTrue(graph.validate(preface, evthandler));
+
+        boolean found = false;
+
+        for (Event evt : events) {
+            found |= evt.getCode() == FragmentBuilder.EventCodes.CIRCULAR_STRONG_REFERENCE;
+        }
+
+        assertTrue(found);
+    }
+
+    public void testOrphanDanglingReference() throws Exception {
+
+        byte[] mxf = MXFFragmentBuilderTest.addOrphanSet(
+            Files.readAllBytes(Paths.get(ClassLoader.getSystemResource("resources/sample-files/video2.mxf").toURI()))
+        );
+
+        readSets(new ByteArrayInputStream(mxf));
+
+        StrongReferenceGraph graph = new StrongReferenceGraph(sets, mds);
+
+        /* Sets that are not reachable from the root are not checked */
+        assertTrue(graph.validate(preface, null));
+
+        /* the orphan Set is reported if the whole header is checked */
+        assertTrue(graph.validateAll(preface, evthandler));
+
+        ArrayList<Object> codes = new ArrayList<>();
+
+        for (Event evt : events) {
+            codes.add(evt.getCode());
+        }
+
+        assertTrue(codes.contains(StrongReferenceGraph.EventCodes.UNREFERENCED_SET));
+        assertTrue(codes.contains(StrongReferenceGraph.EventCodes.STRONG_REFERENCE_NOT_FOUND));
+
+        /* the location of a dropped event is never built */
+        events.clear();
+
+        final ArrayList<StrongReferenceGraph.GraphEvent> dropped = new ArrayList<>();
+
+        FilteringEventHandler filter = new FilteringEventHandler(evthandler) {
+
+            @Override
+            public boolean handle(Event evt) {
+                if (evt.getCode() == StrongReferenceGraph.EventCodes.UNREFERENCED_SET) {
+                    dropped.add((StrongReferenceGraph.GraphEvent) evt);
+                }
+                return super.handle(evt);
+            }
+        };
+
+        filter.suppress(StrongReferenceGraph.EventCodes.UNREFERENCED_SET);
+
+        assertTrue(graph.validateAll(preface, filter));
+
+        assertFalse(dropped.isEmpty());
+        assertEquals(dropped.size(), filter.getDroppedCount(StrongReferenceGraph.EventCodes.UNREFERENCED_SET));
+
+        for (StrongReferenceGraph.GraphEvent evt : dropped) {
+            assertFalse(evt.where.isBuilt());
+            assertFalse(events.contains(evt));
+        }
+    }
+
+}
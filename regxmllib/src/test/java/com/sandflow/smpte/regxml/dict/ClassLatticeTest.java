@@ -0,0 +1,126 @@
+/*
+ * Copyright (c) 2015, Pierre-Anthony Lemieux (pal@sandflow.com)
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ *
+ * * Redistributions of source code must retain the above copyright notice, this
+ *   list of conditions and the following disclaimer.
+ * * Redistributions in binary form must reproduce the above copyright notice,
+ *   this list of conditions and the following disclaimer in the documentation
+ *   and/or other materials provided with the distribution.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ */
+package com.sandflow.smpte.regxml.dict;
+
+import com.sandflow.smpte.register.ElementsRegister;
+import com.sandflow.smpte.register.GroupsRegister;
+import com.sandflow.smpte.register.TypesRegister;
+import com.sandflow.smpte.regxml.dict.definitions.ClassDefinition;
+import com.sandflow.smpte.regxml.dict.definitions.PropertyDefinition;
+import static com.sandflow.smpte.regxml.dict.importers.RegisterImporter.fromRegister;
+import com.sandflow.smpte.util.AUID;
+import com.sandflow.smpte.util.UL;
+import java.io.InputStreamReader;
+import junit.framework.TestCase;
+
+/**
+ *
+ * @author Pierre-Anthony Lemieux (pal@sandflow.com)
+ */
+public class ClassLatticeTest extends TestCase {
+
+    private static final UL PREFACE_KEY
+        = UL.fromURN("urn:smpte:ul:060e2b34.027f0101.0d010101.01012f00");
+
+    private MetaDictionaryCollection mds;
+
+    public ClassLatticeTest(String testName) {
+        super(testName);
+    }
+
+    @Override
+    protected void setUp() throws Exception {
+        super.setUp();
+
+        ElementsRegister ereg = ElementsRegister.fromXML(new InputStreamReader(
+            ClassLoader.getSystemResourceAsStream("resources/registers/catsup/Elements.xml")));
+        GroupsRegister greg = GroupsRegister.fromXML(new InputStreamReader(
+            ClassLoader.getSystemResourceAsStream("resources/registers/catsup/Groups.xml")));
+        TypesRegister treg = TypesRegister.fromXML(new InputStreamReader(
+            ClassLoader.getSystemResourceAsStream("resources/registers/catsup/Types.xml")));
+
+        mds = fromRegister(treg, greg, ereg, null);
+
+        assertNotNull(mds);
+    }
+
+    /* finds the unique identifier of a class by walking up its hierarchy */
+    private PropertyDefinition findUniqueIdentifier(ClassDefinition definition) {
+
+        for (ClassDefinition cdef = definition; cdef != null;) {
+
+            for (AUID auid : mds.getMembersOf(cdef)) {
+
+                PropertyDefinition propdef = (PropertyDefinition) mds.getDefinition(auid);
+
+                if (propdef.isUniqueIdentifier()) {
+                    return propdef;
+                }
+            }
+
+            cdef = cdef.getParentClass() == null ? null : (ClassDefinition) mds.getDefinition(cdef.getParentClass());
+        }
+
+        return null;
+    }
+
+    public void testClassLattice() throws Exception {
+
+        ClassLattice lattice = ClassLattice.fromDictionaries(mds);
+
+        ClassDefinition preface = (ClassDefinition) mds.getDefinition(new AUID(PREFACE_KEY));
+        ClassDefinition io = (ClassDefinition) mds.getDefinition(
+            new AUID(UL.fromURN("urn:smpte:ul:060e2b34.027f0101.0d010101.01010100"))
+        );
+
+        assertNotNull(preface);
+        assertNotNull(io);
+
+        /* parents are assigned lower ids */
+        assertTrue(lattice.getId(io) < lattice.getId(preface));
+
+        assertTrue(lattice.isSubclassOf(preface, io));
+        assertTrue(lattice.isSubclassOf(preface, preface));
+        assertFalse(lattice.isSubclassOf(io, preface));
+
+        /* the version byte is ignored */
+        assertEquals(lattice.getId(preface), lattice.getId(new AUID(UL.fromURN("urn:smpte:ul:060e2b34.02530105.0d010101.01012f00"))));
+
+        assertTrue(lattice.getAllSubclassesOf(io).contains(preface));
+
+        assertTrue(lattice.getAllMembersOf(preface).containsAll(lattice.getAllMembersOf(io)));
+
+        /* the unique identifiers match those found by walking the hierarchy */
+        for (int i = 0; i < lattice.size(); i++) {
+
+            ClassDefinition cdef = lattice.getClassDefinition(i);
+
+            assertSame(findUniqueIdentifier(cdef), lattice.getUniqueIdentifier(cdef));
+        }
+
+    }
+
+}
@@ -0,0 +1,253 @@
+/*
+ * Copyright (c) 2015, Pierre-Anthony Lemieux (pal@sandflow.com)
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ *
+ * * Redistributions of source code must retain the above copyright notice, this
+ *   list of conditions and the following disclaimer.
+ * * Redistributions in binary form must reproduce the above copyright notice,
+ *   this list of conditions and the following disclaimer in the documentation
+ *   and/or other materials provided with the distribution.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ */
+package com.sandflow.smpte.regxml.dict;
+
+import com.sandflow.smpte.klv.Group;
+import com.sandflow.smpte.klv.Triplet;
+import com.sandflow.smpte.mxf.HeaderMetadataReader;
+import com.sandflow.smpte.mxf.Set;
+import com.sandflow.smpte.register.ElementsRegister;
+import com.sandflow.smpte.register.GroupsRegister;
+import com.sandflow.smpte.register.TypesRegister;
+import com.sandflow.smpte.regxml.dict.definitions.Definition;
+import com.sandflow.smpte.regxml.dict.definitions.PropertyAliasDefinition;
+import com.sandflow.smpte.regxml.dict.definitions.RecordTypeDefinition;
+import static com.sandflow.smpte.regxml.dict.importers.RegisterImporter.fromRegister;
+import com.sandflow.smpte.util.AUID;
+import com.sandflow.smpte.util.UL;
+import java.io.InputStreamReader;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import junit.framework.TestCase;
+
+/**
+ *
+ * @author Pierre-Anthony Lemieux (pal@sandflow.com)
+ */
+public class DefinitionIndexTest extends TestCase {
+
+    private MetaDictionaryCollection mds;
+
+    public DefinitionIndexTest(String testName) {
+        super(testName);
+    }
+
+    @Override
+    protected void setUp() throws Exception {
+        super.setUp();
+
+        ElementsRegister ereg = ElementsRegister.fromXML(new InputStreamReader(
+            ClassLoader.getSystemResourceAsStream("resources/registers/catsup/Elements.xml")));
+        GroupsRegister greg = GroupsRegister.fromXML(new InputStreamReader(
+            ClassLoader.getSystemResourceAsStream("resources/registers/catsup/Groups.xml")));
+        TypesRegister treg = TypesRegister.fromXML(new InputStreamReader(
+            ClassLoader.getSystemResourceAsStream("resources/registers/catsup/Types.xml")));
+
+        mds = fromRegister(treg, greg, ereg, null);
+
+        assertNotNull(mds);
+    }
+
+    /* Keys of the Groups and items, and the Instance IDs of the Sets, of a file */
+    private static List<AUID> readIdentifications(String path) throws Exception {
+
+        HeaderMetadataReader reader = new HeaderMetadataReader(ClassLoader.getSystemResourceAsStream(path));
+
+        List<AUID> ids = new ArrayList<>();
+
+        for (Group g; (g = reader.next()) != null;) {
+
+            ids.add(new AUID(g.getKey()));
+
+            for (Triplet t : g.getItems()) {
+                ids.add(new AUID(t.getKey()));
+            }
+
+            Set set = Set.fromGroup(g);
+
+            if (set != null && set.getInstanceID() != null) {
+                ids.add(new AUID(set.getInstanceID()));
+            }
+        }
+
+        return ids;
+    }
+
+    /* the same identification with the version byte and, for Groups, the
+     registry designator changed */
+    private static List<AUID> createVariants(AUID id) {
+
+        List<AUID> variants = new ArrayList<>();
+
+        variants.add(id);
+
+        if (id.isUL()) {
+
+            byte[] value = id.getValue();
+
+            for (int version = 0; version < 0x10; version++) {
+                value[7] = (byte) version;
+                variants.add(new AUID(value));
+            }
+
+            if (id.asUL().isGroup()) {
+                for (byte designator : new byte[]{0x05, 0x13, 0x53, 0x7f}) {
+                    value[5] = designator;
+                    variants.add(new AUID(value));
+                }
+            }
+        }
+
+        return variants;
+    }
+
+    public void testNormalize() throws Exception {
+
+        List<AUID> ids = readIdentifications("resources/sample-files/video1.mxf");
+
+        assertFalse(ids.isEmpty());
+
+        for (AUID id : ids) {
+            for (AUID variant : createVariants(id)) {
+
+                AUID expected = MetaDictionary.createNormalizedAUID(variant);
+
+                assertEquals(variant.toString(),
+                    expected.getMostSignificantBits(),
+                    DefinitionIndex.normalize(variant.getMostSignificantBits()));
+                assertEquals(expected.getLeastSignificantBits(), variant.getLeastSignificantBits());
+            }
+        }
+    }
+
+    public void testPutAndGet() throws Exception {
+
+        DefinitionIndex index = new DefinitionIndex();
+
+        HashMap<AUID, Definition> expected = new HashMap<>();
+
+        Random rnd = new Random(1);
+
+        /* enough entries for the table to grow several times */
+        while (expected.size() < 5000) {
+
+            AUID id = MetaDictionary.createNormalizedAUID(new AUID(rnd.nextLong(), rnd.nextLong()));
+
+            Definition def = new RecordTypeDefinition();
+
+            assertEquals(!expected.containsKey(id),
+                index.put(id.getMostSignificantBits(), id.getLeastSignificantBits(), def));
+
+            if (!expected.containsKey(id)) {
+                expected.put(id, def);
+            }
+        }
+
+        assertEquals(expected.size(), index.size());
+
+        for (Map.Entry<AUID, Definition> e : expected.entrySet()) {
+
+            AUID id = e.getKey();
+
+            assertSame(e.getValue(), index.get(id.getMostSignificantBits(), id.getLeastSignificantBits()));
+
+            /* a second definition with the same identification is rejected */
+            assertFalse(index.put(id.getMostSignificantBits(), id.getLeastSignificantBits(), new RecordTypeDefinition()));
+            assertSame(e.getValue(), index.get(id.getMostSignificantBits(), id.getLeastSignificantBits()));
+        }
+
+        assertEquals(expected.size(), index.size());
+
+        for (int i = 0; i < 1000; i++) {
+
+            AUID id = MetaDictionary.createNormalizedAUID(new AUID(rnd.nextLong(), rnd.nextLong()));
+
+            if (!expected.containsKey(id)) {
+                assertNull(index.get(id.getMostSignificantBits(), id.getLeastSignificantBits()));
+            }
+        }
+
+        try {
+            index.put(0, 0, null);
+            fail("Null definition was accepted");
+        } catch (IllegalArgumentException e) {
+        }
+    }
+
+    public void testLookupAgainstVideo1() throws Exception {
+
+        /* reference lookup by normalized AUID, the first dictionary taking precedence */
+        HashMap<AUID, Definition> reference = new HashMap<>();
+
+        for (MetaDictionary md : mds.getDictionaries()) {
+            for (Definition def : md.getDefinitions()) {
+
+                if (def.getClass() == PropertyAliasDefinition.class) {
+                    continue;
+                }
+
+                AUID id = MetaDictionary.createNormalizedAUID(def.getIdentification());
+
+                if (!reference.containsKey(id)) {
+                    reference.put(id, def);
+                }
+            }
+        }
+
+        List<AUID> ids = readIdentifications("resources/sample-files/video1.mxf");
+
+        int found = 0;
+
+        for (AUID id : ids) {
+            for (AUID variant : createVariants(id)) {
+
+                Definition expected = reference.get(MetaDictionary.createNormalizedAUID(variant));
+
+                assertSame(variant.toString(), expected, mds.getDefinition(variant));
+                assertSame(expected, mds.getDefinition(variant.getMostSignificantBits(), variant.getLeastSignificantBits()));
+
+                if (expected != null) {
+                    found++;
+                }
+            }
+        }
+
+        assertTrue(found > 0);
+
+        /* the frozen collection uses a single index across dictionaries */
+        mds.freeze();
+
+        for (AUID id : ids) {
+            for (AUID variant : createVariants(id)) {
+                assertSame(reference.get(MetaDictionary.createNormalizedAUID(variant)), mds.getDefinition(variant));
+            }
+        }
+    }
+
+}
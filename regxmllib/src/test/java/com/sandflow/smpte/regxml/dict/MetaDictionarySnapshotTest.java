@@ -0,0 +1,104 @@
+/*
+ * Copyright (c) 2015, Pierre-Anthony Lemieux (pal@sandflow.com)
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ *
+ * * Redistributions of source code must retain the above copyright notice, this
+ *   list of conditions and the following disclaimer.
+ * * Redistributions in binary form must reproduce the above copyright notice,
+ *   this list of conditions and the following disclaimer in the documentation
+ *   and/or other materials provided with the distribution.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ */
+package com.sandflow.smpte.regxml.dict;
+
+import com.sandflow.smpte.regxml.dict.definitions.RecordTypeDefinition;
+import com.sandflow.smpte.util.AUID;
+import java.io.ByteArrayOutputStream;
+import java.net.URI;
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import junit.framework.TestCase;
+
+/**
+ *
+ * @author Pierre-Anthony Lemieux (pal@sandflow.com)
+ */
+public class MetaDictionarySnapshotTest extends TestCase {
+
+    private static final URI NAMESPACE = URI.create("http://www.example.com/test/snapshot");
+
+    public MetaDictionarySnapshotTest(String testName) {
+        super(testName);
+    }
+
+    private static RecordTypeDefinition createRecord(String symbol, String urn, Collection<RecordTypeDefinition.Member> members) {
+        RecordTypeDefinition def = new RecordTypeDefinition(members);
+
+        def.setNamespace(NAMESPACE);
+        def.setIdentification(AUID.fromURN(urn));
+        def.setSymbol(symbol);
+
+        return def;
+    }
+
+    public void testRecordMembersRoundTrip() throws Exception {
+
+        RecordTypeDefinition.Member m = new RecordTypeDefinition.Member();
+        m.setName("First");
+        m.setType(AUID.fromURN("urn:smpte:ul:060e2b34.01040101.01010100.00000000"));
+
+        ArrayList<RecordTypeDefinition.Member> members = new ArrayList<>();
+        members.add(m);
+
+        MetaDictionary md = new MetaDictionary(NAMESPACE);
+
+        md.add(createRecord("NoMembers", "urn:smpte:ul:060e2b34.01040101.0f000000.00000001", null));
+        md.add(createRecord("EmptyMembers", "urn:smpte:ul:060e2b34.01040101.0f000000.00000002",
+            Collections.<RecordTypeDefinition.Member>emptyList()));
+        md.add(createRecord("OneMember", "urn:smpte:ul:060e2b34.01040101.0f000000.00000003", members));
+
+        ByteArrayOutputStream os = new ByteArrayOutputStream();
+
+        MetaDictionarySnapshot.write(Collections.singletonList(md), os);
+
+        Collection<MetaDictionary> mds = MetaDictionarySnapshot.read(ByteBuffer.wrap(os.toByteArray()));
+
+        assertEquals(1, mds.size());
+
+        MetaDictionary rmd = mds.iterator().next();
+
+        RecordTypeDefinition nomembers = (RecordTypeDefinition) rmd.getDefinition("NoMembers");
+        assertNotNull(nomembers);
+        assertNull(nomembers.getMembers());
+
+        RecordTypeDefinition emptymembers = (RecordTypeDefinition) rmd.getDefinition("EmptyMembers");
+        assertNotNull(emptymembers);
+        assertNotNull(emptymembers.getMembers());
+        assertTrue(emptymembers.getMembers().isEmpty());
+
+        RecordTypeDefinition onemember = (RecordTypeDefinition) rmd.getDefinition("OneMember");
+        assertNotNull(onemember);
+        assertEquals(1, onemember.getMembers().size());
+
+        RecordTypeDefinition.Member rm = onemember.getMembers().iterator().next();
+        assertEquals(m.getName(), rm.getName());
+        assertEquals(m.getType(), rm.getType());
+    }
+
+}
@@ -0,0 +1,167 @@
+/*
+ * Copyright (c) 2016, Pierre-Anthony Lemieux (pal@sandflow.com)
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ *
+ * * Redistributions of source code must retain the above copyright notice, this
+ *   list of conditions and the following disclaimer.
+ * * Redistributions in binary form must reproduce the above copyright notice,
+ *   this list of conditions and the following disclaimer in the documentation
+ *   and/or other materials provided with the distribution.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ */
+package com.sandflow.smpte.util;
+
+import com.sandflow.smpte.klv.KLVInputStream.ByteOrder;
+import com.sandflow.smpte.mxf.MXFInputStream;
+import java.io.ByteArrayInputStream;
+import java.util.Arrays;
+import junit.framework.TestCase;
+
+/**
+ * UL, AUID, UUID, IDAU and UMID unit tests.
+ */
+public class ULTest extends TestCase {
+
+    private static final String UL_URN = "urn:smpte:ul:060e2b34.02530101.0d010101.01012f00";
+    private static final String UUID_URN = "urn:uuid:f81d4fae-7dec-11d0-a765-00a0c91e6bf6";
+
+    public ULTest(String testName) {
+        super(testName);
+    }
+
+    /**
+     * Test of the representation and comparison methods of class UL.
+     */
+    public void testUL() {
+        UL ul = UL.fromURN(UL_URN);
+
+        assertEquals(UL_URN, ul.toString());
+        assertEquals(ul, UL.fromDotValue("06.0e.2b.34.02.53.01.01.0d.01.01.01.01.01.2f.00"));
+        assertEquals(ul, new UL(ul.getValue()));
+        assertEquals(ul.hashCode(), new UL(ul.getValue()).hashCode());
+        assertEquals(0x060e2b3402530101L, ul.getMostSignificantBits());
+        assertEquals(0x0d01010101012f00L, ul.getLeastSignificantBits());
+        assertEquals(0x2f, ul.getValueOctet(14));
+        assertEquals(0x01, ul.getVersion());
+        assertTrue(ul.isLocalSet());
+        assertTrue(ul.isClass13());
+
+        /* getValue() returns a copy */
+        ul.getValue()[0] = 0;
+        assertEquals(0x06, ul.getValueOctet(0));
+
+        byte[] value = ul.getValue();
+        value[7] = 0x05;
+        UL ulv = new UL(value);
+
+        assertFalse(ul.equals(ulv));
+        assertTrue(ul.equalsIgnoreVersion(ulv));
+        assertFalse(ul.equalsWithMask(ulv, 0xffff));
+        assertTrue(ul.equalsWithMask(ulv, 0xfeff));
+
+        /* the last byte is not compared */
+        value[15] = 0x7f;
+        assertTrue(ul.equalsWithMask(new UL(value), 0xfeff));
+        assertFalse(ul.equalsIgnoreVersion(new UL(value)));
+    }
+
+    /**
+     * Test of the conversions between AUID, UL, UUID and IDAU.
+     */
+    public void testAUID() {
+        UL ul = UL.fromURN(UL_URN);
+        UUID uuid = UUID.fromURN(UUID_URN);
+
+        assertEquals(UUID_URN, uuid.toString());
+        assertEquals(uuid, new UUID(uuid.getValue()));
+
+        AUID auidul = new AUID(ul);
+
+        assertTrue(auidul.isUL());
+        assertTrue(auidul.equals(ul));
+        assertEquals(ul, auidul.asUL());
+        assertNull(auidul.asUUID());
+        assertEquals(UL_URN, auidul.toString());
+
+        AUID auiduuid = AUID.fromURN(UUID_URN);
+
+        assertTrue(auiduuid.isUUID());
+        assertEquals(uuid, auiduuid.asUUID());
+        assertEquals(new AUID(uuid), auiduuid);
+        assertEquals(uuid.getLeastSignificantBits(), auiduuid.getMostSignificantBits());
+        assertTrue(Arrays.equals(Arrays.copyOfRange(uuid.getValue(), 8, 16), Arrays.copyOfRange(auiduuid.getValue(), 0, 8)));
+
+        IDAU idauul = new IDAU(ul);
+
+        assertTrue(idauul.isUL());
+        assertEquals(ul, idauul.asUL());
+        assertEquals(auidul, idauul.asAUID());
+
+        IDAU idauuuid = IDAU.fromURN(UUID_URN);
+
+        assertEquals(new IDAU(uuid), idauuuid);
+        assertEquals(auiduuid, idauuuid.asAUID());
+    }
+
+    /**
+     * Test of class UMID.
+     */
+    public void testUMID() {
+        String urn = "urn:smpte:umid:060a2b34.01010105.01010d20.13000000.d2c9036c.8f195343.ab7014d2.d718bfda";
+
+        UMID umid = UMID.fromURN(urn);
+
+        assertEquals(urn, umid.toString());
+        assertEquals(umid, new UMID(umid.getValue()));
+        assertEquals(umid.hashCode(), new UMID(umid.getValue()).hashCode());
+        assertEquals(0x060a2b34, umid.getValue()[0] << 24 | umid.getValue()[1] << 16 | umid.getValue()[2] << 8 | umid.getValue()[3]);
+    }
+
+    /**
+     * Test of the identifier readers of class MXFInputStream.
+     */
+    public void testRead() throws Exception {
+        UUID uuid = UUID.fromURN(UUID_URN);
+
+        byte[] le = uuid.getValue();
+
+        /* first three fields of the UUID in little-endian order */
+        le[0] = (byte) 0xae;
+        le[1] = 0x4f;
+        le[2] = 0x1d;
+        le[3] = (byte) 0xf8;
+        le[4] = (byte) 0xec;
+        le[5] = 0x7d;
+        le[6] = (byte) 0xd0;
+        le[7] = 0x11;
+
+        MXFInputStream mis = new MXFInputStream(new ByteArrayInputStream(le), ByteOrder.LITTLE_ENDIAN);
+
+        assertEquals(uuid, mis.readUUID());
+
+        mis = new MXFInputStream(new ByteArrayInputStream(uuid.getValue()));
+
+        assertEquals(uuid, mis.readUUID());
+
+        UL ul = UL.fromURN(UL_URN);
+
+        mis = new MXFInputStream(new ByteArrayInputStream(ul.getValue()), ByteOrder.LITTLE_ENDIAN);
+
+        assertEquals(ul, mis.readUL());
+    }
+
+}
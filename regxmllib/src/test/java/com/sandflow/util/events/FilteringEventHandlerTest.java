@@ -0,0 +1,187 @@
+/*
+ * Copyright (c) 2016, pal
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ *
+ * * Redistributions of source code must retain the above copyright notice, this
+ *   list of conditions and the following disclaimer.
+ * * Redistributions in binary form must reproduce the above copyright notice,
+ *   this list of conditions and the following disclaimer in the documentation
+ *   and/or other materials provided with the distribution.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ */
+package com.sandflow.util.events;
+
+import java.util.ArrayList;
+import junit.framework.TestCase;
+
+/**
+ *
+ * @author pal
+ */
+public class FilteringEventHandlerTest extends TestCase {
+
+    static enum TestCodes {
+        FIRST,
+        SECOND
+    }
+
+    private final ArrayList<Event> forwarded = new ArrayList<>();
+
+    private FilteringEventHandler filter;
+
+    public FilteringEventHandlerTest(String testName) {
+        super(testName);
+    }
+
+    @Override
+    protected void setUp() throws Exception {
+        super.setUp();
+
+        forwarded.clear();
+
+        filter = new FilteringEventHandler(new EventHandler() {
+
+            @Override
+            public boolean handle(Event evt) {
+                forwarded.add(evt);
+                return evt.getSeverity() != Event.Severity.ERROR;
+            }
+        });
+    }
+
+    private static BasicEvent createEvent(Event.Severity severity, TestCodes code, int index) {
+        return new BasicEvent(severity, code, LazyMessage.format("Event %s", index));
+    }
+
+    public void testSuppress() throws Exception {
+
+        ArrayList<BasicEvent> raised = new ArrayList<>();
+
+        for (int i = 0; i < 5; i++) {
+            raised.add(createEvent(Event.Severity.WARN, TestCodes.FIRST, i));
+        }
+
+        for (int i = 0; i < 3; i++) {
+            raised.add(createEvent(Event.Severity.INFO, TestCodes.SECOND, i));
+        }
+
+        filter.suppress(TestCodes.FIRST);
+
+        for (Event evt : raised) {
+            assertTrue(filter.handle(evt));
+        }
+
+        assertEquals(5, filter.getCount(TestCodes.FIRST));
+        assertEquals(5, filter.getDroppedCount(TestCodes.FIRST));
+        assertEquals(3, filter.getCount(TestCodes.SECOND));
+        assertEquals(0, filter.getDroppedCount(TestCodes.SECOND));
+
+        assertEquals(3, forwarded.size());
+
+        for (BasicEvent evt : raised) {
+
+            if (evt.getCode() == TestCodes.FIRST) {
+
+                /* the message of a dropped event is never built */
+                assertFalse(evt.lazymessage.isBuilt());
+                assertFalse(forwarded.contains(evt));
+
+            } else {
+                assertTrue(forwarded.contains(evt));
+            }
+        }
+
+        /* FATAL events are always forwarded */
+        Event fatal = createEvent(Event.Severity.FATAL, TestCodes.FIRST, 5);
+
+        filter.handle(fatal);
+
+        assertSame(fatal, forwarded.get(forwarded.size() - 1));
+        assertEquals(5, filter.getDroppedCount(TestCodes.FIRST));
+    }
+
+    public void testThreshold() throws Exception {
+
+        filter.setThreshold(Event.Severity.WARN);
+
+        filter.handle(createEvent(Event.Severity.INFO, TestCodes.FIRST, 0));
+        filter.handle(createEvent(Event.Severity.WARN, TestCodes.FIRST, 1));
+
+        assertEquals(1, forwarded.size());
+        assertEquals(1, filter.getDroppedCount(TestCodes.FIRST));
+
+        /* a threshold set for a code takes precedence */
+        filter.setThreshold(TestCodes.SECOND, Event.Severity.INFO);
+
+        filter.handle(createEvent(Event.Severity.INFO, TestCodes.SECOND, 2));
+
+        assertEquals(2, forwarded.size());
+
+        filter.setThreshold(TestCodes.SECOND, null);
+
+        filter.handle(createEvent(Event.Severity.INFO, TestCodes.SECOND, 3));
+
+        assertEquals(2, forwarded.size());
+        assertEquals(1, filter.getDroppedCount(TestCodes.SECOND));
+
+        /* the result of the handler is returned for forwarded events only */
+        assertFalse(filter.handle(createEvent(Event.Severity.ERROR, TestCodes.SECOND, 4)));
+
+        filter.suppress(TestCodes.SECOND);
+
+        assertTrue(filter.handle(createEvent(Event.Severity.ERROR, TestCodes.SECOND, 5)));
+    }
+
+    public void testRateLimit() throws Exception {
+
+        filter.setRateLimit(2);
+
+        for (int i = 0; i < 5; i++) {
+            filter.handle(createEvent(Event.Severity.WARN, TestCodes.FIRST, i));
+            filter.handle(createEvent(Event.Severity.WARN, TestCodes.SECOND, i));
+        }
+
+        assertEquals(4, forwarded.size());
+        assertEquals("Event 0", forwarded.get(0).getMessage());
+        assertEquals("Event 1", forwarded.get(3).getMessage());
+
+        assertEquals(5, filter.getCount(TestCodes.FIRST));
+        assertEquals(3, filter.getDroppedCount(TestCodes.FIRST));
+        assertEquals(2, filter.getCounts().size());
+        assertEquals(Long.valueOf(3), filter.getDroppedCounts().get(TestCodes.SECOND));
+
+        /* the rate limit applies again after a reset */
+        filter.reset();
+
+        assertTrue(filter.getCounts().isEmpty());
+        assertTrue(filter.getDroppedCounts().isEmpty());
+
+        for (int i = 0; i < 5; i++) {
+            filter.handle(createEvent(Event.Severity.WARN, TestCodes.FIRST, i));
+        }
+
+        assertEquals(6, forwarded.size());
+        assertEquals(3, filter.getDroppedCount(TestCodes.FIRST));
+
+        try {
+            filter.setRateLimit(-1);
+            fail("Negative rate limit was accepted");
+        } catch (IllegalArgumentException e) {
+        }
+    }
+
+}